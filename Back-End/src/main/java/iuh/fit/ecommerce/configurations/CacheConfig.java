@@ -3,12 +3,15 @@ package iuh.fit.ecommerce.configurations;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.BatchStrategies;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
@@ -25,9 +28,14 @@ public class CacheConfig {
     public static final String PROVINCE_CACHE = "provinces";
     public static final String BANNER_CACHE = "banners";
     public static final String RANKING_CACHE = "rankings";
+    // Báo cáo dashboard: kỳ đã đóng TTL dài, kỳ đang mở TTL ngắn (xem DashboardCache)
+    public static final String DASHBOARD_CLOSED_CACHE = "dashboard-closed";
+    public static final String DASHBOARD_OPEN_CACHE = "dashboard-open";
 
     @Bean
-    public CacheManager cacheManager(RedisConnectionFactory redisConnectionFactory) {
+    public CacheManager cacheManager(RedisConnectionFactory redisConnectionFactory,
+                                     @Value("${dashboard.cache.open-ttl-seconds:60}") long dashboardOpenTtlSeconds,
+                                     @Value("${dashboard.cache.closed-ttl-seconds:604800}") long dashboardClosedTtlSeconds) {
         ObjectMapper objectMapper = new ObjectMapper();
         objectMapper.registerModule(new JavaTimeModule());
         objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
@@ -69,8 +77,13 @@ public class CacheConfig {
         cacheConfigurations.put(RANKING_CACHE, listConfig.entryTtl(Duration.ofHours(24)));
         cacheConfigurations.put(BANNER_CACHE, listConfig.entryTtl(Duration.ofHours(1)));
 
+        // Dashboard trả về DTO/List DTO có kiểu cụ thể → dùng defaultConfig (có type info)
+        cacheConfigurations.put(DASHBOARD_CLOSED_CACHE, defaultConfig.entryTtl(Duration.ofSeconds(dashboardClosedTtlSeconds)));
+        cacheConfigurations.put(DASHBOARD_OPEN_CACHE, defaultConfig.entryTtl(Duration.ofSeconds(dashboardOpenTtlSeconds)));
 
-        return RedisCacheManager.builder(redisConnectionFactory)
+        // Xoá cả cache dashboard bằng SCAN thay vì KEYS để không chặn Redis
+        return RedisCacheManager.builder(RedisCacheWriter.nonLockingRedisCacheWriter(
+                        redisConnectionFactory, BatchStrategies.scan(1000)))
                 .cacheDefaults(defaultConfig)
                 .withInitialCacheConfigurations(cacheConfigurations)
                 .build();
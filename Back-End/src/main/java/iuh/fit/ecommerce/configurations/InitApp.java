@@ -8,7 +8,7 @@ import iuh.fit.ecommerce.repositories.ProductVariantRepository;
 import iuh.fit.ecommerce.repositories.RankingRepository;
 import iuh.fit.ecommerce.repositories.RoleRepository;
 import iuh.fit.ecommerce.repositories.StaffRepository;
-import iuh.fit.ecommerce.services.ProductSearchService;
+import iuh.fit.ecommerce.services.ProductReindexService;
 import iuh.fit.ecommerce.services.VectorStoreService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -33,7 +33,7 @@ public class InitApp {
     private final ProductVariantRepository productVariantRepository;
     private final VectorStoreService vectorStoreService;
     private final CustomerRepository customerRepository;
-    private final ProductSearchService productSearchService;
+    private final ProductReindexService productReindexService;
     private final SupplierRepository supplierRepository;
 
 
@@ -208,7 +208,7 @@ public class InitApp {
 //
 //            generateFakeShippers(staffRepository);
 //
-//            productSearchService.reindexAllProducts();
+//            productReindexService.startReindex(false);
 
         };
     }
@@ -22,6 +22,10 @@ public class MinioConfig {
     @Value("${minio.bucket-name}")
     private String bucketName;
 
+    // Bucket không public cho file chứa dữ liệu cá nhân (export), chỉ tải qua presigned URL
+    @Value("${minio.private-bucket-name}")
+    private String privateBucketName;
+
     @Bean
     public MinioClient minioClient() {
         MinioClient client = MinioClient.builder()
@@ -30,6 +34,7 @@ public class MinioConfig {
                 .build();
         
         initBucket(client);
+        initPrivateBucket(client);
         return client;
     }
 
@@ -74,4 +79,24 @@ public class MinioConfig {
             throw new RuntimeException("Failed to initialize MinIO bucket", e);
         }
     }
+
+    private void initPrivateBucket(MinioClient client) {
+        try {
+            boolean exists = client.bucketExists(
+                    BucketExistsArgs.builder().bucket(privateBucketName).build()
+            );
+
+            if (!exists) {
+                client.makeBucket(
+                        MakeBucketArgs.builder().bucket(privateBucketName).build()
+                );
+                log.info("Private bucket '{}' created successfully", privateBucketName);
+            } else {
+                log.info("Private bucket '{}' already exists", privateBucketName);
+            }
+        } catch (Exception e) {
+            log.error("Error initializing MinIO private bucket: {}", e.getMessage());
+            throw new RuntimeException("Failed to initialize MinIO private bucket", e);
+        }
+    }
 }
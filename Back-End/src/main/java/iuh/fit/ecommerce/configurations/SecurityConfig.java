@@ -46,7 +46,7 @@ public class SecurityConfig implements WebMvcConfigurer {
         configuration.setAllowedHeaders(List.of("*"));
 
 
-        configuration.setAllowedHeaders(List.of("Authorization", "Content-Type"));
+        configuration.setAllowedHeaders(List.of("Authorization", "Content-Type", "Idempotency-Key"));
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", configuration);
         return source;
@@ -9,8 +9,16 @@ import iuh.fit.ecommerce.dtos.response.address.AddressResponse;
 import iuh.fit.ecommerce.dtos.response.base.ResponseSuccess;
 import iuh.fit.ecommerce.dtos.response.base.ResponseWithPagination;
 import iuh.fit.ecommerce.dtos.response.customer.CustomerResponse;
+import iuh.fit.ecommerce.dtos.response.export.ExportJobResponse;
+import iuh.fit.ecommerce.dtos.response.imports.ImportJobResponse;
+import iuh.fit.ecommerce.enums.ExportType;
+import iuh.fit.ecommerce.enums.ImportType;
 import iuh.fit.ecommerce.services.CustomerService;
+import iuh.fit.ecommerce.services.ExportJobService;
+import iuh.fit.ecommerce.services.ImportJobService;
 import iuh.fit.ecommerce.services.excel.CustomerExcelService;
+import iuh.fit.ecommerce.utils.excel.ExcelStreamSupport;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.apache.poi.ss.usermodel.Workbook;
@@ -23,6 +31,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.util.List;
 
@@ -35,6 +44,8 @@ import static org.springframework.http.HttpStatus.OK;
 public class CustomerController {
     private final CustomerService customerService;
     private final CustomerExcelService customerExcelService;
+    private final ExportJobService exportJobService;
+    private final ImportJobService importJobService;
 
     @PostMapping(value = "")
     public ResponseEntity<ResponseSuccess<CustomerResponse>> createUser(
@@ -154,26 +165,35 @@ public class CustomerController {
         }
     }
 
-    @GetMapping("/export")
+    // Import chạy nền cho file lớn; theo dõi tiến độ qua GET /imports/{jobId}, lỗi từng dòng qua /imports/{jobId}/errors
+    @PostMapping("/import/async")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<Resource> exportCustomers() {
-        try {
-            Workbook workbook = customerExcelService.exportAllCustomers();
-            byte[] bytes = customerExcelService.workbookToBytes(workbook);
-
-            ByteArrayResource resource = new ByteArrayResource(bytes);
+    public ResponseEntity<ResponseSuccess<ImportJobResponse>> importCustomersAsync(
+            @RequestParam("file") MultipartFile file) {
+        return ResponseEntity.ok(new ResponseSuccess<>(
+                OK,
+                "Customer import started",
+                importJobService.submit(ImportType.CUSTOMERS, file)));
+    }
 
-            String filename = "customers_" + LocalDate.now() + ".xlsx";
+    @GetMapping("/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public void exportCustomers(HttpServletResponse response) throws IOException {
+        // Ghi thẳng ra output stream của response, không dựng cả file trong heap
+        String filename = "customers_" + LocalDate.now() + ".xlsx";
+        response.setContentType(ExcelStreamSupport.CONTENT_TYPE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename);
+        customerExcelService.writeExcel(response.getOutputStream());
+    }
 
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename)
-                    .contentType(MediaType
-                            .parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-                    .contentLength(bytes.length)
-                    .body(resource);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to export customers: " + e.getMessage());
-        }
+    // Export chạy nền, file ghi lên MinIO; theo dõi qua GET /exports/{jobId}
+    @PostMapping("/export/async")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ResponseSuccess<ExportJobResponse>> exportCustomersAsync() {
+        return ResponseEntity.ok(new ResponseSuccess<>(
+            OK,
+            "Customer export started",
+            exportJobService.submit(ExportType.CUSTOMERS)));
     }
 
     
@@ -2,13 +2,21 @@ package iuh.fit.ecommerce.controllers;
 
 import iuh.fit.ecommerce.dtos.response.base.ResponseSuccess;
 import iuh.fit.ecommerce.dtos.response.dashboard.*;
+import iuh.fit.ecommerce.dtos.response.export.ExportJobResponse;
 import iuh.fit.ecommerce.services.DashboardService;
+import iuh.fit.ecommerce.services.ExportJobService;
+import iuh.fit.ecommerce.services.SalesRollupService;
+import iuh.fit.ecommerce.services.excel.DashboardExcelService;
+import iuh.fit.ecommerce.utils.excel.ExcelStreamSupport;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.util.List;
 
@@ -21,7 +29,9 @@ import static org.springframework.http.HttpStatus.OK;
 public class DashboardController {
     
     private final DashboardService dashboardService;
-    private final iuh.fit.ecommerce.services.excel.DashboardExcelService dashboardExcelService;
+    private final DashboardExcelService dashboardExcelService;
+    private final SalesRollupService salesRollupService;
+    private final ExportJobService exportJobService;
     
     /**
      * Lấy doanh thu theo từng tháng trong năm
@@ -408,73 +418,43 @@ public class DashboardController {
     }
 
     /**
-     * Export dashboard to Excel (4 sheets: Revenue, Voucher, Promotion, Products)
+     * Export dashboard to Excel (5 sheets: Overall, Revenue, Voucher, Promotion, Products).
+     * File được ghi dạng stream thẳng ra response; kỳ dài/dữ liệu lớn nên dùng /export-excel/async
      * @param startDate Ngày bắt đầu
      * @param endDate Ngày kết thúc
      */
     @GetMapping("/export-excel")
-    public ResponseEntity<org.springframework.core.io.Resource> exportDashboardExcel(
+    public void exportDashboardExcel(
+            @RequestParam(required = false, defaultValue = "day") String timeType,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) Integer year,
+            @RequestParam(required = false) Integer month,
+            HttpServletResponse response) throws IOException {
+        DashboardExcelService.ReportPeriod period =
+                dashboardExcelService.resolvePeriod(timeType, startDate, endDate, year, month);
+
+        response.setContentType(ExcelStreamSupport.CONTENT_TYPE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + period.fileName() + "\"");
+        dashboardExcelService.writeDashboard(period.startDate(), period.endDate(), response.getOutputStream());
+    }
+
+    /**
+     * Export dashboard chạy nền: file được ghi lên MinIO, theo dõi và lấy link tải qua /exports/{jobId}
+     */
+    @PostMapping("/export-excel/async")
+    public ResponseEntity<ResponseSuccess<ExportJobResponse>> exportDashboardExcelAsync(
             @RequestParam(required = false, defaultValue = "day") String timeType,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
             @RequestParam(required = false) Integer year,
             @RequestParam(required = false) Integer month) {
-        
-        try {
-            LocalDate start;
-            LocalDate end;
-            String filename;
-
-            switch (timeType.toLowerCase()) {
-                case "month":
-                    // Export theo tháng
-                    if (year == null) year = LocalDate.now().getYear();
-                    if (month == null) month = LocalDate.now().getMonthValue();
-
-                    start = LocalDate.of(year, month, 1);
-                    end = start.withDayOfMonth(start.lengthOfMonth());
-                    filename = String.format("Dashboard_Report_%d_Thang_%d.xlsx", year, month);
-                    break;
-
-                case "year":
-                    // Export theo năm
-                    if (year == null) year = LocalDate.now().getYear();
-
-                    start = LocalDate.of(year, 1, 1);
-                    end = LocalDate.of(year, 12, 31);
-                    filename = String.format("Dashboard_Report_Nam_%d.xlsx", year);
-                    break;
-
-                default: // "day"
-                    // Export theo khoảng ngày
-                    if (startDate == null) {
-                        startDate = LocalDate.now().minusDays(30);
-                    }
-                    if (endDate == null) {
-                        endDate = LocalDate.now();
-                    }
-                    start = startDate;
-                    end = endDate;
-                    filename = String.format("Dashboard_Report_%s_to_%s.xlsx",
-                            start.toString(), end.toString());
-                    break;
-            }
-            
-            byte[] excelData = dashboardExcelService.exportDashboard(start, end);
-            
-            org.springframework.core.io.ByteArrayResource resource = 
-                    new org.springframework.core.io.ByteArrayResource(excelData);
-            
-            return ResponseEntity.ok()
-                    .header(org.springframework.http.HttpHeaders.CONTENT_DISPOSITION, 
-                            "attachment; filename=\"" + filename + "\"")
-                    .contentType(org.springframework.http.MediaType.parseMediaType(
-                            "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-                    .body(resource);
-                    
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError().build();
-        }
+        DashboardExcelService.ReportPeriod period =
+                dashboardExcelService.resolvePeriod(timeType, startDate, endDate, year, month);
+        return ResponseEntity.ok(new ResponseSuccess<>(
+                OK,
+                "Dashboard export started",
+                exportJobService.submitDashboard(period.startDate(), period.endDate(), period.fileName())));
     }
 
     /**
@@ -741,4 +721,21 @@ public class DashboardController {
                 "Get orders by date range success",
                 dashboardService.getOrdersByDateRange(startDate, endDate)));
     }
+
+    /**
+     * Dựng lại bảng tổng hợp theo ngày ở nền (sau khi triển khai lần đầu hoặc sửa dữ liệu cũ)
+     * @param startDate Ngày bắt đầu (mặc định: ngày có đơn cũ nhất, kể cả đơn đã lưu trữ)
+     * @param endDate Ngày kết thúc (mặc định: hôm nay)
+     */
+    @PostMapping("/rollups/rebuild")
+    public ResponseEntity<ResponseSuccess<Void>> rebuildRollups(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+
+        salesRollupService.startBackfill(startDate, endDate);
+        return ResponseEntity.ok(new ResponseSuccess<>(
+                OK,
+                "Sales rollup rebuild started",
+                null));
+    }
 }
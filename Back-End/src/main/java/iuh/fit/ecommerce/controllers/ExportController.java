@@ -0,0 +1,31 @@
+package iuh.fit.ecommerce.controllers;
+
+import iuh.fit.ecommerce.dtos.response.base.ResponseSuccess;
+import iuh.fit.ecommerce.dtos.response.export.ExportJobResponse;
+import iuh.fit.ecommerce.services.ExportJobService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import static org.springframework.http.HttpStatus.OK;
+
+@RestController
+@RequestMapping("${api.prefix}/exports")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class ExportController {
+
+    private final ExportJobService exportJobService;
+
+    /**
+     * Trạng thái job export chạy nền, có downloadUrl khi đã xong
+     */
+    @GetMapping("/{jobId}")
+    public ResponseEntity<ResponseSuccess<ExportJobResponse>> getExportJob(@PathVariable String jobId) {
+        return ResponseEntity.ok(new ResponseSuccess<>(
+                OK,
+                "Get export job success",
+                exportJobService.getJob(jobId)));
+    }
+}
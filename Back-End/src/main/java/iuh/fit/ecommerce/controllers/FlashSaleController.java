@@ -0,0 +1,66 @@
+package iuh.fit.ecommerce.controllers;
+
+import io.swagger.v3.oas.annotations.tags.Tag;
+import iuh.fit.ecommerce.dtos.request.flashSale.FlashSaleRequest;
+import iuh.fit.ecommerce.dtos.response.base.ResponseSuccess;
+import iuh.fit.ecommerce.dtos.response.flashSale.FlashSaleResponse;
+import iuh.fit.ecommerce.dtos.response.flashSale.FlashSaleTicketResponse;
+import iuh.fit.ecommerce.services.FlashSaleService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+import static org.springframework.http.HttpStatus.CREATED;
+import static org.springframework.http.HttpStatus.OK;
+
+@RestController
+@RequestMapping("${api.prefix}/flash-sales")
+@RequiredArgsConstructor
+@Tag(name = "Flash Sale Controller", description = "Controller for managing flash sales")
+public class FlashSaleController {
+
+    private final FlashSaleService flashSaleService;
+
+    @PostMapping("")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ResponseSuccess<FlashSaleResponse>> startFlashSale(@Valid @RequestBody FlashSaleRequest request) {
+        return ResponseEntity.ok(new ResponseSuccess<>(
+                CREATED,
+                "Start flash sale success",
+                flashSaleService.startFlashSale(request)
+        ));
+    }
+
+    @PostMapping("/{id}/stop")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ResponseSuccess<FlashSaleResponse>> stopFlashSale(@PathVariable Long id) {
+        return ResponseEntity.ok(new ResponseSuccess<>(
+                OK,
+                "Stop flash sale success",
+                flashSaleService.stopFlashSale(id)
+        ));
+    }
+
+    @GetMapping("")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ResponseSuccess<List<FlashSaleResponse>>> getActiveFlashSales() {
+        return ResponseEntity.ok(new ResponseSuccess<>(
+                OK,
+                "Get active flash sales success",
+                flashSaleService.getActiveFlashSales()
+        ));
+    }
+
+    @GetMapping("/tickets/{ticketId}")
+    public ResponseEntity<ResponseSuccess<FlashSaleTicketResponse>> getMyTicket(@PathVariable String ticketId) {
+        return ResponseEntity.ok(new ResponseSuccess<>(
+                OK,
+                "Get flash sale ticket success",
+                flashSaleService.getMyTicket(ticketId)
+        ));
+    }
+}
@@ -0,0 +1,48 @@
+package iuh.fit.ecommerce.controllers;
+
+import iuh.fit.ecommerce.dtos.excel.ImportResult;
+import iuh.fit.ecommerce.dtos.response.base.ResponseSuccess;
+import iuh.fit.ecommerce.dtos.response.imports.ImportJobResponse;
+import iuh.fit.ecommerce.services.ImportJobService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+import static org.springframework.http.HttpStatus.OK;
+
+@RestController
+@RequestMapping("${api.prefix}/imports")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class ImportController {
+
+    private final ImportJobService importJobService;
+
+    /**
+     * Tiến độ job import chạy nền: số dòng đã xử lý, thành công, lỗi
+     */
+    @GetMapping("/{jobId}")
+    public ResponseEntity<ResponseSuccess<ImportJobResponse>> getImportJob(@PathVariable String jobId) {
+        return ResponseEntity.ok(new ResponseSuccess<>(
+                OK,
+                "Get import job success",
+                importJobService.getJob(jobId)));
+    }
+
+    /**
+     * Lỗi từng dòng của job, đọc tiếp từ offset = số lỗi đã nhận trong khi job còn chạy
+     */
+    @GetMapping("/{jobId}/errors")
+    public ResponseEntity<ResponseSuccess<List<ImportResult.ImportError>>> getImportErrors(
+            @PathVariable String jobId,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "500") int limit) {
+        return ResponseEntity.ok(new ResponseSuccess<>(
+                OK,
+                "Get import errors success",
+                importJobService.getErrors(jobId, offset, limit)));
+    }
+}
@@ -1,12 +1,17 @@
 package iuh.fit.ecommerce.controllers;
 
 import iuh.fit.ecommerce.dtos.request.order.OrderCreationRequest;
+import iuh.fit.ecommerce.dtos.request.order.OrderQuoteRequest;
 import iuh.fit.ecommerce.dtos.request.order.StaffOrderCreationRequest;
 import iuh.fit.ecommerce.dtos.response.base.ResponseSuccess;
 import iuh.fit.ecommerce.dtos.response.base.ResponseWithPagination;
+import iuh.fit.ecommerce.dtos.response.order.OrderQuoteResponse;
 import iuh.fit.ecommerce.dtos.response.order.OrderResponse;
+import iuh.fit.ecommerce.dtos.response.order.OrderSummaryResponse;
+import iuh.fit.ecommerce.dtos.response.order.OrderViewResponse;
 import iuh.fit.ecommerce.enums.OrderStatus;
 import iuh.fit.ecommerce.services.OrderService;
+import iuh.fit.ecommerce.services.OrderViewService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -26,6 +31,7 @@ import static org.springframework.http.HttpStatus.OK;
 @RequiredArgsConstructor
 public class OrderController {
     private final OrderService orderService;
+    private final OrderViewService orderViewService;
 
     @PostMapping(value = "")
     public ResponseEntity<ResponseSuccess<Object>> customerCreateOrder(@Valid @RequestBody OrderCreationRequest orderCreationRequest,
@@ -37,6 +43,15 @@ public class OrderController {
         ));
     }
 
+    @PostMapping("/quote")
+    public ResponseEntity<ResponseSuccess<OrderQuoteResponse>> quoteOrder(@Valid @RequestBody OrderQuoteRequest request) {
+        return ResponseEntity.ok(new ResponseSuccess<>(
+                OK,
+                "Quote order success",
+                orderService.quoteOrder(request)
+        ));
+    }
+
     @GetMapping("/my-orders")
     public ResponseEntity<ResponseSuccess<ResponseWithPagination<List<OrderResponse>>>> getMyOrders(
             @RequestParam(defaultValue = "1") int page,
@@ -52,6 +67,22 @@ public class OrderController {
         ));
     }
 
+    // Phân trang theo cursor, trả về danh sách gọn (không kèm chi tiết đơn); cursor rỗng là trang đầu
+    @GetMapping("/my-orders/cursor")
+    public ResponseEntity<ResponseSuccess<ResponseWithPagination<List<OrderSummaryResponse>>>> getMyOrdersByCursor(
+            @RequestParam(defaultValue = "7") int size,
+            @RequestParam(required = false) List<String> status,
+            @RequestParam(required = false) String startDate,
+            @RequestParam(required = false) String endDate,
+            @RequestParam(required = false) String cursor
+    ) {
+        return ResponseEntity.ok(new ResponseSuccess<>(
+                OK,
+                "Get my orders success",
+                orderService.getMyOrdersByCursor(size, status, startDate, endDate, cursor)
+        ));
+    }
+
     @GetMapping("/admin")
     public ResponseEntity<ResponseSuccess<ResponseWithPagination<List<OrderResponse>>>> getAllOrdersForAdmin(
             @RequestParam(required = false) String customerName,
@@ -69,6 +100,84 @@ public class OrderController {
         ));
     }
 
+    @GetMapping("/admin/cursor")
+    public ResponseEntity<ResponseSuccess<ResponseWithPagination<List<OrderSummaryResponse>>>> getAllOrdersForAdminByCursor(
+            @RequestParam(required = false) String customerName,
+            @RequestParam(required = false) LocalDate orderDate,
+            @RequestParam(required = false) String customerPhone,
+            @RequestParam(required = false) OrderStatus status,
+            @RequestParam(required = false) Boolean isPickup,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String cursor
+    ) {
+        return ResponseEntity.ok(new ResponseSuccess<>(
+                OK,
+                "Get all orders success",
+                orderService.getAllOrdersForAdminByCursor(customerName, orderDate, customerPhone, status, isPickup, size, cursor)
+        ));
+    }
+
+    // Đọc từ read model order_view: danh sách sản phẩm, giao hàng và timeline đã tính sẵn, một query theo index
+    @GetMapping("/views/my")
+    public ResponseEntity<ResponseSuccess<ResponseWithPagination<List<OrderViewResponse>>>> getMyOrderViews(
+            @RequestParam(required = false) OrderStatus status,
+            @RequestParam(defaultValue = "7") int size,
+            @RequestParam(required = false) String cursor
+    ) {
+        return ResponseEntity.ok(new ResponseSuccess<>(
+                OK,
+                "Get my orders success",
+                orderViewService.getMyOrders(status, size, cursor)
+        ));
+    }
+
+    @GetMapping("/views")
+    @PreAuthorize("hasRole('STAFF')")
+    public ResponseEntity<ResponseSuccess<ResponseWithPagination<List<OrderViewResponse>>>> getOrderViews(
+            @RequestParam(required = false) OrderStatus status,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String cursor
+    ) {
+        return ResponseEntity.ok(new ResponseSuccess<>(
+                OK,
+                "Get all orders success",
+                orderViewService.getOrders(status, size, cursor)
+        ));
+    }
+
+    @GetMapping("/views/my-deliveries")
+    @PreAuthorize("hasRole('STAFF')")
+    public ResponseEntity<ResponseSuccess<ResponseWithPagination<List<OrderViewResponse>>>> getMyDeliveryViews(
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String cursor
+    ) {
+        return ResponseEntity.ok(new ResponseSuccess<>(
+                OK,
+                "Get my deliveries success",
+                orderViewService.getMyDeliveries(size, cursor)
+        ));
+    }
+
+    @PostMapping("/views/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ResponseSuccess<Void>> rebuildOrderViews() {
+        orderViewService.startRebuild();
+        return ResponseEntity.ok(new ResponseSuccess<>(
+                OK,
+                "Order view rebuild started",
+                null
+        ));
+    }
+
+    @GetMapping("/{id}/tracking")
+    public ResponseEntity<ResponseSuccess<OrderViewResponse>> getOrderTracking(@PathVariable Long id) {
+        return ResponseEntity.ok(new ResponseSuccess<>(
+                OK,
+                "Get order tracking success",
+                orderViewService.getTracking(id)
+        ));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<ResponseSuccess<OrderResponse>> getOrderDetailById(@PathVariable Long id) {
         return ResponseEntity.ok(new ResponseSuccess<>(
@@ -4,15 +4,19 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import iuh.fit.ecommerce.dtos.request.product.ProductVariantPromotionRequest;
 import iuh.fit.ecommerce.dtos.response.base.ResponseSuccess;
 import iuh.fit.ecommerce.dtos.response.base.ResponseWithPagination;
+import iuh.fit.ecommerce.dtos.response.product.ProductFacetedSearchResponse;
 import iuh.fit.ecommerce.dtos.response.product.ProductResponse;
 import iuh.fit.ecommerce.dtos.response.product.ProductVariantDescriptionResponse;
 import iuh.fit.ecommerce.dtos.response.product.ProductVariantPromotionResponse;
+import iuh.fit.ecommerce.dtos.response.product.ReindexStatusResponse;
+import iuh.fit.ecommerce.services.ProductReindexService;
 import iuh.fit.ecommerce.services.ProductService;
 import iuh.fit.ecommerce.services.ProductSearchService;
 import iuh.fit.ecommerce.services.ProductVariantService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import iuh.fit.ecommerce.dtos.request.product.ProductAddRequest;
 import iuh.fit.ecommerce.dtos.request.product.ProductUpdateRequest;
@@ -31,6 +35,7 @@ public class ProductController {
     private final ProductService productService;
     private final ProductVariantService productVariantService;
     private final ProductSearchService productSearchService;
+    private final ProductReindexService productReindexService;
 
     @PostMapping("")
     public ResponseEntity<ResponseSuccess<?>> createProduct(@Valid @RequestBody ProductAddRequest productAddRequest) {
@@ -51,12 +56,13 @@ public class ProductController {
             @RequestParam(required = false) Long categoryId,
             @RequestParam(required = false) Boolean status,
             @RequestParam(required = false) Double minPrice,
-            @RequestParam(required = false) Double maxPrice
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) String cursor
     ) {
         return ResponseEntity.ok(new ResponseSuccess<>(
                 OK,
                 "Get all products success",
-                productService.getAllProducts(page, size, keyword, brandId, categoryId, status, minPrice, maxPrice)
+                productService.getAllProducts(page, size, keyword, brandId, categoryId, status, minPrice, maxPrice, cursor)
         ));
     }
 
@@ -136,7 +142,25 @@ public class ProductController {
         return ResponseEntity.ok(new ResponseSuccess<>(
                 OK,
                 "Search products in category success",
-                productService.searchProductForUser(categorySlug, page, size, allParams)
+                productSearchService.searchByFilters(categorySlug, page, size, allParams)
+        ));
+    }
+
+    @GetMapping("/faceted-search")
+    public ResponseEntity<ResponseSuccess<ProductFacetedSearchResponse>> searchProductsWithFacets(
+            @RequestParam(required = false) String categorySlug,
+            @RequestParam(defaultValue = "1") int page,
+            @RequestParam(defaultValue = "12") int size,
+            @RequestParam Map<String, String> allParams
+    ) {
+        allParams.remove("categorySlug");
+        allParams.remove("page");
+        allParams.remove("size");
+
+        return ResponseEntity.ok(new ResponseSuccess<>(
+                OK,
+                "Search products with facets success",
+                productSearchService.searchWithFacets(categorySlug, page, size, allParams)
         ));
     }
 
@@ -145,12 +169,13 @@ public class ProductController {
             @RequestParam String query,
             @RequestParam(defaultValue = "1") int page,
             @RequestParam(defaultValue = "12") int size,
-            @RequestParam(required = false) String sortBy
+            @RequestParam(required = false) String sortBy,
+            @RequestParam(required = false) String cursor
     ) {
         return ResponseEntity.ok(new ResponseSuccess<>(
                 OK,
                 "Search products with Elasticsearch success",
-                productSearchService.searchProducts(query, page, size, sortBy)
+                productSearchService.searchProducts(query, page, size, sortBy, cursor)
         ));
     }
 
@@ -166,4 +191,26 @@ public class ProductController {
         ));
     }
 
-}
\ No newline at end of file
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/search/reindex")
+    public ResponseEntity<ResponseSuccess<ReindexStatusResponse>> reindexProducts(
+            @RequestParam(defaultValue = "false") boolean resume
+    ) {
+        return ResponseEntity.ok(new ResponseSuccess<>(
+                OK,
+                "Product reindex started",
+                productReindexService.startReindex(resume)
+        ));
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/search/reindex/status")
+    public ResponseEntity<ResponseSuccess<ReindexStatusResponse>> getReindexStatus() {
+        return ResponseEntity.ok(new ResponseSuccess<>(
+                OK,
+                "Get product reindex status success",
+                productReindexService.getReindexStatus()
+        ));
+    }
+
+}
@@ -5,9 +5,17 @@ import iuh.fit.ecommerce.dtos.request.staff.StaffAddRequest;
 import iuh.fit.ecommerce.dtos.request.staff.StaffUpdateRequest;
 import iuh.fit.ecommerce.dtos.response.base.ResponseSuccess;
 import iuh.fit.ecommerce.dtos.response.base.ResponseWithPagination;
+import iuh.fit.ecommerce.dtos.response.export.ExportJobResponse;
+import iuh.fit.ecommerce.dtos.response.imports.ImportJobResponse;
 import iuh.fit.ecommerce.dtos.response.staff.StaffResponse;
+import iuh.fit.ecommerce.enums.ExportType;
+import iuh.fit.ecommerce.enums.ImportType;
+import iuh.fit.ecommerce.services.ExportJobService;
+import iuh.fit.ecommerce.services.ImportJobService;
 import iuh.fit.ecommerce.services.StaffService;
 import iuh.fit.ecommerce.services.excel.StaffExcelService;
+import iuh.fit.ecommerce.utils.excel.ExcelStreamSupport;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.apache.poi.ss.usermodel.Workbook;
@@ -20,6 +28,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.util.List;
 
@@ -32,6 +41,8 @@ import static org.springframework.http.HttpStatus.OK;
 public class StaffController {
         private final StaffService staffService;
         private final StaffExcelService staffExcelService;
+        private final ExportJobService exportJobService;
+        private final ImportJobService importJobService;
 
         @GetMapping("")
         public ResponseEntity<ResponseSuccess<ResponseWithPagination<List<StaffResponse>>>> getStaffs(
@@ -139,25 +150,34 @@ public class StaffController {
                 }
         }
 
-        @GetMapping("/export")
+        // Import chạy nền cho file lớn; theo dõi tiến độ qua GET /imports/{jobId}, lỗi từng dòng qua /imports/{jobId}/errors
+        @PostMapping("/import/async")
         @PreAuthorize("hasRole('ADMIN')")
-        public ResponseEntity<Resource> exportStaffs() {
-                try {
-                        Workbook workbook = staffExcelService.exportAllStaff();
-                        byte[] bytes = staffExcelService.workbookToBytes(workbook);
-
-                        ByteArrayResource resource = new ByteArrayResource(bytes);
+        public ResponseEntity<ResponseSuccess<ImportJobResponse>> importStaffsAsync(
+                @RequestParam("file") MultipartFile file) {
+                return ResponseEntity.ok(new ResponseSuccess<>(
+                        OK,
+                        "Staff import started",
+                        importJobService.submit(ImportType.STAFF, file)));
+        }
 
-                        String filename = "staffs_" + LocalDate.now() + ".xlsx";
+        @GetMapping("/export")
+        @PreAuthorize("hasRole('ADMIN')")
+        public void exportStaffs(HttpServletResponse response) throws IOException {
+                // Ghi thẳng ra output stream của response, không dựng cả file trong heap
+                String filename = "staffs_" + LocalDate.now() + ".xlsx";
+                response.setContentType(ExcelStreamSupport.CONTENT_TYPE);
+                response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename);
+                staffExcelService.writeExcel(response.getOutputStream());
+        }
 
-                        return ResponseEntity.ok()
-                                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename)
-                                .contentType(MediaType.parseMediaType(
-                                        "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-                                .contentLength(bytes.length)
-                                .body(resource);
-                } catch (Exception e) {
-                        throw new RuntimeException("Failed to export staffs: " + e.getMessage());
-                }
+        // Export chạy nền, file ghi lên MinIO; theo dõi qua GET /exports/{jobId}
+        @PostMapping("/export/async")
+        @PreAuthorize("hasRole('ADMIN')")
+        public ResponseEntity<ResponseSuccess<ExportJobResponse>> exportStaffsAsync() {
+                return ResponseEntity.ok(new ResponseSuccess<>(
+                        OK,
+                        "Staff export started",
+                        exportJobService.submit(ExportType.STAFF)));
         }
 }
\ No newline at end of file
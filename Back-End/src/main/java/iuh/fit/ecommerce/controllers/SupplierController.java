@@ -4,9 +4,17 @@ import iuh.fit.ecommerce.dtos.excel.ImportResult;
 import iuh.fit.ecommerce.dtos.request.supplier.SupplierRequest;
 import iuh.fit.ecommerce.dtos.response.base.ResponseSuccess;
 import iuh.fit.ecommerce.dtos.response.base.ResponseWithPagination;
+import iuh.fit.ecommerce.dtos.response.export.ExportJobResponse;
+import iuh.fit.ecommerce.dtos.response.imports.ImportJobResponse;
 import iuh.fit.ecommerce.dtos.response.supplier.SupplierResponse;
+import iuh.fit.ecommerce.enums.ExportType;
+import iuh.fit.ecommerce.enums.ImportType;
+import iuh.fit.ecommerce.services.ExportJobService;
+import iuh.fit.ecommerce.services.ImportJobService;
 import iuh.fit.ecommerce.services.SupplierService;
 import iuh.fit.ecommerce.services.excel.SupplierExcelService;
+import iuh.fit.ecommerce.utils.excel.ExcelStreamSupport;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.apache.poi.ss.usermodel.Workbook;
@@ -19,6 +27,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.util.List;
 
@@ -32,6 +41,8 @@ public class SupplierController {
 
     private final SupplierService supplierService;
     private final SupplierExcelService supplierExcelService; // Inject Service Excel
+    private final ExportJobService exportJobService;
+    private final ImportJobService importJobService;
 
     /**
      * API Lấy danh sách nhà cung cấp (có phân trang và tìm kiếm)
@@ -162,28 +173,37 @@ public class SupplierController {
         }
     }
 
+    // Import chạy nền cho file lớn; theo dõi tiến độ qua GET /imports/{jobId}, lỗi từng dòng qua /imports/{jobId}/errors
+    @PostMapping("/import/async")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ResponseSuccess<ImportJobResponse>> importSuppliersAsync(
+            @RequestParam("file") MultipartFile file) {
+        return ResponseEntity.ok(new ResponseSuccess<>(
+                OK,
+                "Supplier import started",
+                importJobService.submit(ImportType.SUPPLIERS, file)));
+    }
+
     /**
      * API Export danh sách Supplier ra Excel
      */
     @GetMapping("/export")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<Resource> exportSuppliers() {
-        try {
-            Workbook workbook = supplierExcelService.exportAllSuppliers();
-            byte[] bytes = supplierExcelService.workbookToBytes(workbook);
-
-            ByteArrayResource resource = new ByteArrayResource(bytes);
-
-            String filename = "suppliers_" + LocalDate.now() + ".xlsx";
+    public void exportSuppliers(HttpServletResponse response) throws IOException {
+        // Ghi thẳng ra output stream của response, không dựng cả file trong heap
+        String filename = "suppliers_" + LocalDate.now() + ".xlsx";
+        response.setContentType(ExcelStreamSupport.CONTENT_TYPE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename);
+        supplierExcelService.writeExcel(response.getOutputStream());
+    }
 
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename)
-                    .contentType(MediaType.parseMediaType(
-                            "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-                    .contentLength(bytes.length)
-                    .body(resource);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to export suppliers: " + e.getMessage());
-        }
+    // Export chạy nền, file ghi lên MinIO; theo dõi qua GET /exports/{jobId}
+    @PostMapping("/export/async")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ResponseSuccess<ExportJobResponse>> exportSuppliersAsync() {
+        return ResponseEntity.ok(new ResponseSuccess<>(
+            OK,
+            "Supplier export started",
+            exportJobService.submit(ExportType.SUPPLIERS)));
     }
 }
\ No newline at end of file
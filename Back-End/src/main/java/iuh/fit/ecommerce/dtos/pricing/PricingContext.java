@@ -0,0 +1,49 @@
+package iuh.fit.ecommerce.dtos.pricing;
+
+import iuh.fit.ecommerce.entities.ProductVariant;
+import iuh.fit.ecommerce.entities.Voucher;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Ảnh chụp giá của một lần checkout: promotion từng dòng, giảm giá hạng khách và voucher được xác định đúng một lần,
+ * OrderDetail, PromotionUsage, VoucherUsageHistory và báo giá đều đọc từ đây nên luôn khớp nhau.
+ */
+@Getter
+@Builder
+public class PricingContext {
+
+    /**
+     * Dòng cần tính giá: đơn của khách lấy giá đã lưu trong giỏ, đơn tại quầy lấy giá hiện tại của variant.
+     */
+    public record Item(ProductVariant variant, double unitPrice, long quantity) {}
+
+    public record Line(ProductVariant variant, double unitPrice, long quantity, double discountPercent,
+                       Long promotionId, double discountAmount, double finalPrice) {
+
+        public double itemTotal() {
+            return unitPrice * quantity;
+        }
+    }
+
+    private final List<Line> lines;
+    private final double totalPrice;
+    private final double promotionDiscount;
+    private final double rankingDiscount;
+    private final Voucher voucher;
+    private final double voucherDiscount;
+    private final double finalTotalPrice;
+
+    /**
+     * Tổng giảm trước voucher (promotion + hạng khách).
+     */
+    public double getTotalDiscountBeforeVoucher() {
+        return promotionDiscount + rankingDiscount;
+    }
+
+    public double getTotalDiscount() {
+        return promotionDiscount + rankingDiscount + voucherDiscount;
+    }
+}
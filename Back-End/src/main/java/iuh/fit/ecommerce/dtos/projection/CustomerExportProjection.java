@@ -0,0 +1,11 @@
+package iuh.fit.ecommerce.dtos.projection;
+
+import java.time.LocalDate;
+
+public interface CustomerExportProjection {
+    Long getId();
+    String getEmail();
+    String getFullName();
+    String getPhone();
+    LocalDate getDateOfBirth();
+}
@@ -0,0 +1,9 @@
+package iuh.fit.ecommerce.dtos.projection;
+
+import java.time.LocalDate;
+
+public interface DailyDiscountProjection {
+    LocalDate getStatDate();
+    Double getVoucherDiscount();
+    Double getPromotionDiscount();
+}
@@ -0,0 +1,21 @@
+package iuh.fit.ecommerce.dtos.projection;
+
+import iuh.fit.ecommerce.enums.OrderStatus;
+import iuh.fit.ecommerce.enums.PaymentMethod;
+
+import java.time.LocalDateTime;
+
+public interface OrderSummaryProjection {
+    Long getId();
+    String getReceiverName();
+    String getReceiverPhone();
+    String getReceiverAddress();
+    LocalDateTime getOrderDate();
+    OrderStatus getStatus();
+    PaymentMethod getPaymentMethod();
+    Boolean getIsPickup();
+    Double getTotalPrice();
+    Double getTotalDiscount();
+    Double getFinalTotalPrice();
+    Long getCustomerId();
+}
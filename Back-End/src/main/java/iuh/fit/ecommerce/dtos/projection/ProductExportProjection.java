@@ -0,0 +1,9 @@
+package iuh.fit.ecommerce.dtos.projection;
+
+public interface ProductExportProjection {
+    Long getId();
+    String getName();
+    String getSpu();
+    Integer getStock();
+    Boolean getStatus();
+}
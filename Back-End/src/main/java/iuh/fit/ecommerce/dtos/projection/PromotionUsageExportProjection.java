@@ -0,0 +1,25 @@
+package iuh.fit.ecommerce.dtos.projection;
+
+import iuh.fit.ecommerce.enums.OrderStatus;
+import iuh.fit.ecommerce.enums.PaymentMethod;
+import iuh.fit.ecommerce.enums.PromotionType;
+
+import java.time.LocalDateTime;
+
+public interface PromotionUsageExportProjection {
+    Long getId();
+    Long getPromotionId();
+    String getPromotionName();
+    PromotionType getPromotionType();
+    Long getOrderId();
+    Long getOrderDetailId();
+    LocalDateTime getOrderDate();
+    String getCustomerName();
+    String getCustomerPhone();
+    Double getDiscountAmount();
+    Double getPrice();
+    Long getQuantity();
+    Double getFinalPrice();
+    PaymentMethod getPaymentMethod();
+    OrderStatus getStatus();
+}
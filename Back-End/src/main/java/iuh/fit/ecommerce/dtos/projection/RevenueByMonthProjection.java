@@ -0,0 +1,8 @@
+package iuh.fit.ecommerce.dtos.projection;
+
+public interface RevenueByMonthProjection {
+    Integer getYear();
+    Integer getMonth();
+    Double getRevenue();
+    Long getOrderCount();
+}
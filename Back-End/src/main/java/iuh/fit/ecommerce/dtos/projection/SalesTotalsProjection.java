@@ -0,0 +1,9 @@
+package iuh.fit.ecommerce.dtos.projection;
+
+public interface SalesTotalsProjection {
+    Double getRevenue();
+    Long getCompletedOrders();
+    Long getTotalOrders();
+    Long getNewCustomers();
+    Long getNewProducts();
+}
@@ -0,0 +1,15 @@
+package iuh.fit.ecommerce.dtos.projection;
+
+import java.time.LocalDate;
+
+public interface StaffExportProjection {
+    Long getId();
+    String getEmail();
+    String getFullName();
+    String getPhone();
+    String getAddress();
+    LocalDate getDateOfBirth();
+    LocalDate getJoinDate();
+    Boolean getLeader();
+    String getRoleName();
+}
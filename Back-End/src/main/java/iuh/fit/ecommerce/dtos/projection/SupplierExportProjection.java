@@ -0,0 +1,9 @@
+package iuh.fit.ecommerce.dtos.projection;
+
+public interface SupplierExportProjection {
+    Long getId();
+    String getName();
+    String getPhone();
+    String getAddress();
+    Boolean getStatus();
+}
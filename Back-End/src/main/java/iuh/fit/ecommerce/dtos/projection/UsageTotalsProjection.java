@@ -0,0 +1,6 @@
+package iuh.fit.ecommerce.dtos.projection;
+
+public interface UsageTotalsProjection {
+    Long getUsageCount();
+    Double getDiscountAmount();
+}
@@ -0,0 +1,8 @@
+package iuh.fit.ecommerce.dtos.projection;
+
+public interface VariantStockProjection {
+    Long getId();
+    String getSku();
+    String getProductName();
+    Integer getStock();
+}
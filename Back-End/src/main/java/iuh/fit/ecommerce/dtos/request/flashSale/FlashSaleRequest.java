@@ -0,0 +1,30 @@
+package iuh.fit.ecommerce.dtos.request.flashSale;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+public class FlashSaleRequest {
+
+    @NotNull(message = "productVariantId is required")
+    private Long productVariantId;
+
+    @NotNull(message = "quantity is required")
+    @Min(value = 1, message = "quantity must be greater than 0")
+    private Integer quantity;
+
+    @Min(value = 1, message = "shardCount must be at least 1")
+    @Max(value = 64, message = "shardCount must be at most 64")
+    private Integer shardCount;
+
+    // Gắn với promotion: không truyền endAt thì flash sale kết thúc cùng ngày kết thúc promotion
+    private Long promotionId;
+
+    private LocalDateTime endAt;
+}
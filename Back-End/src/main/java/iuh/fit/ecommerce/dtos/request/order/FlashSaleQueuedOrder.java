@@ -0,0 +1,29 @@
+package iuh.fit.ecommerce.dtos.request.order;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Map;
+
+/**
+ * Đơn flash sale đã giành được hàng trên Redis, chờ được ghi vào MySQL theo batch.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FlashSaleQueuedOrder {
+    private String ticketId;
+    private Long customerId;
+    private OrderCreationRequest request;
+    // variantId -> số lượng đã lấy từ counter flash sale
+    private Map<Long, Long> quantities;
+    // Chuỗi JSON gốc trong hàng đợi, dùng để gỡ đúng phần tử khỏi danh sách đang xử lý
+    @JsonIgnore
+    private String payload;
+}
@@ -0,0 +1,17 @@
+package iuh.fit.ecommerce.dtos.request.order;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+public class OrderQuoteRequest {
+
+    private Long voucherId;
+
+    @NotNull( message = "cartItemIds is required" )
+    private List<Long> cartItemIds;
+}
@@ -23,6 +23,8 @@ public class ResponseWithPagination<T> {
     private int totalPage;
     private int limit;
     private long totalItem;
+    // Chỉ có khi phân trang theo cursor, null nghĩa là đã hết dữ liệu
+    private String nextCursor;
 
     public static <E, R> ResponseWithPagination<List<R>> fromPage(Page<E> page,
                                                                   Function<E, R> mapper) {
@@ -34,4 +36,15 @@ public class ResponseWithPagination<T> {
                 .totalItem(page.getTotalElements())
                 .build();
     }
+
+    // Dùng khi nội dung trang đã được chuyển đổi theo lô (vd: tính giá cho cả trang một lần)
+    public static <R> ResponseWithPagination<List<R>> fromPage(Page<?> page, List<R> data) {
+        return ResponseWithPagination.<List<R>>builder()
+                .data(data)
+                .page(page.getNumber() + 1)
+                .totalPage(page.getTotalPages())
+                .limit(page.getSize())
+                .totalItem(page.getTotalElements())
+                .build();
+    }
 }
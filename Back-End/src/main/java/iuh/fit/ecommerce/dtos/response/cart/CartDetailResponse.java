@@ -16,4 +16,6 @@ public class CartDetailResponse {
     private int quantity;
     private double discount;
     private double price;
+    // Số còn bán được của variant (tồn kho trừ hàng đang giữ), để giỏ hàng báo hết hàng trước khi đặt
+    private Integer availableStock;
 }
@@ -0,0 +1,24 @@
+package iuh.fit.ecommerce.dtos.response.export;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@Builder
+public class ExportJobResponse {
+    private String jobId;
+    private String type;
+    // PENDING, RUNNING, COMPLETED, FAILED
+    private String status;
+    private String fileName;
+    private Long rowCount;
+    // Link tải có thời hạn, chỉ có khi status = COMPLETED
+    private String downloadUrl;
+    private LocalDateTime createdAt;
+    private LocalDateTime finishedAt;
+    private String error;
+}
@@ -0,0 +1,24 @@
+package iuh.fit.ecommerce.dtos.response.flashSale;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@Builder
+public class FlashSaleResponse {
+    private Long id;
+    private Long productVariantId;
+    private String sku;
+    private Long promotionId;
+    private Integer allocatedQuantity;
+    private Long remainingQuantity;
+    private Integer shardCount;
+    private Boolean active;
+    private LocalDateTime startedAt;
+    private LocalDateTime endAt;
+    private LocalDateTime endedAt;
+}
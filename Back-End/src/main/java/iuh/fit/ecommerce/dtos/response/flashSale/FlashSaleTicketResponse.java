@@ -0,0 +1,16 @@
+package iuh.fit.ecommerce.dtos.response.flashSale;
+
+import iuh.fit.ecommerce.enums.FlashSaleTicketStatus;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Builder
+public class FlashSaleTicketResponse {
+    private String ticketId;
+    private FlashSaleTicketStatus status;
+    private Long orderId;
+    private String message;
+}
@@ -0,0 +1,28 @@
+package iuh.fit.ecommerce.dtos.response.imports;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@Builder
+public class ImportJobResponse {
+    private String jobId;
+    private String type;
+    // PENDING, RUNNING, COMPLETED, FAILED
+    private String status;
+    private String fileName;
+    // Số dòng dữ liệu đã đọc và xử lý xong (đã ghi hoặc bị lỗi)
+    private Long processedRows;
+    private Long successCount;
+    private Long errorCount;
+    // Số lỗi đã lưu, đọc qua GET /imports/{jobId}/errors
+    private Long storedErrorCount;
+    private String message;
+    private LocalDateTime createdAt;
+    private LocalDateTime finishedAt;
+    private String error;
+}
@@ -0,0 +1,58 @@
+package iuh.fit.ecommerce.dtos.response.order;
+
+import iuh.fit.ecommerce.dtos.pricing.PricingContext;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+public class OrderQuoteResponse {
+    private List<Line> lines;
+    private Double totalPrice;
+    private Double promotionDiscount;
+    private Double rankingDiscount;
+    private Long voucherId;
+    private Double voucherDiscount;
+    private Double totalDiscount;
+    private Double finalTotalPrice;
+
+    @Getter
+    @Setter
+    @Builder
+    public static class Line {
+        private Long productVariantId;
+        private Double price;
+        private Long quantity;
+        private Double discount;
+        private Long promotionId;
+        private Double discountAmount;
+        private Double finalPrice;
+    }
+
+    public static OrderQuoteResponse from(PricingContext pricing) {
+        return OrderQuoteResponse.builder()
+                .lines(pricing.getLines().stream()
+                        .map(line -> Line.builder()
+                                .productVariantId(line.variant().getId())
+                                .price(line.unitPrice())
+                                .quantity(line.quantity())
+                                .discount(line.discountPercent())
+                                .promotionId(line.promotionId())
+                                .discountAmount(line.discountAmount())
+                                .finalPrice(line.finalPrice())
+                                .build())
+                        .toList())
+                .totalPrice(pricing.getTotalPrice())
+                .promotionDiscount(pricing.getPromotionDiscount())
+                .rankingDiscount(pricing.getRankingDiscount())
+                .voucherId(pricing.getVoucher() != null ? pricing.getVoucher().getId() : null)
+                .voucherDiscount(pricing.getVoucherDiscount())
+                .totalDiscount(pricing.getTotalDiscount())
+                .finalTotalPrice(pricing.getFinalTotalPrice())
+                .build();
+    }
+}
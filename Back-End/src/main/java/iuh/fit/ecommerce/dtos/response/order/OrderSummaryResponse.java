@@ -0,0 +1,46 @@
+package iuh.fit.ecommerce.dtos.response.order;
+
+import iuh.fit.ecommerce.dtos.projection.OrderSummaryProjection;
+import iuh.fit.ecommerce.enums.OrderStatus;
+import iuh.fit.ecommerce.enums.PaymentMethod;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Một dòng trong danh sách đơn: chỉ các cột của bảng orders, không kèm chi tiết đơn và thông tin khách.
+ */
+@Getter
+@Setter
+@Builder
+public class OrderSummaryResponse {
+    private Long id;
+    private String receiverName;
+    private String receiverPhone;
+    private String receiverAddress;
+    private String orderDate;
+    private OrderStatus status;
+    private PaymentMethod paymentMethod;
+    private Boolean isPickup;
+    private Double totalPrice;
+    private Double totalDiscount;
+    private Double finalTotalPrice;
+    private Long customerId;
+
+    public static OrderSummaryResponse from(OrderSummaryProjection order) {
+        return OrderSummaryResponse.builder()
+                .id(order.getId())
+                .receiverName(order.getReceiverName())
+                .receiverPhone(order.getReceiverPhone())
+                .receiverAddress(order.getReceiverAddress())
+                .orderDate(order.getOrderDate() != null ? order.getOrderDate().toString() : null)
+                .status(order.getStatus())
+                .paymentMethod(order.getPaymentMethod())
+                .isPickup(order.getIsPickup())
+                .totalPrice(order.getTotalPrice())
+                .totalDiscount(order.getTotalDiscount())
+                .finalTotalPrice(order.getFinalTotalPrice())
+                .customerId(order.getCustomerId())
+                .build();
+    }
+}
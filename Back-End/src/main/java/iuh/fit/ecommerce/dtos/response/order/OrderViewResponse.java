@@ -0,0 +1,69 @@
+package iuh.fit.ecommerce.dtos.response.order;
+
+import iuh.fit.ecommerce.enums.DeliveryStatus;
+import iuh.fit.ecommerce.enums.OrderStatus;
+import iuh.fit.ecommerce.enums.PaymentMethod;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+public class OrderViewResponse {
+    private Long id;
+    private Long customerId;
+    private String customerName;
+    private String receiverName;
+    private String receiverPhone;
+    private String receiverAddress;
+    private String orderDate;
+    private OrderStatus status;
+    private PaymentMethod paymentMethod;
+    private Boolean isPickup;
+    private Double totalPrice;
+    private Double totalDiscount;
+    private Double finalTotalPrice;
+    private Long itemCount;
+    private String itemSummary;
+    private String thumbnail;
+    private List<Item> items;
+    private List<TimelineEntry> timeline;
+    private Long deliveryAssignmentId;
+    private Long shipperId;
+    private String shipperName;
+    private DeliveryStatus deliveryStatus;
+    private String expectedDeliveryDate;
+    private String deliveredAt;
+
+    @Getter
+    @Setter
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        private Long productVariantId;
+        private String sku;
+        private String productName;
+        private String productSlug;
+        private String thumbnail;
+        private Long quantity;
+        private Double price;
+        private Double discount;
+        private Double finalPrice;
+    }
+
+    @Getter
+    @Setter
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class TimelineEntry {
+        private OrderStatus status;
+        private String at;
+    }
+}
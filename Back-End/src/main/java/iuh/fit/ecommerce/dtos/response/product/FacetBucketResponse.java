@@ -0,0 +1,16 @@
+package iuh.fit.ecommerce.dtos.response.product;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Builder
+public class FacetBucketResponse {
+    private String key;
+    private String label;
+    private Long groupId;
+    private String groupName;
+    private long count;
+}
@@ -0,0 +1,14 @@
+package iuh.fit.ecommerce.dtos.response.product;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Builder
+public class PriceBucketResponse {
+    private double from;
+    private double to;
+    private long count;
+}
@@ -0,0 +1,16 @@
+package iuh.fit.ecommerce.dtos.response.product;
+
+import iuh.fit.ecommerce.dtos.response.base.ResponseWithPagination;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+public class ProductFacetedSearchResponse {
+    private ResponseWithPagination<List<ProductResponse>> products;
+    private ProductFacetsResponse facets;
+}
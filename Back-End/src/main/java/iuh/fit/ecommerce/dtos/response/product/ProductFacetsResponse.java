@@ -0,0 +1,20 @@
+package iuh.fit.ecommerce.dtos.response.product;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+public class ProductFacetsResponse {
+    private List<FacetBucketResponse> brands;
+    private List<FacetBucketResponse> categories;
+    private List<FacetBucketResponse> filterValues;
+    private List<PriceBucketResponse> prices;
+    private Double priceMin;
+    private Double priceMax;
+    private long inStockCount;
+}
@@ -0,0 +1,26 @@
+package iuh.fit.ecommerce.dtos.response.product;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@Builder
+public class ReindexStatusResponse {
+    private String status;
+    private boolean resumed;
+    private String targetIndex;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private Long lastCheckpointId;
+    private long totalProducts;
+    private long indexedProducts;
+    private long failedProducts;
+    private long inFlightChunks;
+    private double productsPerSecond;
+    private double progressPercent;
+    private String lastError;
+}
@@ -0,0 +1,16 @@
+package iuh.fit.ecommerce.dtos.response.product;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Builder
+public class VariantPriceResponse {
+    private Long variantId;
+    private Double price;
+    private Double oldPrice;
+    private Double discount;
+    private Long promotionId;
+}
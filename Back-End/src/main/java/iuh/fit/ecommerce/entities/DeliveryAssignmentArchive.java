@@ -0,0 +1,53 @@
+package iuh.fit.ecommerce.entities;
+
+import iuh.fit.ecommerce.enums.DeliveryStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Entity
+@Getter
+@Setter
+@Table(name = "delivery_assignments_archive", indexes = {
+        @Index(name = "idx_delivery_assignments_archive_order", columnList = "order_id"),
+        @Index(name = "idx_delivery_assignments_archive_shipper", columnList = "shipper_id")
+})
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeliveryAssignmentArchive {
+
+    @Id
+    private Long id;
+
+    @Column(name = "order_id")
+    private Long orderId;
+
+    @Column(name = "shipper_id")
+    private Long shipperId;
+
+    @Column(name = "expected_delivery_date")
+    private LocalDate expectedDeliveryDate;
+
+    @Column(name = "delivery_image")
+    private String deliveryImage;
+
+    // Ảnh giao hàng (delivery_images) gộp thành danh sách URL cách nhau bởi dấu phẩy
+    @Column(name = "delivery_images", columnDefinition = "TEXT")
+    private String deliveryImages;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "delivery_status", length = 30)
+    private DeliveryStatus deliveryStatus;
+
+    @Column(name = "delivered_at")
+    private LocalDateTime deliveredAt;
+
+    @Column(name = "note", columnDefinition = "TEXT")
+    private String note;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,53 @@
+package iuh.fit.ecommerce.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Getter
+@Setter
+@Table(name = "flash_sales",
+        indexes = @Index(name = "idx_flash_sales_variant_active", columnList = "product_variant_id, active"))
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FlashSale extends BaseEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "product_variant_id", nullable = false)
+    private ProductVariant productVariant;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "promotion_id")
+    private Promotion promotion;
+
+    // Số lượng đã chuyển từ product_variants.stock sang các counter trên Redis lúc mở flash sale
+    @Column(name = "allocated_quantity", nullable = false)
+    private Integer allocatedQuantity;
+
+    @Column(name = "shard_count", nullable = false)
+    private Integer shardCount;
+
+    // Số lượng chưa bán được trả lại kho lúc đóng flash sale
+    @Column(name = "returned_quantity")
+    private Integer returnedQuantity;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Boolean active = true;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "end_at")
+    private LocalDateTime endAt;
+
+    @Column(name = "ended_at")
+    private LocalDateTime endedAt;
+}
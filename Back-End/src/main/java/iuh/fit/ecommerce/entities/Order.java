@@ -11,7 +11,16 @@ import java.util.List;
 @Entity
 @Getter
 @Setter
-@Table(name = "orders")
+// Index theo các bộ lọc thường dùng của danh sách đơn, đều kết thúc bằng order_date để sắp xếp/keyset không cần filesort.
+// InnoDB tự gắn khoá chính vào cuối index phụ nên thứ tự (order_date, id) cũng nằm sẵn trong index
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_customer_date", columnList = "customer_id, order_date"),
+        @Index(name = "idx_orders_status_date", columnList = "status, order_date"),
+        @Index(name = "idx_orders_pickup_status_date", columnList = "is_pickup, status, order_date"),
+        @Index(name = "idx_orders_date", columnList = "order_date"),
+        // Đối soát order_view và rollup quét theo khoảng modified_at
+        @Index(name = "idx_orders_modified_at", columnList = "modified_at, id")
+})
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
@@ -62,6 +71,10 @@ public class Order extends BaseEntity {
     @ManyToOne( fetch = FetchType.EAGER )
     private Customer customer;
 
+    // Ticket flash sale sinh ra đơn; unique để ghi lại một ticket sau sự cố không tạo ra đơn thứ hai
+    @Column(name = "flash_sale_ticket_id", length = 36, unique = true)
+    private String flashSaleTicketId;
+
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<OrderDetail> orderDetails;
 }
@@ -0,0 +1,76 @@
+package iuh.fit.ecommerce.entities;
+
+import iuh.fit.ecommerce.enums.OrderStatus;
+import iuh.fit.ecommerce.enums.PaymentMethod;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Đơn hàng đã kết thúc và quá hạn lưu trữ nóng, được chuyển khỏi bảng orders bởi OrderArchiveService.
+ * Giữ nguyên id của đơn gốc, không có quan hệ JPA để bảng lưu trữ không bị ràng buộc khoá ngoại.
+ */
+@Entity
+@Getter
+@Setter
+@Table(name = "orders_archive", indexes = {
+        @Index(name = "idx_orders_archive_customer_date", columnList = "customer_id, order_date"),
+        @Index(name = "idx_orders_archive_status_date", columnList = "status, order_date"),
+        @Index(name = "idx_orders_archive_date", columnList = "order_date")
+})
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderArchive {
+
+    @Id
+    private Long id;
+
+    @Column(name = "customer_id")
+    private Long customerId;
+
+    @Column(name = "receiver_address")
+    private String receiverAddress;
+
+    @Column(name = "receiver_name")
+    private String receiverName;
+
+    @Column(name = "receiver_phone")
+    private String receiverPhone;
+
+    @Column(name = "order_date")
+    private LocalDateTime orderDate;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 30)
+    private OrderStatus status;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "payment_method", length = 30)
+    private PaymentMethod paymentMethod;
+
+    @Column
+    private String note;
+
+    @Column(name = "is_pickup")
+    private Boolean isPickup;
+
+    @Column(name = "total_price")
+    private Double totalPrice;
+
+    @Column(name = "total_discount")
+    private Double totalDiscount;
+
+    @Column(name = "final_total_price")
+    private Double finalTotalPrice;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "modified_at")
+    private LocalDateTime modifiedAt;
+
+    @Column(name = "archived_at")
+    private LocalDateTime archivedAt;
+}
@@ -0,0 +1,38 @@
+package iuh.fit.ecommerce.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+@Entity
+@Getter
+@Setter
+@Table(name = "order_detail_archive", indexes = {
+        @Index(name = "idx_order_detail_archive_order", columnList = "order_id"),
+        @Index(name = "idx_order_detail_archive_variant", columnList = "product_variant_id")
+})
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderDetailArchive {
+
+    @Id
+    private Long id;
+
+    @Column(name = "order_id")
+    private Long orderId;
+
+    @Column(name = "product_variant_id")
+    private Long productVariantId;
+
+    @Column
+    private Double price;
+
+    @Column
+    private Long quantity;
+
+    @Column
+    private Double discount;
+
+    @Column(name = "final_price")
+    private Double finalPrice;
+}
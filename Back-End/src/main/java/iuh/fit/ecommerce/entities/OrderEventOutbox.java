@@ -0,0 +1,47 @@
+package iuh.fit.ecommerce.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Getter
+@Setter
+@Table(name = "order_event_outbox",
+        indexes = @Index(name = "idx_order_event_outbox_consumer_next", columnList = "consumer, failed, next_attempt_at"))
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderEventOutbox extends BaseEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Tên consumer nhận sự kiện (OrderEventConsumer.getName), mỗi consumer bền có dòng riêng
+    @Column(nullable = false, length = 50)
+    private String consumer;
+
+    @Column(name = "event_type", nullable = false, length = 50)
+    private String eventType;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String payload;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    // Hết số lần thử: giữ lại trong bảng để xử lý tay, không xoá
+    @Column(nullable = false)
+    @Builder.Default
+    private Boolean failed = false;
+
+    // Thời điểm sớm nhất được xử lý, cũng dùng làm lease khi một node đã claim
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+}
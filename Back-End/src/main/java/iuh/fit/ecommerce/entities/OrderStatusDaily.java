@@ -0,0 +1,33 @@
+package iuh.fit.ecommerce.entities;
+
+import iuh.fit.ecommerce.enums.OrderStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+
+// Số đơn đặt trong ngày theo trạng thái hiện tại của đơn
+@Entity
+@Getter
+@Setter
+@Table(name = "order_status_daily",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"stat_date", "status"}))
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderStatusDaily {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "stat_date", nullable = false)
+    private LocalDate statDate;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 30, nullable = false)
+    private OrderStatus status;
+
+    @Column(name = "order_count", nullable = false)
+    private Long orderCount;
+}
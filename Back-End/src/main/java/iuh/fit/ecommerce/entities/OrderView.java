@@ -0,0 +1,113 @@
+package iuh.fit.ecommerce.entities;
+
+import iuh.fit.ecommerce.enums.DeliveryStatus;
+import iuh.fit.ecommerce.enums.OrderStatus;
+import iuh.fit.ecommerce.enums.PaymentMethod;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Bản đọc phẳng của đơn hàng cho danh sách và theo dõi đơn, được dựng lại từ sự kiện đơn hàng sau khi commit.
+ * Không có quan hệ JPA: danh sách sản phẩm và lịch sử trạng thái lưu sẵn dạng JSON để đọc bằng một query.
+ */
+@Entity
+@Getter
+@Setter
+@Table(name = "order_view", indexes = {
+        @Index(name = "idx_order_view_customer_date", columnList = "customer_id, order_date"),
+        @Index(name = "idx_order_view_status_date", columnList = "status, order_date"),
+        @Index(name = "idx_order_view_shipper_date", columnList = "shipper_id, order_date"),
+        @Index(name = "idx_order_view_date", columnList = "order_date")
+})
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderView {
+
+    @Id
+    @Column(name = "order_id")
+    private Long orderId;
+
+    @Column(name = "customer_id")
+    private Long customerId;
+
+    @Column(name = "customer_name")
+    private String customerName;
+
+    @Column(name = "receiver_name")
+    private String receiverName;
+
+    @Column(name = "receiver_phone")
+    private String receiverPhone;
+
+    @Column(name = "receiver_address")
+    private String receiverAddress;
+
+    @Column(name = "order_date")
+    private LocalDateTime orderDate;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 30)
+    private OrderStatus status;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "payment_method", length = 30)
+    private PaymentMethod paymentMethod;
+
+    @Column(name = "is_pickup")
+    private Boolean isPickup;
+
+    @Column(name = "total_price")
+    private Double totalPrice;
+
+    @Column(name = "total_discount")
+    private Double totalDiscount;
+
+    @Column(name = "final_total_price")
+    private Double finalTotalPrice;
+
+    // Tổng số lượng sản phẩm trong đơn
+    @Column(name = "item_count")
+    private Long itemCount;
+
+    // Tóm tắt ngắn để hiển thị trên danh sách, vd: "iPhone 15 x1, Ốp lưng x2"
+    @Column(name = "item_summary", length = 500)
+    private String itemSummary;
+
+    // Ảnh của sản phẩm đầu tiên trong đơn
+    @Column
+    private String thumbnail;
+
+    // JSON danh sách OrderViewResponse.Item
+    @Column(columnDefinition = "TEXT")
+    private String items;
+
+    // JSON danh sách OrderViewResponse.TimelineEntry, thêm dòng mới mỗi lần trạng thái đổi
+    @Column(columnDefinition = "TEXT")
+    private String timeline;
+
+    @Column(name = "delivery_assignment_id")
+    private Long deliveryAssignmentId;
+
+    @Column(name = "shipper_id")
+    private Long shipperId;
+
+    @Column(name = "shipper_name")
+    private String shipperName;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "delivery_status", length = 30)
+    private DeliveryStatus deliveryStatus;
+
+    @Column(name = "expected_delivery_date")
+    private LocalDate expectedDeliveryDate;
+
+    @Column(name = "delivered_at")
+    private LocalDateTime deliveredAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
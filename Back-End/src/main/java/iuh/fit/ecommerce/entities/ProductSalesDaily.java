@@ -0,0 +1,38 @@
+package iuh.fit.ecommerce.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+
+// Số lượng và doanh thu theo variant trong ngày, chỉ tính đơn COMPLETED
+@Entity
+@Getter
+@Setter
+@Table(name = "product_sales_daily",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"stat_date", "product_variant_id"}),
+        indexes = @Index(name = "idx_product_sales_daily_product", columnList = "product_id, stat_date"))
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSalesDaily {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "stat_date", nullable = false)
+    private LocalDate statDate;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(name = "product_variant_id", nullable = false)
+    private Long productVariantId;
+
+    @Column(nullable = false)
+    private Long quantity;
+
+    @Column(nullable = false)
+    private Double revenue;
+}
@@ -0,0 +1,28 @@
+package iuh.fit.ecommerce.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+@Entity
+@Table(name = "promotion_usages_archive", indexes = {
+        @Index(name = "idx_promotion_usages_archive_order", columnList = "order_id"),
+        @Index(name = "idx_promotion_usages_archive_promotion", columnList = "promotion_id")
+})
+@Getter @Setter @Builder
+@NoArgsConstructor @AllArgsConstructor
+public class PromotionUsageArchive {
+    @Id
+    private Long id;
+
+    @Column(name = "promotion_id")
+    private Long promotionId;
+
+    @Column(name = "order_detail_id")
+    private Long orderDetailId;
+
+    // Lưu thẳng order_id để truy vấn theo đơn không phải join qua order_detail_archive
+    @Column(name = "order_id")
+    private Long orderId;
+
+    private Double discountAmount;
+}
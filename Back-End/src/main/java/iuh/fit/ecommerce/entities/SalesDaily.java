@@ -0,0 +1,45 @@
+package iuh.fit.ecommerce.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Số liệu tổng hợp theo ngày cho dashboard, được SalesRollupService tính lại từ orders (và orders_archive).
+ * Doanh thu và số đơn hoàn thành tính theo ngày đặt đơn, giống các báo cáo trước đây.
+ */
+@Entity
+@Getter
+@Setter
+@Table(name = "sales_daily")
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesDaily {
+
+    @Id
+    @Column(name = "stat_date")
+    private LocalDate statDate;
+
+    // Tổng final_total_price của đơn COMPLETED
+    @Column(nullable = false)
+    private Double revenue;
+
+    @Column(name = "completed_orders", nullable = false)
+    private Long completedOrders;
+
+    // Tất cả đơn đặt trong ngày, mọi trạng thái
+    @Column(name = "total_orders", nullable = false)
+    private Long totalOrders;
+
+    @Column(name = "new_customers", nullable = false)
+    private Long newCustomers;
+
+    @Column(name = "new_products", nullable = false)
+    private Long newProducts;
+
+    @Column(name = "refreshed_at")
+    private LocalDateTime refreshedAt;
+}
@@ -0,0 +1,32 @@
+package iuh.fit.ecommerce.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Ngày có đơn vừa đổi mà số liệu tổng hợp chưa được tính lại. Sự kiện đơn chỉ đánh dấu ngày,
+ * SalesRollupService lấy từng ngày bằng SKIP LOCKED và tính lại nên mỗi ngày chỉ một node dựng lại tại một thời điểm.
+ */
+@Entity
+@Getter
+@Setter
+@Table(name = "sales_rollup_dirty_days")
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesRollupDirtyDay {
+
+    @Id
+    @Column(name = "stat_date")
+    private LocalDate statDate;
+
+    // Có đơn hoàn thành trong ngày: tính lại xong thì xoá cache dashboard của kỳ đang mở
+    @Column(name = "evict_open", nullable = false)
+    private Boolean evictOpen;
+
+    @Column(name = "marked_at", nullable = false)
+    private LocalDateTime markedAt;
+}
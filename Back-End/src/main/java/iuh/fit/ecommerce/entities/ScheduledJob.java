@@ -0,0 +1,51 @@
+package iuh.fit.ecommerce.entities;
+
+import iuh.fit.ecommerce.enums.ScheduledJobStatus;
+import iuh.fit.ecommerce.enums.ScheduledJobType;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Getter
+@Setter
+@Table(name = "scheduled_jobs",
+        uniqueConstraints = @UniqueConstraint(name = "uk_scheduled_jobs_type_key", columnNames = {"type", "job_key"}),
+        indexes = @Index(name = "idx_scheduled_jobs_status_run_at", columnList = "status, run_at"))
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScheduledJob extends BaseEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 50)
+    private ScheduledJobType type;
+
+    // Khoá nghiệp vụ (vd: orderId) để lên lịch lại hoặc huỷ đúng job, mỗi type chỉ có một job cho một key
+    @Column(name = "job_key", nullable = false, length = 191)
+    private String jobKey;
+
+    @Column(columnDefinition = "TEXT")
+    private String payload;
+
+    // Thời điểm sớm nhất được chạy, cũng dùng làm lease khi một node đã claim
+    @Column(name = "run_at", nullable = false)
+    private LocalDateTime runAt;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    @Builder.Default
+    private ScheduledJobStatus status = ScheduledJobStatus.PENDING;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+}
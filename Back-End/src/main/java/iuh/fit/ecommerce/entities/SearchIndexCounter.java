@@ -0,0 +1,26 @@
+package iuh.fit.ecommerce.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Bộ đếm tăng dần trong DB dùng làm version ngoài của document Elasticsearch.
+ * Mỗi lần đọc sản phẩm để index lấy một giá trị mới trước khi đọc DB, nên bản đọc sau luôn có version lớn hơn
+ * trên mọi node, không phụ thuộc đồng hồ của từng máy.
+ */
+@Entity
+@Getter
+@Setter
+@Table(name = "search_index_counters")
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchIndexCounter {
+
+    @Id
+    @Column(length = 50)
+    private String name;
+
+    @Column(name = "current_value", nullable = false)
+    private Long currentValue;
+}
@@ -0,0 +1,40 @@
+package iuh.fit.ecommerce.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Getter
+@Setter
+@Table(name = "search_index_outbox",
+        indexes = @Index(name = "idx_search_index_outbox_failed_next", columnList = "failed, next_attempt_at"))
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchIndexOutbox extends BaseEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    // Hết số lần thử: giữ lại trong bảng để xử lý tay, không xoá
+    @Column(nullable = false)
+    @Builder.Default
+    private Boolean failed = false;
+
+    // Thời điểm sớm nhất được xử lý, cũng dùng làm lease khi một node đã claim
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+}
@@ -0,0 +1,37 @@
+package iuh.fit.ecommerce.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Getter
+@Setter
+@Table(name = "voucher_usage_histories_archive", indexes = {
+        @Index(name = "idx_voucher_usage_archive_voucher_customer", columnList = "voucher_id, customer_id"),
+        @Index(name = "idx_voucher_usage_archive_order", columnList = "order_id")
+})
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VoucherUsageHistoryArchive {
+    @Id
+    private Long id;
+
+    @Column
+    private Double discountAmount;
+
+    @Column(name = "voucher_id")
+    private Long voucherId;
+
+    @Column(name = "order_id")
+    private Long orderId;
+
+    // Lưu thẳng customer_id để kiểm tra "voucher đã dùng" không phải join qua orders_archive
+    @Column(name = "customer_id")
+    private Long customerId;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+}
@@ -5,13 +5,21 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.elasticsearch.annotations.DateFormat;
 import org.springframework.data.elasticsearch.annotations.Document;
 import org.springframework.data.elasticsearch.annotations.Field;
 import org.springframework.data.elasticsearch.annotations.FieldType;
+import org.springframework.data.elasticsearch.annotations.InnerField;
+import org.springframework.data.elasticsearch.annotations.MultiField;
+import org.springframework.data.elasticsearch.annotations.Setting;
 
+import java.time.LocalDate;
 import java.util.List;
 
-@Document(indexName = "products")
+// "products" là alias đọc, index vật lý products_v{n} do ProductIndexService tạo và quản lý
+@Document(indexName = "products", createIndex = false)
+@Setting(settingPath = "/elasticsearch/product-settings.json")
 @Data
 @Builder
 @NoArgsConstructor
@@ -24,13 +32,21 @@ public class ProductDocument {
     @Field(type = FieldType.Long)
     private Long productId;
     
-    @Field(type = FieldType.Text, analyzer = "standard", searchAnalyzer = "standard")
+    // name.prefix: toàn bộ tên đã bỏ dấu, dùng để ưu tiên tên bắt đầu bằng từ khoá
+    @MultiField(
+            mainField = @Field(type = FieldType.Text, analyzer = "vi_text"),
+            otherFields = @InnerField(suffix = "prefix", type = FieldType.Keyword, normalizer = "vi_keyword", ignoreAbove = 256)
+    )
     private String name;
     
+    // Edge n-gram đã bỏ dấu tiếng Việt, dùng cho autocomplete
+    @Field(type = FieldType.Text, analyzer = "autocomplete_index", searchAnalyzer = "autocomplete_search")
+    private String nameSuggest;
+
     @Field(type = FieldType.Keyword)
     private String slug;
     
-    @Field(type = FieldType.Text, analyzer = "standard", searchAnalyzer = "standard")
+    @Field(type = FieldType.Text, analyzer = "vi_text")
     private String description;
     
     @Field(type = FieldType.Keyword)
@@ -53,6 +69,9 @@ public class ProductDocument {
     
     @Field(type = FieldType.Keyword)
     private String brandName;
+
+    @Field(type = FieldType.Keyword)
+    private String brandSlug;
     
     @Field(type = FieldType.Long)
     private Long categoryId;
@@ -71,8 +90,12 @@ public class ProductDocument {
     
     @Field(type = FieldType.Double)
     private Double maxPrice;
+
+    // Giá thấp nhất sau khuyến mãi, dùng cho bộ lọc, histogram và sắp xếp theo giá
+    @Field(type = FieldType.Double)
+    private Double effectivePrice;
     
-    @Field(type = FieldType.Text)
+    @Field(type = FieldType.Text, analyzer = "vi_text")
     private List<String> searchableText;
     
     // Product Variants information
@@ -92,5 +115,31 @@ public class ProductDocument {
     // Product Filter Values information
     @Field(type = FieldType.Text)
     private List<String> filterValues;
+
+    // Giá trị bộ lọc kèm tiêu chí, nested để lọc và đếm facet theo từng giá trị
+    @Field(type = FieldType.Nested)
+    private List<ProductFilterValueDocument> filterValueRefs;
+
+    // Variants đã tính giá khuyến mãi, chỉ lưu trong _source để dựng ProductResponse khi search
+    @Field(type = FieldType.Object, enabled = false)
+    private List<ProductVariantDocument> variants;
+
+    // Khoá giá khuyến mãi của riêng sản phẩm (PromotionIndexService.getPricingKey), khác khoá hiện tại thì document đã cũ
+    @Field(type = FieldType.Keyword)
+    private String pricingKey;
+
+    // Ngày tính giá, chỉ để tra cứu khi kiểm tra index
+    @Field(type = FieldType.Date, format = DateFormat.date)
+    private LocalDate pricedOn;
+
+    // Epoch millis lúc ghi document, để các node đồng bộ autocomplete theo thay đổi mới
+    @Field(type = FieldType.Long)
+    private Long indexedAt;
+
+    // Giá trị bộ đếm DB lấy ngay trước khi đọc sản phẩm (ProductIndexService.nextVersion), ghi với version_type=external:
+    // bản đọc trước (chunk reindex chậm) bị Elasticsearch từ chối nếu bản đọc sau đã được ghi
+    @Version
+    @Field(type = FieldType.Long)
+    private Long version;
 }
 
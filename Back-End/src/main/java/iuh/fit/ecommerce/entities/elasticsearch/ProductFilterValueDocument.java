@@ -0,0 +1,27 @@
+package iuh.fit.ecommerce.entities.elasticsearch;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.elasticsearch.annotations.Field;
+import org.springframework.data.elasticsearch.annotations.FieldType;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductFilterValueDocument {
+
+    @Field(type = FieldType.Long)
+    private Long id;
+
+    @Field(type = FieldType.Keyword)
+    private String value;
+
+    @Field(type = FieldType.Long)
+    private Long criteriaId;
+
+    @Field(type = FieldType.Keyword)
+    private String criteriaName;
+}
@@ -0,0 +1,30 @@
+package iuh.fit.ecommerce.entities.elasticsearch;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductVariantDocument {
+
+    private Long id;
+
+    private String sku;
+
+    // Giá sau khi áp dụng khuyến mãi tốt nhất tại thời điểm index
+    private Double price;
+
+    private Double oldPrice;
+
+    private Double discount;
+
+    private Integer stock;
+
+    private List<ProductVariantValueDocument> productVariantValues;
+}
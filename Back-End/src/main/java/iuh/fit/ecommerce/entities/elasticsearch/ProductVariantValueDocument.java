@@ -0,0 +1,25 @@
+package iuh.fit.ecommerce.entities.elasticsearch;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductVariantValueDocument {
+
+    private Long id;
+
+    private Long variantValueId;
+
+    private String value;
+
+    private String slug;
+
+    private Long variantId;
+
+    private String variantName;
+}
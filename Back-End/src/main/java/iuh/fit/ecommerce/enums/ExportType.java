@@ -0,0 +1,8 @@
+package iuh.fit.ecommerce.enums;
+
+public enum ExportType {
+    CUSTOMERS,
+    STAFF,
+    SUPPLIERS,
+    DASHBOARD
+}
@@ -0,0 +1,7 @@
+package iuh.fit.ecommerce.enums;
+
+public enum FlashSaleTicketStatus {
+    QUEUED,
+    CREATED,
+    FAILED
+}
@@ -0,0 +1,6 @@
+package iuh.fit.ecommerce.enums;
+
+public enum ScheduledJobStatus {
+    PENDING,
+    FAILED
+}
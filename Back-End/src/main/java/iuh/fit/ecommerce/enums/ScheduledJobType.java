@@ -0,0 +1,6 @@
+package iuh.fit.ecommerce.enums;
+
+public enum ScheduledJobType {
+    PAYMENT_TIMEOUT,
+    FLASH_SALE_END
+}
@@ -0,0 +1,14 @@
+package iuh.fit.ecommerce.events;
+
+import java.time.LocalDateTime;
+
+/**
+ * Đơn đã được tạo và xác nhận (COD, thanh toán online thành công, flash sale đã ghi).
+ *
+ * @param createdByStaff    đơn tạo tại quầy
+ * @param notifyCustomer    gửi email xác nhận cho khách
+ * @param occurredAt        thời điểm đơn được xác nhận
+ */
+public record OrderCreatedEvent(Long orderId, boolean createdByStaff, boolean notifyCustomer,
+                                LocalDateTime occurredAt) implements OrderEvent {
+}
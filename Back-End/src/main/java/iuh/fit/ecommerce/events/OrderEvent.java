@@ -0,0 +1,15 @@
+package iuh.fit.ecommerce.events;
+
+import java.time.LocalDateTime;
+
+/**
+ * Sự kiện nghiệp vụ của đơn hàng, chỉ mang id để consumer tự đọc lại dữ liệu đã commit.
+ */
+public sealed interface OrderEvent permits OrderCreatedEvent, OrderStatusChangedEvent {
+    Long orderId();
+
+    /**
+     * Thời điểm thay đổi xảy ra, không phải lúc consumer xử lý (có thể trễ hoặc thử lại).
+     */
+    LocalDateTime occurredAt();
+}
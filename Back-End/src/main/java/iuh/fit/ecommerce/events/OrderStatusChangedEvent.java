@@ -0,0 +1,15 @@
+package iuh.fit.ecommerce.events;
+
+import iuh.fit.ecommerce.enums.OrderStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Trạng thái đơn đã đổi.
+ *
+ * @param previousStatus null khi đơn vừa được tạo (vd: đơn chờ thanh toán online)
+ * @param occurredAt     thời điểm đổi trạng thái, dùng làm mốc trong timeline của order_view
+ */
+public record OrderStatusChangedEvent(Long orderId, OrderStatus previousStatus, OrderStatus status,
+                                      LocalDateTime occurredAt) implements OrderEvent {
+}
@@ -0,0 +1,26 @@
+package iuh.fit.ecommerce.exceptions.custom;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Trừ kho thất bại ở một hoặc nhiều dòng, mỗi dòng thiếu hàng được liệt kê trong shortages.
+ */
+public class InsufficientStockException extends ConflictException {
+
+    public record Shortage(Long productVariantId, String productName, String sku, long requested, int available) {}
+
+    private final List<Shortage> shortages;
+
+    public InsufficientStockException(List<Shortage> shortages) {
+        super(shortages.stream()
+                .map(s -> String.format("Sản phẩm \"%s\" không đủ số lượng. Tồn kho hiện tại: %d, số lượng yêu cầu: %d",
+                        s.productName(), s.available(), s.requested()))
+                .collect(Collectors.joining("; ")));
+        this.shortages = List.copyOf(shortages);
+    }
+
+    public List<Shortage> getShortages() {
+        return shortages;
+    }
+}
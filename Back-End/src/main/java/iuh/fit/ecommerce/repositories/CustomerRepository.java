@@ -1,15 +1,19 @@
 package iuh.fit.ecommerce.repositories;
 
+import iuh.fit.ecommerce.dtos.projection.CustomerExportProjection;
 import iuh.fit.ecommerce.entities.Customer;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -41,4 +45,16 @@ public interface CustomerRepository extends JpaRepository<Customer, Long> {
 
     @Query("SELECT COUNT(c) FROM Customer c WHERE c.createdAt BETWEEN :startDate AND :endDate")
     Long countNewCustomersByDateRange(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
+
+    // Keyset pagination theo id cho export Excel, đọc projection để không giữ entity trong persistence context
+    @Query("SELECT c.id AS id, c.email AS email, c.fullName AS fullName, c.phone AS phone, c.dateOfBirth AS dateOfBirth " +
+            "FROM Customer c WHERE c.id > :lastId ORDER BY c.id ASC")
+    List<CustomerExportProjection> findExportPage(@Param("lastId") Long lastId, Pageable pageable);
+
+    // Import Excel: tạo dòng customers cho các user vừa được insert theo lô (bảng con của users, JOINED)
+    @Modifying
+    @Query(value = "INSERT INTO customers (id, total_spending, ranking_id) " +
+            "SELECT u.id, 0, :rankingId FROM users u WHERE u.email IN (:emails)",
+            nativeQuery = true)
+    int insertForImportedUsers(@Param("emails") Collection<String> emails, @Param("rankingId") Long rankingId);
 }
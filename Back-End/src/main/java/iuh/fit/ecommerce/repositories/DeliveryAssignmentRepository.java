@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,6 +15,9 @@ public interface DeliveryAssignmentRepository extends JpaRepository<DeliveryAssi
 
     Optional<DeliveryAssignment> findByOrder_Id(Long orderId);
 
+    @Query("SELECT d FROM DeliveryAssignment d LEFT JOIN FETCH d.shipper WHERE d.order.id IN :orderIds")
+    List<DeliveryAssignment> findAllWithShipperByOrderIdIn(@Param("orderIds") Collection<Long> orderIds);
+
     @Query("SELECT CASE WHEN COUNT(d) > 0 THEN true ELSE false END " +
             "FROM DeliveryAssignment d " +
             "WHERE d.shipper = :shipper AND d.deliveryStatus = :status")
@@ -0,0 +1,27 @@
+package iuh.fit.ecommerce.repositories;
+
+import iuh.fit.ecommerce.entities.FlashSale;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface FlashSaleRepository extends JpaRepository<FlashSale, Long> {
+
+    @Query("SELECT f FROM FlashSale f JOIN FETCH f.productVariant LEFT JOIN FETCH f.promotion WHERE f.active = true")
+    List<FlashSale> findAllActive();
+
+    // Đã đóng trong DB nhưng chưa rút hàng khỏi Redis về kho (node đóng bị dừng giữa chừng)
+    @Query("SELECT f FROM FlashSale f JOIN FETCH f.productVariant WHERE f.active = false AND f.returnedQuantity IS NULL")
+    List<FlashSale> findAllUnsettled();
+
+    boolean existsByProductVariant_IdAndActiveTrue(Long productVariantId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT f FROM FlashSale f WHERE f.id = :id")
+    Optional<FlashSale> findByIdForUpdate(@Param("id") Long id);
+}
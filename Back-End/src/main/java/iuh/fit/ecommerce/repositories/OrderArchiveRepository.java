@@ -0,0 +1,125 @@
+package iuh.fit.ecommerce.repositories;
+
+import iuh.fit.ecommerce.entities.OrderArchive;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Chuyển đơn hàng đã kết thúc từ các bảng nóng sang bảng *_archive theo từng batch id.
+ * Mỗi batch chạy trong một transaction: copy bảng cha trước, bảng con sau, rồi xoá theo thứ tự ngược lại.
+ */
+public interface OrderArchiveRepository extends JpaRepository<OrderArchive, Long> {
+
+    // Đơn đã kết thúc, cũ hơn mốc lưu trữ và chưa có feedback (feedback còn khoá ngoại tới orders).
+    // SKIP LOCKED để không chờ những đơn đang bị request khác giữ khoá
+    @Query(value = """
+        SELECT o.id FROM orders o
+        WHERE o.order_date < :cutoff
+            AND o.status IN ('COMPLETED', 'CANCELED', 'FAILED', 'PAYMENT_FAILED')
+            AND NOT EXISTS (SELECT 1 FROM feedbacks f WHERE f.order_id = o.id)
+        ORDER BY o.order_date ASC, o.id ASC
+        LIMIT :limit
+        FOR UPDATE SKIP LOCKED
+    """, nativeQuery = true)
+    List<Long> lockArchivableIds(@Param("cutoff") LocalDateTime cutoff, @Param("limit") int limit);
+
+    @Modifying
+    @Query(value = """
+        INSERT INTO orders_archive (id, customer_id, receiver_address, receiver_name, receiver_phone, order_date,
+                                    status, payment_method, note, is_pickup, total_price, total_discount,
+                                    final_total_price, created_at, modified_at, archived_at)
+        SELECT o.id, o.customer_id, o.receiver_address, o.receiver_name, o.receiver_phone, o.order_date,
+               o.status, o.payment_method, o.note, o.is_pickup, o.total_price, o.total_discount,
+               o.final_total_price, o.created_at, o.modified_at, :archivedAt
+        FROM orders o WHERE o.id IN (:orderIds)
+    """, nativeQuery = true)
+    int copyOrders(@Param("orderIds") Collection<Long> orderIds, @Param("archivedAt") LocalDateTime archivedAt);
+
+    @Modifying
+    @Query(value = """
+        INSERT INTO order_detail_archive (id, order_id, product_variant_id, price, quantity, discount, final_price)
+        SELECT od.id, od.order_id, od.product_variant_id, od.price, od.quantity, od.discount, od.final_price
+        FROM order_detail od WHERE od.order_id IN (:orderIds)
+    """, nativeQuery = true)
+    int copyOrderDetails(@Param("orderIds") Collection<Long> orderIds);
+
+    @Modifying
+    @Query(value = """
+        INSERT INTO promotion_usages_archive (id, promotion_id, order_detail_id, order_id, discount_amount)
+        SELECT pu.id, pu.promotion_id, pu.order_detail_id, od.order_id, pu.discount_amount
+        FROM promotion_usages pu
+        JOIN order_detail od ON pu.order_detail_id = od.id
+        WHERE od.order_id IN (:orderIds)
+    """, nativeQuery = true)
+    int copyPromotionUsages(@Param("orderIds") Collection<Long> orderIds);
+
+    @Modifying
+    @Query(value = """
+        INSERT INTO voucher_usage_histories_archive (id, discount_amount, voucher_id, order_id, customer_id, created_at)
+        SELECT vuh.id, vuh.discount_amount, vuh.voucher_id, vuh.order_id, o.customer_id, vuh.created_at
+        FROM voucher_usage_histories vuh
+        JOIN orders o ON vuh.order_id = o.id
+        WHERE vuh.order_id IN (:orderIds)
+    """, nativeQuery = true)
+    int copyVoucherUsages(@Param("orderIds") Collection<Long> orderIds);
+
+    @Modifying
+    @Query(value = """
+        INSERT INTO delivery_assignments_archive (id, order_id, shipper_id, expected_delivery_date, delivery_image,
+                                                  delivery_images, delivery_status, delivered_at, note, created_at)
+        SELECT da.id, da.order_id, da.shipper_id, da.expected_delivery_date, da.delivery_image,
+               (SELECT GROUP_CONCAT(di.image_url ORDER BY di.id SEPARATOR ',')
+                FROM delivery_images di WHERE di.delivery_assignment_id = da.id),
+               da.delivery_status, da.delivered_at, da.note, da.created_at
+        FROM delivery_assignments da WHERE da.order_id IN (:orderIds)
+    """, nativeQuery = true)
+    int copyDeliveryAssignments(@Param("orderIds") Collection<Long> orderIds);
+
+    @Modifying
+    @Query(value = """
+        DELETE pu FROM promotion_usages pu
+        JOIN order_detail od ON pu.order_detail_id = od.id
+        WHERE od.order_id IN (:orderIds)
+    """, nativeQuery = true)
+    int deletePromotionUsages(@Param("orderIds") Collection<Long> orderIds);
+
+    @Modifying
+    @Query(value = "DELETE FROM order_detail WHERE order_id IN (:orderIds)", nativeQuery = true)
+    int deleteOrderDetails(@Param("orderIds") Collection<Long> orderIds);
+
+    @Modifying
+    @Query(value = "DELETE FROM voucher_usage_histories WHERE order_id IN (:orderIds)", nativeQuery = true)
+    int deleteVoucherUsages(@Param("orderIds") Collection<Long> orderIds);
+
+    @Modifying
+    @Query(value = """
+        DELETE di FROM delivery_images di
+        JOIN delivery_assignments da ON di.delivery_assignment_id = da.id
+        WHERE da.order_id IN (:orderIds)
+    """, nativeQuery = true)
+    int deleteDeliveryImages(@Param("orderIds") Collection<Long> orderIds);
+
+    @Modifying
+    @Query(value = "DELETE FROM delivery_assignments WHERE order_id IN (:orderIds)", nativeQuery = true)
+    int deleteDeliveryAssignments(@Param("orderIds") Collection<Long> orderIds);
+
+    @Modifying
+    @Query(value = "DELETE FROM orders WHERE id IN (:orderIds)", nativeQuery = true)
+    int deleteOrders(@Param("orderIds") Collection<Long> orderIds);
+
+    // Phần chi tiêu đã lưu trữ, cộng với phần còn trong orders để ra tổng chi tiêu của customer
+    @Query("SELECT COALESCE(SUM(o.finalTotalPrice), 0.0) FROM OrderArchive o WHERE o.customerId = :customerId AND o.status = 'COMPLETED'")
+    Double getTotalSpendingByCustomerId(@Param("customerId") Long customerId);
+
+    @Query("""
+        SELECT COUNT(v) > 0 FROM VoucherUsageHistoryArchive v
+        WHERE v.voucherId = :voucherId AND v.customerId = :customerId
+    """)
+    boolean existsVoucherUsage(@Param("voucherId") Long voucherId, @Param("customerId") Long customerId);
+}
@@ -44,8 +44,8 @@ public interface OrderDetailRepository extends JpaRepository<OrderDetail, Long>
         JOIN product_variants pv ON od.product_variant_id = pv.id
         JOIN products p ON pv.product_id = p.id
         JOIN orders o ON od.order_id = o.id
-        WHERE YEAR(o.order_date) = :year
-            AND MONTH(o.order_date) = :month
+        WHERE o.order_date >= MAKEDATE(:year, 1) + INTERVAL (:month - 1) MONTH
+            AND o.order_date < MAKEDATE(:year, 1) + INTERVAL :month MONTH
             AND o.status = 'COMPLETED'
         GROUP BY p.id, p.name, p.thumbnail
         ORDER BY totalQuantitySold DESC
@@ -67,7 +67,7 @@ public interface OrderDetailRepository extends JpaRepository<OrderDetail, Long>
         JOIN product_variants pv ON od.product_variant_id = pv.id
         JOIN products p ON pv.product_id = p.id
         JOIN orders o ON od.order_id = o.id
-        WHERE YEAR(o.order_date) = :year
+        WHERE o.order_date >= MAKEDATE(:year, 1) AND o.order_date < MAKEDATE(:year + 1, 1)
             AND o.status = 'COMPLETED'
         GROUP BY p.id, p.name, p.thumbnail
         ORDER BY totalQuantitySold DESC
@@ -107,8 +107,8 @@ public interface OrderDetailRepository extends JpaRepository<OrderDetail, Long>
         JOIN product_variants pv ON od.product_variant_id = pv.id
         JOIN products p ON pv.product_id = p.id
         JOIN orders o ON od.order_id = o.id
-        WHERE YEAR(o.order_date) = :year
-            AND MONTH(o.order_date) = :month
+        WHERE o.order_date >= MAKEDATE(:year, 1) + INTERVAL (:month - 1) MONTH
+            AND o.order_date < MAKEDATE(:year, 1) + INTERVAL :month MONTH
             AND o.status = 'COMPLETED'
         GROUP BY p.id, p.name, p.thumbnail
         ORDER BY totalQuantitySold DESC
@@ -129,7 +129,7 @@ public interface OrderDetailRepository extends JpaRepository<OrderDetail, Long>
         JOIN product_variants pv ON od.product_variant_id = pv.id
         JOIN products p ON pv.product_id = p.id
         JOIN orders o ON od.order_id = o.id
-        WHERE YEAR(o.order_date) = :year
+        WHERE o.order_date >= MAKEDATE(:year, 1) AND o.order_date < MAKEDATE(:year + 1, 1)
             AND o.status = 'COMPLETED'
         GROUP BY p.id, p.name, p.thumbnail
         ORDER BY totalQuantitySold DESC
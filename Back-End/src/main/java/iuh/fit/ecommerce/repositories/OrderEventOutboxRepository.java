@@ -0,0 +1,37 @@
+package iuh.fit.ecommerce.repositories;
+
+import iuh.fit.ecommerce.entities.OrderEventOutbox;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface OrderEventOutboxRepository extends JpaRepository<OrderEventOutbox, Long> {
+
+    // lock.timeout = -2 tương ứng SKIP LOCKED: các node không tranh nhau cùng một dòng
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT o FROM OrderEventOutbox o WHERE o.consumer = :consumer AND o.failed = false " +
+            "AND o.nextAttemptAt <= :now ORDER BY o.id ASC")
+    List<OrderEventOutbox> findDueForUpdate(@Param("consumer") String consumer,
+                                            @Param("now") LocalDateTime now,
+                                            Pageable pageable);
+
+    @Query("SELECT MIN(o.createdAt) FROM OrderEventOutbox o WHERE o.failed = false")
+    LocalDateTime findOldestCreatedAt();
+
+    long countByFailedTrue();
+
+    @Modifying
+    @Query("DELETE FROM OrderEventOutbox o WHERE o.id IN :ids")
+    void deleteByIdIn(@Param("ids") Collection<Long> ids);
+}
@@ -1,5 +1,6 @@
 package iuh.fit.ecommerce.repositories;
 
+import iuh.fit.ecommerce.dtos.projection.OrderSummaryProjection;
 import iuh.fit.ecommerce.dtos.projection.RevenueByDayProjection;
 import iuh.fit.ecommerce.dtos.projection.RevenueByYearProjection;
 import iuh.fit.ecommerce.entities.Customer;
@@ -13,7 +14,9 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface OrderRepository extends JpaRepository<Order, Long>, JpaSpecificationExecutor<Order> {
     
@@ -33,6 +36,83 @@ public interface OrderRepository extends JpaRepository<Order, Long>, JpaSpecific
             Pageable pageable
     );
 
+    // Cột dùng cho danh sách đơn, o.customer.id đọc thẳng khoá ngoại nên không join/nạp bảng khách hàng
+    String ORDER_SUMMARY_COLUMNS = """
+        SELECT o.id AS id, o.receiverName AS receiverName, o.receiverPhone AS receiverPhone,
+               o.receiverAddress AS receiverAddress, o.orderDate AS orderDate, o.status AS status,
+               o.paymentMethod AS paymentMethod, o.isPickup AS isPickup, o.totalPrice AS totalPrice,
+               o.totalDiscount AS totalDiscount, o.finalTotalPrice AS finalTotalPrice, o.customer.id AS customerId
+        FROM Order o
+        """;
+
+    // Keyset trên (orderDate, id): trang sau bắt đầu ngay sau dòng cuối của trang trước, không dùng OFFSET
+    String ORDER_KEYSET = """
+            AND (:lastDate IS NULL OR o.orderDate < :lastDate OR (o.orderDate = :lastDate AND o.id < :lastId))
+        ORDER BY o.orderDate DESC, o.id DESC
+        """;
+
+    @Query(ORDER_SUMMARY_COLUMNS + """
+        WHERE o.customer.id = :customerId
+            AND (:statuses IS NULL OR o.status IN :statuses)
+            AND (:startDate IS NULL OR o.orderDate >= :startDate)
+            AND (:endDate IS NULL OR o.orderDate < :endDate)
+        """ + ORDER_KEYSET)
+    List<OrderSummaryProjection> findMyOrderSummaries(
+            @Param("customerId") Long customerId,
+            @Param("statuses") List<OrderStatus> statuses,
+            @Param("startDate") LocalDateTime startDate,
+            @Param("endDate") LocalDateTime endDate,
+            @Param("lastDate") LocalDateTime lastDate,
+            @Param("lastId") Long lastId,
+            Pageable pageable
+    );
+
+    @Query(ORDER_SUMMARY_COLUMNS + """
+        WHERE (:customerName IS NULL OR LOWER(o.receiverName) LIKE LOWER(CONCAT('%', :customerName, '%')))
+            AND (:customerPhone IS NULL OR o.receiverPhone LIKE CONCAT('%', :customerPhone, '%'))
+            AND (:startDate IS NULL OR o.orderDate >= :startDate)
+            AND (:endDate IS NULL OR o.orderDate < :endDate)
+            AND (:status IS NULL OR o.status = :status)
+            AND (:isPickup IS NULL OR o.isPickup = :isPickup)
+        """ + ORDER_KEYSET)
+    List<OrderSummaryProjection> findOrderSummaries(
+            @Param("customerName") String customerName,
+            @Param("customerPhone") String customerPhone,
+            @Param("startDate") LocalDateTime startDate,
+            @Param("endDate") LocalDateTime endDate,
+            @Param("status") OrderStatus status,
+            @Param("isPickup") Boolean isPickup,
+            @Param("lastDate") LocalDateTime lastDate,
+            @Param("lastId") Long lastId,
+            Pageable pageable
+    );
+
+    // Nạp đủ dữ liệu để dựng order_view cho cả batch bằng một query
+    @Query("""
+        SELECT DISTINCT o FROM Order o
+        LEFT JOIN FETCH o.customer
+        LEFT JOIN FETCH o.orderDetails od
+        LEFT JOIN FETCH od.productVariant pv
+        LEFT JOIN FETCH pv.product
+        WHERE o.id IN :ids
+    """)
+    List<Order> findAllWithItemsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT o.id FROM Order o WHERE o.id > :lastId ORDER BY o.id ASC")
+    List<Long> findIdsAfter(@Param("lastId") Long lastId, Pageable pageable);
+
+    // Đơn sửa trong [since, until) mà order_view chưa có hoặc dựng trước lần sửa đó
+    @Query("""
+        SELECT o.id FROM Order o
+        WHERE o.modifiedAt >= :since AND o.modifiedAt < :until AND o.id > :lastId
+            AND NOT EXISTS (SELECT v.orderId FROM OrderView v WHERE v.orderId = o.id AND v.updatedAt >= o.modifiedAt)
+        ORDER BY o.id ASC
+        """)
+    List<Long> findIdsOutOfSyncWithView(@Param("since") LocalDateTime since,
+                                        @Param("until") LocalDateTime until,
+                                        @Param("lastId") Long lastId,
+                                        Pageable pageable);
+
     // Find orders by customerId with pagination
     List<Order> findByCustomerId(Long customerId, Pageable pageable);
     
@@ -70,7 +150,7 @@ public interface OrderRepository extends JpaRepository<Order, Long>, JpaSpecific
             SELECT o.id, o.final_total_price, YEAR(o.order_date) as year_value
             FROM orders o
             WHERE o.status = 'COMPLETED'
-                AND (:year IS NULL OR YEAR(o.order_date) = :year)
+                AND (:year IS NULL OR (o.order_date >= MAKEDATE(:year, 1) AND o.order_date < MAKEDATE(:year + 1, 1)))
         ) o
         GROUP BY year_value
         ORDER BY year_value ASC
@@ -110,4 +190,8 @@ public interface OrderRepository extends JpaRepository<Order, Long>, JpaSpecific
         WHERE o.id = :orderId
     """)
     Order findByIdWithDetailsForEmail(@Param("orderId") Long orderId);
+
+    // Đơn đã ghi cho ticket flash sale chưa, dùng khi ghi lại ticket sau sự cố
+    @Query("SELECT o.id FROM Order o WHERE o.flashSaleTicketId = :ticketId")
+    Optional<Long> findIdByFlashSaleTicketId(@Param("ticketId") String ticketId);
 }
@@ -0,0 +1,63 @@
+package iuh.fit.ecommerce.repositories;
+
+import iuh.fit.ecommerce.entities.OrderView;
+import iuh.fit.ecommerce.enums.OrderStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface OrderViewRepository extends JpaRepository<OrderView, Long> {
+
+    // Keyset trên (orderDate, orderId) giống danh sách đơn ở OrderRepository
+    String VIEW_KEYSET = """
+            AND (:lastDate IS NULL OR v.orderDate < :lastDate OR (v.orderDate = :lastDate AND v.orderId < :lastId))
+        ORDER BY v.orderDate DESC, v.orderId DESC
+        """;
+
+    // Khoá các dòng đang cập nhật để hai node không ghi đè timeline của nhau
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT v FROM OrderView v WHERE v.orderId IN :orderIds")
+    List<OrderView> findAllForUpdate(@Param("orderIds") Collection<Long> orderIds);
+
+    @Query("""
+        SELECT v FROM OrderView v
+        WHERE v.customerId = :customerId
+            AND (:status IS NULL OR v.status = :status)
+        """ + VIEW_KEYSET)
+    List<OrderView> findByCustomer(
+            @Param("customerId") Long customerId,
+            @Param("status") OrderStatus status,
+            @Param("lastDate") LocalDateTime lastDate,
+            @Param("lastId") Long lastId,
+            Pageable pageable
+    );
+
+    @Query("""
+        SELECT v FROM OrderView v
+        WHERE v.shipperId = :shipperId
+        """ + VIEW_KEYSET)
+    List<OrderView> findByShipper(
+            @Param("shipperId") Long shipperId,
+            @Param("lastDate") LocalDateTime lastDate,
+            @Param("lastId") Long lastId,
+            Pageable pageable
+    );
+
+    @Query("""
+        SELECT v FROM OrderView v
+        WHERE (:status IS NULL OR v.status = :status)
+        """ + VIEW_KEYSET)
+    List<OrderView> findAllByStatus(
+            @Param("status") OrderStatus status,
+            @Param("lastDate") LocalDateTime lastDate,
+            @Param("lastId") Long lastId,
+            Pageable pageable
+    );
+}
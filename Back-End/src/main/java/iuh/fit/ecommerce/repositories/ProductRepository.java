@@ -6,9 +6,12 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import iuh.fit.ecommerce.dtos.projection.ProductExportProjection;
 import iuh.fit.ecommerce.entities.Product;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpecificationExecutor<Product> {
@@ -17,7 +20,8 @@ public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpec
 
     Product getProductBySlug(String slug);
 
-    @Query("SELECT DISTINCT p FROM Product p " +
+    // Điều kiện lọc dùng chung cho phân trang offset và keyset
+    String PRODUCT_FILTERS = "FROM Product p " +
            "LEFT JOIN p.productVariants pv " +
             "WHERE (:keyword IS NULL OR (" +
             "   LOWER(p.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
@@ -28,7 +32,9 @@ public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpec
            "AND (:categoryId IS NULL OR p.category.id = :categoryId) " +
            "AND (:status IS NULL OR p.status = :status) " +
            "AND (:minPrice IS NULL OR EXISTS (SELECT 1 FROM ProductVariant v WHERE v.product = p AND v.price >= :minPrice)) " +
-           "AND (:maxPrice IS NULL OR EXISTS (SELECT 1 FROM ProductVariant v WHERE v.product = p AND v.price <= :maxPrice))")
+           "AND (:maxPrice IS NULL OR EXISTS (SELECT 1 FROM ProductVariant v WHERE v.product = p AND v.price <= :maxPrice)) ";
+
+    @Query("SELECT DISTINCT p " + PRODUCT_FILTERS)
     Page<Product> findProductsWithFilters(
             @Param("keyword") String keyword,
             @Param("brandId") Long brandId,
@@ -39,6 +45,58 @@ public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpec
             Pageable pageable
     );
 
+    // Keyset: trang sau bắt đầu ngay sau id cuối của trang trước, không dùng OFFSET
+    @Query("SELECT DISTINCT p " + PRODUCT_FILTERS + "AND (:lastId IS NULL OR p.id < :lastId) ORDER BY p.id DESC")
+    List<Product> findProductsWithFiltersAfter(
+            @Param("keyword") String keyword,
+            @Param("brandId") Long brandId,
+            @Param("categoryId") Long categoryId,
+            @Param("status") Boolean status,
+            @Param("minPrice") Double minPrice,
+            @Param("maxPrice") Double maxPrice,
+            @Param("lastId") Long lastId,
+            Pageable pageable
+    );
+
     @Query("SELECT COUNT(p) FROM Product p WHERE p.createdAt BETWEEN :startDate AND :endDate")
     Long countNewProductsByDateRange(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
-}
\ No newline at end of file
+
+    // Keyset pagination theo id, dùng cho reindex
+    @Query("SELECT p.id FROM Product p WHERE p.id > :lastId ORDER BY p.id ASC")
+    List<Long> findIdsAfter(@Param("lastId") Long lastId, Pageable pageable);
+
+    @Query("SELECT COUNT(p) FROM Product p WHERE p.id > :lastId")
+    long countByIdGreaterThan(@Param("lastId") Long lastId);
+
+    // Mỗi collection được fetch bằng một query riêng để tránh MultipleBagFetchException,
+    // Hibernate gộp kết quả vào cùng một persistence context
+    @Query("SELECT DISTINCT p FROM Product p " +
+           "LEFT JOIN FETCH p.brand " +
+           "LEFT JOIN FETCH p.category " +
+           "LEFT JOIN FETCH p.productVariants " +
+           "WHERE p.id IN :ids")
+    List<Product> findAllWithVariantsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT DISTINCT p FROM Product p " +
+           "LEFT JOIN FETCH p.attributes a " +
+           "LEFT JOIN FETCH a.attribute " +
+           "WHERE p.id IN :ids")
+    List<Product> fetchAttributesByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT DISTINCT p FROM Product p " +
+           "LEFT JOIN FETCH p.productFilterValues pfv " +
+           "LEFT JOIN FETCH pfv.filterValue fv " +
+           "LEFT JOIN FETCH fv.filterCriteria " +
+           "WHERE p.id IN :ids")
+    List<Product> fetchFilterValuesByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT DISTINCT p FROM Product p " +
+           "LEFT JOIN FETCH p.productImages " +
+           "WHERE p.id IN :ids")
+    List<Product> fetchImagesByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Keyset pagination theo id cho sheet sản phẩm của báo cáo dashboard
+    @Query("SELECT p.id AS id, p.name AS name, p.spu AS spu, p.stock AS stock, p.status AS status " +
+            "FROM Product p WHERE p.id > :lastId ORDER BY p.id ASC")
+    List<ProductExportProjection> findExportPage(@Param("lastId") Long lastId, Pageable pageable);
+}
@@ -1,10 +1,46 @@
 package iuh.fit.ecommerce.repositories;
 
+import iuh.fit.ecommerce.dtos.projection.VariantStockProjection;
 import iuh.fit.ecommerce.entities.ProductVariant;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface ProductVariantRepository extends JpaRepository<ProductVariant, Long> {
     List<ProductVariant> findByIdIn(List<Long> ids);
+
+    @Query("SELECT DISTINCT pv FROM ProductVariant pv " +
+           "LEFT JOIN FETCH pv.productVariantValues pvv " +
+           "LEFT JOIN FETCH pvv.variantValue vv " +
+           "LEFT JOIN FETCH vv.variant " +
+           "WHERE pv.product.id IN :productIds")
+    List<ProductVariant> fetchVariantValuesByProductIdIn(@Param("productIds") Collection<Long> productIds);
+
+    @Query("SELECT pv FROM ProductVariant pv " +
+           "JOIN FETCH pv.product p " +
+           "LEFT JOIN FETCH p.category " +
+           "LEFT JOIN FETCH p.brand " +
+           "WHERE pv.id IN :ids")
+    List<ProductVariant> findAllWithProductByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Trừ kho có điều kiện: trả về 0 nếu không đủ hàng, không bao giờ làm tồn kho âm
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE ProductVariant pv SET pv.stock = pv.stock - :quantity " +
+           "WHERE pv.id = :id AND pv.stock >= :quantity")
+    int decrementStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE ProductVariant pv SET pv.stock = COALESCE(pv.stock, 0) + :quantity WHERE pv.id = :id")
+    int incrementStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    @Query("SELECT pv.id AS id, pv.sku AS sku, p.name AS productName, pv.stock AS stock " +
+           "FROM ProductVariant pv JOIN pv.product p WHERE pv.id IN :ids")
+    List<VariantStockProjection> findStockByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT DISTINCT pv.product.id FROM ProductVariant pv WHERE pv.id IN :ids")
+    List<Long> findProductIdsByIdIn(@Param("ids") Collection<Long> ids);
 }
@@ -48,52 +48,15 @@ public interface PromotionRepository extends JpaRepository<Promotion, Long>, Jpa
             """)
     java.util.Optional<Promotion> findByIdWithTargets(@Param("id") Long id);
 
+    // Nạp promotion còn hiệu lực (kể cả chưa tới ngày bắt đầu) cùng targets cho chỉ mục trong bộ nhớ
     @Query("""
-    SELECT DISTINCT p
-    FROM Promotion p
-    LEFT JOIN p.promotionTargets pt
-    WHERE p.active = true
-      AND (p.startDate IS NULL OR p.startDate <= CURRENT_DATE)
-      AND (p.endDate IS NULL OR p.endDate >= CURRENT_DATE)
-      AND (
-        pt.productVariant.id IN :variantIds OR
-        pt.product.id IN :productIds OR
-        pt.category.id IN :categoryIds OR
-        pt.brand.id IN :brandIds OR
-        p.promotionType = iuh.fit.ecommerce.enums.PromotionType.ALL
-      )
-    ORDER BY p.priority ASC, p.discount DESC
-""")
-    List<Promotion> findAllValidPromotions(
-            @Param("variantIds") List<Long> variantIds,
-            @Param("productIds") List<Long> productIds,
-            @Param("categoryIds") List<Long> categoryIds,
-            @Param("brandIds") List<Long> brandIds
-    );
-
-
-    @Query("""
-    SELECT p
-    FROM Promotion p
-    LEFT JOIN p.promotionTargets pt
-    WHERE p.active = true
-      AND (p.startDate IS NULL OR p.startDate <= CURRENT_DATE)
-      AND (p.endDate IS NULL OR p.endDate >= CURRENT_DATE)
-      AND (
-        pt.productVariant.id = :variantId OR
-        pt.product.id = :productId OR
-        pt.category.id = :categoryId OR
-        pt.brand.id = :brandId OR
-        p.promotionType = iuh.fit.ecommerce.enums.PromotionType.ALL
-      )
-    ORDER BY p.priority ASC, p.discount DESC
-""")
-    List<Promotion> findBestPromotionForVariant(
-            @Param("variantId") Long variantId,
-            @Param("productId") Long productId,
-            @Param("categoryId") Long categoryId,
-            @Param("brandId") Long brandId,
-            Pageable pageable
-    );
+            SELECT DISTINCT p FROM Promotion p
+            LEFT JOIN FETCH p.promotionTargets pt
+            LEFT JOIN FETCH pt.category
+            LEFT JOIN FETCH pt.brand
+            WHERE p.active = true
+              AND (p.endDate IS NULL OR p.endDate >= CURRENT_DATE)
+            """)
+    List<Promotion> findAllActiveWithTargets();
 
 }
@@ -1,8 +1,10 @@
 package iuh.fit.ecommerce.repositories;
 
+import iuh.fit.ecommerce.dtos.projection.PromotionUsageExportProjection;
 import iuh.fit.ecommerce.dtos.projection.TopPromotionProjection;
 import iuh.fit.ecommerce.entities.OrderDetail;
 import iuh.fit.ecommerce.entities.PromotionUsage;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -45,7 +47,8 @@ public interface PromotionUsageRepository extends JpaRepository<PromotionUsage,
             JOIN promotions p ON pu.promotion_id = p.id
             JOIN order_detail od ON pu.order_detail_id = od.id
             JOIN orders o ON od.order_id = o.id
-            WHERE YEAR(o.order_date) = :year AND MONTH(o.order_date) = :month
+            WHERE o.order_date >= MAKEDATE(:year, 1) + INTERVAL (:month - 1) MONTH
+              AND o.order_date < MAKEDATE(:year, 1) + INTERVAL :month MONTH
             GROUP BY p.id, p.name, p.promotion_type
             ORDER BY usageCount DESC
             LIMIT 5
@@ -64,7 +67,7 @@ public interface PromotionUsageRepository extends JpaRepository<PromotionUsage,
             JOIN promotions p ON pu.promotion_id = p.id
             JOIN order_detail od ON pu.order_detail_id = od.id
             JOIN orders o ON od.order_id = o.id
-            WHERE YEAR(o.order_date) = :year
+            WHERE o.order_date >= MAKEDATE(:year, 1) AND o.order_date < MAKEDATE(:year + 1, 1)
             GROUP BY p.id, p.name, p.promotion_type
             ORDER BY usageCount DESC
             LIMIT 5
@@ -93,17 +96,6 @@ public interface PromotionUsageRepository extends JpaRepository<PromotionUsage,
     Double sumPromotionDiscountByDateRange(@Param("startDate") LocalDateTime startDate,
                                             @Param("endDate") LocalDateTime endDate);
 
-    // Lấy tất cả promotion usage với thông tin chi tiết (cho Excel export)
-    @Query("SELECT pu FROM PromotionUsage pu " +
-           "JOIN FETCH pu.promotion p " +
-           "JOIN FETCH pu.orderDetail od " +
-           "JOIN FETCH od.order o " +
-           "JOIN FETCH o.customer c " +
-           "WHERE o.orderDate BETWEEN :startDate AND :endDate " +
-           "ORDER BY o.orderDate DESC")
-    List<PromotionUsage> findAllWithDetailsByDateRange(@Param("startDate") LocalDateTime startDate,
-                                                         @Param("endDate") LocalDateTime endDate);
-
     // ALL promotions by day range (không giới hạn top 5)
     @Query(value = """
             SELECT p.id as promotionId,
@@ -133,7 +125,8 @@ public interface PromotionUsageRepository extends JpaRepository<PromotionUsage,
             JOIN promotions p ON pu.promotion_id = p.id
             JOIN order_detail od ON pu.order_detail_id = od.id
             JOIN orders o ON od.order_id = o.id
-            WHERE YEAR(o.order_date) = :year AND MONTH(o.order_date) = :month
+            WHERE o.order_date >= MAKEDATE(:year, 1) + INTERVAL (:month - 1) MONTH
+              AND o.order_date < MAKEDATE(:year, 1) + INTERVAL :month MONTH
             GROUP BY p.id, p.name, p.promotion_type
             ORDER BY usageCount DESC, totalDiscountAmount DESC
             """, nativeQuery = true)
@@ -151,7 +144,7 @@ public interface PromotionUsageRepository extends JpaRepository<PromotionUsage,
             JOIN promotions p ON pu.promotion_id = p.id
             JOIN order_detail od ON pu.order_detail_id = od.id
             JOIN orders o ON od.order_id = o.id
-            WHERE YEAR(o.order_date) = :year
+            WHERE o.order_date >= MAKEDATE(:year, 1) AND o.order_date < MAKEDATE(:year + 1, 1)
             GROUP BY p.id, p.name, p.promotion_type
             ORDER BY usageCount DESC, totalDiscountAmount DESC
             """, nativeQuery = true)
@@ -179,4 +172,18 @@ public interface PromotionUsageRepository extends JpaRepository<PromotionUsage,
     @Modifying
     @Query("DELETE FROM PromotionUsage pu WHERE pu.orderDetail.order.id = :orderId")
     void deleteByOrderId(@Param("orderId") Long orderId);
+
+    // Keyset pagination theo id cho sheet promotion khi export Excel dạng stream
+    @Query("SELECT pu.id AS id, p.id AS promotionId, p.name AS promotionName, p.promotionType AS promotionType, " +
+           "o.id AS orderId, od.id AS orderDetailId, o.orderDate AS orderDate, " +
+           "c.fullName AS customerName, c.phone AS customerPhone, pu.discountAmount AS discountAmount, " +
+           "od.price AS price, od.quantity AS quantity, od.finalPrice AS finalPrice, " +
+           "o.paymentMethod AS paymentMethod, o.status AS status " +
+           "FROM PromotionUsage pu JOIN pu.promotion p JOIN pu.orderDetail od JOIN od.order o JOIN o.customer c " +
+           "WHERE o.orderDate BETWEEN :startDate AND :endDate AND pu.id > :lastId " +
+           "ORDER BY pu.id ASC")
+    List<PromotionUsageExportProjection> findExportPage(@Param("startDate") LocalDateTime startDate,
+                                                        @Param("endDate") LocalDateTime endDate,
+                                                        @Param("lastId") Long lastId,
+                                                        Pageable pageable);
 }
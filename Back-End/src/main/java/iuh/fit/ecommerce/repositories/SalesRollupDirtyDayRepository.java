@@ -0,0 +1,34 @@
+package iuh.fit.ecommerce.repositories;
+
+import iuh.fit.ecommerce.entities.SalesRollupDirtyDay;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface SalesRollupDirtyDayRepository extends JpaRepository<SalesRollupDirtyDay, LocalDate> {
+
+    // Ngày đang được node khác tính lại thì câu lệnh chờ tới khi node đó xong, ngày được đánh dấu lại để tính thêm lần nữa.
+    // Ngày đã có dấu giữ nguyên marked_at để ngày bị đánh dấu liên tục (hôm nay) không đẩy lùi mãi
+    @Modifying
+    @Query(value = """
+        INSERT INTO sales_rollup_dirty_days (stat_date, evict_open, marked_at)
+        VALUES (:statDate, :evictOpen, NOW())
+        ON DUPLICATE KEY UPDATE evict_open = evict_open OR VALUES(evict_open)
+        """, nativeQuery = true)
+    void mark(@Param("statDate") LocalDate statDate, @Param("evictOpen") boolean evictOpen);
+
+    // lock.timeout = -2 tương ứng SKIP LOCKED: các node không tính lại cùng một ngày
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT d FROM SalesRollupDirtyDay d ORDER BY d.markedAt ASC")
+    List<SalesRollupDirtyDay> findOldestForUpdate(Pageable pageable);
+}
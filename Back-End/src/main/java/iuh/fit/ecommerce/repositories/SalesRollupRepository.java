@@ -0,0 +1,299 @@
+package iuh.fit.ecommerce.repositories;
+
+import iuh.fit.ecommerce.dtos.projection.DailyDiscountProjection;
+import iuh.fit.ecommerce.dtos.projection.RevenueByDayProjection;
+import iuh.fit.ecommerce.dtos.projection.RevenueByMonthProjection;
+import iuh.fit.ecommerce.dtos.projection.RevenueByYearProjection;
+import iuh.fit.ecommerce.dtos.projection.SalesTotalsProjection;
+import iuh.fit.ecommerce.dtos.projection.TopProductProjection;
+import iuh.fit.ecommerce.dtos.projection.TopPromotionProjection;
+import iuh.fit.ecommerce.dtos.projection.TopVoucherProjection;
+import iuh.fit.ecommerce.dtos.projection.UsageTotalsProjection;
+import iuh.fit.ecommerce.entities.SalesDaily;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Các bảng tổng hợp theo ngày của dashboard.
+ * Ghi: xoá rồi tính lại các ngày trong [from, to) từ bảng nóng và bảng *_archive, nên chạy lại bao nhiêu lần cũng ra cùng kết quả.
+ * Đọc: tháng/năm chỉ cộng vài chục dòng theo ngày thay vì quét orders/order_detail.
+ */
+public interface SalesRollupRepository extends JpaRepository<SalesDaily, LocalDate> {
+
+    // ===== Tính lại =====
+
+    @Modifying
+    @Query(value = "DELETE FROM sales_daily WHERE stat_date >= :from AND stat_date < :to", nativeQuery = true)
+    void deleteSalesDaily(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Modifying
+    @Query(value = """
+        INSERT INTO sales_daily (stat_date, revenue, completed_orders, total_orders, new_customers, new_products, refreshed_at)
+        SELECT d.stat_date, SUM(d.revenue), SUM(d.completed_orders), SUM(d.total_orders),
+               SUM(d.new_customers), SUM(d.new_products), NOW()
+        FROM (
+            SELECT DATE(o.order_date) AS stat_date,
+                   CASE WHEN o.status = 'COMPLETED' THEN o.final_total_price ELSE 0 END AS revenue,
+                   CASE WHEN o.status = 'COMPLETED' THEN 1 ELSE 0 END AS completed_orders,
+                   1 AS total_orders, 0 AS new_customers, 0 AS new_products
+            FROM (
+                SELECT order_date, status, final_total_price FROM orders
+                WHERE order_date >= :from AND order_date < :to
+                UNION ALL
+                SELECT order_date, status, final_total_price FROM orders_archive
+                WHERE order_date >= :from AND order_date < :to
+            ) o
+            UNION ALL
+            SELECT DATE(u.created_at), 0, 0, 0, 1, 0
+            FROM customers c JOIN users u ON u.id = c.id
+            WHERE u.created_at >= :from AND u.created_at < :to
+            UNION ALL
+            SELECT DATE(p.created_at), 0, 0, 0, 0, 1
+            FROM products p
+            WHERE p.created_at >= :from AND p.created_at < :to
+        ) d
+        GROUP BY d.stat_date
+    """, nativeQuery = true)
+    void insertSalesDaily(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Modifying
+    @Query(value = "DELETE FROM order_status_daily WHERE stat_date >= :from AND stat_date < :to", nativeQuery = true)
+    void deleteOrderStatusDaily(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Modifying
+    @Query(value = """
+        INSERT INTO order_status_daily (stat_date, status, order_count)
+        SELECT DATE(o.order_date), o.status, COUNT(*)
+        FROM (
+            SELECT order_date, status FROM orders
+            WHERE order_date >= :from AND order_date < :to
+            UNION ALL
+            SELECT order_date, status FROM orders_archive
+            WHERE order_date >= :from AND order_date < :to
+        ) o
+        GROUP BY DATE(o.order_date), o.status
+    """, nativeQuery = true)
+    void insertOrderStatusDaily(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Modifying
+    @Query(value = "DELETE FROM product_sales_daily WHERE stat_date >= :from AND stat_date < :to", nativeQuery = true)
+    void deleteProductSalesDaily(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Modifying
+    @Query(value = """
+        INSERT INTO product_sales_daily (stat_date, product_id, product_variant_id, quantity, revenue)
+        SELECT d.stat_date, pv.product_id, d.product_variant_id, SUM(d.quantity), SUM(d.final_price)
+        FROM (
+            SELECT DATE(o.order_date) AS stat_date, od.product_variant_id, od.quantity, od.final_price
+            FROM order_detail od JOIN orders o ON od.order_id = o.id
+            WHERE o.order_date >= :from AND o.order_date < :to AND o.status = 'COMPLETED'
+            UNION ALL
+            SELECT DATE(o.order_date), od.product_variant_id, od.quantity, od.final_price
+            FROM order_detail_archive od JOIN orders_archive o ON od.order_id = o.id
+            WHERE o.order_date >= :from AND o.order_date < :to AND o.status = 'COMPLETED'
+        ) d
+        JOIN product_variants pv ON pv.id = d.product_variant_id
+        GROUP BY d.stat_date, pv.product_id, d.product_variant_id
+    """, nativeQuery = true)
+    void insertProductSalesDaily(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Modifying
+    @Query(value = "DELETE FROM voucher_usage_daily WHERE stat_date >= :from AND stat_date < :to", nativeQuery = true)
+    void deleteVoucherUsageDaily(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Modifying
+    @Query(value = """
+        INSERT INTO voucher_usage_daily (stat_date, voucher_id, usage_count, discount_amount)
+        SELECT d.stat_date, d.voucher_id, COUNT(*), COALESCE(SUM(d.discount_amount), 0)
+        FROM (
+            SELECT DATE(o.order_date) AS stat_date, vuh.voucher_id, vuh.discount_amount
+            FROM voucher_usage_histories vuh JOIN orders o ON vuh.order_id = o.id
+            WHERE o.order_date >= :from AND o.order_date < :to
+            UNION ALL
+            SELECT DATE(o.order_date), vuh.voucher_id, vuh.discount_amount
+            FROM voucher_usage_histories_archive vuh JOIN orders_archive o ON vuh.order_id = o.id
+            WHERE o.order_date >= :from AND o.order_date < :to
+        ) d
+        GROUP BY d.stat_date, d.voucher_id
+    """, nativeQuery = true)
+    void insertVoucherUsageDaily(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Modifying
+    @Query(value = "DELETE FROM promotion_usage_daily WHERE stat_date >= :from AND stat_date < :to", nativeQuery = true)
+    void deletePromotionUsageDaily(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Modifying
+    @Query(value = """
+        INSERT INTO promotion_usage_daily (stat_date, promotion_id, usage_count, discount_amount)
+        SELECT d.stat_date, d.promotion_id, COUNT(*), COALESCE(SUM(d.discount_amount), 0)
+        FROM (
+            SELECT DATE(o.order_date) AS stat_date, pu.promotion_id, pu.discount_amount
+            FROM promotion_usages pu
+            JOIN order_detail od ON pu.order_detail_id = od.id
+            JOIN orders o ON od.order_id = o.id
+            WHERE o.order_date >= :from AND o.order_date < :to
+            UNION ALL
+            SELECT DATE(o.order_date), pu.promotion_id, pu.discount_amount
+            FROM promotion_usages_archive pu JOIN orders_archive o ON pu.order_id = o.id
+            WHERE o.order_date >= :from AND o.order_date < :to
+        ) d
+        WHERE d.promotion_id IS NOT NULL
+        GROUP BY d.stat_date, d.promotion_id
+    """, nativeQuery = true)
+    void insertPromotionUsageDaily(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Query("SELECT o.orderDate FROM Order o WHERE o.id IN :orderIds")
+    List<LocalDateTime> findOrderDates(@Param("orderIds") List<Long> orderIds);
+
+    // Ngày đặt của các đơn sửa từ :since, kể cả đơn đặt từ lâu (trả hàng, huỷ muộn)
+    @Query("SELECT o.orderDate FROM Order o WHERE o.modifiedAt >= :since")
+    List<LocalDateTime> findOrderDatesModifiedSince(@Param("since") LocalDateTime since);
+
+    @Query("SELECT MIN(o.orderDate) FROM Order o")
+    LocalDateTime findEarliestOrderDate();
+
+    @Query("SELECT MIN(o.orderDate) FROM OrderArchive o")
+    LocalDateTime findEarliestArchivedOrderDate();
+
+    // ===== Đọc (khoảng ngày tính cả hai đầu) =====
+
+    @Query(value = """
+        SELECT COALESCE(SUM(s.revenue), 0) AS revenue,
+               COALESCE(SUM(s.completed_orders), 0) AS completedOrders,
+               COALESCE(SUM(s.total_orders), 0) AS totalOrders,
+               COALESCE(SUM(s.new_customers), 0) AS newCustomers,
+               COALESCE(SUM(s.new_products), 0) AS newProducts
+        FROM sales_daily s
+        WHERE s.stat_date BETWEEN :startDate AND :endDate
+    """, nativeQuery = true)
+    SalesTotalsProjection sumSales(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+
+    // orderCount là tổng đơn mọi trạng thái, giống countByDateRange trước đây
+    @Query(value = """
+        SELECT YEAR(s.stat_date) AS year,
+               MONTH(s.stat_date) AS month,
+               COALESCE(SUM(s.revenue), 0) AS revenue,
+               COALESCE(SUM(s.total_orders), 0) AS orderCount
+        FROM sales_daily s
+        WHERE s.stat_date BETWEEN :startDate AND :endDate
+        GROUP BY YEAR(s.stat_date), MONTH(s.stat_date)
+        ORDER BY year ASC, month ASC
+    """, nativeQuery = true)
+    List<RevenueByMonthProjection> getRevenueByMonth(@Param("startDate") LocalDate startDate,
+                                                     @Param("endDate") LocalDate endDate);
+
+    @Query(value = """
+        SELECT s.stat_date AS orderDate,
+               s.revenue AS revenue,
+               s.completed_orders AS orderCount
+        FROM sales_daily s
+        WHERE s.stat_date BETWEEN :startDate AND :endDate
+            AND s.completed_orders > 0
+        ORDER BY s.stat_date ASC
+    """, nativeQuery = true)
+    List<RevenueByDayProjection> getRevenueByDay(@Param("startDate") LocalDate startDate,
+                                                 @Param("endDate") LocalDate endDate);
+
+    @Query(value = """
+        SELECT YEAR(s.stat_date) AS year,
+               COALESCE(SUM(s.revenue), 0) AS revenue,
+               COALESCE(SUM(s.completed_orders), 0) AS orderCount
+        FROM sales_daily s
+        WHERE s.completed_orders > 0
+            AND (:year IS NULL OR (s.stat_date >= MAKEDATE(:year, 1) AND s.stat_date < MAKEDATE(:year + 1, 1)))
+        GROUP BY YEAR(s.stat_date)
+        ORDER BY year ASC
+    """, nativeQuery = true)
+    List<RevenueByYearProjection> getRevenueByYear(@Param("year") Integer year);
+
+    // Pageable để giới hạn top N, Pageable.unpaged() để lấy tất cả
+    @Query(value = """
+        SELECT p.id AS productId,
+               p.name AS productName,
+               p.thumbnail AS productImage,
+               SUM(s.quantity) AS totalQuantitySold,
+               SUM(s.revenue) AS totalRevenue
+        FROM product_sales_daily s
+        JOIN products p ON s.product_id = p.id
+        WHERE s.stat_date BETWEEN :startDate AND :endDate
+        GROUP BY p.id, p.name, p.thumbnail
+        ORDER BY totalQuantitySold DESC
+    """, nativeQuery = true)
+    List<TopProductProjection> getTopProducts(@Param("startDate") LocalDate startDate,
+                                              @Param("endDate") LocalDate endDate,
+                                              Pageable pageable);
+
+    @Query(value = """
+        SELECT v.id AS voucherId,
+               v.code AS voucherCode,
+               v.name AS voucherName,
+               SUM(s.usage_count) AS usageCount,
+               COALESCE(SUM(s.discount_amount), 0) AS totalDiscountAmount
+        FROM voucher_usage_daily s
+        JOIN vouchers v ON s.voucher_id = v.id
+        WHERE s.stat_date BETWEEN :startDate AND :endDate
+        GROUP BY v.id, v.code, v.name
+        ORDER BY usageCount DESC
+    """, nativeQuery = true)
+    List<TopVoucherProjection> getTopVouchers(@Param("startDate") LocalDate startDate,
+                                              @Param("endDate") LocalDate endDate,
+                                              Pageable pageable);
+
+    @Query(value = """
+        SELECT p.id AS promotionId,
+               p.name AS promotionName,
+               p.promotion_type AS promotionType,
+               SUM(s.usage_count) AS usageCount,
+               COALESCE(SUM(s.discount_amount), 0) AS totalDiscountAmount
+        FROM promotion_usage_daily s
+        JOIN promotions p ON s.promotion_id = p.id
+        WHERE s.stat_date BETWEEN :startDate AND :endDate
+        GROUP BY p.id, p.name, p.promotion_type
+        ORDER BY usageCount DESC
+    """, nativeQuery = true)
+    List<TopPromotionProjection> getTopPromotions(@Param("startDate") LocalDate startDate,
+                                                  @Param("endDate") LocalDate endDate,
+                                                  Pageable pageable);
+
+    @Query(value = """
+        SELECT COALESCE(SUM(s.usage_count), 0) AS usageCount,
+               COALESCE(SUM(s.discount_amount), 0) AS discountAmount
+        FROM voucher_usage_daily s
+        WHERE s.stat_date BETWEEN :startDate AND :endDate
+    """, nativeQuery = true)
+    UsageTotalsProjection sumVoucherUsage(@Param("startDate") LocalDate startDate,
+                                          @Param("endDate") LocalDate endDate);
+
+    @Query(value = """
+        SELECT COALESCE(SUM(s.usage_count), 0) AS usageCount,
+               COALESCE(SUM(s.discount_amount), 0) AS discountAmount
+        FROM promotion_usage_daily s
+        WHERE s.stat_date BETWEEN :startDate AND :endDate
+    """, nativeQuery = true)
+    UsageTotalsProjection sumPromotionUsage(@Param("startDate") LocalDate startDate,
+                                            @Param("endDate") LocalDate endDate);
+
+    // Giảm giá voucher và promotion theo từng ngày (sheet doanh thu của file Excel dashboard)
+    @Query(value = """
+        SELECT d.stat_date AS statDate,
+               COALESCE(SUM(d.voucher_discount), 0) AS voucherDiscount,
+               COALESCE(SUM(d.promotion_discount), 0) AS promotionDiscount
+        FROM (
+            SELECT stat_date, discount_amount AS voucher_discount, 0 AS promotion_discount
+            FROM voucher_usage_daily WHERE stat_date BETWEEN :startDate AND :endDate
+            UNION ALL
+            SELECT stat_date, 0, discount_amount
+            FROM promotion_usage_daily WHERE stat_date BETWEEN :startDate AND :endDate
+        ) d
+        GROUP BY d.stat_date
+    """, nativeQuery = true)
+    List<DailyDiscountProjection> getDiscountByDay(@Param("startDate") LocalDate startDate,
+                                                   @Param("endDate") LocalDate endDate);
+}
@@ -0,0 +1,44 @@
+package iuh.fit.ecommerce.repositories;
+
+import iuh.fit.ecommerce.entities.ScheduledJob;
+import iuh.fit.ecommerce.enums.ScheduledJobStatus;
+import iuh.fit.ecommerce.enums.ScheduledJobType;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface ScheduledJobRepository extends JpaRepository<ScheduledJob, Long> {
+
+    Optional<ScheduledJob> findByTypeAndJobKey(ScheduledJobType type, String jobKey);
+
+    // lock.timeout = -2 tương ứng SKIP LOCKED: các node không tranh nhau cùng một job
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT j FROM ScheduledJob j WHERE j.status = :status AND j.runAt <= :now ORDER BY j.runAt ASC, j.id ASC")
+    List<ScheduledJob> findDueForUpdate(@Param("status") ScheduledJobStatus status,
+                                        @Param("now") LocalDateTime now,
+                                        Pageable pageable);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT j FROM ScheduledJob j WHERE j.id = :id")
+    Optional<ScheduledJob> findByIdForUpdate(@Param("id") Long id);
+
+    @Query("SELECT MIN(j.runAt) FROM ScheduledJob j WHERE j.status = :status")
+    LocalDateTime findOldestRunAt(@Param("status") ScheduledJobStatus status);
+
+    long countByStatus(ScheduledJobStatus status);
+
+    @Modifying
+    @Query("DELETE FROM ScheduledJob j WHERE j.type = :type AND j.jobKey = :jobKey")
+    int deleteByTypeAndJobKey(@Param("type") ScheduledJobType type, @Param("jobKey") String jobKey);
+}
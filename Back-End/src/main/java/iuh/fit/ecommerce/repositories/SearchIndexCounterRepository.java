@@ -0,0 +1,23 @@
+package iuh.fit.ecommerce.repositories;
+
+import iuh.fit.ecommerce.entities.SearchIndexCounter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface SearchIndexCounterRepository extends JpaRepository<SearchIndexCounter, String> {
+
+    // Dòng chưa có thì tạo với giá trị khởi đầu; câu lệnh giữ khoá dòng tới khi transaction kết thúc
+    // nên findCurrentValue ngay sau đó trong cùng transaction đọc đúng giá trị vừa cấp
+    @Modifying
+    @Query(value = """
+        INSERT INTO search_index_counters (name, current_value)
+        VALUES (:name, :initialValue)
+        ON DUPLICATE KEY UPDATE current_value = current_value + 1
+        """, nativeQuery = true)
+    void increment(@Param("name") String name, @Param("initialValue") long initialValue);
+
+    @Query("SELECT c.currentValue FROM SearchIndexCounter c WHERE c.name = :name")
+    Long findCurrentValue(@Param("name") String name);
+}
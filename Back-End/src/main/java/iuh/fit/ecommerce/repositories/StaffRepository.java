@@ -1,5 +1,6 @@
 package iuh.fit.ecommerce.repositories;
 
+import iuh.fit.ecommerce.dtos.projection.StaffExportProjection;
 import iuh.fit.ecommerce.entities.Staff;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -55,4 +56,12 @@ public interface StaffRepository extends JpaRepository<Staff, Long> {
     List<Staff> findAllActiveStaffsOnly();
 
     Optional<Staff> findByEmail(String email);
+
+    // Keyset pagination theo id cho export Excel; vai trò lấy theo user_role đầu tiên của nhân viên
+    @Query("SELECT s.id AS id, s.email AS email, s.fullName AS fullName, s.phone AS phone, s.address AS address, " +
+            "s.dateOfBirth AS dateOfBirth, s.joinDate AS joinDate, s.leader AS leader, " +
+            "(SELECT r.name FROM UserRole ur JOIN ur.role r WHERE ur.id = " +
+            "   (SELECT MIN(ur2.id) FROM UserRole ur2 WHERE ur2.user = s)) AS roleName " +
+            "FROM Staff s WHERE s.id > :lastId ORDER BY s.id ASC")
+    List<StaffExportProjection> findExportPage(@Param("lastId") Long lastId, Pageable pageable);
 }
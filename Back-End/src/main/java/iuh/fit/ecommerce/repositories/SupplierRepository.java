@@ -1,5 +1,6 @@
 package iuh.fit.ecommerce.repositories;
 
+import iuh.fit.ecommerce.dtos.projection.SupplierExportProjection;
 import iuh.fit.ecommerce.entities.Supplier;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -9,6 +10,8 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -34,5 +37,14 @@ public interface SupplierRepository extends JpaRepository<Supplier, Long> {
 
     boolean existsByPhoneAndIdNot(String phone, Long id);
 
+    // Import Excel: kiểm tra trùng cho cả chunk trong một query thay vì existsBy từng dòng
+    @Query("SELECT s.phone FROM Supplier s WHERE s.phone IN :phones")
+    List<String> findExistingPhones(@Param("phones") Collection<String> phones);
+
     Optional<Supplier> findByPhone(String phone);
-}
\ No newline at end of file
+
+    // Keyset pagination theo id cho export Excel
+    @Query("SELECT s.id AS id, s.name AS name, s.phone AS phone, s.address AS address, s.status AS status " +
+            "FROM Supplier s WHERE s.id > :lastId ORDER BY s.id ASC")
+    List<SupplierExportProjection> findExportPage(@Param("lastId") Long lastId, Pageable pageable);
+}
@@ -2,11 +2,22 @@ package iuh.fit.ecommerce.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import iuh.fit.ecommerce.entities.User;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 
 public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> findByEmail(String email);
+
+    // Import Excel: kiểm tra trùng cho cả chunk trong một query thay vì existsBy từng dòng
+    @Query("SELECT u.email FROM User u WHERE u.email IN :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    @Query("SELECT u.phone FROM User u WHERE u.phone IN :phones")
+    List<String> findExistingPhones(@Param("phones") Collection<String> phones);
 }
\ No newline at end of file
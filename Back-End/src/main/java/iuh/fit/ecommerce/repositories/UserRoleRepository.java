@@ -4,11 +4,22 @@ import iuh.fit.ecommerce.entities.Role;
 import iuh.fit.ecommerce.entities.User;
 import iuh.fit.ecommerce.entities.UserRole;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+
 @Repository
 public interface UserRoleRepository extends JpaRepository<UserRole, Long> {
     boolean existsByRole(Role role);
     void deleteByUser(User user);
 
+    // Import Excel: gán role cho các user vừa được insert theo lô
+    @Modifying
+    @Query(value = "INSERT INTO user_roles (role_id, user_id) " +
+            "SELECT :roleId, u.id FROM users u WHERE u.email IN (:emails)",
+            nativeQuery = true)
+    int insertForImportedUsers(@Param("emails") Collection<String> emails, @Param("roleId") Long roleId);
 }
@@ -1,10 +1,12 @@
 package iuh.fit.ecommerce.repositories;
 
 import iuh.fit.ecommerce.dtos.projection.TopVoucherProjection;
+import iuh.fit.ecommerce.dtos.projection.VoucherUsageExportProjection;
 import iuh.fit.ecommerce.entities.Customer;
 import iuh.fit.ecommerce.entities.Order;
 import iuh.fit.ecommerce.entities.Voucher;
 import iuh.fit.ecommerce.entities.VoucherUsageHistory;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -54,7 +56,8 @@ public interface VoucherUsageHistoryRepository extends JpaRepository<VoucherUsag
             FROM voucher_usage_histories vuh
             JOIN vouchers v ON vuh.voucher_id = v.id
             JOIN orders o ON vuh.order_id = o.id
-            WHERE YEAR(o.order_date) = :year AND MONTH(o.order_date) = :month
+            WHERE o.order_date >= MAKEDATE(:year, 1) + INTERVAL (:month - 1) MONTH
+              AND o.order_date < MAKEDATE(:year, 1) + INTERVAL :month MONTH
             GROUP BY v.id, v.code, v.name
             ORDER BY usageCount DESC
             LIMIT 5
@@ -72,7 +75,7 @@ public interface VoucherUsageHistoryRepository extends JpaRepository<VoucherUsag
             FROM voucher_usage_histories vuh
             JOIN vouchers v ON vuh.voucher_id = v.id
             JOIN orders o ON vuh.order_id = o.id
-            WHERE YEAR(o.order_date) = :year
+            WHERE o.order_date >= MAKEDATE(:year, 1) AND o.order_date < MAKEDATE(:year + 1, 1)
             GROUP BY v.id, v.code, v.name
             ORDER BY usageCount DESC
             LIMIT 5
@@ -99,14 +102,6 @@ public interface VoucherUsageHistoryRepository extends JpaRepository<VoucherUsag
     Double sumVoucherDiscountByDateRange(@Param("startDate") LocalDateTime startDate,
                                           @Param("endDate") LocalDateTime endDate);
 
-    // Lấy tất cả voucher usage với thông tin chi tiết (cho Excel export)
-    @Query("SELECT vuh FROM VoucherUsageHistory vuh " +
-           "JOIN FETCH vuh.voucher v " +
-           "JOIN FETCH vuh.order o " +
-           "WHERE o.orderDate BETWEEN :startDate AND :endDate " +
-           "ORDER BY v.code")
-    List<VoucherUsageHistory> findAllWithDetailsByDateRange(@Param("startDate") LocalDateTime startDate,
-                                                              @Param("endDate") LocalDateTime endDate);
     
     // Lấy usage history theo voucher ID và khoảng thời gian
     @Query("SELECT vuh FROM VoucherUsageHistory vuh " +
@@ -152,7 +147,8 @@ public interface VoucherUsageHistoryRepository extends JpaRepository<VoucherUsag
             FROM voucher_usage_histories vuh
             JOIN vouchers v ON vuh.voucher_id = v.id
             JOIN orders o ON vuh.order_id = o.id
-            WHERE YEAR(o.order_date) = :year AND MONTH(o.order_date) = :month
+            WHERE o.order_date >= MAKEDATE(:year, 1) + INTERVAL (:month - 1) MONTH
+              AND o.order_date < MAKEDATE(:year, 1) + INTERVAL :month MONTH
             GROUP BY v.id, v.code, v.name
             ORDER BY usageCount DESC
             """, nativeQuery = true)
@@ -169,9 +165,22 @@ public interface VoucherUsageHistoryRepository extends JpaRepository<VoucherUsag
             FROM voucher_usage_histories vuh
             JOIN vouchers v ON vuh.voucher_id = v.id
             JOIN orders o ON vuh.order_id = o.id
-            WHERE YEAR(o.order_date) = :year
+            WHERE o.order_date >= MAKEDATE(:year, 1) AND o.order_date < MAKEDATE(:year + 1, 1)
             GROUP BY v.id, v.code, v.name
             ORDER BY usageCount DESC
             """, nativeQuery = true)
     List<TopVoucherProjection> getAllVouchersByYear(@Param("year") Integer year);
+
+    // Keyset pagination theo id cho sheet voucher khi export Excel dạng stream
+    @Query("SELECT vuh.id AS id, v.id AS voucherId, o.id AS orderId, o.orderDate AS orderDate, " +
+           "c.fullName AS customerName, c.phone AS customerPhone, v.code AS voucherCode, v.name AS voucherName, " +
+           "v.voucherType AS voucherType, vuh.discountAmount AS discountAmount, " +
+           "o.totalPrice AS orderTotal, o.finalTotalPrice AS finalTotal " +
+           "FROM VoucherUsageHistory vuh JOIN vuh.voucher v JOIN vuh.order o JOIN o.customer c " +
+           "WHERE o.orderDate BETWEEN :startDate AND :endDate AND vuh.id > :lastId " +
+           "ORDER BY vuh.id ASC")
+    List<VoucherUsageExportProjection> findExportPage(@Param("startDate") LocalDateTime startDate,
+                                                      @Param("endDate") LocalDateTime endDate,
+                                                      @Param("lastId") Long lastId,
+                                                      Pageable pageable);
 }
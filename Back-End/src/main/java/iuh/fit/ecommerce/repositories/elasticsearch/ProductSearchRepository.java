@@ -1,15 +0,0 @@
-package iuh.fit.ecommerce.repositories.elasticsearch;
-
-import iuh.fit.ecommerce.entities.elasticsearch.ProductDocument;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.elasticsearch.repository.ElasticsearchRepository;
-import org.springframework.stereotype.Repository;
-
-import java.util.List;
-
-@Repository
-public interface ProductSearchRepository extends ElasticsearchRepository<ProductDocument, String> {
-
-}
-
@@ -0,0 +1,15 @@
+package iuh.fit.ecommerce.services;
+
+import iuh.fit.ecommerce.entities.elasticsearch.ProductDocument;
+
+import java.util.List;
+
+public interface AutocompleteService {
+    List<String> suggest(String query, int limit);
+
+    void onProductsIndexed(List<ProductDocument> documents);
+
+    void onProductDeleted(String productId);
+
+    void rebuild();
+}
@@ -0,0 +1,15 @@
+package iuh.fit.ecommerce.services;
+
+import iuh.fit.ecommerce.dtos.response.export.ExportJobResponse;
+import iuh.fit.ecommerce.enums.ExportType;
+
+import java.time.LocalDate;
+
+public interface ExportJobService {
+    // Export toàn bộ customers/staff/suppliers ở thread nền, file ghi lên MinIO
+    ExportJobResponse submit(ExportType type);
+
+    ExportJobResponse submitDashboard(LocalDate startDate, LocalDate endDate, String fileName);
+
+    ExportJobResponse getJob(String jobId);
+}
@@ -0,0 +1,32 @@
+package iuh.fit.ecommerce.services;
+
+import iuh.fit.ecommerce.dtos.request.flashSale.FlashSaleRequest;
+import iuh.fit.ecommerce.dtos.request.order.FlashSaleQueuedOrder;
+import iuh.fit.ecommerce.dtos.request.order.OrderCreationRequest;
+import iuh.fit.ecommerce.dtos.response.flashSale.FlashSaleResponse;
+import iuh.fit.ecommerce.dtos.response.flashSale.FlashSaleTicketResponse;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public interface FlashSaleService {
+    FlashSaleResponse startFlashSale(FlashSaleRequest request);
+
+    FlashSaleResponse stopFlashSale(Long id);
+
+    List<FlashSaleResponse> getActiveFlashSales();
+
+    Set<Long> findFlashSaleVariantIds(Collection<Long> variantIds);
+
+    FlashSaleTicketResponse admit(Long customerId, OrderCreationRequest request, Map<Long, Long> quantities);
+
+    FlashSaleTicketResponse getMyTicket(String ticketId);
+
+    List<FlashSaleQueuedOrder> takeQueuedOrders(int max);
+
+    void markCreated(FlashSaleQueuedOrder order, Long orderId);
+
+    void markFailed(FlashSaleQueuedOrder order, String message);
+}
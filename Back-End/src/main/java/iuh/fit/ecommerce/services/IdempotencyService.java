@@ -0,0 +1,18 @@
+package iuh.fit.ecommerce.services;
+
+import java.util.Optional;
+
+public interface IdempotencyService {
+    String HEADER = "Idempotency-Key";
+
+    /**
+     * Giữ key cho request đầu tiên (trả về empty), request lặp lại nhận lại response đã lưu.
+     */
+    Optional<Object> begin(String key, String fingerprint);
+
+    void complete(String key, String fingerprint, Object response);
+
+    void abort(String key);
+
+    String fingerprint(Object request);
+}
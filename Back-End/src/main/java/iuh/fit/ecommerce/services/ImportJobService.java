@@ -0,0 +1,18 @@
+package iuh.fit.ecommerce.services;
+
+import iuh.fit.ecommerce.dtos.excel.ImportResult;
+import iuh.fit.ecommerce.dtos.response.imports.ImportJobResponse;
+import iuh.fit.ecommerce.enums.ImportType;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.List;
+
+public interface ImportJobService {
+    // Import file Excel lớn ở thread nền, tiến độ và lỗi từng dòng cập nhật sau mỗi chunk
+    ImportJobResponse submit(ImportType type, MultipartFile file);
+
+    ImportJobResponse getJob(String jobId);
+
+    // Lỗi từng dòng theo thứ tự ghi nhận, đọc dần bằng offset trong khi job còn chạy
+    List<ImportResult.ImportError> getErrors(String jobId, int offset, int limit);
+}
@@ -0,0 +1,26 @@
+package iuh.fit.ecommerce.services;
+
+import iuh.fit.ecommerce.entities.OrderDetail;
+import iuh.fit.ecommerce.exceptions.custom.InsufficientStockException;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface InventoryService {
+    void decreaseStock(Map<Long, Long> quantitiesByVariantId);
+
+    void increaseStock(Map<Long, Long> quantitiesByVariantId);
+
+    void decreaseStock(Collection<OrderDetail> orderDetails);
+
+    void restoreStock(Collection<OrderDetail> orderDetails);
+
+    /**
+     * Như decreaseStock nhưng thiếu hàng thì hoàn lại các dòng đã trừ và trả về danh sách thiếu thay vì ném lỗi,
+     * nên transaction của người gọi không bị đánh dấu rollback và vẫn xử lý tiếp được (vd: đơn đã thanh toán).
+     *
+     * @return rỗng nếu đã trừ đủ mọi dòng
+     */
+    List<InsufficientStockException.Shortage> tryDecreaseStock(Collection<OrderDetail> orderDetails);
+}
@@ -0,0 +1,6 @@
+package iuh.fit.ecommerce.services;
+
+public interface OrderArchiveService {
+    // Chuyển một lượt các đơn đã kết thúc quá hạn sang bảng lưu trữ, trả về số đơn đã chuyển
+    int archiveCompletedOrders();
+}
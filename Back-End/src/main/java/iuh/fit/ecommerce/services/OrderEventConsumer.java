@@ -0,0 +1,25 @@
+package iuh.fit.ecommerce.services;
+
+import iuh.fit.ecommerce.events.OrderEvent;
+
+import java.util.List;
+
+public interface OrderEventConsumer {
+    String getName();
+
+    boolean supports(OrderEvent event);
+
+    /**
+     * Consumer giữ dữ liệu nghiệp vụ (ranking, order_view, số liệu tổng hợp) trả về true: sự kiện được ghi vào
+     * order_event_outbox cùng transaction với thay đổi đơn và handle chạy chung transaction với việc xoá dòng outbox,
+     * nên không mất khi restart hay lỗi và không xử lý hai lần. Consumer thông báo (email, push, WebSocket) giữ hàng đợi trong bộ nhớ.
+     */
+    default boolean isDurable() {
+        return false;
+    }
+
+    /**
+     * Xử lý một batch sự kiện, ném exception thì dispatcher thử lại từng sự kiện riêng.
+     */
+    void handle(List<OrderEvent> events);
+}
@@ -1,9 +1,13 @@
 package iuh.fit.ecommerce.services;
 
+import iuh.fit.ecommerce.dtos.request.order.FlashSaleQueuedOrder;
 import iuh.fit.ecommerce.dtos.request.order.OrderCreationRequest;
+import iuh.fit.ecommerce.dtos.request.order.OrderQuoteRequest;
 import iuh.fit.ecommerce.dtos.request.order.StaffOrderCreationRequest;
 import iuh.fit.ecommerce.dtos.response.base.ResponseWithPagination;
+import iuh.fit.ecommerce.dtos.response.order.OrderQuoteResponse;
 import iuh.fit.ecommerce.dtos.response.order.OrderResponse;
+import iuh.fit.ecommerce.dtos.response.order.OrderSummaryResponse;
 import iuh.fit.ecommerce.dtos.response.product.ProductResponse;
 import iuh.fit.ecommerce.entities.Order;
 import iuh.fit.ecommerce.enums.OrderStatus;
@@ -18,7 +22,10 @@ import java.util.List;
 public interface OrderService {
     Object customerCreateOrder(OrderCreationRequest orderCreationRequest, HttpServletRequest request);
     Object staffCreateOrder(StaffOrderCreationRequest request, HttpServletRequest httpRequest);
+    OrderResponse createFlashSaleOrder(FlashSaleQueuedOrder queuedOrder);
+    OrderQuoteResponse quoteOrder(OrderQuoteRequest request);
     ResponseWithPagination<List<OrderResponse>> getMyOrders(int page, int size, List<String> status, String startDate, String endDate);
+    ResponseWithPagination<List<OrderSummaryResponse>> getMyOrdersByCursor(int size, List<String> status, String startDate, String endDate, String cursor);
 
     Order findById(Long id);
 
@@ -32,6 +39,16 @@ public interface OrderService {
             int size
     );
 
+    ResponseWithPagination<List<OrderSummaryResponse>> getAllOrdersForAdminByCursor(
+            String customerName,
+            LocalDate orderDate,
+            String customerPhone,
+            OrderStatus status,
+            Boolean isPickup,
+            int size,
+            String cursor
+    );
+
     OrderResponse getOrderDetailById(Long id);
 
     OrderResponse confirmOrder(Long orderId);
@@ -0,0 +1,29 @@
+package iuh.fit.ecommerce.services;
+
+import iuh.fit.ecommerce.dtos.response.base.ResponseWithPagination;
+import iuh.fit.ecommerce.dtos.response.order.OrderViewResponse;
+import iuh.fit.ecommerce.enums.OrderStatus;
+import iuh.fit.ecommerce.events.OrderEvent;
+
+import java.util.List;
+
+public interface OrderViewService {
+
+    /**
+     * Dựng lại order_view của các đơn trong batch sự kiện và ghi thêm trạng thái mới vào timeline.
+     */
+    void apply(List<OrderEvent> events);
+
+    ResponseWithPagination<List<OrderViewResponse>> getMyOrders(OrderStatus status, int size, String cursor);
+
+    ResponseWithPagination<List<OrderViewResponse>> getOrders(OrderStatus status, int size, String cursor);
+
+    ResponseWithPagination<List<OrderViewResponse>> getMyDeliveries(int size, String cursor);
+
+    OrderViewResponse getTracking(Long orderId);
+
+    /**
+     * Dựng order_view cho toàn bộ đơn hiện có (chạy nền), dùng khi mới bật read model hoặc cần sửa dữ liệu.
+     */
+    void startRebuild();
+}
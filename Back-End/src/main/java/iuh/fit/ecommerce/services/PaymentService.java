@@ -13,4 +13,5 @@ public interface PaymentService {
     String createPayOsPaymentUrl(Voucher voucher, Order order, List<Long> cartItemIds, String platform);
     void handlePayOsSuccess(HttpServletRequest request, HttpServletResponse response) throws Exception;
     void handlePayOsCancel(HttpServletRequest request, HttpServletResponse response) throws Exception;
+    void expirePendingPayment(Long orderId, Long voucherId);
 }
@@ -0,0 +1,23 @@
+package iuh.fit.ecommerce.services;
+
+import iuh.fit.ecommerce.dtos.pricing.PricingContext;
+import iuh.fit.ecommerce.dtos.response.product.ProductResponse;
+import iuh.fit.ecommerce.dtos.response.product.VariantPriceResponse;
+import iuh.fit.ecommerce.entities.Customer;
+import iuh.fit.ecommerce.entities.Product;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface PricingService {
+    Map<Long, VariantPriceResponse> priceProducts(Collection<Product> products);
+
+    Map<Long, VariantPriceResponse> priceVariants(Collection<Long> variantIds);
+
+    List<ProductResponse> toPricedResponses(Collection<Product> products);
+
+    ProductResponse toPricedResponse(Product product);
+
+    PricingContext priceCheckout(Customer customer, List<PricingContext.Item> items, Long voucherId);
+}
@@ -0,0 +1,42 @@
+package iuh.fit.ecommerce.services;
+
+import iuh.fit.ecommerce.entities.elasticsearch.ProductDocument;
+
+import java.util.List;
+
+public interface ProductIndexService {
+    void ensureIndex();
+
+    String getLiveIndex();
+
+    List<String> getWriteIndices();
+
+    void save(ProductDocument document);
+
+    void saveAll(List<ProductDocument> documents);
+
+    /**
+     * Xoá bằng tombstone: ghi đè document bằng bản status = false mang version, để bản đọc trước khi xoá
+     * (chunk reindex chậm, outbox retry) ghi tới muộn bị từ chối thay vì tạo lại sản phẩm đã xoá.
+     */
+    void delete(Long productId, long version);
+
+    /**
+     * Version ngoài cho document sắp index, lấy từ bộ đếm tăng dần trong DB. Phải gọi trước khi đọc sản phẩm.
+     */
+    long nextVersion();
+
+    String createNextIndex();
+
+    void beginDualWrite(String indexName);
+
+    void bulkIndex(String indexName, List<ProductDocument> documents);
+
+    void promote(String indexName);
+
+    /**
+     * Bỏ index rebuild không dùng nữa (lần reindex lỗi hoặc bị thay bằng lần mới): gỡ khỏi alias ghi rồi xoá.
+     * Không làm gì với index đang phục vụ đọc.
+     */
+    void discardIndex(String indexName);
+}
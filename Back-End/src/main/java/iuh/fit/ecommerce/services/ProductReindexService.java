@@ -0,0 +1,9 @@
+package iuh.fit.ecommerce.services;
+
+import iuh.fit.ecommerce.dtos.response.product.ReindexStatusResponse;
+
+public interface ProductReindexService {
+    ReindexStatusResponse startReindex(boolean resume);
+
+    ReindexStatusResponse getReindexStatus();
+}
@@ -1,27 +1,47 @@
 package iuh.fit.ecommerce.services;
 
 import iuh.fit.ecommerce.dtos.response.base.ResponseWithPagination;
+import iuh.fit.ecommerce.dtos.response.product.ProductFacetedSearchResponse;
 import iuh.fit.ecommerce.dtos.response.product.ProductResponse;
 import iuh.fit.ecommerce.entities.Product;
 import iuh.fit.ecommerce.entities.elasticsearch.ProductDocument;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface ProductSearchService {
     ResponseWithPagination<List<ProductResponse>> searchProducts(
             String query,
             int page,
             int size,
-            String sortBy
+            String sortBy,
+            String cursor
+    );
+
+
+    ResponseWithPagination<List<ProductResponse>> searchByFilters(
+            String categorySlug,
+            int page,
+            int size,
+            Map<String, String> filters
+    );
+
+    ProductFacetedSearchResponse searchWithFacets(
+            String categorySlug,
+            int page,
+            int size,
+            Map<String, String> filters
     );
-    
 
     List<String> getAutoCompleteSuggestions(String query, int limit);
     
     void indexProduct(Product product);
     
     void deleteProduct(Long productId);
-    
-    void reindexAllProducts();
+
+    ProductDocument convertToDocument(Product product);
+
+    List<Product> loadProductsForIndexing(Collection<Long> productIds);
 }
 
@@ -9,11 +9,10 @@ import iuh.fit.ecommerce.dtos.response.product.ProductVariantPromotionResponse;
 import iuh.fit.ecommerce.entities.Product;
 
 import java.util.List;
-import java.util.Map;
 
 public interface ProductService {
     void createProduct(ProductAddRequest productAddRequest);
-    ResponseWithPagination<List<ProductResponse>> getAllProducts(int page, int size, String keyword, Long brandId, Long categoryId, Boolean status, Double minPrice, Double maxPrice);
+    ResponseWithPagination<List<ProductResponse>> getAllProducts(int page, int size, String keyword, Long brandId, Long categoryId, Boolean status, Double minPrice, Double maxPrice, String cursor);
     ProductResponse getProductById(Long id);
     ProductResponse getProductBySlug(String slug);
     ProductResponse updateProduct(Long id, ProductUpdateRequest productUpdateRequest);
@@ -23,5 +22,4 @@ public interface ProductService {
 
     Product getProductEntityBySlug(String slug);
 
-    ResponseWithPagination<List<ProductResponse>> searchProductForUser(String categorySlug, int page, int size, Map<String, String> filters);
 }
@@ -0,0 +1,20 @@
+package iuh.fit.ecommerce.services;
+
+import iuh.fit.ecommerce.entities.Promotion;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface PromotionIndexService {
+    List<Promotion> getApplicablePromotions(Long variantId, Long productId, Long categoryId, Long brandId);
+
+    Promotion getBestPromotion(Long variantId, Long productId, Long categoryId, Long brandId);
+
+    Long getVersion();
+
+    String getPricingKey(Collection<Long> variantIds, Long productId, Long categoryId, Long brandId);
+
+    void publishChange();
+
+    void refresh();
+}
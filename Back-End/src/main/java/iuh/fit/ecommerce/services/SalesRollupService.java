@@ -0,0 +1,16 @@
+package iuh.fit.ecommerce.services;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface SalesRollupService {
+    // Đánh dấu các ngày có đơn trong danh sách để job tính lại (gọi từ sự kiện đơn hàng, trong transaction của outbox);
+    // evictOpen khi có đơn hoàn thành, cache kỳ đang mở bị xoá sau khi tính lại
+    void markOrderDaysDirty(List<Long> orderIds, boolean evictOpen);
+
+    // Tính lại các ngày trong [startDate, endDate], tính cả hai đầu
+    void refreshRange(LocalDate startDate, LocalDate endDate);
+
+    // Dựng lại toàn bộ khoảng ngày ở thread nền, startDate null thì lấy từ đơn cũ nhất (kể cả đơn đã lưu trữ)
+    void startBackfill(LocalDate startDate, LocalDate endDate);
+}
@@ -0,0 +1,15 @@
+package iuh.fit.ecommerce.services;
+
+import iuh.fit.ecommerce.enums.ScheduledJobType;
+
+import java.util.Map;
+
+/**
+ * Xử lý một loại job hẹn giờ. Handler chạy trong transaction cùng với việc xoá job,
+ * ném exception thì job được thử lại sau nên handler phải idempotent.
+ */
+public interface ScheduledJobHandler {
+    ScheduledJobType getType();
+
+    void handle(Map<String, Object> payload);
+}
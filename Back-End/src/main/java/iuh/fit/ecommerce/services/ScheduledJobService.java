@@ -0,0 +1,14 @@
+package iuh.fit.ecommerce.services;
+
+import iuh.fit.ecommerce.enums.ScheduledJobType;
+
+import java.time.Duration;
+import java.util.Map;
+
+public interface ScheduledJobService {
+    void schedule(ScheduledJobType type, String jobKey, Map<String, Object> payload, Duration delay);
+
+    boolean cancel(ScheduledJobType type, String jobKey);
+
+    void dispatch();
+}
@@ -0,0 +1,7 @@
+package iuh.fit.ecommerce.services;
+
+public interface SearchIndexOutboxService {
+    void enqueueProduct(Long productId);
+
+    void dispatch();
+}
@@ -0,0 +1,26 @@
+package iuh.fit.ecommerce.services;
+
+import iuh.fit.ecommerce.entities.OrderDetail;
+
+import java.util.Collection;
+import java.util.Map;
+
+public interface StockReservationService {
+    void reserve(Long orderId, Collection<OrderDetail> orderDetails);
+
+    void commit(Long orderId, Collection<OrderDetail> orderDetails);
+
+    /**
+     * Trừ kho cho đơn đã thanh toán, không ném lỗi khi thiếu hàng để người gọi tự bù trừ (huỷ đơn, hoàn tiền).
+     *
+     * @return false nếu không đủ hàng, khi đó kho không bị trừ và hold vẫn được bỏ
+     */
+    boolean tryCommit(Long orderId, Collection<OrderDetail> orderDetails);
+
+    boolean release(Long orderId, Collection<OrderDetail> orderDetails);
+
+    /**
+     * Số lượng còn bán được theo variant: tồn kho DB trừ các hold chưa hết hạn, dùng cho trang sản phẩm và giỏ hàng.
+     */
+    Map<Long, Integer> getAvailableStock(Collection<Long> variantIds);
+}
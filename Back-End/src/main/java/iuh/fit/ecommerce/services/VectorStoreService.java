@@ -6,6 +6,7 @@ import java.util.List;
 
 public interface VectorStoreService {
     void indexProductVariant(ProductVariant productVariant);
+    void indexProductVariants(List<ProductVariant> productVariants);
     void deleteProductVariantIndex(Long productVariantId);
     List<String> searchSimilarProducts(String query, int topK);
     List<Long> searchSimilarProductIds(String query, int topK); // Trả về danh sách product IDs
@@ -2,28 +2,32 @@ package iuh.fit.ecommerce.services.excel;
 
 import iuh.fit.ecommerce.dtos.excel.CustomerExcelDTO;
 import iuh.fit.ecommerce.dtos.excel.ImportResult;
-import iuh.fit.ecommerce.entities.Customer;
+import iuh.fit.ecommerce.dtos.projection.CustomerExportProjection;
 import iuh.fit.ecommerce.entities.Ranking;
 import iuh.fit.ecommerce.entities.Role;
-import iuh.fit.ecommerce.entities.UserRole;
 import iuh.fit.ecommerce.repositories.CustomerRepository;
 import iuh.fit.ecommerce.repositories.RankingRepository;
 import iuh.fit.ecommerce.repositories.RoleRepository;
+import iuh.fit.ecommerce.repositories.UserRepository;
+import iuh.fit.ecommerce.repositories.UserRoleRepository;
 import iuh.fit.ecommerce.utils.excel.BaseExcelHandler;
+import iuh.fit.ecommerce.utils.excel.ExcelSaxReader;
+import iuh.fit.ecommerce.utils.excel.ExcelStreamSupport;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.springframework.data.domain.AuditorAware;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.multipart.MultipartFile;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 
 @Service
 @RequiredArgsConstructor
@@ -34,6 +38,19 @@ public class CustomerExcelService extends BaseExcelHandler<CustomerExcelDTO> {
     private final RoleRepository roleRepository;
     private final RankingRepository rankingRepository;
     private final PasswordEncoder passwordEncoder;
+    private final UserRepository userRepository;
+    private final UserRoleRepository userRoleRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final AuditorAware<String> auditorAware;
+
+    private static final Pattern EMAIL_PATTERN = Pattern.compile("^[A-Za-z0-9+_.-]+@(.+)$");
+    private static final Pattern PHONE_PATTERN = Pattern.compile("^0\\d{9}$");
+
+    private static final String INSERT_USER_SQL =
+        "INSERT INTO users (email, full_name, password, phone, date_of_birth, active, " +
+        "created_at, created_by, modified_at, modified_by) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private volatile String defaultPasswordHash;
     
     @Override
     public String[] getHeaders() {
@@ -46,43 +63,22 @@ public class CustomerExcelService extends BaseExcelHandler<CustomerExcelDTO> {
     }
     
     @Override
-    public List<CustomerExcelDTO> parseExcel(MultipartFile file) throws Exception {
-        List<CustomerExcelDTO> dataList = new ArrayList<>();
-        
-        try (Workbook workbook = new XSSFWorkbook(file.getInputStream())) {
-            Sheet sheet = workbook.getSheetAt(0);
-            
-          
-            int dataStartRow = 3;
-        
-            for (int i = dataStartRow; i <= sheet.getLastRowNum(); i++) {
-                Row row = sheet.getRow(i);
-                if (row == null || isEmptyRow(row)) {
-                    continue;
-                }
-                
-                CustomerExcelDTO dto = CustomerExcelDTO.builder()
-                    .email(getCellValueAsString(row.getCell(0)))
-                    .fullName(getCellValueAsString(row.getCell(1)))
-                    .phone(getCellValueAsString(row.getCell(2)))
-                    .dateOfBirth(parseDateCell(row.getCell(3)))
-                    .build();
-                
-                dataList.add(dto);
-            }
-        }
-        
-        return dataList;
+    protected CustomerExcelDTO readRow(String[] cells) {
+        return CustomerExcelDTO.builder()
+            .email(cellValue(cells, 0))
+            .fullName(cellValue(cells, 1))
+            .phone(cellValue(cells, 2))
+            .dateOfBirth(parseDate(cellValue(cells, 3)))
+            .build();
     }
     
+    // Chạy song song trên pool validate nên chỉ kiểm tra định dạng; trùng email/số điện thoại kiểm tra trong checkBeforeSave
     @Override
     public void validateRow(CustomerExcelDTO data, int rowIndex, ImportResult result) {
         if (data.getEmail() == null || data.getEmail().isBlank()) {
             result.addError(rowIndex, "Email", "Email không được để trống");
-        } else if (!data.getEmail().matches("^[A-Za-z0-9+_.-]+@(.+)$")) {
+        } else if (!EMAIL_PATTERN.matcher(data.getEmail()).matches()) {
             result.addError(rowIndex, "Email", "Email không hợp lệ");
-        } else if (customerRepository.existsByEmail(data.getEmail())) {
-            result.addError(rowIndex, "Email", "Email đã tồn tại trong hệ thống");
         }
         
         if (data.getFullName() == null || data.getFullName().isBlank()) {
@@ -91,13 +87,44 @@ public class CustomerExcelService extends BaseExcelHandler<CustomerExcelDTO> {
         
         if (data.getPhone() == null || data.getPhone().isBlank()) {
             result.addError(rowIndex, "Số điện thoại", "Số điện thoại không được để trống");
-        } else if (!data.getPhone().matches("^0\\d{9}$")) {
+        } else if (!PHONE_PATTERN.matcher(data.getPhone()).matches()) {
             result.addError(rowIndex, "Số điện thoại", "Số điện thoại không hợp lệ (phải có 10 số và bắt đầu bằng 0)");
         }
     }
+
+    // Email và số điện thoại là unique trên bảng users (mọi loại user): một query cho cả chunk, cộng thêm trùng trong chính chunk
+    @Override
+    protected List<ImportRow<CustomerExcelDTO>> checkBeforeSave(List<ImportRow<CustomerExcelDTO>> rows, ImportResult result) {
+        Set<String> existingEmails = new HashSet<>();
+        userRepository.findExistingEmails(rows.stream().map(row -> row.data().getEmail()).toList())
+            .forEach(email -> existingEmails.add(email.toLowerCase()));
+        Set<String> existingPhones = new HashSet<>(
+            userRepository.findExistingPhones(rows.stream().map(row -> row.data().getPhone()).toList()));
+
+        List<ImportRow<CustomerExcelDTO>> toSave = new ArrayList<>(rows.size());
+        for (ImportRow<CustomerExcelDTO> row : rows) {
+            CustomerExcelDTO data = row.data();
+            boolean ok = true;
+            if (!existingEmails.add(data.getEmail().toLowerCase())) {
+                result.addError(row.rowIndex(), "Email", "Email đã tồn tại trong hệ thống");
+                ok = false;
+            }
+            if (!existingPhones.add(data.getPhone())) {
+                result.addError(row.rowIndex(), "Số điện thoại", "Số điện thoại đã tồn tại trong hệ thống");
+                ok = false;
+            }
+            if (ok) {
+                toSave.add(row);
+            }
+        }
+        return toSave;
+    }
     
+    /**
+     * Ghi một chunk trong transaction do BaseExcelHandler mở: users insert bằng JDBC batch
+     * (id IDENTITY khiến Hibernate không gom batch được), customers và user_roles tạo bằng INSERT ... SELECT theo email.
+     */
     @Override
-    @Transactional
     public void saveData(List<CustomerExcelDTO> dataList) throws Exception {
         Role customerRole = roleRepository.findByName("CUSTOMER")
             .orElseThrow(() -> new RuntimeException("Role CUSTOMER not found"));
@@ -111,54 +138,38 @@ public class CustomerExcelService extends BaseExcelHandler<CustomerExcelDTO> {
             log.warn("No ranking found in database. Customers will be created without ranking.");
         }
         
-      
-        String encodedPassword = passwordEncoder.encode("123456");
-        
-        int CHUNK_SIZE = 100; // Process 100 records per chunk
-        int totalChunks = (dataList.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
-        
-        log.info("Starting import of {} customers in {} chunks", dataList.size(), totalChunks);
-        
-   
-        for (int i = 0; i < dataList.size(); i += CHUNK_SIZE) {
-            int end = Math.min(i + CHUNK_SIZE, dataList.size());
-            List<CustomerExcelDTO> chunk = dataList.subList(i, end);
-            
-            List<Customer> customerList = new ArrayList<>();
-            
-            for (CustomerExcelDTO dto : chunk) {
-                Customer customer = Customer.builder()
-                    .email(dto.getEmail())
-                    .fullName(dto.getFullName())
-                    .password(encodedPassword) 
-                    .phone(dto.getPhone())
-                    .dateOfBirth(dto.getDateOfBirth()) 
-                    .active(true)
-                    .totalSpending(0.0)
-                    .ranking(defaultRanking)
-                    .build();
-                
-                customer.setUserRoles(new ArrayList<>());
-                
-                UserRole userRole = UserRole.builder()
-                    .role(customerRole)
-                    .user(customer)
-                    .build();
-                
-                customer.getUserRoles().add(userRole);
-                customerList.add(customer);
-            }
-            
-            // Batch insert this chunk
-            customerRepository.saveAll(customerList);
-            
-            int currentChunk = (i / CHUNK_SIZE) + 1;
-            double progress = (currentChunk * 100.0) / totalChunks;
-            log.info("Processed chunk {}/{} ({} records) - Progress: {:.1f}%", 
-                     currentChunk, totalChunks, customerList.size(), progress);
+        LocalDateTime now = LocalDateTime.now();
+        String createdBy = auditorAware.getCurrentAuditor().orElse(null);
+        String encodedPassword = defaultPasswordHash();
+
+        jdbcTemplate.batchUpdate(INSERT_USER_SQL, dataList, dataList.size(), (ps, dto) -> {
+            ps.setString(1, dto.getEmail());
+            ps.setString(2, dto.getFullName());
+            ps.setString(3, encodedPassword);
+            ps.setString(4, dto.getPhone());
+            ps.setObject(5, dto.getDateOfBirth());
+            ps.setBoolean(6, true);
+            ps.setObject(7, now);
+            ps.setString(8, createdBy);
+            ps.setObject(9, now);
+            ps.setString(10, createdBy);
+        });
+
+        List<String> emails = dataList.stream().map(CustomerExcelDTO::getEmail).toList();
+        customerRepository.insertForImportedUsers(emails, defaultRanking != null ? defaultRanking.getId() : null);
+        userRoleRepository.insertForImportedUsers(emails, customerRole.getId());
+
+        log.debug("Imported {} customers", dataList.size());
+    }
+
+    // Mật khẩu mặc định "123456": BCrypt chậm có chủ đích nên chỉ băm một lần thay vì mỗi chunk
+    private String defaultPasswordHash() {
+        String hash = defaultPasswordHash;
+        if (hash == null) {
+            hash = passwordEncoder.encode("123456");
+            defaultPasswordHash = hash;
         }
-        
-        log.info("Successfully imported {} customers", dataList.size());
+        return hash;
     }
     
     @Override
@@ -167,50 +178,33 @@ public class CustomerExcelService extends BaseExcelHandler<CustomerExcelDTO> {
             data.getEmail(),
             data.getFullName(),
             data.getPhone(),
-            data.getDateOfBirth() != null ? data.getDateOfBirth().format(java.time.format.DateTimeFormatter.ofPattern("dd/MM/yyyy")) : ""
+            data.getDateOfBirth() != null ? data.getDateOfBirth().format(ExcelSaxReader.DATE_FORMAT) : ""
         };
     }
     
 
-    public Workbook exportAllCustomers() throws Exception {
-        List<Customer> customerList = customerRepository.findAll();
-        List<CustomerExcelDTO> dtoList = customerList.stream()
-            .map(customer -> CustomerExcelDTO.builder()
+    @Override
+    protected void streamExportData(Consumer<CustomerExcelDTO> sink) {
+        ExcelStreamSupport.forEachPage(exportPageSize, customerRepository::findExportPage,
+            CustomerExportProjection::getId,
+            customer -> sink.accept(CustomerExcelDTO.builder()
                 .email(customer.getEmail())
                 .fullName(customer.getFullName())
                 .phone(customer.getPhone())
                 .dateOfBirth(customer.getDateOfBirth())
-                .build())
-            .toList();
-        
-        return generateExcel(dtoList);
+                .build()));
     }
     
     
-    private boolean isEmptyRow(Row row) {
-        for (int i = 0; i < 3; i++) { // Check first 3 required columns
-            Cell cell = row.getCell(i);
-            if (cell != null && !getCellValueAsString(cell).isBlank()) {
-                return false;
-            }
-        }
-        return true;
-    }
-    
-    private java.time.LocalDate parseDateCell(Cell cell) {
-        if (cell == null) {
-            return null;
-        }
-        
-        String dateStr = getCellValueAsString(cell);
+    private LocalDate parseDate(String dateStr) {
         if (dateStr.isBlank()) {
             return null;
         }
         
         try {
-            return java.time.LocalDate.parse(dateStr, java.time.format.DateTimeFormatter.ofPattern("dd/MM/yyyy"));
+            return LocalDate.parse(dateStr, ExcelSaxReader.DATE_FORMAT);
         } catch (Exception e) {
-            log.warn("Failed to parse date: {}", dateStr);
+            log.debug("Failed to parse date: {}", dateStr);
             return null;
         }
     }
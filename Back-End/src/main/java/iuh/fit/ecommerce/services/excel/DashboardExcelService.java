@@ -1,27 +1,34 @@
 package iuh.fit.ecommerce.services.excel;
 
+import iuh.fit.ecommerce.dtos.projection.DailyDiscountProjection;
+import iuh.fit.ecommerce.dtos.projection.ProductExportProjection;
+import iuh.fit.ecommerce.dtos.projection.PromotionUsageExportProjection;
+import iuh.fit.ecommerce.dtos.projection.UsageTotalsProjection;
+import iuh.fit.ecommerce.dtos.projection.VoucherUsageExportProjection;
 import iuh.fit.ecommerce.dtos.response.dashboard.RevenueByDayResponse;
-import iuh.fit.ecommerce.dtos.response.dashboard.TopProductResponse;
-import iuh.fit.ecommerce.dtos.response.dashboard.TopVoucherResponse;
-import iuh.fit.ecommerce.dtos.response.dashboard.TopPromotionResponse;
-import iuh.fit.ecommerce.dtos.response.product.ProductResponse;
-import iuh.fit.ecommerce.entities.PromotionUsage;
-import iuh.fit.ecommerce.entities.VoucherUsageHistory;
+import iuh.fit.ecommerce.exceptions.custom.InvalidParamException;
+import iuh.fit.ecommerce.repositories.ProductRepository;
 import iuh.fit.ecommerce.repositories.PromotionUsageRepository;
+import iuh.fit.ecommerce.repositories.SalesRollupRepository;
 import iuh.fit.ecommerce.repositories.VoucherUsageHistoryRepository;
 import iuh.fit.ecommerce.services.DashboardService;
-import iuh.fit.ecommerce.services.ProductService;
+import iuh.fit.ecommerce.services.impl.DashboardQueryExecutor;
+import iuh.fit.ecommerce.utils.excel.ExcelStreamSupport;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.*;
+import java.util.function.Supplier;
 
 @Service
 @RequiredArgsConstructor
@@ -29,60 +36,139 @@ import java.util.*;
 public class DashboardExcelService {
     
     private final DashboardService dashboardService;
-    private final ProductService productService;
+    private final ProductRepository productRepository;
     private final VoucherUsageHistoryRepository voucherUsageHistoryRepository;
     private final PromotionUsageRepository promotionUsageRepository;
+    private final SalesRollupRepository salesRollupRepository;
+    private final DashboardQueryExecutor dashboardQueryExecutor;
+
+    @Value("${excel.export.row-window:200}")
+    private int rowWindow;
+
+    @Value("${excel.export.page-size:1000}")
+    private int pageSize;
     
-    public byte[] exportDashboard(LocalDate startDate, LocalDate endDate) throws Exception {
+    // Kỳ báo cáo và tên file của một lần export
+    public record ReportPeriod(LocalDate startDate, LocalDate endDate, String fileName) {
+    }
+
+    public ReportPeriod resolvePeriod(String timeType, LocalDate startDate, LocalDate endDate,
+                                      Integer year, Integer month) {
+        switch (timeType.toLowerCase()) {
+            case "month": {
+                // Export theo tháng
+                if (year == null) year = LocalDate.now().getYear();
+                if (month == null) month = LocalDate.now().getMonthValue();
+
+                LocalDate start = LocalDate.of(year, month, 1);
+                return new ReportPeriod(start, start.withDayOfMonth(start.lengthOfMonth()),
+                        String.format("Dashboard_Report_%d_Thang_%d.xlsx", year, month));
+            }
+            case "year": {
+                // Export theo năm
+                if (year == null) year = LocalDate.now().getYear();
+
+                return new ReportPeriod(LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31),
+                        String.format("Dashboard_Report_Nam_%d.xlsx", year));
+            }
+            default: {
+                // Export theo khoảng ngày
+                LocalDate start = startDate != null ? startDate : LocalDate.now().minusDays(30);
+                LocalDate end = endDate != null ? endDate : LocalDate.now();
+                if (start.isAfter(end)) {
+                    throw new InvalidParamException("startDate must not be after endDate");
+                }
+                return new ReportPeriod(start, end,
+                        String.format("Dashboard_Report_%s_to_%s.xlsx", start, end));
+            }
+        }
+    }
+
+    /**
+     * Ghi báo cáo dashboard dạng stream ra out.
+     * Số liệu tổng hợp (sheet tổng quan, doanh thu theo ngày) đọc song song từ bảng rollup;
+     * các sheet chi tiết voucher/promotion/sản phẩm đọc theo từng trang keyset và ghi thẳng vào SXSSFWorkbook.
+     */
+    public void writeDashboard(LocalDate startDate, LocalDate endDate, OutputStream out) throws IOException {
         log.info("Exporting dashboard from {} to {}", startDate, endDate);
         
-        Workbook workbook = new XSSFWorkbook();
-        
-        // Create styles
-        CellStyle headerStyle = createHeaderStyle(workbook);
-        CellStyle dateStyle = createDateStyle(workbook);
-        CellStyle currencyStyle = createCurrencyStyle(workbook);
-        CellStyle numberStyle = createNumberStyle(workbook);
-        
-        // Sheet 1: Summary Statistics
-        createSummarySheet(workbook, startDate, endDate, headerStyle, currencyStyle, numberStyle);
-        
-        // Sheet 2: Revenue Detail
-        createRevenueSheet(workbook, startDate, endDate, headerStyle, dateStyle, currencyStyle, numberStyle);
-        
-        // Sheet 3: Voucher Usage
-        createVoucherSheet(workbook, startDate, endDate, headerStyle, dateStyle, currencyStyle, numberStyle);
-        
-        // Sheet 4: Customer Promotions
-        createPromotionSheet(workbook, startDate, endDate, headerStyle, dateStyle, currencyStyle, numberStyle);
-        
-        // Sheet 5: Products
-        createProductSheet(workbook, headerStyle, currencyStyle, numberStyle);
-        
-        // Write to bytes
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        workbook.write(outputStream);
-        workbook.close();
+        LocalDateTime start = startDate.atStartOfDay();
+        LocalDateTime end = endDate.atTime(23, 59, 59);
+        DashboardData data;
+        try (DashboardQueryExecutor.Scope scope = dashboardQueryExecutor.open()) {
+            Supplier<List<RevenueByDayResponse>> revenue = scope.fork("excel.revenue",
+                    () -> dashboardService.getRevenueByDay(startDate, endDate));
+            Supplier<Map<LocalDate, Double>> discounts = scope.fork("excel.discount-by-day",
+                    () -> discountByDay(startDate, endDate));
+            Supplier<UsageTotalsProjection> voucherTotals = scope.fork("excel.voucher-totals",
+                    () -> salesRollupRepository.sumVoucherUsage(startDate, endDate));
+            Supplier<UsageTotalsProjection> promotionTotals = scope.fork("excel.promotion-totals",
+                    () -> salesRollupRepository.sumPromotionUsage(startDate, endDate));
+            scope.join();
+            data = new DashboardData(revenue.get(), discounts.get(), voucherTotals.get(), promotionTotals.get());
+        }
         
-        return outputStream.toByteArray();
+        SXSSFWorkbook workbook = ExcelStreamSupport.newWorkbook(rowWindow);
+        try {
+            // Style tạo một lần cho cả workbook, dùng chung cho mọi ô
+            CellStyle headerStyle = createHeaderStyle(workbook);
+            CellStyle dateStyle = createDateStyle(workbook);
+            CellStyle currencyStyle = createCurrencyStyle(workbook);
+            CellStyle numberStyle = createNumberStyle(workbook);
+            
+            // Sheet 1: Summary Statistics
+            createSummarySheet(workbook, startDate, endDate, data, headerStyle, currencyStyle, numberStyle);
+            
+            // Sheet 2: Revenue Detail
+            createRevenueSheet(workbook, data, headerStyle, dateStyle, currencyStyle, numberStyle);
+            
+            // Sheet 3: Voucher Usage
+            createVoucherSheet(workbook, start, end, headerStyle, dateStyle, currencyStyle, numberStyle);
+            
+            // Sheet 4: Customer Promotions
+            createPromotionSheet(workbook, start, end, headerStyle, dateStyle, currencyStyle, numberStyle);
+            
+            // Sheet 5: Products
+            createProductSheet(workbook, headerStyle, numberStyle);
+            
+            workbook.write(out);
+            out.flush();
+        } finally {
+            ExcelStreamSupport.dispose(workbook);
+        }
+    }
+
+    // Số liệu tổng hợp đã đọc sẵn cho sheet tổng quan và sheet doanh thu
+    private record DashboardData(List<RevenueByDayResponse> revenue,
+                                 Map<LocalDate, Double> discountByDay,
+                                 UsageTotalsProjection voucherTotals,
+                                 UsageTotalsProjection promotionTotals) {
+    }
+
+    // Tổng giảm giá (voucher + promotion) theo ngày trong một query, thay cho hai query mỗi ngày
+    private Map<LocalDate, Double> discountByDay(LocalDate startDate, LocalDate endDate) {
+        Map<LocalDate, Double> discounts = new HashMap<>();
+        for (DailyDiscountProjection projection : salesRollupRepository.getDiscountByDay(startDate, endDate)) {
+            discounts.put(projection.getStatDate(), projection.getVoucherDiscount() + projection.getPromotionDiscount());
+        }
+        return discounts;
     }
     
-    private void createSummarySheet(Workbook workbook, LocalDate startDate, LocalDate endDate,
+    private void createSummarySheet(Workbook workbook, LocalDate startDate, LocalDate endDate, DashboardData data,
                                      CellStyle headerStyle, CellStyle currencyStyle, CellStyle numberStyle) {
-        Sheet sheet = workbook.createSheet("Overall");
-        
-        LocalDateTime start = startDate.atStartOfDay();
-        LocalDateTime end = endDate.atTime(23, 59, 59);
+        SXSSFSheet sheet = (SXSSFSheet) workbook.createSheet("Overall");
+        // Sheet ít dòng, nằm trọn trong window nên vẫn auto-size được
+        sheet.trackAllColumnsForAutoSizing();
         
         // Get statistics
-        List<RevenueByDayResponse> revenueData = dashboardService.getRevenueByDay(startDate, endDate);
+        List<RevenueByDayResponse> revenueData = data.revenue();
         double totalRevenue = revenueData.stream().mapToDouble(RevenueByDayResponse::getRevenue).sum();
         long totalOrders = revenueData.stream().mapToLong(RevenueByDayResponse::getOrderCount).sum();
         
-        Double voucherDiscount = voucherUsageHistoryRepository.sumVoucherDiscountByDateRange(start, end);
-        Double promotionDiscount = promotionUsageRepository.sumPromotionDiscountByDateRange(start, end);
-        Long voucherUsageCount = voucherUsageHistoryRepository.countVoucherUsageByDateRange(start, end);
-        Long promotionUsageCount = promotionUsageRepository.countPromotionUsageByDateRange(start, end);
+        Double voucherDiscount = data.voucherTotals().getDiscountAmount();
+        Double promotionDiscount = data.promotionTotals().getDiscountAmount();
+        Long voucherUsageCount = data.voucherTotals().getUsageCount();
+        Long promotionUsageCount = data.promotionTotals().getUsageCount();
 
         int rowNum = 0;
         
@@ -191,7 +277,7 @@ public class DashboardExcelService {
         }
     }
     
-    private void createRevenueSheet(Workbook workbook, LocalDate startDate, LocalDate endDate,
+    private void createRevenueSheet(Workbook workbook, DashboardData data,
                                      CellStyle headerStyle, CellStyle dateStyle, 
                                      CellStyle currencyStyle, CellStyle numberStyle) {
         Sheet sheet = workbook.createSheet("Chi tiết doanh thu");
@@ -206,41 +292,37 @@ public class DashboardExcelService {
         }
         
         // Data
-        List<RevenueByDayResponse> revenueData = dashboardService.getRevenueByDay(startDate, endDate);
+        List<RevenueByDayResponse> revenueData = data.revenue();
         int rowNum = 1;
         double totalRevenue = 0;
         long totalOrders = 0;
         double totalDiscount = 0;
         
-        for (RevenueByDayResponse data : revenueData) {
+        for (RevenueByDayResponse day : revenueData) {
             Row row = sheet.createRow(rowNum++);
             
             Cell dateCell = row.createCell(0);
-            if (data.getDate() != null) {
-                dateCell.setCellValue(Date.from(data.getDate().atStartOfDay(ZoneId.systemDefault()).toInstant()));
+            if (day.getDate() != null) {
+                dateCell.setCellValue(Date.from(day.getDate().atStartOfDay(ZoneId.systemDefault()).toInstant()));
                 dateCell.setCellStyle(dateStyle);
             }
             
             Cell revenueCell = row.createCell(1);
-            revenueCell.setCellValue(data.getRevenue());
+            revenueCell.setCellValue(day.getRevenue());
             revenueCell.setCellStyle(currencyStyle);
             
             Cell ordersCell = row.createCell(2);
-            ordersCell.setCellValue(data.getOrderCount());
+            ordersCell.setCellValue(day.getOrderCount());
             ordersCell.setCellStyle(numberStyle);
             
             // Average order value
             Cell avgCell = row.createCell(3);
-            double avgValue = data.getOrderCount() > 0 ? data.getRevenue() / data.getOrderCount() : 0;
+            double avgValue = day.getOrderCount() > 0 ? day.getRevenue() / day.getOrderCount() : 0;
             avgCell.setCellValue(avgValue);
             avgCell.setCellStyle(currencyStyle);
             
             // Total discount (voucher + promotion)
-            LocalDateTime dayStart = data.getDate().atStartOfDay();
-            LocalDateTime dayEnd = data.getDate().atTime(23, 59, 59);
-            Double voucherDiscount = voucherUsageHistoryRepository.sumVoucherDiscountByDateRange(dayStart, dayEnd);
-            Double promotionDiscount = promotionUsageRepository.sumPromotionDiscountByDateRange(dayStart, dayEnd);
-            double dayDiscount = (voucherDiscount != null ? voucherDiscount : 0) + (promotionDiscount != null ? promotionDiscount : 0);
+            double dayDiscount = data.discountByDay().getOrDefault(day.getDate(), 0.0);
             
             Cell discountCell = row.createCell(4);
             discountCell.setCellValue(dayDiscount);
@@ -248,11 +330,11 @@ public class DashboardExcelService {
             
             // Net revenue (revenue - discount)
             Cell netRevenueCell = row.createCell(5);
-            netRevenueCell.setCellValue(data.getRevenue() - dayDiscount);
+            netRevenueCell.setCellValue(day.getRevenue() - dayDiscount);
             netRevenueCell.setCellStyle(currencyStyle);
             
-            totalRevenue += data.getRevenue();
-            totalOrders += data.getOrderCount();
+            totalRevenue += day.getRevenue();
+            totalOrders += day.getOrderCount();
             totalDiscount += dayDiscount;
         }
         
@@ -282,14 +364,10 @@ public class DashboardExcelService {
         netRevenueTotalCell.setCellValue(totalRevenue - totalDiscount);
         netRevenueTotalCell.setCellStyle(currencyStyle);
         
-        // Auto-size columns
-        for (int i = 0; i < headers.length; i++) {
-            sheet.autoSizeColumn(i);
-            sheet.setColumnWidth(i, sheet.getColumnWidth(i) + 1000);
-        }
+        ExcelStreamSupport.setColumnWidths(sheet, headers);
     }
     
-    private void createVoucherSheet(Workbook workbook, LocalDate startDate, LocalDate endDate,
+    private void createVoucherSheet(Workbook workbook, LocalDateTime start, LocalDateTime end,
                                      CellStyle headerStyle, CellStyle dateStyle, 
                                      CellStyle currencyStyle, CellStyle numberStyle) {
         Sheet sheet = workbook.createSheet("Chi tiết Voucher");
@@ -304,91 +382,83 @@ public class DashboardExcelService {
             cell.setCellValue(headers[i]);
             cell.setCellStyle(headerStyle);
         }
+        ExcelStreamSupport.setColumnWidths(sheet, headers);
         
-        // Data
-        LocalDateTime start = startDate.atStartOfDay();
-        LocalDateTime end = endDate.atTime(23, 59, 59);
-        List<VoucherUsageHistory> usageHistories = voucherUsageHistoryRepository
-                .findAllWithDetailsByDateRange(start, end);
+        // Data: đọc theo từng trang keyset, dòng cũ được SXSSF flush ra file tạm
+        int[] rowNum = {1};
+        double[] totals = new double[3]; // discount, order value, final value
         
-        int rowNum = 1;
-        double totalDiscount = 0;
-        double totalOrderValue = 0;
-        double totalFinalValue = 0;
-        
-        for (VoucherUsageHistory usage : usageHistories) {
-            Row row = sheet.createRow(rowNum++);
+        ExcelStreamSupport.forEachPage(pageSize,
+                (lastId, pageable) -> voucherUsageHistoryRepository.findExportPage(start, end, lastId, pageable),
+                VoucherUsageExportProjection::getId,
+                usage -> {
+            Row row = sheet.createRow(rowNum[0]++);
             
             // Voucher ID
             Cell voucherIdCell = row.createCell(0);
-            voucherIdCell.setCellValue(usage.getVoucher().getId());
+            voucherIdCell.setCellValue(usage.getVoucherId());
             voucherIdCell.setCellStyle(numberStyle);
 
             // Order ID
             Cell orderIdCell = row.createCell(1);
-            orderIdCell.setCellValue(usage.getOrder().getId());
+            orderIdCell.setCellValue(usage.getOrderId());
             orderIdCell.setCellStyle(numberStyle);
             
             // Order Date
             Cell dateCell = row.createCell(2);
-            dateCell.setCellValue(Date.from(usage.getOrder().getOrderDate().atZone(ZoneId.systemDefault()).toInstant()));
+            dateCell.setCellValue(Date.from(usage.getOrderDate().atZone(ZoneId.systemDefault()).toInstant()));
             dateCell.setCellStyle(dateStyle);
             
             // Customer info
-            row.createCell(3).setCellValue(usage.getOrder().getCustomer().getFullName());
-            row.createCell(4).setCellValue(usage.getOrder().getCustomer().getPhone());
+            row.createCell(3).setCellValue(usage.getCustomerName());
+            row.createCell(4).setCellValue(usage.getCustomerPhone());
             
             // Voucher info
-            row.createCell(5).setCellValue(usage.getVoucher().getCode());
-            row.createCell(6).setCellValue(usage.getVoucher().getName());
-            row.createCell(7).setCellValue(usage.getVoucher().getVoucherType().name());
+            row.createCell(5).setCellValue(usage.getVoucherCode());
+            row.createCell(6).setCellValue(usage.getVoucherName());
+            row.createCell(7).setCellValue(usage.getVoucherType() != null ? usage.getVoucherType().name() : "");
             
             // Discount amount
+            double discount = usage.getDiscountAmount() != null ? usage.getDiscountAmount() : 0;
             Cell discountCell = row.createCell(8);
-            discountCell.setCellValue(usage.getDiscountAmount() != null ? usage.getDiscountAmount() : 0);
+            discountCell.setCellValue(discount);
             discountCell.setCellStyle(currencyStyle);
             
             // Order total
             Cell orderTotalCell = row.createCell(9);
-            orderTotalCell.setCellValue(usage.getOrder().getTotalPrice());
+            orderTotalCell.setCellValue(usage.getOrderTotal());
             orderTotalCell.setCellStyle(currencyStyle);
             
             // Final total
             Cell finalTotalCell = row.createCell(10);
-            finalTotalCell.setCellValue(usage.getOrder().getFinalTotalPrice());
+            finalTotalCell.setCellValue(usage.getFinalTotal());
             finalTotalCell.setCellStyle(currencyStyle);
             
-            totalDiscount += (usage.getDiscountAmount() != null ? usage.getDiscountAmount() : 0);
-            totalOrderValue += usage.getOrder().getTotalPrice();
-            totalFinalValue += usage.getOrder().getFinalTotalPrice();
-        }
+            totals[0] += discount;
+            totals[1] += usage.getOrderTotal();
+            totals[2] += usage.getFinalTotal();
+        });
         
         // Total row
-        Row totalRow = sheet.createRow(rowNum);
+        Row totalRow = sheet.createRow(rowNum[0]);
         Cell totalLabelCell = totalRow.createCell(0);
         totalLabelCell.setCellValue("TỔNG CỘNG");
         totalLabelCell.setCellStyle(headerStyle);
         
         Cell totalDiscountCell = totalRow.createCell(8);
-        totalDiscountCell.setCellValue(totalDiscount);
+        totalDiscountCell.setCellValue(totals[0]);
         totalDiscountCell.setCellStyle(currencyStyle);
         
         Cell totalOrderCell = totalRow.createCell(9);
-        totalOrderCell.setCellValue(totalOrderValue);
+        totalOrderCell.setCellValue(totals[1]);
         totalOrderCell.setCellStyle(currencyStyle);
         
         Cell totalFinalCell = totalRow.createCell(10);
-        totalFinalCell.setCellValue(totalFinalValue);
+        totalFinalCell.setCellValue(totals[2]);
         totalFinalCell.setCellStyle(currencyStyle);
-        
-        // Auto-size columns
-        for (int i = 0; i < headers.length; i++) {
-            sheet.autoSizeColumn(i);
-            sheet.setColumnWidth(i, sheet.getColumnWidth(i) + 1000);
-        }
     }
     
-    private void createPromotionSheet(Workbook workbook, LocalDate startDate, LocalDate endDate,
+    private void createPromotionSheet(Workbook workbook, LocalDateTime start, LocalDateTime end,
                                        CellStyle headerStyle, CellStyle dateStyle, 
                                        CellStyle currencyStyle, CellStyle numberStyle) {
         Sheet sheet = workbook.createSheet("Chi tiết Promotion");
@@ -403,108 +473,97 @@ public class DashboardExcelService {
             cell.setCellValue(headers[i]);
             cell.setCellStyle(headerStyle);
         }
+        ExcelStreamSupport.setColumnWidths(sheet, headers);
         
-        // Data
-        LocalDateTime start = startDate.atStartOfDay();
-        LocalDateTime end = endDate.atTime(23, 59, 59);
-        List<PromotionUsage> usageList = promotionUsageRepository.findAllWithDetailsByDateRange(start, end);
+        // Data: đọc theo từng trang keyset, dòng cũ được SXSSF flush ra file tạm
+        int[] rowNum = {1};
+        double[] totals = new double[3]; // discount, order detail value, final value
         
-        int rowNum = 1;
-        double totalDiscount = 0;
-        double totalOrderValue = 0;
-        double totalFinalValue = 0;
-        
-        for (PromotionUsage usage : usageList) {
-            Row row = sheet.createRow(rowNum++);
+        ExcelStreamSupport.forEachPage(pageSize,
+                (lastId, pageable) -> promotionUsageRepository.findExportPage(start, end, lastId, pageable),
+                PromotionUsageExportProjection::getId,
+                usage -> {
+            Row row = sheet.createRow(rowNum[0]++);
             
             // Promotion ID
             Cell promotionIdCell = row.createCell(0);
-            promotionIdCell.setCellValue(usage.getPromotion().getId());
+            promotionIdCell.setCellValue(usage.getPromotionId());
             promotionIdCell.setCellStyle(numberStyle);
 
             // Promotion Code (generated from name)
-            String promotionCode = generatePromotionCode(usage.getPromotion().getName());
-            row.createCell(1).setCellValue(promotionCode);
+            row.createCell(1).setCellValue(generatePromotionCode(usage.getPromotionName()));
 
             // Order ID
             Cell orderIdCell = row.createCell(2);
-            orderIdCell.setCellValue(usage.getOrderDetail().getOrder().getId());
+            orderIdCell.setCellValue(usage.getOrderId());
             orderIdCell.setCellStyle(numberStyle);
             
             // Order Detail ID
             Cell orderDetailIdCell = row.createCell(3);
-            orderDetailIdCell.setCellValue(usage.getOrderDetail().getId());
+            orderDetailIdCell.setCellValue(usage.getOrderDetailId());
             orderDetailIdCell.setCellStyle(numberStyle);
             
             // Order Date
             Cell dateCell = row.createCell(4);
-            dateCell.setCellValue(Date.from(usage.getOrderDetail().getOrder().getOrderDate().atZone(ZoneId.systemDefault()).toInstant()));
+            dateCell.setCellValue(Date.from(usage.getOrderDate().atZone(ZoneId.systemDefault()).toInstant()));
             dateCell.setCellStyle(dateStyle);
             
             // Customer info
-            row.createCell(5).setCellValue(usage.getOrderDetail().getOrder().getCustomer().getFullName());
-            row.createCell(6).setCellValue(usage.getOrderDetail().getOrder().getCustomer().getPhone());
+            row.createCell(5).setCellValue(usage.getCustomerName());
+            row.createCell(6).setCellValue(usage.getCustomerPhone());
             
             // Promotion info
-            row.createCell(7).setCellValue(usage.getPromotion().getName());
-            row.createCell(8).setCellValue(usage.getPromotion().getPromotionType().name());
+            row.createCell(7).setCellValue(usage.getPromotionName());
+            row.createCell(8).setCellValue(usage.getPromotionType() != null ? usage.getPromotionType().name() : "");
             
             // Discount amount
+            double discount = usage.getDiscountAmount() != null ? usage.getDiscountAmount() : 0;
             Cell discountCell = row.createCell(9);
-            discountCell.setCellValue(usage.getDiscountAmount() != null ? usage.getDiscountAmount() : 0);
+            discountCell.setCellValue(discount);
             discountCell.setCellStyle(currencyStyle);
             
             // Order detail total (price * quantity)
-            Double orderDetailTotal = usage.getOrderDetail().getPrice() * usage.getOrderDetail().getQuantity();
+            double orderDetailTotal = usage.getPrice() * usage.getQuantity();
             Cell orderTotalCell = row.createCell(10);
             orderTotalCell.setCellValue(orderDetailTotal);
             orderTotalCell.setCellStyle(currencyStyle);
             
             // Order detail final price (sau khi giảm giá)
             Cell finalTotalCell = row.createCell(11);
-            finalTotalCell.setCellValue(usage.getOrderDetail().getFinalPrice());
+            finalTotalCell.setCellValue(usage.getFinalPrice());
             finalTotalCell.setCellStyle(currencyStyle);
             
             // Payment method
-            row.createCell(12).setCellValue(usage.getOrderDetail().getOrder().getPaymentMethod() != null ?
-                    usage.getOrderDetail().getOrder().getPaymentMethod().name() : "");
+            row.createCell(12).setCellValue(usage.getPaymentMethod() != null ? usage.getPaymentMethod().name() : "");
             
             // Status
-            row.createCell(13).setCellValue(usage.getOrderDetail().getOrder().getStatus() != null ?
-                    usage.getOrderDetail().getOrder().getStatus().name() : "");
+            row.createCell(13).setCellValue(usage.getStatus() != null ? usage.getStatus().name() : "");
             
-            totalDiscount += (usage.getDiscountAmount() != null ? usage.getDiscountAmount() : 0);
-            totalOrderValue += orderDetailTotal;
-            totalFinalValue += usage.getOrderDetail().getFinalPrice();
-        }
+            totals[0] += discount;
+            totals[1] += orderDetailTotal;
+            totals[2] += usage.getFinalPrice();
+        });
         
         // Total row
-        Row totalRow = sheet.createRow(rowNum);
+        Row totalRow = sheet.createRow(rowNum[0]);
         Cell totalLabelCell = totalRow.createCell(0);
         totalLabelCell.setCellValue("TỔNG CỘNG");
         totalLabelCell.setCellStyle(headerStyle);
         
         Cell totalDiscountCell = totalRow.createCell(9);
-        totalDiscountCell.setCellValue(totalDiscount);
+        totalDiscountCell.setCellValue(totals[0]);
         totalDiscountCell.setCellStyle(currencyStyle);
         
         Cell totalOrderCell = totalRow.createCell(10);
-        totalOrderCell.setCellValue(totalOrderValue);
+        totalOrderCell.setCellValue(totals[1]);
         totalOrderCell.setCellStyle(currencyStyle);
         
         Cell totalFinalCell = totalRow.createCell(11);
-        totalFinalCell.setCellValue(totalFinalValue);
+        totalFinalCell.setCellValue(totals[2]);
         totalFinalCell.setCellStyle(currencyStyle);
-        
-        // Auto-size columns
-        for (int i = 0; i < headers.length; i++) {
-            sheet.autoSizeColumn(i);
-            sheet.setColumnWidth(i, sheet.getColumnWidth(i) + 1000);
-        }
     }
     
-    private void createProductSheet(Workbook workbook, CellStyle headerStyle, 
-                                     CellStyle currencyStyle, CellStyle numberStyle) {
+    private void createProductSheet(Workbook workbook, CellStyle headerStyle, CellStyle numberStyle) {
         Sheet sheet = workbook.createSheet("Danh sách sản phẩm");
         
         // Header
@@ -515,14 +574,14 @@ public class DashboardExcelService {
             cell.setCellValue(headers[i]);
             cell.setCellStyle(headerStyle);
         }
+        ExcelStreamSupport.setColumnWidths(sheet, headers);
         
         // Data
-        var productsResponse = productService.getAllProducts(0, Integer.MAX_VALUE, null, null, null, null, null, null);
-        List<ProductResponse> products = productsResponse.getData();
-        
-        int rowNum = 1;
-        for (ProductResponse product : products) {
-            Row row = sheet.createRow(rowNum++);
+        int[] rowNum = {1};
+        ExcelStreamSupport.forEachPage(pageSize, productRepository::findExportPage,
+                ProductExportProjection::getId,
+                product -> {
+            Row row = sheet.createRow(rowNum[0]++);
             
             Cell idCell = row.createCell(0);
             idCell.setCellValue(product.getId());
@@ -535,14 +594,8 @@ public class DashboardExcelService {
             stockCell.setCellValue(product.getStock() != null ? product.getStock() : 0);
             stockCell.setCellStyle(numberStyle);
             
-            row.createCell(4).setCellValue(product.isStatus() ? "Hoạt động" : "Ngừng hoạt động");
-        }
-        
-        // Auto-size columns
-        for (int i = 0; i < headers.length; i++) {
-            sheet.autoSizeColumn(i);
-            sheet.setColumnWidth(i, sheet.getColumnWidth(i) + 1000);
-        }
+            row.createCell(4).setCellValue(Boolean.TRUE.equals(product.getStatus()) ? "Hoạt động" : "Ngừng hoạt động");
+        });
     }
     
     private CellStyle createHeaderStyle(Workbook workbook) {
@@ -2,30 +2,35 @@ package iuh.fit.ecommerce.services.excel;
 
 import iuh.fit.ecommerce.dtos.excel.ImportResult;
 import iuh.fit.ecommerce.dtos.excel.StaffExcelDTO;
+import iuh.fit.ecommerce.dtos.projection.StaffExportProjection;
 import iuh.fit.ecommerce.entities.Role;
-import iuh.fit.ecommerce.entities.Staff;
-import iuh.fit.ecommerce.entities.UserRole;
 import iuh.fit.ecommerce.enums.WorkStatus;
 import iuh.fit.ecommerce.repositories.RoleRepository;
 import iuh.fit.ecommerce.repositories.StaffRepository;
+import iuh.fit.ecommerce.repositories.UserRepository;
+import iuh.fit.ecommerce.repositories.UserRoleRepository;
 import iuh.fit.ecommerce.utils.excel.BaseExcelHandler;
+import iuh.fit.ecommerce.utils.excel.ExcelSaxReader;
+import iuh.fit.ecommerce.utils.excel.ExcelStreamSupport;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.springframework.data.domain.AuditorAware;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 
 @Service
 @RequiredArgsConstructor
@@ -35,8 +40,25 @@ public class StaffExcelService extends BaseExcelHandler<StaffExcelDTO> {
     private final StaffRepository staffRepository;
     private final RoleRepository roleRepository;
     private final PasswordEncoder passwordEncoder;
+    private final UserRepository userRepository;
+    private final UserRoleRepository userRoleRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final AuditorAware<String> auditorAware;
     
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final Pattern EMAIL_PATTERN = Pattern.compile("^[A-Za-z0-9+_.-]+@(.+)$");
+    private static final Pattern PHONE_PATTERN = Pattern.compile("^0\\d{9}$");
+
+    private static final String INSERT_USER_SQL =
+        "INSERT INTO users (email, full_name, password, phone, date_of_birth, active, " +
+        "created_at, created_by, modified_at, modified_by) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // staffs là bảng con của users (JOINED), id lấy theo email của user vừa insert
+    private static final String INSERT_STAFF_SQL =
+        "INSERT INTO staffs (id, join_date, work_status, leader, address) " +
+        "SELECT u.id, ?, ?, ?, ? FROM users u WHERE u.email = ?";
+
+    private volatile String defaultPasswordHash;
     
     @Override
     public String[] getHeaders() {
@@ -53,48 +75,27 @@ public class StaffExcelService extends BaseExcelHandler<StaffExcelDTO> {
     }
     
     @Override
-    public List<StaffExcelDTO> parseExcel(MultipartFile file) throws Exception {
-        List<StaffExcelDTO> dataList = new ArrayList<>();
-        
-        try (Workbook workbook = new XSSFWorkbook(file.getInputStream())) {
-            Sheet sheet = workbook.getSheetAt(0);
-            
-           
-            int dataStartRow = 3;
-    
-            for (int i = dataStartRow; i <= sheet.getLastRowNum(); i++) {
-                Row row = sheet.getRow(i);
-                if (row == null || isEmptyRow(row)) {
-                    continue;
-                }
-                
-                StaffExcelDTO dto = StaffExcelDTO.builder()
-                    .email(getCellValueAsString(row.getCell(0)))
-                    .fullName(getCellValueAsString(row.getCell(1)))
-                    .phone(getCellValueAsString(row.getCell(2)))
-                    .address(getCellValueAsString(row.getCell(3)))
-                    .dateOfBirth(parseDateCell(row.getCell(4)))
-                    .joinDate(parseDateCell(row.getCell(5)))
-                    .isLeader(parseBooleanCell(row.getCell(6)))
-                    .role(getCellValueAsString(row.getCell(7)))
-                    .build();
-                
-                dataList.add(dto);
-            }
-        }
-        
-        return dataList;
+    protected StaffExcelDTO readRow(String[] cells) {
+        return StaffExcelDTO.builder()
+            .email(cellValue(cells, 0))
+            .fullName(cellValue(cells, 1))
+            .phone(cellValue(cells, 2))
+            .address(cellValue(cells, 3))
+            .dateOfBirth(parseDate(cellValue(cells, 4)))
+            .joinDate(parseDate(cellValue(cells, 5)))
+            .isLeader(parseBoolean(cellValue(cells, 6)))
+            .role(cellValue(cells, 7))
+            .build();
     }
     
+    // Chạy song song trên pool validate nên chỉ kiểm tra định dạng; trùng email/số điện thoại kiểm tra trong checkBeforeSave
     @Override
     public void validateRow(StaffExcelDTO data, int rowIndex, ImportResult result) {
 
         if (data.getEmail() == null || data.getEmail().isBlank()) {
             result.addError(rowIndex, "Email", "Email không được để trống");
-        } else if (!data.getEmail().matches("^[A-Za-z0-9+_.-]+@(.+)$")) {
+        } else if (!EMAIL_PATTERN.matcher(data.getEmail()).matches()) {
             result.addError(rowIndex, "Email", "Email không hợp lệ");
-        } else if (staffRepository.existsByEmail(data.getEmail())) {
-            result.addError(rowIndex, "Email", "Email đã tồn tại trong hệ thống");
         }
        
         if (data.getFullName() == null || data.getFullName().isBlank()) {
@@ -103,7 +104,7 @@ public class StaffExcelService extends BaseExcelHandler<StaffExcelDTO> {
         
         if (data.getPhone() == null || data.getPhone().isBlank()) {
             result.addError(rowIndex, "Số điện thoại", "Số điện thoại không được để trống");
-        } else if (!data.getPhone().matches("^0\\d{9}$")) {
+        } else if (!PHONE_PATTERN.matcher(data.getPhone()).matches()) {
             result.addError(rowIndex, "Số điện thoại", "Số điện thoại không hợp lệ (phải có 10 số và bắt đầu bằng 0)");
         }
         
@@ -130,64 +131,90 @@ public class StaffExcelService extends BaseExcelHandler<StaffExcelDTO> {
         }
 
     }
+
+    // Email và số điện thoại là unique trên bảng users (mọi loại user): một query cho cả chunk, cộng thêm trùng trong chính chunk
+    @Override
+    protected List<ImportRow<StaffExcelDTO>> checkBeforeSave(List<ImportRow<StaffExcelDTO>> rows, ImportResult result) {
+        Set<String> existingEmails = new HashSet<>();
+        userRepository.findExistingEmails(rows.stream().map(row -> row.data().getEmail()).toList())
+            .forEach(email -> existingEmails.add(email.toLowerCase()));
+        Set<String> existingPhones = new HashSet<>(
+            userRepository.findExistingPhones(rows.stream().map(row -> row.data().getPhone()).toList()));
+
+        List<ImportRow<StaffExcelDTO>> toSave = new ArrayList<>(rows.size());
+        for (ImportRow<StaffExcelDTO> row : rows) {
+            StaffExcelDTO data = row.data();
+            boolean ok = true;
+            if (!existingEmails.add(data.getEmail().toLowerCase())) {
+                result.addError(row.rowIndex(), "Email", "Email đã tồn tại trong hệ thống");
+                ok = false;
+            }
+            if (!existingPhones.add(data.getPhone())) {
+                result.addError(row.rowIndex(), "Số điện thoại", "Số điện thoại đã tồn tại trong hệ thống");
+                ok = false;
+            }
+            if (ok) {
+                toSave.add(row);
+            }
+        }
+        return toSave;
+    }
     
+    /**
+     * Ghi một chunk trong transaction do BaseExcelHandler mở: users insert bằng JDBC batch
+     * (id IDENTITY khiến Hibernate không gom batch được), staffs lấy id theo email trong cùng batch,
+     * user_roles tạo bằng INSERT ... SELECT theo email cho từng vai trò.
+     */
     @Override
-    @Transactional
     public void saveData(List<StaffExcelDTO> dataList) throws Exception {
-        String encodedPassword = passwordEncoder.encode("123456");
-        
-        int CHUNK_SIZE = 100; // Process 100 records per chunk
-        int totalChunks = (dataList.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
-        
-        log.info("Starting import of {} staff members in {} chunks", dataList.size(), totalChunks);
-        
-     
-        for (int i = 0; i < dataList.size(); i += CHUNK_SIZE) {
-            int end = Math.min(i + CHUNK_SIZE, dataList.size());
-            List<StaffExcelDTO> chunk = dataList.subList(i, end);
-            
-            List<Staff> staffList = new ArrayList<>();
-            
-            for (StaffExcelDTO dto : chunk) {
-                // Get role by name
-                String roleName = dto.getRole() != null ? dto.getRole().trim().toUpperCase() : "STAFF";
-                Role role = roleRepository.findByName(roleName)
-                    .orElseThrow(() -> new RuntimeException("Role " + roleName + " not found"));
-                
-                Staff staff = Staff.builder()
-                    .email(dto.getEmail())
-                    .fullName(dto.getFullName())
-                    .password(encodedPassword) 
-                    .phone(dto.getPhone())
-                    .address(dto.getAddress())
-                    .dateOfBirth(dto.getDateOfBirth()) // Optional
-                    .joinDate(dto.getJoinDate() != null ? dto.getJoinDate() : LocalDate.now())
-                    .leader(dto.getIsLeader() != null ? dto.getIsLeader() : false)
-                    .active(true)
-                    .workStatus(WorkStatus.ACTIVE)
-                    .build();
-                
-                staff.setUserRoles(new ArrayList<>());
-                
-                UserRole userRole = UserRole.builder()
-                    .role(role)
-                    .user(staff)
-                    .build();
-                
-                staff.getUserRoles().add(userRole);
-                staffList.add(staff);
-            }
-            
-        
-            staffRepository.saveAll(staffList);
-            
-            int currentChunk = (i / CHUNK_SIZE) + 1;
-            double progress = (currentChunk * 100.0) / totalChunks;
-            log.info("Processed chunk {}/{} ({} records) - Progress: {:.1f}%", 
-                     currentChunk, totalChunks, staffList.size(), progress);
+        LocalDateTime now = LocalDateTime.now();
+        String createdBy = auditorAware.getCurrentAuditor().orElse(null);
+        String encodedPassword = defaultPasswordHash();
+
+        jdbcTemplate.batchUpdate(INSERT_USER_SQL, dataList, dataList.size(), (ps, dto) -> {
+            ps.setString(1, dto.getEmail());
+            ps.setString(2, dto.getFullName());
+            ps.setString(3, encodedPassword);
+            ps.setString(4, dto.getPhone());
+            ps.setObject(5, dto.getDateOfBirth());
+            ps.setBoolean(6, true);
+            ps.setObject(7, now);
+            ps.setString(8, createdBy);
+            ps.setObject(9, now);
+            ps.setString(10, createdBy);
+        });
+
+        jdbcTemplate.batchUpdate(INSERT_STAFF_SQL, dataList, dataList.size(), (ps, dto) -> {
+            ps.setObject(1, dto.getJoinDate() != null ? dto.getJoinDate() : LocalDate.now());
+            ps.setString(2, WorkStatus.ACTIVE.name());
+            ps.setBoolean(3, dto.getIsLeader() != null ? dto.getIsLeader() : false);
+            ps.setString(4, dto.getAddress());
+            ps.setString(5, dto.getEmail());
+        });
+
+        // Vai trò chỉ đọc một lần cho cả chunk
+        Map<String, List<String>> emailsByRole = new HashMap<>();
+        for (StaffExcelDTO dto : dataList) {
+            String roleName = dto.getRole() != null ? dto.getRole().trim().toUpperCase() : "STAFF";
+            emailsByRole.computeIfAbsent(roleName, name -> new ArrayList<>()).add(dto.getEmail());
         }
-        
-        log.info("Successfully imported {} staff members", dataList.size());
+        emailsByRole.forEach((roleName, emails) -> {
+            Role role = roleRepository.findByName(roleName)
+                .orElseThrow(() -> new RuntimeException("Role " + roleName + " not found"));
+            userRoleRepository.insertForImportedUsers(emails, role.getId());
+        });
+
+        log.debug("Imported {} staff members", dataList.size());
+    }
+
+    // Mật khẩu mặc định "123456": BCrypt chậm có chủ đích nên chỉ băm một lần thay vì mỗi chunk
+    private String defaultPasswordHash() {
+        String hash = defaultPasswordHash;
+        if (hash == null) {
+            hash = passwordEncoder.encode("123456");
+            defaultPasswordHash = hash;
+        }
+        return hash;
     }
     
     @Override
@@ -204,67 +231,39 @@ public class StaffExcelService extends BaseExcelHandler<StaffExcelDTO> {
         };
     }
   
-    public Workbook exportAllStaff() throws Exception {
-        List<Staff> staffList = staffRepository.findAll();
-        List<StaffExcelDTO> dtoList = staffList.stream()
-            .map(staff -> {
-                // Get first role (should only have one)
-                String roleName = "STAFF"; // default
-                if (staff.getUserRoles() != null && !staff.getUserRoles().isEmpty()) {
-                    roleName = staff.getUserRoles().get(0).getRole().getName();
-                }
-                
-                return StaffExcelDTO.builder()
-                    .email(staff.getEmail())
-                    .fullName(staff.getFullName())
-                    .phone(staff.getPhone())
-                    .address(staff.getAddress())
-                    .dateOfBirth(staff.getDateOfBirth())
-                    .joinDate(staff.getJoinDate())
-                    .isLeader(staff.getLeader())
-                    .role(roleName)
-                    .build();
-            })
-            .toList();
-        
-        return generateExcel(dtoList);
+    @Override
+    protected void streamExportData(Consumer<StaffExcelDTO> sink) {
+        ExcelStreamSupport.forEachPage(exportPageSize, staffRepository::findExportPage,
+            StaffExportProjection::getId,
+            staff -> sink.accept(StaffExcelDTO.builder()
+                .email(staff.getEmail())
+                .fullName(staff.getFullName())
+                .phone(staff.getPhone())
+                .address(staff.getAddress())
+                .dateOfBirth(staff.getDateOfBirth())
+                .joinDate(staff.getJoinDate())
+                .isLeader(staff.getLeader())
+                // Nhân viên chưa có vai trò thì mặc định STAFF như trước
+                .role(staff.getRoleName() != null ? staff.getRoleName() : "STAFF")
+                .build()));
     }
     
     
-    private boolean isEmptyRow(Row row) {
-        for (int i = 0; i < 3; i++) {
-            Cell cell = row.getCell(i);
-            if (cell != null && !getCellValueAsString(cell).isBlank()) {
-                return false;
-            }
-        }
-        return true;
-    }
-    
-    private LocalDate parseDateCell(Cell cell) {
-        if (cell == null) {
-            return null;
-        }
-        
-        String dateStr = getCellValueAsString(cell);
+    private LocalDate parseDate(String dateStr) {
         if (dateStr.isBlank()) {
             return null;
         }
         
         try {
-            return LocalDate.parse(dateStr, DATE_FORMATTER);
+            return LocalDate.parse(dateStr, ExcelSaxReader.DATE_FORMAT);
         } catch (DateTimeParseException e) {
             log.warn("Failed to parse date: {}", dateStr);
             return null;
         }
     }
     
-    private Boolean parseBooleanCell(Cell cell) {
-        if (cell == null) {
-            return false;
-        }
-        
-        String value = getCellValueAsString(cell).toLowerCase();
-        return value.equals("true") || value.equals("1") || value.equals("yes");
+    private Boolean parseBoolean(String value) {
+        String normalized = value.trim().toLowerCase();
+        return normalized.equals("true") || normalized.equals("1") || normalized.equals("yes");
     }
 }
@@ -2,24 +2,24 @@ package iuh.fit.ecommerce.services.excel;
 
 import iuh.fit.ecommerce.dtos.excel.ImportResult;
 import iuh.fit.ecommerce.dtos.excel.SupplierExcelDTO;
-import iuh.fit.ecommerce.entities.Supplier;
+import iuh.fit.ecommerce.dtos.projection.SupplierExportProjection;
 import iuh.fit.ecommerce.repositories.SupplierRepository;
 import iuh.fit.ecommerce.utils.excel.BaseExcelHandler;
+import iuh.fit.ecommerce.utils.excel.ExcelSaxReader;
+import iuh.fit.ecommerce.utils.excel.ExcelStreamSupport;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.springframework.data.domain.AuditorAware;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.multipart.MultipartFile;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 
 @Service
 @RequiredArgsConstructor
@@ -27,6 +27,14 @@ import java.util.Set;
 public class SupplierExcelService extends BaseExcelHandler<SupplierExcelDTO> {
 
     private final SupplierRepository supplierRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final AuditorAware<String> auditorAware;
+
+    private static final Pattern PHONE_PATTERN = Pattern.compile("^0\\d{9,10}$");
+
+    private static final String INSERT_SUPPLIER_SQL =
+            "INSERT INTO supplier (name, phone, address, status, created_at, created_by, modified_at, modified_by) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
 
     @Override
     public String[] getHeaders() {
@@ -39,56 +47,19 @@ public class SupplierExcelService extends BaseExcelHandler<SupplierExcelDTO> {
     }
 
     @Override
-    public List<SupplierExcelDTO> parseExcel(MultipartFile file) throws Exception {
-        List<SupplierExcelDTO> dataList = new ArrayList<>();
-
-        // LOG DEBUG: Bắt đầu đọc file
-        System.out.println(">>> START PARSING EXCEL: " + file.getOriginalFilename());
-
-        try (Workbook workbook = new XSSFWorkbook(file.getInputStream())) {
-            Sheet sheet = workbook.getSheetAt(0);
-
-            // QUAN TRỌNG: Sửa dòng bắt đầu đọc dữ liệu
-            // 0 là Header -> Dữ liệu bắt đầu từ 1.
-            // Nếu Template của bạn có 3 dòng tiêu đề trang trí thì sửa lại thành 3.
-            int dataStartRow = 1;
-
-            System.out.println(">>> Total Rows in Sheet: " + sheet.getLastRowNum());
-
-            for (int i = dataStartRow; i <= sheet.getLastRowNum(); i++) {
-                Row row = sheet.getRow(i);
-                if (row == null || isEmptyRow(row)) {
-                    continue;
-                }
-
-                try {
-                    SupplierExcelDTO dto = SupplierExcelDTO.builder()
-                            .supplierName(getCellValueAsString(row.getCell(0)))
-                            .phone(getCellValueAsString(row.getCell(1)))
-                            .address(getCellValueAsString(row.getCell(2)))
-                            .status(parseBooleanCell(row.getCell(3)))
-                            .build();
-
-                    dataList.add(dto);
-                    // System.out.println(">>> Read Row " + i + ": " + dto.getSupplierName());
-                } catch (Exception e) {
-                    System.err.println(">>> Error reading row " + i + ": " + e.getMessage());
-                }
-            }
-        }
-        System.out.println(">>> END PARSING: Found " + dataList.size() + " records.");
-        return dataList;
+    protected SupplierExcelDTO readRow(String[] cells) {
+        return SupplierExcelDTO.builder()
+                .supplierName(cellValue(cells, 0))
+                // Chuẩn hóa sđt (xóa khoảng trắng)
+                .phone(cellValue(cells, 1).trim())
+                .address(cellValue(cells, 2))
+                .status(parseBoolean(cellValue(cells, 3)))
+                .build();
     }
 
-    // Biến dùng tạm để check trùng lặp SĐT trong chính file Excel đang import
-    private Set<String> tempPhoneSet = new HashSet<>();
-
+    // Chạy song song trên pool validate nên chỉ kiểm tra định dạng; trùng số điện thoại kiểm tra trong checkBeforeSave
     @Override
     public void validateRow(SupplierExcelDTO data, int rowIndex, ImportResult result) {
-        // Reset set khi bắt đầu validate dòng đầu tiên (Logic này hơi thủ công,
-        // đúng ra nên làm ở pre-process, nhưng để đơn giản ta clear nếu rowIndex nhỏ)
-        if (rowIndex <= 1) tempPhoneSet.clear();
-
         // 1. Validate Tên
         if (data.getSupplierName() == null || data.getSupplierName().isBlank()) {
             result.addError(rowIndex, "Tên nhà cung cấp", "Tên không được để trống");
@@ -98,74 +69,46 @@ public class SupplierExcelService extends BaseExcelHandler<SupplierExcelDTO> {
         String phone = data.getPhone();
         if (phone == null || phone.isBlank()) {
             result.addError(rowIndex, "Số điện thoại", "Số điện thoại không được để trống");
-        } else {
-            // Chuẩn hóa sđt (xóa khoảng trắng)
-            phone = phone.trim();
-            data.setPhone(phone); // Cập nhật lại vào DTO
+        } else if (!PHONE_PATTERN.matcher(phone).matches()) {
+            result.addError(rowIndex, "Số điện thoại", "SĐT không hợp lệ (phải bắt đầu bằng 0, 10-11 số)");
+        }
+    }
 
-            if (!phone.matches("^0\\d{9,10}$")) {
-                result.addError(rowIndex, "Số điện thoại", "SĐT không hợp lệ (phải bắt đầu bằng 0, 10-11 số)");
+    // Chunk chạy tuần tự nên query DB thấy cả các chunk trước; trùng trong file được bắt bằng set của chunk
+    @Override
+    protected List<ImportRow<SupplierExcelDTO>> checkBeforeSave(List<ImportRow<SupplierExcelDTO>> rows, ImportResult result) {
+        Set<String> existingPhones = new HashSet<>(
+                supplierRepository.findExistingPhones(rows.stream().map(row -> row.data().getPhone()).toList()));
+
+        List<ImportRow<SupplierExcelDTO>> toSave = new ArrayList<>(rows.size());
+        for (ImportRow<SupplierExcelDTO> row : rows) {
+            String phone = row.data().getPhone();
+            if (existingPhones.add(phone)) {
+                toSave.add(row);
             } else {
-                // Check trùng trong DB
-                if (supplierRepository.existsByPhone(phone)) {
-                    result.addError(rowIndex, "Số điện thoại", "Số điện thoại đã tồn tại trong hệ thống: " + phone);
-                }
-                // Check trùng trong chính file Excel này
-                else if (tempPhoneSet.contains(phone)) {
-                    result.addError(rowIndex, "Số điện thoại", "Số điện thoại bị trùng lặp trong file Excel: " + phone);
-                } else {
-                    tempPhoneSet.add(phone);
-                }
+                result.addError(row.rowIndex(), "Số điện thoại", "Số điện thoại đã tồn tại trong hệ thống: " + phone);
             }
         }
-
-        // Log lỗi ra console để debug
-        if (result.hasErrors()) {
-            System.out.println(">>> VALIDATION ERROR at Row " + rowIndex + ": " + result.getErrors().get(0).getMessage());
-        }
+        return toSave;
     }
 
+    // Ghi một chunk trong transaction do BaseExcelHandler mở, JDBC batch vì id IDENTITY khiến Hibernate không gom batch được
     @Override
-    @Transactional
     public void saveData(List<SupplierExcelDTO> dataList) throws Exception {
-        System.out.println(">>> PREPARING TO SAVE: " + dataList.size() + " records.");
-
-        if (dataList.isEmpty()) {
-            System.out.println(">>> NO DATA TO SAVE. (Maybe all rows failed validation?)");
-            return;
-        }
-
-        int CHUNK_SIZE = 100;
-        int countSaved = 0;
-
-        for (int i = 0; i < dataList.size(); i += CHUNK_SIZE) {
-            int end = Math.min(i + CHUNK_SIZE, dataList.size());
-            List<SupplierExcelDTO> chunk = dataList.subList(i, end);
-            List<Supplier> supplierList = new ArrayList<>();
-
-            for (SupplierExcelDTO dto : chunk) {
-                Supplier supplier = Supplier.builder()
-                        .name(dto.getSupplierName())
-                        .phone(dto.getPhone())
-                        .address(dto.getAddress())
-                        .status(dto.getStatus() != null ? dto.getStatus() : true)
-                        .build();
-
-                supplierList.add(supplier);
-            }
-
-            try {
-                supplierRepository.saveAll(supplierList);
-                countSaved += supplierList.size();
-                System.out.println(">>> Chunk saved: " + supplierList.size() + " items.");
-            } catch (Exception e) {
-                e.printStackTrace();
-                System.err.println(">>> ERROR SAVING CHUNK: " + e.getMessage());
-                throw e; // Ném lỗi để Transaction rollback nếu cần
-            }
-        }
-
-        System.out.println(">>> TOTAL SAVED SUCCESSFULLY: " + countSaved);
+        LocalDateTime now = LocalDateTime.now();
+        String createdBy = auditorAware.getCurrentAuditor().orElse(null);
+
+        jdbcTemplate.batchUpdate(INSERT_SUPPLIER_SQL, dataList, dataList.size(), (ps, dto) -> {
+            ps.setString(1, dto.getSupplierName());
+            ps.setString(2, dto.getPhone());
+            ps.setString(3, dto.getAddress());
+            ps.setBoolean(4, dto.getStatus() != null ? dto.getStatus() : true);
+            ps.setObject(5, now);
+            ps.setString(6, createdBy);
+            ps.setObject(7, now);
+            ps.setString(8, createdBy);
+        });
+        log.debug("Imported {} suppliers", dataList.size());
     }
 
     @Override
@@ -178,36 +121,22 @@ public class SupplierExcelService extends BaseExcelHandler<SupplierExcelDTO> {
         };
     }
 
-    public Workbook exportAllSuppliers() throws Exception {
-        List<Supplier> supplierList = supplierRepository.findAll();
-        List<SupplierExcelDTO> dtoList = supplierList.stream()
-                .map(supplier -> SupplierExcelDTO.builder()
+    @Override
+    protected void streamExportData(Consumer<SupplierExcelDTO> sink) {
+        ExcelStreamSupport.forEachPage(exportPageSize, supplierRepository::findExportPage,
+                SupplierExportProjection::getId,
+                supplier -> sink.accept(SupplierExcelDTO.builder()
                         .supplierName(supplier.getName())
                         .phone(supplier.getPhone())
                         .address(supplier.getAddress())
                         .status(supplier.getStatus())
-                        .build())
-                .toList();
-
-        return generateExcel(dtoList);
-    }
-
-    private boolean isEmptyRow(Row row) {
-        if (row == null) return true;
-        // Kiểm tra 2 cột đầu (Tên, SĐT)
-        for (int i = 0; i < 2; i++) {
-            Cell cell = row.getCell(i);
-            if (cell != null && !getCellValueAsString(cell).trim().isEmpty()) {
-                return false; // Có dữ liệu -> không rỗng
-            }
-        }
-        return true;
+                        .build()));
     }
 
-    private Boolean parseBooleanCell(Cell cell) {
-        if (cell == null) return true;
-        String val = getCellValueAsString(cell).trim().toLowerCase();
+    private Boolean parseBoolean(String value) {
+        String val = value.trim().toLowerCase();
+        if (val.isEmpty()) return true;
         // Mở rộng các trường hợp true
         return val.equals("true") || val.equals("1") || val.equals("yes") || val.equals("active") || val.equals("hoạt động");
     }
-}
\ No newline at end of file
+}
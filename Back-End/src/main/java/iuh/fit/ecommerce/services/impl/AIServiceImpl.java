@@ -8,12 +8,12 @@ import iuh.fit.ecommerce.entities.Order;
 import iuh.fit.ecommerce.entities.Product;
 import iuh.fit.ecommerce.entities.ProductVariant;
 import iuh.fit.ecommerce.exceptions.custom.ResourceNotFoundException;
-import iuh.fit.ecommerce.mappers.ProductMapper;
 import iuh.fit.ecommerce.repositories.CustomerRepository;
 import iuh.fit.ecommerce.repositories.OrderRepository;
 import iuh.fit.ecommerce.repositories.ProductRepository;
 import iuh.fit.ecommerce.services.AIService;
 import iuh.fit.ecommerce.services.ChatMemoryService;
+import iuh.fit.ecommerce.services.PricingService;
 import iuh.fit.ecommerce.services.VectorStoreService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.ai.chat.model.ChatModel;
@@ -38,7 +38,7 @@ public class AIServiceImpl implements AIService {
     private final ChatModel chatModel;
     private final ChatMemoryService chatMemoryService;
     private final VectorStoreService vectorStoreService;
-    private final ProductMapper productMapper;
+    private final PricingService pricingService;
 
     @Override
     public ChatAIResponse chat(String message, Long customerId, String sessionId) {
@@ -115,9 +115,7 @@ public class AIServiceImpl implements AIService {
                 products = productRepository.findAllById(productIds);
             }
 
-            productResponses = products.stream()
-                    .map(productMapper::toResponse)
-                    .collect(Collectors.toList());
+            productResponses = pricingService.toPricedResponses(products);
         }
 
         return ChatAIResponse.builder()
@@ -0,0 +1,262 @@
+package iuh.fit.ecommerce.services.impl;
+
+import iuh.fit.ecommerce.entities.elasticsearch.ProductDocument;
+import iuh.fit.ecommerce.services.AutocompleteService;
+import iuh.fit.ecommerce.utils.StringUtils;
+import iuh.fit.ecommerce.utils.SuggestionTrie;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHitsIterator;
+import org.springframework.data.elasticsearch.core.query.Criteria;
+import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilterBuilder;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Gợi ý tìm kiếm từ trie trong bộ nhớ (tên sản phẩm, thương hiệu, danh mục), không truy vấn MySQL.
+ * Trie được nạp từ Elasticsearch lúc khởi động, cập nhật ngay khi node này ghi index
+ * và đồng bộ định kỳ theo indexedAt để nhận thay đổi do node khác ghi.
+ * Khi trie chưa sẵn sàng hoặc không có kết quả thì dùng field nameSuggest (edge n-gram) trên Elasticsearch.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AutocompleteServiceImpl implements AutocompleteService {
+
+    private static final int MAX_LIMIT = 10;
+    // Giới hạn số từ sinh key để tên dài không làm phình trie
+    private static final int MAX_KEY_WORDS = 8;
+    // Đồng bộ lùi lại một khoảng để không sót document ghi cùng lúc với lần đồng bộ trước
+    private static final long SYNC_OVERLAP_MS = 5000;
+    // Thương hiệu/danh mục xếp trên sản phẩm (rating tối đa 5) khi cùng mức khớp
+    private static final double FACET_WEIGHT = 10;
+    private static final String[] SOURCE_FIELDS = {
+            "productId", "name", "brandName", "categoryName", "rating", "status", "indexedAt"
+    };
+
+    private record ProductTerms(String name, double rating, String brand, String category) {}
+
+    /**
+     * Trạng thái trie cùng dữ liệu cần để cập nhật tăng dần (bỏ entry cũ, đếm số sản phẩm mỗi thương hiệu/danh mục).
+     */
+    private static class Snapshot {
+        private final SuggestionTrie trie = new SuggestionTrie();
+        private final Map<Long, ProductTerms> products = new HashMap<>();
+        private final Map<String, Integer> brandCounts = new HashMap<>();
+        private final Map<String, Integer> categoryCounts = new HashMap<>();
+    }
+
+    private final ElasticsearchOperations elasticsearchOperations;
+
+    private volatile Snapshot snapshot = new Snapshot();
+    private volatile boolean ready;
+    private volatile long syncedUpTo;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        Thread loader = new Thread(this::rebuild, "autocomplete-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    @Override
+    public List<String> suggest(String query, int limit) {
+        if (query == null || query.isBlank()) {
+            return new ArrayList<>();
+        }
+        limit = Math.min(Math.max(limit, 1), MAX_LIMIT);
+
+        if (ready) {
+            List<String> suggestions = snapshot.trie.suggest(StringUtils.foldForSearch(query), limit);
+            if (!suggestions.isEmpty()) {
+                return suggestions;
+            }
+        }
+        return suggestFromIndex(query.trim(), limit);
+    }
+
+    @Override
+    public void onProductsIndexed(List<ProductDocument> documents) {
+        if (!ready) {
+            return;
+        }
+        synchronized (this) {
+            documents.forEach(document -> apply(snapshot, document));
+        }
+    }
+
+    @Override
+    public void onProductDeleted(String productId) {
+        if (!ready) {
+            return;
+        }
+        synchronized (this) {
+            removeProduct(snapshot, Long.valueOf(productId));
+        }
+    }
+
+    @Override
+    @Scheduled(initialDelayString = "${search.autocomplete.rebuild-interval-ms:3600000}",
+            fixedDelayString = "${search.autocomplete.rebuild-interval-ms:3600000}")
+    public void rebuild() {
+        long startedAt = System.currentTimeMillis();
+        try {
+            Snapshot fresh = new Snapshot();
+            int count = streamDocuments(productQuery(null), document -> apply(fresh, document));
+            synchronized (this) {
+                snapshot = fresh;
+                syncedUpTo = startedAt;
+                ready = true;
+            }
+            log.info("Autocomplete trie loaded {} products in {} ms", count, System.currentTimeMillis() - startedAt);
+        } catch (Exception e) {
+            log.error("Cannot load autocomplete trie: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${search.autocomplete.sync-interval-ms:10000}")
+    public void syncFromIndex() {
+        if (!ready) {
+            return;
+        }
+        long startedAt = System.currentTimeMillis();
+        try {
+            Criteria changed = new Criteria("indexedAt").greaterThanEqual(syncedUpTo - SYNC_OVERLAP_MS);
+            streamDocuments(productQuery(changed), document -> {
+                synchronized (this) {
+                    apply(snapshot, document);
+                }
+            });
+            syncedUpTo = startedAt;
+        } catch (Exception e) {
+            log.warn("Autocomplete sync failed: {}", e.getMessage());
+        }
+    }
+
+    private List<String> suggestFromIndex(String query, int limit) {
+        try {
+            Criteria criteria = new Criteria("status").is(true)
+                    .and(new Criteria("nameSuggest").matchesAll(query));
+            Query searchQuery = new CriteriaQuery(criteria).setPageable(PageRequest.of(0, limit));
+            searchQuery.addSourceFilter(new FetchSourceFilterBuilder().withIncludes("name").build());
+
+            Set<String> suggestions = new LinkedHashSet<>();
+            for (SearchHit<ProductDocument> hit : elasticsearchOperations.search(searchQuery, ProductDocument.class)) {
+                String name = hit.getContent().getName();
+                if (name != null && !name.isBlank()) {
+                    suggestions.add(name);
+                }
+            }
+            return new ArrayList<>(suggestions);
+        } catch (Exception e) {
+            log.error("Error getting auto complete suggestions: {}", e.getMessage(), e);
+            return new ArrayList<>();
+        }
+    }
+
+    private Query productQuery(Criteria criteria) {
+        Query query = new CriteriaQuery(criteria != null ? criteria : new Criteria());
+        query.addSourceFilter(new FetchSourceFilterBuilder().withIncludes(SOURCE_FIELDS).build());
+        return query;
+    }
+
+    private int streamDocuments(Query query, Consumer<ProductDocument> consumer) {
+        int count = 0;
+        try (SearchHitsIterator<ProductDocument> hits = elasticsearchOperations.searchForStream(query, ProductDocument.class)) {
+            while (hits.hasNext()) {
+                consumer.accept(hits.next().getContent());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void apply(Snapshot state, ProductDocument document) {
+        if (document.getProductId() == null) {
+            return;
+        }
+        removeProduct(state, document.getProductId());
+        if (!Boolean.TRUE.equals(document.getStatus()) || document.getName() == null || document.getName().isBlank()) {
+            return;
+        }
+
+        ProductTerms terms = new ProductTerms(
+                document.getName(),
+                document.getRating() != null ? document.getRating() : 0,
+                blankToNull(document.getBrandName()),
+                blankToNull(document.getCategoryName()));
+        state.products.put(document.getProductId(), terms);
+        state.trie.add(new SuggestionTrie.Entry(productEntryId(document.getProductId()), terms.name(), terms.rating()),
+                keysOf(terms.name()));
+        changeFacetCount(state, state.brandCounts, "b:", terms.brand(), 1);
+        changeFacetCount(state, state.categoryCounts, "c:", terms.category(), 1);
+    }
+
+    private void removeProduct(Snapshot state, Long productId) {
+        ProductTerms old = state.products.remove(productId);
+        if (old == null) {
+            return;
+        }
+        state.trie.remove(productEntryId(productId), keysOf(old.name()));
+        changeFacetCount(state, state.brandCounts, "b:", old.brand(), -1);
+        changeFacetCount(state, state.categoryCounts, "c:", old.category(), -1);
+    }
+
+    private void changeFacetCount(Snapshot state, Map<String, Integer> counts, String prefix, String text, int delta) {
+        if (text == null) {
+            return;
+        }
+        String entryId = prefix + StringUtils.foldForSearch(text);
+        List<String> keys = keysOf(text);
+        int count = counts.getOrDefault(entryId, 0) + delta;
+        if (count <= 0) {
+            counts.remove(entryId);
+            state.trie.remove(entryId, keys);
+            return;
+        }
+        counts.put(entryId, count);
+        // Thương hiệu/danh mục nhiều sản phẩm hơn xếp trước, nhưng vẫn nằm trong khoảng [FACET_WEIGHT, FACET_WEIGHT + 1)
+        state.trie.add(new SuggestionTrie.Entry(entryId, text, FACET_WEIGHT + count / (count + 1.0)), keys);
+    }
+
+    /**
+     * Key đầu là toàn bộ chuỗi đã bỏ dấu, các key sau bắt đầu từ mỗi từ tiếp theo: "dien thoai samsung" -> "thoai samsung", "samsung".
+     */
+    private List<String> keysOf(String text) {
+        String folded = StringUtils.foldForSearch(text);
+        List<String> keys = new ArrayList<>();
+        if (folded.isEmpty()) {
+            return keys;
+        }
+        keys.add(folded);
+        int index = folded.indexOf(' ');
+        while (index >= 0 && keys.size() < MAX_KEY_WORDS) {
+            keys.add(folded.substring(index + 1));
+            index = folded.indexOf(' ', index + 1);
+        }
+        return keys;
+    }
+
+    private static String productEntryId(Long productId) {
+        return "p:" + productId;
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+}
@@ -0,0 +1,117 @@
+package iuh.fit.ecommerce.services.impl;
+
+import iuh.fit.ecommerce.exceptions.custom.ConflictException;
+import iuh.fit.ecommerce.exceptions.custom.ResourceNotFoundException;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Phần dùng chung của job Excel chạy nền (import/export): pool max-concurrent luồng với hàng đợi giới hạn,
+ * đầy thì từ chối ngay; trạng thái job lưu trong hash Redis {name}:job:{jobId} hết hạn sau retention-hours
+ * để instance nào nhận request kiểm tra cũng đọc được.
+ */
+final class BackgroundJobs {
+
+    private final String name;
+    private final String keyPrefix;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final Duration retention;
+    private final ThreadPoolExecutor executor;
+
+    BackgroundJobs(String name, RedisTemplate<String, Object> redisTemplate,
+                   int maxConcurrent, int queueCapacity, long retentionHours) {
+        this.name = name;
+        this.keyPrefix = name + ":job:";
+        this.redisTemplate = redisTemplate;
+        this.retention = Duration.ofHours(retentionHours);
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                maxConcurrent, maxConcurrent, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "excel-" + name + "-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    // Tạo job PENDING, trả về jobId
+    String create(String type, String fileName) {
+        String jobId = UUID.randomUUID().toString();
+        Map<String, Object> job = new HashMap<>();
+        job.put("type", type);
+        job.put("status", "PENDING");
+        job.put("fileName", fileName);
+        job.put("createdAt", LocalDateTime.now().toString());
+        save(jobId, job);
+        return jobId;
+    }
+
+    // Hàng đợi đầy thì xoá job vừa tạo và báo client thử lại sau
+    void execute(String jobId, Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            redisTemplate.delete(key(jobId));
+            throw new ConflictException("Too many " + name + " jobs are queued, try again later");
+        }
+    }
+
+    void save(String jobId, Map<String, Object> fields) {
+        String key = key(jobId);
+        redisTemplate.opsForHash().putAll(key, fields);
+        redisTemplate.expire(key, retention);
+    }
+
+    void fail(String jobId, Exception e) {
+        save(jobId, Map.of(
+                "status", "FAILED",
+                "error", String.valueOf(e.getMessage()),
+                "finishedAt", LocalDateTime.now().toString()));
+    }
+
+    Map<Object, Object> find(String jobId) {
+        Map<Object, Object> job = redisTemplate.opsForHash().entries(key(jobId));
+        if (job.isEmpty()) {
+            throw new ResourceNotFoundException(
+                    Character.toUpperCase(name.charAt(0)) + name.substring(1) + " job not found: " + jobId);
+        }
+        return job;
+    }
+
+    boolean exists(String jobId) {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(key(jobId)));
+    }
+
+    String key(String jobId) {
+        return keyPrefix + jobId;
+    }
+
+    Duration retention() {
+        return retention;
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    static String value(Map<Object, Object> job, String field) {
+        Object value = job.get(field);
+        return value != null ? value.toString() : null;
+    }
+
+    static LocalDateTime time(Map<Object, Object> job, String field) {
+        String value = value(job, field);
+        return value != null ? LocalDateTime.parse(value) : null;
+    }
+}
@@ -2,8 +2,10 @@ package iuh.fit.ecommerce.services.impl;
 
 import iuh.fit.ecommerce.dtos.request.cart.CartAddRequest;
 import iuh.fit.ecommerce.dtos.request.cart.CartUpdateQuantityRequest;
+import iuh.fit.ecommerce.dtos.response.cart.CartDetailResponse;
 import iuh.fit.ecommerce.dtos.response.cart.CartResponse;
 import iuh.fit.ecommerce.dtos.response.cart.CartWithCustomerResponse;
+import iuh.fit.ecommerce.dtos.response.product.VariantPriceResponse;
 import iuh.fit.ecommerce.entities.*;
 import iuh.fit.ecommerce.exceptions.custom.ResourceNotFoundException;
 import iuh.fit.ecommerce.mappers.CartMapper;
@@ -11,7 +13,9 @@ import iuh.fit.ecommerce.repositories.CartRepository;
 import iuh.fit.ecommerce.repositories.ProductVariantRepository;
 import iuh.fit.ecommerce.services.CartService;
 import iuh.fit.ecommerce.services.EmailService;
+import iuh.fit.ecommerce.services.PricingService;
 import iuh.fit.ecommerce.services.PromotionService;
+import iuh.fit.ecommerce.services.StockReservationService;
 import iuh.fit.ecommerce.utils.SecurityUtils;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
@@ -24,6 +28,9 @@ import lombok.extern.slf4j.Slf4j;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -34,12 +41,14 @@ public class CartServiceImpl implements CartService {
     private final CartRepository cartRepository;
     private final ProductVariantRepository productVariantRepository;
     private final PromotionService promotionService;
+    private final PricingService pricingService;
     private final CartMapper cartMapper;
+    private final StockReservationService stockReservationService;
     private final EmailService emailService;
 
     @Override
     public CartResponse getOrCreateCart() {
-        return cartMapper.toResponse(findOrCreateCartForCurrentUser());
+        return toResponse(findOrCreateCartForCurrentUser());
     }
 
     @Override
@@ -59,7 +68,7 @@ public class CartServiceImpl implements CartService {
 
         cartRepository.save(cart);
 
-        return cartMapper.toResponse(cart);
+        return toResponse(cart);
     }
 
     @Override
@@ -77,7 +86,7 @@ public class CartServiceImpl implements CartService {
         updateCartTotalItems(cart);
         cartRepository.save(cart);
 
-        return cartMapper.toResponse(cart);
+        return toResponse(cart);
     }
 
     @Override
@@ -110,7 +119,7 @@ public class CartServiceImpl implements CartService {
         updateCartTotalItems(cart);
         cartRepository.save(cart);
 
-        return cartMapper.toResponse(cart);
+        return toResponse(cart);
     }
 
     private Cart findOrCreateCartForCurrentUser() {
@@ -149,6 +158,29 @@ public class CartServiceImpl implements CartService {
         cart.getCartDetails().add(cartDetail);
     }
 
+    /**
+     * Discount lưu trong CartDetail là mức tại lúc thêm vào giỏ, khi trả về thì lấy lại mức hiện tại cho cả giỏ một lần.
+     */
+    private CartResponse toResponse(Cart cart) {
+        CartResponse response = cartMapper.toResponse(cart);
+        if (response.getItems() == null || response.getItems().isEmpty()) {
+            return response;
+        }
+        Set<Long> variantIds = response.getItems().stream()
+                .map(CartDetailResponse::getProductVariantId)
+                .collect(Collectors.toSet());
+        Map<Long, VariantPriceResponse> prices = pricingService.priceVariants(variantIds);
+        Map<Long, Integer> available = stockReservationService.getAvailableStock(variantIds);
+        for (CartDetailResponse item : response.getItems()) {
+            VariantPriceResponse price = prices.get(item.getProductVariantId());
+            if (price != null) {
+                item.setDiscount(price.getDiscount());
+            }
+            item.setAvailableStock(available.get(item.getProductVariantId()));
+        }
+        return response;
+    }
+
     private void updateCartTotalItems(Cart cart) {
         long totalItems = cart.getCartDetails().stream()
                 .mapToLong(CartDetail::getQuantity)
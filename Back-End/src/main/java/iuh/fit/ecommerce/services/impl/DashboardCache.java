@@ -0,0 +1,198 @@
+package iuh.fit.ecommerce.services.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import iuh.fit.ecommerce.configurations.CacheConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Cache kết quả báo cáo dashboard theo (report, kỳ, tham số), hai tầng: bản sao cục bộ trong JVM đứng trước Redis.
+ * Kỳ đã đóng (ngày cuối kỳ cũ hơn settle-days) coi như bất biến: lưu Redis với TTL dài, key kèm số thế hệ
+ * tăng mỗi khi bảng tổng hợp của một ngày trong vùng đó được tính lại (sửa đơn cũ, backfill). Request đọc dữ liệu cũ
+ * trước lúc tăng mà ghi sau lúc xoá thì chỉ ghi vào thế hệ cũ, không ai đọc lại và tự hết hạn.
+ * Kỳ đang mở (có hôm nay hoặc vài ngày gần đây) lưu TTL ngắn và bị xoá khi có đơn hoàn thành.
+ * Bản sao cục bộ luôn có TTL riêng để các instance khác cũng thấy thay đổi sau một khoảng ngắn.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DashboardCache {
+
+    private static final String CLOSED_GENERATION_KEY = "dashboard:closed:generation";
+
+    private final CacheManager cacheManager;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${dashboard.cache.enabled:true}")
+    private boolean enabled;
+
+    // Đơn có thể đổi trạng thái vài ngày sau ngày đặt, kỳ chỉ được coi là đóng sau khoảng này
+    @Value("${dashboard.cache.settle-days:7}")
+    private int settleDays;
+
+    @Value("${dashboard.cache.local-max-entries:1000}")
+    private int localMaxEntries;
+
+    @Value("${dashboard.cache.local-closed-ttl-seconds:600}")
+    private long localClosedTtlSeconds;
+
+    @Value("${dashboard.cache.local-open-ttl-seconds:15}")
+    private long localOpenTtlSeconds;
+
+    private final Map<String, LocalEntry> local = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, LocalEntry> eldest) {
+            return size() > localMaxEntries;
+        }
+    };
+
+    private record LocalEntry(Object value, long expiresAt) {
+    }
+
+    /**
+     * Lấy kết quả từ cache, không có thì gọi loader và lưu lại.
+     *
+     * @param periodEnd ngày cuối (tính cả) của kỳ báo cáo; null nếu báo cáo không gắn với kỳ đã đóng (luôn coi là đang mở)
+     * @param params    tham số còn lại của báo cáo, ghép thành key
+     * @param loader    phải trả về giá trị Jackson đọc lại được (List thì dùng ArrayList, không dùng Stream.toList())
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String report, LocalDate periodEnd, String params, Supplier<T> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        boolean closed = periodEnd != null && periodEnd.isBefore(closedBoundary());
+        String period = closed ? "closed" : "open";
+        String cacheName = closed ? CacheConfig.DASHBOARD_CLOSED_CACHE : CacheConfig.DASHBOARD_OPEN_CACHE;
+        String localKey = cacheName + "::" + report + ":" + params;
+
+        Object cached = getLocal(localKey);
+        if (cached != null) {
+            count(report, period, "local_hit");
+            return (T) cached;
+        }
+
+        Cache cache = cacheManager.getCache(cacheName);
+        String key = report + ":" + params;
+        try {
+            // Đọc thế hệ trước khi chạy loader: dữ liệu tính trước lần tăng kế tiếp chỉ nằm ở thế hệ hiện tại
+            if (closed) {
+                key = closedGeneration() + ":" + key;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Cannot read dashboard cache generation: {}", e.getMessage());
+            cache = null;
+        }
+        try {
+            Cache.ValueWrapper wrapper = cache != null ? cache.get(key) : null;
+            if (wrapper != null && wrapper.get() != null) {
+                count(report, period, "redis_hit");
+                putLocal(localKey, wrapper.get(), closed);
+                return (T) wrapper.get();
+            }
+        } catch (RuntimeException e) {
+            // Redis lỗi hoặc không đọc lại được giá trị cũ thì tính lại, không làm hỏng request
+            log.warn("Cannot read dashboard cache {} {}: {}", cacheName, key, e.getMessage());
+        }
+
+        count(report, period, "miss");
+        T value = loader.get();
+        if (value == null) {
+            return null;
+        }
+        try {
+            if (cache != null) {
+                cache.put(key, value);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Cannot write dashboard cache {} {}: {}", cacheName, key, e.getMessage());
+        }
+        putLocal(localKey, value, closed);
+        return value;
+    }
+
+    // Đơn hoàn thành làm thay đổi doanh thu của kỳ đang mở
+    public void evictOpen() {
+        evict(CacheConfig.DASHBOARD_OPEN_CACHE);
+    }
+
+    // Bảng tổng hợp từ ngày from vừa được tính lại: nếu chạm vào vùng kỳ đã đóng thì sang thế hệ mới và bỏ thế hệ cũ
+    public void onRollupChanged(LocalDate from) {
+        if (from.isBefore(closedBoundary())) {
+            try {
+                redisTemplate.opsForValue().increment(CLOSED_GENERATION_KEY);
+            } catch (RuntimeException e) {
+                log.warn("Cannot bump dashboard cache generation: {}", e.getMessage());
+            }
+            evict(CacheConfig.DASHBOARD_CLOSED_CACHE);
+        }
+    }
+
+    private long closedGeneration() {
+        Object generation = redisTemplate.opsForValue().get(CLOSED_GENERATION_KEY);
+        return generation instanceof Number number ? number.longValue() : 0;
+    }
+
+    private LocalDate closedBoundary() {
+        return LocalDate.now().minusDays(settleDays);
+    }
+
+    private void evict(String cacheName) {
+        synchronized (local) {
+            local.keySet().removeIf(key -> key.startsWith(cacheName + "::"));
+        }
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache == null) {
+            return;
+        }
+        try {
+            cache.clear();
+            log.info("Cleared dashboard cache {}", cacheName);
+        } catch (RuntimeException e) {
+            log.warn("Cannot clear dashboard cache {}: {}", cacheName, e.getMessage());
+        }
+    }
+
+    private Object getLocal(String key) {
+        synchronized (local) {
+            LocalEntry entry = local.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt() - System.nanoTime() <= 0) {
+                local.remove(key);
+                return null;
+            }
+            return entry.value();
+        }
+    }
+
+    private void putLocal(String key, Object value, boolean closed) {
+        long ttlSeconds = closed ? localClosedTtlSeconds : localOpenTtlSeconds;
+        if (ttlSeconds <= 0) {
+            return;
+        }
+        synchronized (local) {
+            local.put(key, new LocalEntry(value, System.nanoTime() + TimeUnit.SECONDS.toNanos(ttlSeconds)));
+        }
+    }
+
+    private void count(String report, String period, String result) {
+        meterRegistry.counter("dashboard.cache",
+                "report", report,
+                "period", period,
+                "result", result).increment();
+    }
+}
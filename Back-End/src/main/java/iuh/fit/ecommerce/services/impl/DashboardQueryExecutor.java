@@ -0,0 +1,138 @@
+package iuh.fit.ecommerce.services.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Chạy song song các query dashboard độc lập với nhau trên virtual thread.
+ * Mỗi request mở một {@link Scope}: các query fork trong scope chỉ sống trong scope đó,
+ * join() chờ tất cả xong, query đầu tiên lỗi thì huỷ các query còn lại và ném lỗi ra request.
+ * Số query chạy cùng lúc bị giới hạn theo từng request (per-request-budget) và trên toàn ứng dụng (max-concurrent)
+ * để dashboard không chiếm hết connection của Hikari pool.
+ */
+@Component
+@RequiredArgsConstructor
+public class DashboardQueryExecutor {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${dashboard.query.per-request-budget:4}")
+    private int perRequestBudget;
+
+    @Value("${dashboard.query.max-concurrent:8}")
+    private int maxConcurrent;
+
+    @Value("${dashboard.query.timeout-ms:30000}")
+    private long timeoutMs;
+
+    private Semaphore globalBudget;
+
+    @PostConstruct
+    void init() {
+        globalBudget = new Semaphore(maxConcurrent, true);
+    }
+
+    public Scope open() {
+        return new Scope();
+    }
+
+    public final class Scope implements AutoCloseable {
+
+        private final ExecutorService executor =
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("dashboard-query-", 0).factory());
+        private final CompletionService<Object> completion = new ExecutorCompletionService<>(executor);
+        private final Semaphore requestBudget = new Semaphore(perRequestBudget);
+        private final List<Future<Object>> forks = new ArrayList<>();
+
+        private Scope() {
+        }
+
+        /**
+         * Đăng ký một query, kết quả chỉ đọc được sau {@link #join()}.
+         *
+         * @param name tên query, dùng làm tag của timer dashboard.query
+         */
+        @SuppressWarnings("unchecked")
+        public <T> Supplier<T> fork(String name, Callable<T> query) {
+            Future<Object> future = completion.submit(() -> run(name, query));
+            forks.add(future);
+            return () -> (T) future.resultNow();
+        }
+
+        public void join() {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            try {
+                for (int done = 0; done < forks.size(); done++) {
+                    Future<Object> future = completion.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (future == null) {
+                        throw new TimeoutException("Dashboard queries did not finish within " + timeoutMs + " ms");
+                    }
+                    future.get();
+                }
+            } catch (ExecutionException e) {
+                executor.shutdownNow();
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw new IllegalStateException("Dashboard query failed", e.getCause());
+            } catch (TimeoutException e) {
+                executor.shutdownNow();
+                throw new IllegalStateException(e.getMessage(), e);
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for dashboard queries", e);
+            }
+        }
+
+        @Override
+        public void close() {
+            // Không để query nào sống lâu hơn request đã mở scope
+            executor.shutdownNow();
+        }
+
+        private <T> Object run(String name, Callable<T> query) throws Exception {
+            requestBudget.acquire();
+            try {
+                globalBudget.acquire();
+                try {
+                    Timer.Sample sample = Timer.start(meterRegistry);
+                    String outcome = "success";
+                    try {
+                        return query.call();
+                    } catch (Exception e) {
+                        outcome = "error";
+                        throw e;
+                    } finally {
+                        sample.stop(Timer.builder("dashboard.query")
+                                .tag("query", name)
+                                .tag("outcome", outcome)
+                                .register(meterRegistry));
+                    }
+                } finally {
+                    globalBudget.release();
+                }
+            } finally {
+                requestBudget.release();
+            }
+        }
+    }
+}
@@ -1,19 +1,25 @@
 package iuh.fit.ecommerce.services.impl;
 
+import iuh.fit.ecommerce.dtos.projection.RevenueByMonthProjection;
+import iuh.fit.ecommerce.dtos.projection.SalesTotalsProjection;
 import iuh.fit.ecommerce.dtos.projection.TopProductProjection;
 import iuh.fit.ecommerce.dtos.projection.TopPromotionProjection;
 import iuh.fit.ecommerce.dtos.projection.TopVoucherProjection;
+import iuh.fit.ecommerce.dtos.projection.UsageTotalsProjection;
 import iuh.fit.ecommerce.dtos.response.dashboard.*;
 import iuh.fit.ecommerce.entities.OrderDetail;
 import iuh.fit.ecommerce.entities.PromotionUsage;
 import iuh.fit.ecommerce.repositories.OrderDetailRepository;
 import iuh.fit.ecommerce.repositories.OrderRepository;
 import iuh.fit.ecommerce.repositories.PromotionUsageRepository;
+import iuh.fit.ecommerce.repositories.SalesRollupRepository;
 import iuh.fit.ecommerce.repositories.VoucherUsageHistoryRepository;
 import iuh.fit.ecommerce.services.DashboardService;
 import iuh.fit.ecommerce.services.ProductService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
@@ -21,113 +27,118 @@ import java.time.LocalDateTime;
 import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Số liệu tổng hợp (doanh thu, top sản phẩm/voucher/khuyến mãi, so sánh kỳ) đọc từ các bảng tổng hợp theo ngày
+ * do SalesRollupService duy trì. Các màn chi tiết (danh sách đơn của một voucher/khuyến mãi/sản phẩm) vẫn đọc bảng gốc.
+ * Kết quả tổng hợp đi qua DashboardCache: kỳ đã đóng cache vĩnh viễn, kỳ đang mở cache ngắn.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class DashboardServiceImpl implements DashboardService {
+
+    private static final Pageable TOP_5 = PageRequest.of(0, 5);
     
     private final OrderRepository orderRepository;
     private final OrderDetailRepository orderDetailRepository;
     private final VoucherUsageHistoryRepository voucherUsageHistoryRepository;
     private final PromotionUsageRepository promotionUsageRepository;
+    private final SalesRollupRepository salesRollupRepository;
+    private final DashboardQueryExecutor dashboardQueryExecutor;
+    private final DashboardCache dashboardCache;
     private final ProductService productService;
 
     @Override
     public List<RevenueByMonthResponse> getRevenueByMonth(Integer year, Integer month) {
+        // Nếu có month cụ thể, chỉ lấy tháng đó; không thì lấy cả 12 tháng trong một query
+        YearMonth first = YearMonth.of(year, month != null ? month : 1);
+        YearMonth last = YearMonth.of(year, month != null ? month : 12);
+        return dashboardCache.get("revenue-by-month", last.atEndOfMonth(), first + "_" + last,
+                () -> revenueByMonth(year, first, last));
+    }
+
+    private List<RevenueByMonthResponse> revenueByMonth(Integer year, YearMonth first, YearMonth last) {
+
+        Map<Integer, RevenueByMonthProjection> byMonth = new HashMap<>();
+        for (RevenueByMonthProjection projection : salesRollupRepository.getRevenueByMonth(
+                first.atDay(1), last.atEndOfMonth())) {
+            byMonth.put(projection.getMonth(), projection);
+        }
+
         List<RevenueByMonthResponse> result = new ArrayList<>();
-        
-        // Nếu có month cụ thể, chỉ lấy tháng đó
-        if (month != null) {
-            YearMonth yearMonth = YearMonth.of(year, month);
-            LocalDate startDate = yearMonth.atDay(1);
-            LocalDate endDate = yearMonth.atEndOfMonth();
-            
-            LocalDateTime start = startDate.atStartOfDay();
-            LocalDateTime end = endDate.atTime(23, 59, 59);
-            
-            Double revenue = orderRepository.sumRevenueByDateRange(start, end);
-            Long orderCount = orderRepository.countByDateRange(start, end);
-            
+        for (int m = first.getMonthValue(); m <= last.getMonthValue(); m++) {
+            RevenueByMonthProjection projection = byMonth.get(m);
             result.add(RevenueByMonthResponse.builder()
-                    .month(month)
+                    .month(m)
                     .year(year)
-                    .revenue(revenue != null ? revenue : 0.0)
-                    .orderCount(orderCount)
+                    .revenue(projection != null ? projection.getRevenue() : 0.0)
+                    .orderCount(projection != null ? projection.getOrderCount() : 0L)
                     .build());
-        } else {
-            // Nếu không có month, lấy tất cả 12 tháng
-            for (int m = 1; m <= 12; m++) {
-                YearMonth yearMonth = YearMonth.of(year, m);
-                LocalDate startDate = yearMonth.atDay(1);
-                LocalDate endDate = yearMonth.atEndOfMonth();
-                
-                LocalDateTime start = startDate.atStartOfDay();
-                LocalDateTime end = endDate.atTime(23, 59, 59);
-                
-                Double revenue = orderRepository.sumRevenueByDateRange(start, end);
-                Long orderCount = orderRepository.countByDateRange(start, end);
-                
-                result.add(RevenueByMonthResponse.builder()
-                        .month(m)
-                        .year(year)
-                        .revenue(revenue != null ? revenue : 0.0)
-                        .orderCount(orderCount)
-                        .build());
-            }
         }
-        
         return result;
     }
 
     @Override
     public List<RevenueByDayResponse> getRevenueByDay(LocalDate startDate, LocalDate endDate) {
-        LocalDateTime start = startDate.atStartOfDay();
-        LocalDateTime end = endDate.atTime(23, 59, 59);
-        
-        return orderRepository.getRevenueByDay(start, end).stream()
-                .map(projection -> RevenueByDayResponse.builder()
-                        .date(projection.getOrderDate())
-                        .revenue(projection.getRevenue())
-                        .orderCount(projection.getOrderCount())
-                        .build())
-                .toList();
+        return cachedList("revenue-by-day", endDate, startDate + "_" + endDate,
+                () -> salesRollupRepository.getRevenueByDay(startDate, endDate).stream()
+                        .map(projection -> RevenueByDayResponse.builder()
+                                .date(projection.getOrderDate())
+                                .revenue(projection.getRevenue())
+                                .orderCount(projection.getOrderCount())
+                                .build())
+                        .toList());
     }
 
     @Override
     public List<RevenueByYearResponse> getRevenueByYear(Integer year) {
-        return orderRepository.getRevenueByYear(year).stream()
-                .map(projection -> RevenueByYearResponse.builder()
-                        .year(projection.getYear())
-                        .revenue(projection.getRevenue())
-                        .orderCount(projection.getOrderCount())
-                        .build())
-                .toList();
+        // Không có year thì lấy tất cả các năm, gồm cả năm hiện tại nên luôn là kỳ đang mở
+        LocalDate periodEnd = year != null ? LocalDate.of(year, 12, 31) : null;
+        return cachedList("revenue-by-year", periodEnd, String.valueOf(year),
+                () -> salesRollupRepository.getRevenueByYear(year).stream()
+                        .map(projection -> RevenueByYearResponse.builder()
+                                .year(projection.getYear())
+                                .revenue(projection.getRevenue())
+                                .orderCount(projection.getOrderCount())
+                                .build())
+                        .toList());
+    }
+
+    // Jackson không đọc lại được List bất biến của Stream.toList() khi có type info, nên cache bản ArrayList
+    private <T> List<T> cachedList(String report, LocalDate periodEnd, String params, Supplier<List<T>> loader) {
+        return dashboardCache.get(report, periodEnd, params, () -> new ArrayList<>(loader.get()));
+    }
+
+    private String pageKey(Pageable pageable) {
+        return pageable.isPaged() ? "top" + pageable.getPageSize() : "all";
     }
 
     @Override
     public List<TopProductResponse> getTopProductsByDay(LocalDate startDate, LocalDate endDate) {
-        LocalDateTime start = startDate.atStartOfDay();
-        LocalDateTime end = endDate.atTime(23, 59, 59);
-        
-        return orderDetailRepository.getTopProductsByDay(start, end).stream()
-                .map(this::mapToTopProductResponse)
-                .toList();
+        return topProducts(startDate, endDate, TOP_5);
     }
 
     @Override
     public List<TopProductResponse> getTopProductsByMonth(Integer year, Integer month) {
-        return orderDetailRepository.getTopProductsByMonth(year, month).stream()
-                .map(this::mapToTopProductResponse)
-                .toList();
+        YearMonth yearMonth = YearMonth.of(year, month);
+        return topProducts(yearMonth.atDay(1), yearMonth.atEndOfMonth(), TOP_5);
     }
 
     @Override
     public List<TopProductResponse> getTopProductsByYear(Integer year) {
-        return orderDetailRepository.getTopProductsByYear(year).stream()
-                .map(this::mapToTopProductResponse)
-                .toList();
+        return topProducts(LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31), TOP_5);
+    }
+
+    private List<TopProductResponse> topProducts(LocalDate startDate, LocalDate endDate, Pageable pageable) {
+        return cachedList("products", endDate, pageKey(pageable) + ":" + startDate + "_" + endDate,
+                () -> salesRollupRepository.getTopProducts(startDate, endDate, pageable).stream()
+                        .map(this::mapToTopProductResponse)
+                        .toList());
     }
     
     private TopProductResponse mapToTopProductResponse(TopProductProjection projection) {
@@ -145,19 +156,30 @@ public class DashboardServiceImpl implements DashboardService {
             String timeType,
             LocalDate startDate1, LocalDate endDate1,
             LocalDate startDate2, LocalDate endDate2) {
+        return dashboardCache.get("compare-revenue", latest(endDate1, endDate2),
+                comparisonKey(timeType, startDate1, endDate1, startDate2, endDate2),
+                () -> compareRevenueUncached(timeType, startDate1, endDate1, startDate2, endDate2));
+    }
+
+    private ComparisonResponse compareRevenueUncached(
+            String timeType,
+            LocalDate startDate1, LocalDate endDate1,
+            LocalDate startDate2, LocalDate endDate2) {
         
-        LocalDateTime start1 = startDate1.atStartOfDay();
-        LocalDateTime end1 = endDate1.atTime(23, 59, 59);
-        LocalDateTime start2 = startDate2.atStartOfDay();
-        LocalDateTime end2 = endDate2.atTime(23, 59, 59);
-        
-        // Lấy dữ liệu kỳ 1
-        Double revenue1 = orderRepository.sumRevenueByDateRange(start1, end1);
-        Long orderCount1 = orderRepository.countByDateRange(start1, end1);
-        
-        // Lấy dữ liệu kỳ 2
-        Double revenue2 = orderRepository.sumRevenueByDateRange(start2, end2);
-        Long orderCount2 = orderRepository.countByDateRange(start2, end2);
+        // Lấy dữ liệu kỳ 1 và kỳ 2 song song
+        SalesTotalsProjection period1;
+        SalesTotalsProjection period2;
+        try (DashboardQueryExecutor.Scope scope = dashboardQueryExecutor.open()) {
+            Supplier<SalesTotalsProjection> first = scope.fork("sales.period1", () -> salesRollupRepository.sumSales(startDate1, endDate1));
+            Supplier<SalesTotalsProjection> second = scope.fork("sales.period2", () -> salesRollupRepository.sumSales(startDate2, endDate2));
+            scope.join();
+            period1 = first.get();
+            period2 = second.get();
+        }
+        Double revenue1 = period1.getRevenue();
+        Long orderCount1 = period1.getTotalOrders();
+        Double revenue2 = period2.getRevenue();
+        Long orderCount2 = period2.getTotalOrders();
         
         // Xử lý null
         revenue1 = revenue1 != null ? revenue1 : 0.0;
@@ -192,6 +214,15 @@ public class DashboardServiceImpl implements DashboardService {
                 .build();
     }
     
+    private LocalDate latest(LocalDate first, LocalDate second) {
+        return first.isAfter(second) ? first : second;
+    }
+
+    private String comparisonKey(String timeType, LocalDate startDate1, LocalDate endDate1,
+                                 LocalDate startDate2, LocalDate endDate2) {
+        return timeType + ":" + startDate1 + "_" + endDate1 + ":" + startDate2 + "_" + endDate2;
+    }
+
     private String formatPeriodLabel(String timeType, LocalDate start, LocalDate end, DateTimeFormatter formatter) {
         switch (timeType) {
             case "day":
@@ -207,26 +238,25 @@ public class DashboardServiceImpl implements DashboardService {
 
     @Override
     public List<TopVoucherResponse> getTopVouchersByDay(LocalDate startDate, LocalDate endDate) {
-        LocalDateTime start = startDate.atStartOfDay();
-        LocalDateTime end = endDate.atTime(23, 59, 59);
-        
-        return voucherUsageHistoryRepository.getTopVouchersByDay(start, end).stream()
-                .map(this::mapToTopVoucherResponse)
-                .toList();
+        return vouchers(startDate, endDate, TOP_5);
     }
 
     @Override
     public List<TopVoucherResponse> getTopVouchersByMonth(Integer year, Integer month) {
-        return voucherUsageHistoryRepository.getTopVouchersByMonth(year, month).stream()
-                .map(this::mapToTopVoucherResponse)
-                .toList();
+        YearMonth yearMonth = YearMonth.of(year, month);
+        return vouchers(yearMonth.atDay(1), yearMonth.atEndOfMonth(), TOP_5);
     }
 
     @Override
     public List<TopVoucherResponse> getTopVouchersByYear(Integer year) {
-        return voucherUsageHistoryRepository.getTopVouchersByYear(year).stream()
-                .map(this::mapToTopVoucherResponse)
-                .toList();
+        return vouchers(LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31), TOP_5);
+    }
+
+    private List<TopVoucherResponse> vouchers(LocalDate startDate, LocalDate endDate, Pageable pageable) {
+        return cachedList("vouchers", endDate, pageKey(pageable) + ":" + startDate + "_" + endDate,
+                () -> salesRollupRepository.getTopVouchers(startDate, endDate, pageable).stream()
+                        .map(this::mapToTopVoucherResponse)
+                        .toList());
     }
     
     private TopVoucherResponse mapToTopVoucherResponse(TopVoucherProjection projection) {
@@ -241,38 +271,25 @@ public class DashboardServiceImpl implements DashboardService {
 
     @Override
     public List<TopPromotionResponse> getTopPromotionsByDay(LocalDate startDate, LocalDate endDate) {
-        LocalDateTime start = startDate.atStartOfDay();
-        LocalDateTime end = endDate.atTime(23, 59, 59);
-        
-        log.info("Getting top promotions by day from {} to {}", start, end);
-        var projections = promotionUsageRepository.getTopPromotionsByDay(start, end);
-        log.info("Found {} promotion projections", projections.size());
-        
-        return projections.stream()
-                .map(this::mapToTopPromotionResponse)
-                .toList();
+        return promotions(startDate, endDate, TOP_5);
     }
 
     @Override
     public List<TopPromotionResponse> getTopPromotionsByMonth(Integer year, Integer month) {
-        log.info("Getting top promotions by month: {}/{}", month, year);
-        var projections = promotionUsageRepository.getTopPromotionsByMonth(year, month);
-        log.info("Found {} promotion projections", projections.size());
-        
-        return projections.stream()
-                .map(this::mapToTopPromotionResponse)
-                .toList();
+        YearMonth yearMonth = YearMonth.of(year, month);
+        return promotions(yearMonth.atDay(1), yearMonth.atEndOfMonth(), TOP_5);
     }
 
     @Override
     public List<TopPromotionResponse> getTopPromotionsByYear(Integer year) {
-        log.info("Getting top promotions by year: {}", year);
-        var projections = promotionUsageRepository.getTopPromotionsByYear(year);
-        log.info("Found {} promotion projections", projections.size());
-        
-        return projections.stream()
-                .map(this::mapToTopPromotionResponse)
-                .toList();
+        return promotions(LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31), TOP_5);
+    }
+
+    private List<TopPromotionResponse> promotions(LocalDate startDate, LocalDate endDate, Pageable pageable) {
+        return cachedList("promotions", endDate, pageKey(pageable) + ":" + startDate + "_" + endDate,
+                () -> salesRollupRepository.getTopPromotions(startDate, endDate, pageable).stream()
+                        .map(this::mapToTopPromotionResponse)
+                        .toList());
     }
     
     private TopPromotionResponse mapToTopPromotionResponse(TopPromotionProjection projection) {
@@ -290,22 +307,30 @@ public class DashboardServiceImpl implements DashboardService {
             String timeType,
             LocalDate startDate1, LocalDate endDate1,
             LocalDate startDate2, LocalDate endDate2) {
+        return dashboardCache.get("compare-voucher", latest(endDate1, endDate2),
+                comparisonKey(timeType, startDate1, endDate1, startDate2, endDate2),
+                () -> compareVoucherUncached(timeType, startDate1, endDate1, startDate2, endDate2));
+    }
+
+    private VoucherComparisonResponse compareVoucherUncached(
+            String timeType,
+            LocalDate startDate1, LocalDate endDate1,
+            LocalDate startDate2, LocalDate endDate2) {
         
-        LocalDateTime start1 = startDate1.atStartOfDay();
-        LocalDateTime end1 = endDate1.atTime(23, 59, 59);
-        LocalDateTime start2 = startDate2.atStartOfDay();
-        LocalDateTime end2 = endDate2.atTime(23, 59, 59);
-        
-        log.info("Comparing voucher: Period1({} to {}) vs Period2({} to {})", 
-                 start1, end1, start2, end2);
-        
-        // Lấy dữ liệu kỳ 1
-        Long count1 = voucherUsageHistoryRepository.countVoucherUsageByDateRange(start1, end1);
-        Double discount1 = voucherUsageHistoryRepository.sumVoucherDiscountByDateRange(start1, end1);
-        
-        // Lấy dữ liệu kỳ 2
-        Long count2 = voucherUsageHistoryRepository.countVoucherUsageByDateRange(start2, end2);
-        Double discount2 = voucherUsageHistoryRepository.sumVoucherDiscountByDateRange(start2, end2);
+        // Lấy dữ liệu kỳ 1 và kỳ 2 song song
+        UsageTotalsProjection period1;
+        UsageTotalsProjection period2;
+        try (DashboardQueryExecutor.Scope scope = dashboardQueryExecutor.open()) {
+            Supplier<UsageTotalsProjection> first = scope.fork("voucher.period1", () -> salesRollupRepository.sumVoucherUsage(startDate1, endDate1));
+            Supplier<UsageTotalsProjection> second = scope.fork("voucher.period2", () -> salesRollupRepository.sumVoucherUsage(startDate2, endDate2));
+            scope.join();
+            period1 = first.get();
+            period2 = second.get();
+        }
+        Long count1 = period1.getUsageCount();
+        Double discount1 = period1.getDiscountAmount();
+        Long count2 = period2.getUsageCount();
+        Double discount2 = period2.getDiscountAmount();
         
         // Xử lý null
         count1 = count1 != null ? count1 : 0L;
@@ -343,22 +368,30 @@ public class DashboardServiceImpl implements DashboardService {
             String timeType,
             LocalDate startDate1, LocalDate endDate1,
             LocalDate startDate2, LocalDate endDate2) {
+        return dashboardCache.get("compare-promotion", latest(endDate1, endDate2),
+                comparisonKey(timeType, startDate1, endDate1, startDate2, endDate2),
+                () -> comparePromotionUncached(timeType, startDate1, endDate1, startDate2, endDate2));
+    }
+
+    private PromotionComparisonResponse comparePromotionUncached(
+            String timeType,
+            LocalDate startDate1, LocalDate endDate1,
+            LocalDate startDate2, LocalDate endDate2) {
         
-        LocalDateTime start1 = startDate1.atStartOfDay();
-        LocalDateTime end1 = endDate1.atTime(23, 59, 59);
-        LocalDateTime start2 = startDate2.atStartOfDay();
-        LocalDateTime end2 = endDate2.atTime(23, 59, 59);
-        
-        log.info("Comparing promotion: Period1({} to {}) vs Period2({} to {})", 
-                 start1, end1, start2, end2);
-        
-        // Lấy dữ liệu kỳ 1
-        Long count1 = promotionUsageRepository.countPromotionUsageByDateRange(start1, end1);
-        Double discount1 = promotionUsageRepository.sumPromotionDiscountByDateRange(start1, end1);
-        
-        // Lấy dữ liệu kỳ 2
-        Long count2 = promotionUsageRepository.countPromotionUsageByDateRange(start2, end2);
-        Double discount2 = promotionUsageRepository.sumPromotionDiscountByDateRange(start2, end2);
+        // Lấy dữ liệu kỳ 1 và kỳ 2 song song
+        UsageTotalsProjection period1;
+        UsageTotalsProjection period2;
+        try (DashboardQueryExecutor.Scope scope = dashboardQueryExecutor.open()) {
+            Supplier<UsageTotalsProjection> first = scope.fork("promotion.period1", () -> salesRollupRepository.sumPromotionUsage(startDate1, endDate1));
+            Supplier<UsageTotalsProjection> second = scope.fork("promotion.period2", () -> salesRollupRepository.sumPromotionUsage(startDate2, endDate2));
+            scope.join();
+            period1 = first.get();
+            period2 = second.get();
+        }
+        Long count1 = period1.getUsageCount();
+        Double discount1 = period1.getDiscountAmount();
+        Long count2 = period2.getUsageCount();
+        Double discount2 = period2.getDiscountAmount();
         
         // Xử lý null
         count1 = count1 != null ? count1 : 0L;
@@ -396,30 +429,41 @@ public class DashboardServiceImpl implements DashboardService {
             String timeType,
             LocalDate startDate1, LocalDate endDate1,
             LocalDate startDate2, LocalDate endDate2) {
+        return dashboardCache.get("compare-voucher-promotion", latest(endDate1, endDate2),
+                comparisonKey(timeType, startDate1, endDate1, startDate2, endDate2),
+                () -> compareVoucherPromotionUncached(timeType, startDate1, endDate1, startDate2, endDate2));
+    }
+
+    private VoucherPromotionComparisonResponse compareVoucherPromotionUncached(
+            String timeType,
+            LocalDate startDate1, LocalDate endDate1,
+            LocalDate startDate2, LocalDate endDate2) {
         
-        LocalDateTime start1 = startDate1.atStartOfDay();
-        LocalDateTime end1 = endDate1.atTime(23, 59, 59);
-        LocalDateTime start2 = startDate2.atStartOfDay();
-        LocalDateTime end2 = endDate2.atTime(23, 59, 59);
-        
-        log.info("Comparing voucher vs promotion: Period1({} to {}) vs Period2({} to {})", 
-                 start1, end1, start2, end2);
-        
-        // Lấy dữ liệu voucher kỳ 1
-        Long voucherCount1 = voucherUsageHistoryRepository.countVoucherUsageByDateRange(start1, end1);
-        Double voucherDiscount1 = voucherUsageHistoryRepository.sumVoucherDiscountByDateRange(start1, end1);
-        
-        // Lấy dữ liệu voucher kỳ 2
-        Long voucherCount2 = voucherUsageHistoryRepository.countVoucherUsageByDateRange(start2, end2);
-        Double voucherDiscount2 = voucherUsageHistoryRepository.sumVoucherDiscountByDateRange(start2, end2);
-        
-        // Lấy dữ liệu promotion kỳ 1
-        Long promotionCount1 = promotionUsageRepository.countPromotionUsageByDateRange(start1, end1);
-        Double promotionDiscount1 = promotionUsageRepository.sumPromotionDiscountByDateRange(start1, end1);
+        // Lấy dữ liệu voucher và promotion của hai kỳ song song
+        UsageTotalsProjection voucher1;
+        UsageTotalsProjection voucher2;
+        UsageTotalsProjection promotion1;
+        UsageTotalsProjection promotion2;
+        try (DashboardQueryExecutor.Scope scope = dashboardQueryExecutor.open()) {
+            Supplier<UsageTotalsProjection> v1 = scope.fork("voucher.period1", () -> salesRollupRepository.sumVoucherUsage(startDate1, endDate1));
+            Supplier<UsageTotalsProjection> v2 = scope.fork("voucher.period2", () -> salesRollupRepository.sumVoucherUsage(startDate2, endDate2));
+            Supplier<UsageTotalsProjection> p1 = scope.fork("promotion.period1", () -> salesRollupRepository.sumPromotionUsage(startDate1, endDate1));
+            Supplier<UsageTotalsProjection> p2 = scope.fork("promotion.period2", () -> salesRollupRepository.sumPromotionUsage(startDate2, endDate2));
+            scope.join();
+            voucher1 = v1.get();
+            voucher2 = v2.get();
+            promotion1 = p1.get();
+            promotion2 = p2.get();
+        }
         
-        // Lấy dữ liệu promotion kỳ 2
-        Long promotionCount2 = promotionUsageRepository.countPromotionUsageByDateRange(start2, end2);
-        Double promotionDiscount2 = promotionUsageRepository.sumPromotionDiscountByDateRange(start2, end2);
+        Long voucherCount1 = voucher1.getUsageCount();
+        Double voucherDiscount1 = voucher1.getDiscountAmount();
+        Long voucherCount2 = voucher2.getUsageCount();
+        Double voucherDiscount2 = voucher2.getDiscountAmount();
+        Long promotionCount1 = promotion1.getUsageCount();
+        Double promotionDiscount1 = promotion1.getDiscountAmount();
+        Long promotionCount2 = promotion2.getUsageCount();
+        Double promotionDiscount2 = promotion2.getDiscountAmount();
         
         // Xử lý null
         voucherCount1 = voucherCount1 != null ? voucherCount1 : 0L;
@@ -486,49 +530,60 @@ public class DashboardServiceImpl implements DashboardService {
     
     @Override
     public DashboardStatsResponse getDashboardStats(LocalDate startDate, LocalDate endDate) {
-        LocalDateTime start = startDate.atStartOfDay();
-        LocalDateTime end = endDate.atTime(23, 59, 59);
-        
+        // Tổng sản phẩm/khách hàng là số hiện tại, không thuộc kỳ nào nên chỉ cache như kỳ đang mở
+        return dashboardCache.get("stats", null, startDate + "_" + endDate,
+                () -> dashboardStats(startDate, endDate));
+    }
+
+    private DashboardStatsResponse dashboardStats(LocalDate startDate, LocalDate endDate) {
         // Tính toán kỳ trước (cùng độ dài thời gian)
         long daysBetween = java.time.temporal.ChronoUnit.DAYS.between(startDate, endDate) + 1;
         LocalDate prevStartDate = startDate.minusDays(daysBetween);
         LocalDate prevEndDate = startDate.minusDays(1);
-        LocalDateTime prevStart = prevStartDate.atStartOfDay();
-        LocalDateTime prevEnd = prevEndDate.atTime(23, 59, 59);
-        
-        // Lấy dữ liệu kỳ hiện tại
-        Double currentRevenue = orderRepository.sumRevenueByDateRange(start, end);
-        Long currentOrders = orderRepository.countByDateRange(start, end);
         
-        // Lấy dữ liệu kỳ trước
-        Double prevRevenue = orderRepository.sumRevenueByDateRange(prevStart, prevEnd);
-        Long prevOrders = orderRepository.countByDateRange(prevStart, prevEnd);
+        // Lấy dữ liệu kỳ hiện tại, kỳ trước và các tổng song song
+        SalesTotalsProjection current;
+        SalesTotalsProjection previous;
+        Long totalProducts;
+        Long totalCustomers;
+        try (DashboardQueryExecutor.Scope scope = dashboardQueryExecutor.open()) {
+            Supplier<SalesTotalsProjection> currentQuery = scope.fork("sales.current", () -> salesRollupRepository.sumSales(startDate, endDate));
+            Supplier<SalesTotalsProjection> previousQuery = scope.fork("sales.previous", () -> salesRollupRepository.sumSales(prevStartDate, prevEndDate));
+            // Đếm tổng sản phẩm và khách hàng (không phụ thuộc thời gian)
+            Supplier<Long> productsQuery = scope.fork("products.total", orderDetailRepository::count); // Hoặc productRepository.count() nếu có
+            Supplier<Long> customersQuery = scope.fork("customers.total", orderRepository::count); // Tạm thời dùng count orders, nên dùng customerRepository
+            scope.join();
+            current = currentQuery.get();
+            previous = previousQuery.get();
+            totalProducts = productsQuery.get();
+            totalCustomers = customersQuery.get();
+        }
         
         // Tính % tăng trưởng
-        double prevRev = prevRevenue != null ? prevRevenue : 0.0;
-        double currRev = currentRevenue != null ? currentRevenue : 0.0;
-        Double revenueGrowth = prevRev > 0 ? ((currRev - prevRev) / prevRev) * 100 : 0.0;
-        
-        double prevOrd = prevOrders != null ? prevOrders.doubleValue() : 0.0;
-        double currOrd = currentOrders != null ? currentOrders.doubleValue() : 0.0;
-        Double ordersGrowth = prevOrd > 0 ? ((currOrd - prevOrd) / prevOrd) * 100 : 0.0;
-        
-        // Đếm tổng sản phẩm và khách hàng (không phụ thuộc thời gian)
-        Long totalProducts = orderDetailRepository.count(); // Hoặc productRepository.count() nếu có
-        Long totalCustomers = orderRepository.count(); // Tạm thời dùng count orders, nên dùng customerRepository
+        Double revenueGrowth = growth(current.getRevenue(), previous.getRevenue());
+        Double ordersGrowth = growth(current.getTotalOrders(), previous.getTotalOrders());
+        Double productsGrowth = growth(current.getNewProducts(), previous.getNewProducts());
+        Double customersGrowth = growth(current.getNewCustomers(), previous.getNewCustomers());
         
         return DashboardStatsResponse.builder()
-                .totalRevenue(currentRevenue != null ? currentRevenue : 0.0)
-                .totalOrders(currentOrders != null ? currentOrders : 0L)
+                .totalRevenue(current.getRevenue())
+                .totalOrders(current.getTotalOrders())
                 .totalProducts(totalProducts)
                 .totalCustomers(totalCustomers)
                 .revenueGrowth(revenueGrowth)
                 .ordersGrowth(ordersGrowth)
-                .productsGrowth(0.0) // Tạm thời set 0, cần logic riêng
-                .customersGrowth(0.0) // Tạm thời set 0, cần logic riêng
+                // Tăng trưởng số sản phẩm/khách hàng mới so với kỳ trước
+                .productsGrowth(productsGrowth)
+                .customersGrowth(customersGrowth)
                 .build();
     }
 
+    private Double growth(Number current, Number previous) {
+        double prev = previous != null ? previous.doubleValue() : 0.0;
+        double curr = current != null ? current.doubleValue() : 0.0;
+        return prev > 0 ? ((curr - prev) / prev) * 100 : 0.0;
+    }
+
     @Override
     public VoucherDetailResponse getVoucherDetail(Long voucherId, LocalDate startDate, LocalDate endDate) {
         LocalDateTime start = startDate.atStartOfDay();
@@ -590,62 +645,34 @@ public class DashboardServiceImpl implements DashboardService {
 
     @Override
     public List<TopVoucherResponse> getAllVouchersByDay(LocalDate startDate, LocalDate endDate) {
-        LocalDateTime start = startDate.atStartOfDay();
-        LocalDateTime end = endDate.atTime(23, 59, 59);
-        
-        return voucherUsageHistoryRepository.getAllVouchersByDay(start, end).stream()
-                .map(this::mapToTopVoucherResponse)
-                .toList();
+        return vouchers(startDate, endDate, Pageable.unpaged());
     }
 
     @Override
     public List<TopVoucherResponse> getAllVouchersByMonth(Integer year, Integer month) {
-        return voucherUsageHistoryRepository.getAllVouchersByMonth(year, month).stream()
-                .map(this::mapToTopVoucherResponse)
-                .toList();
+        YearMonth yearMonth = YearMonth.of(year, month);
+        return vouchers(yearMonth.atDay(1), yearMonth.atEndOfMonth(), Pageable.unpaged());
     }
 
     @Override
     public List<TopVoucherResponse> getAllVouchersByYear(Integer year) {
-        return voucherUsageHistoryRepository.getAllVouchersByYear(year).stream()
-                .map(this::mapToTopVoucherResponse)
-                .toList();
+        return vouchers(LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31), Pageable.unpaged());
     }
 
     @Override
     public List<TopPromotionResponse> getAllPromotionsByDay(LocalDate startDate, LocalDate endDate) {
-        LocalDateTime start = startDate.atStartOfDay();
-        LocalDateTime end = endDate.atTime(23, 59, 59);
-        
-        log.info("Getting all promotions by day from {} to {}", start, end);
-        var projections = promotionUsageRepository.getAllPromotionsByDay(start, end);
-        log.info("Found {} promotion projections", projections.size());
-        
-        return projections.stream()
-                .map(this::mapToTopPromotionResponse)
-                .toList();
+        return promotions(startDate, endDate, Pageable.unpaged());
     }
 
     @Override
     public List<TopPromotionResponse> getAllPromotionsByMonth(Integer year, Integer month) {
-        log.info("Getting all promotions by month: {}/{}", month, year);
-        var projections = promotionUsageRepository.getAllPromotionsByMonth(year, month);
-        log.info("Found {} promotion projections", projections.size());
-        
-        return projections.stream()
-                .map(this::mapToTopPromotionResponse)
-                .toList();
+        YearMonth yearMonth = YearMonth.of(year, month);
+        return promotions(yearMonth.atDay(1), yearMonth.atEndOfMonth(), Pageable.unpaged());
     }
 
     @Override
     public List<TopPromotionResponse> getAllPromotionsByYear(Integer year) {
-        log.info("Getting all promotions by year: {}", year);
-        var projections = promotionUsageRepository.getAllPromotionsByYear(year);
-        log.info("Found {} promotion projections", projections.size());
-        
-        return projections.stream()
-                .map(this::mapToTopPromotionResponse)
-                .toList();
+        return promotions(LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31), Pageable.unpaged());
     }
 
     @Override
@@ -715,38 +742,18 @@ public class DashboardServiceImpl implements DashboardService {
 
     @Override
     public List<TopProductResponse> getAllProductsByDay(LocalDate startDate, LocalDate endDate) {
-        LocalDateTime start = startDate.atStartOfDay();
-        LocalDateTime end = endDate.atTime(23, 59, 59);
-
-        log.info("Getting all products by day from {} to {}", start, end);
-        var projections = orderDetailRepository.getAllProductsByDay(start, end);
-        log.info("Found {} product projections", projections.size());
-
-        return projections.stream()
-                .map(this::mapToTopProductResponse)
-                .toList();
+        return topProducts(startDate, endDate, Pageable.unpaged());
     }
 
     @Override
     public List<TopProductResponse> getAllProductsByMonth(Integer year, Integer month) {
-        log.info("Getting all products by month: {}/{}", month, year);
-        var projections = orderDetailRepository.getAllProductsByMonth(year, month);
-        log.info("Found {} product projections", projections.size());
-
-        return projections.stream()
-                .map(this::mapToTopProductResponse)
-                .toList();
+        YearMonth yearMonth = YearMonth.of(year, month);
+        return topProducts(yearMonth.atDay(1), yearMonth.atEndOfMonth(), Pageable.unpaged());
     }
 
     @Override
     public List<TopProductResponse> getAllProductsByYear(Integer year) {
-        log.info("Getting all products by year: {}", year);
-        var projections = orderDetailRepository.getAllProductsByYear(year);
-        log.info("Found {} product projections", projections.size());
-
-        return projections.stream()
-                .map(this::mapToTopProductResponse)
-                .toList();
+        return topProducts(LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31), Pageable.unpaged());
     }
 
     @Override
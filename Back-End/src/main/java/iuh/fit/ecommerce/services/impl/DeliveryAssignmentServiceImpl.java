@@ -9,6 +9,7 @@ import iuh.fit.ecommerce.entities.Order;
 import iuh.fit.ecommerce.entities.Staff;
 import iuh.fit.ecommerce.enums.DeliveryStatus;
 import iuh.fit.ecommerce.enums.OrderStatus;
+import iuh.fit.ecommerce.events.OrderStatusChangedEvent;
 import iuh.fit.ecommerce.exceptions.custom.InvalidParamException;
 import iuh.fit.ecommerce.exceptions.custom.ResourceNotFoundException;
 import iuh.fit.ecommerce.exceptions.custom.UnauthorizedException;
@@ -19,10 +20,10 @@ import iuh.fit.ecommerce.repositories.OrderRepository;
 import iuh.fit.ecommerce.services.DeliveryAssignmentService;
 import iuh.fit.ecommerce.services.NotificationWebSocketService;
 import iuh.fit.ecommerce.services.OrderService;
-import iuh.fit.ecommerce.services.RankingService;
 import iuh.fit.ecommerce.services.StaffService;
 import iuh.fit.ecommerce.utils.SecurityUtils;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -45,9 +46,10 @@ public class DeliveryAssignmentServiceImpl implements DeliveryAssignmentService
     private final SecurityUtils securityUtils;
     private final DeliveryAssignmentMapper deliveryAssignmentMapper;
     private final NotificationWebSocketService notificationWebSocketService;
-    private final RankingService rankingService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
+    @Transactional
     public void assignShipperToOrder(AssignShipperRequest request) {
         Staff leader = securityUtils.getCurrentStaff();
 
@@ -89,6 +91,7 @@ public class DeliveryAssignmentServiceImpl implements DeliveryAssignmentService
         // Cập nhật status order thành ASSIGNED_SHIPPER
         order.setStatus(OrderStatus.ASSIGNED_SHIPPER);
         orderRepository.save(order);
+        eventPublisher.publishEvent(new OrderStatusChangedEvent(order.getId(), SHIPPED, OrderStatus.ASSIGNED_SHIPPER, LocalDateTime.now()));
 
         // Gửi WebSocket notification
         notificationWebSocketService.sendDeliveryNotification(
@@ -123,8 +126,10 @@ public class DeliveryAssignmentServiceImpl implements DeliveryAssignmentService
         deliveryAssignmentRepository.save(deliveryAssignment);
 
         Order order = deliveryAssignment.getOrder();
+        OrderStatus previousStatus = order.getStatus();
         order.setStatus(OrderStatus.DELIVERING);
         orderRepository.save(order);
+        eventPublisher.publishEvent(new OrderStatusChangedEvent(order.getId(), previousStatus, OrderStatus.DELIVERING, LocalDateTime.now()));
     }
 
     @Override
@@ -142,16 +147,17 @@ public class DeliveryAssignmentServiceImpl implements DeliveryAssignmentService
             throw new InvalidParamException("Delivery must be in DELIVERING status to complete");
         }
 
+        OrderStatus previousStatus = deliveryAssignment.getOrder().getStatus();
         if (Boolean.TRUE.equals(request.getSuccess())) {
             deliveryAssignment.setDeliveryStatus(DeliveryStatus.DELIVERED);
             deliveryAssignment.getOrder().setStatus(OrderStatus.COMPLETED);
-            
-            // Update customer ranking when delivery is completed successfully
-            rankingService.updateCustomerRanking(deliveryAssignment.getOrder());
         } else {
             deliveryAssignment.setDeliveryStatus(DeliveryStatus.FAILED);
             deliveryAssignment.getOrder().setStatus(OrderStatus.FAILED);
         }
+        // Xếp hạng khách được cập nhật sau khi commit khi đơn COMPLETED
+        eventPublisher.publishEvent(new OrderStatusChangedEvent(
+                deliveryAssignment.getOrder().getId(), previousStatus, deliveryAssignment.getOrder().getStatus(), LocalDateTime.now()));
 
         deliveryAssignment.setNote(request.getNote());
         deliveryAssignment.setDeliveredAt(LocalDateTime.now());
@@ -0,0 +1,248 @@
+package iuh.fit.ecommerce.services.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.minio.GetPresignedObjectUrlArgs;
+import io.minio.ListObjectsArgs;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import io.minio.RemoveObjectArgs;
+import io.minio.Result;
+import io.minio.http.Method;
+import io.minio.messages.Item;
+import iuh.fit.ecommerce.dtos.response.export.ExportJobResponse;
+import iuh.fit.ecommerce.enums.ExportType;
+import iuh.fit.ecommerce.exceptions.custom.InvalidParamException;
+import iuh.fit.ecommerce.services.ExportJobService;
+import iuh.fit.ecommerce.services.excel.CustomerExcelService;
+import iuh.fit.ecommerce.services.excel.DashboardExcelService;
+import iuh.fit.ecommerce.services.excel.StaffExcelService;
+import iuh.fit.ecommerce.services.excel.SupplierExcelService;
+import iuh.fit.ecommerce.utils.excel.ExcelStreamSupport;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Export Excel chạy nền cho các file lớn: ghi SXSSF ra file tạm trên đĩa, upload lên MinIO
+ * dưới exports/{jobId}/ rồi trả link tải có thời hạn. Trạng thái job lưu trong Redis
+ * để instance nào nhận request kiểm tra cũng đọc được. File quá retention-hours bị xoá theo lịch.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExportJobServiceImpl implements ExportJobService {
+
+    private static final String OBJECT_PREFIX = "exports/";
+
+    private final MinioClient minioClient;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final MeterRegistry meterRegistry;
+    private final CustomerExcelService customerExcelService;
+    private final StaffExcelService staffExcelService;
+    private final SupplierExcelService supplierExcelService;
+    private final DashboardExcelService dashboardExcelService;
+
+    // File export chứa dữ liệu cá nhân nên không ghi vào bucket public của ứng dụng
+    @Value("${minio.private-bucket-name}")
+    private String bucketName;
+
+    // Export cũ từng ghi vào bucket public, vẫn dọn theo hạn lưu để không còn file lộ ra ngoài
+    @Value("${minio.bucket-name}")
+    private String legacyBucketName;
+
+    @Value("${export.async.max-concurrent:2}")
+    private int maxConcurrent;
+
+    @Value("${export.async.queue-capacity:20}")
+    private int queueCapacity;
+
+    @Value("${export.async.retention-hours:24}")
+    private long retentionHours;
+
+    @Value("${export.async.download-url-expiry-minutes:60}")
+    private int downloadUrlExpiryMinutes;
+
+    private BackgroundJobs jobs;
+
+    // Ghi file export ra out, trả về số dòng dữ liệu (null nếu file nhiều sheet)
+    @FunctionalInterface
+    private interface ExportWriter {
+        Long write(OutputStream out) throws IOException;
+    }
+
+    @PostConstruct
+    void init() {
+        jobs = new BackgroundJobs("export", redisTemplate, maxConcurrent, queueCapacity, retentionHours);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        jobs.shutdown();
+    }
+
+    @Override
+    public ExportJobResponse submit(ExportType type) {
+        String fileName = type.name().toLowerCase() + "_" + LocalDate.now() + ".xlsx";
+        return switch (type) {
+            case CUSTOMERS -> start(type, fileName, customerExcelService::writeExcel);
+            case STAFF -> start(type, fileName, staffExcelService::writeExcel);
+            case SUPPLIERS -> start(type, fileName, supplierExcelService::writeExcel);
+            case DASHBOARD -> throw new InvalidParamException("Dashboard export requires a report period");
+        };
+    }
+
+    @Override
+    public ExportJobResponse submitDashboard(LocalDate startDate, LocalDate endDate, String fileName) {
+        return start(ExportType.DASHBOARD, fileName, out -> {
+            dashboardExcelService.writeDashboard(startDate, endDate, out);
+            return null;
+        });
+    }
+
+    @Override
+    public ExportJobResponse getJob(String jobId) {
+        return toResponse(jobId, jobs.find(jobId));
+    }
+
+    private ExportJobResponse start(ExportType type, String fileName, ExportWriter writer) {
+        String jobId = jobs.create(type.name(), fileName);
+        jobs.execute(jobId, () -> run(jobId, type, fileName, writer));
+        return getJob(jobId);
+    }
+
+    private void run(String jobId, ExportType type, String fileName, ExportWriter writer) {
+        jobs.save(jobId, Map.of("status", "RUNNING"));
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "success";
+        Path file = null;
+        try {
+            file = Files.createTempFile("export-" + jobId, ".xlsx");
+            Long rowCount;
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+                rowCount = writer.write(out);
+            }
+
+            String objectName = OBJECT_PREFIX + jobId + "/" + fileName;
+            try (InputStream in = Files.newInputStream(file)) {
+                minioClient.putObject(PutObjectArgs.builder()
+                        .bucket(bucketName)
+                        .object(objectName)
+                        .stream(in, Files.size(file), -1)
+                        .contentType(ExcelStreamSupport.CONTENT_TYPE)
+                        .build());
+            }
+
+            Map<String, Object> done = new HashMap<>();
+            done.put("status", "COMPLETED");
+            done.put("objectName", objectName);
+            done.put("finishedAt", LocalDateTime.now().toString());
+            if (rowCount != null) {
+                done.put("rowCount", rowCount.toString());
+            }
+            jobs.save(jobId, done);
+            log.info("Export job {} ({}) uploaded to {}", jobId, type, objectName);
+        } catch (Exception e) {
+            outcome = "error";
+            log.error("Export job {} ({}) failed: {}", jobId, type, e.getMessage(), e);
+            jobs.fail(jobId, e);
+        } finally {
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    log.warn("Cannot delete export temp file {}: {}", file, e.getMessage());
+                }
+            }
+            sample.stop(Timer.builder("excel.export.job")
+                    .tag("type", type.name())
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    // Xoá các file export đã quá thời gian lưu trên MinIO
+    @Scheduled(cron = "${export.async.cleanup-cron:0 15 * * * *}")
+    public void cleanupExpiredFiles() {
+        ZonedDateTime cutoff = ZonedDateTime.now().minusHours(retentionHours);
+        removeExpiredFiles(bucketName, cutoff);
+        if (!legacyBucketName.equals(bucketName)) {
+            removeExpiredFiles(legacyBucketName, cutoff);
+        }
+    }
+
+    private void removeExpiredFiles(String bucket, ZonedDateTime cutoff) {
+        int removed = 0;
+        try {
+            for (Result<Item> result : minioClient.listObjects(ListObjectsArgs.builder()
+                    .bucket(bucket)
+                    .prefix(OBJECT_PREFIX)
+                    .recursive(true)
+                    .build())) {
+                Item item = result.get();
+                if (item.lastModified() != null && item.lastModified().isBefore(cutoff)) {
+                    minioClient.removeObject(RemoveObjectArgs.builder()
+                            .bucket(bucket)
+                            .object(item.objectName())
+                            .build());
+                    removed++;
+                }
+            }
+            if (removed > 0) {
+                log.info("Removed {} expired export files from {}", removed, bucket);
+            }
+        } catch (Exception e) {
+            log.warn("Cannot clean up expired export files in {}: {}", bucket, e.getMessage());
+        }
+    }
+
+    private ExportJobResponse toResponse(String jobId, Map<Object, Object> job) {
+        String status = BackgroundJobs.value(job, "status");
+        String objectName = BackgroundJobs.value(job, "objectName");
+        String rowCount = BackgroundJobs.value(job, "rowCount");
+        return ExportJobResponse.builder()
+                .jobId(jobId)
+                .type(BackgroundJobs.value(job, "type"))
+                .status(status)
+                .fileName(BackgroundJobs.value(job, "fileName"))
+                .rowCount(rowCount != null ? Long.parseLong(rowCount) : null)
+                .downloadUrl("COMPLETED".equals(status) && objectName != null ? downloadUrl(objectName) : null)
+                .createdAt(BackgroundJobs.time(job, "createdAt"))
+                .finishedAt(BackgroundJobs.time(job, "finishedAt"))
+                .error(BackgroundJobs.value(job, "error"))
+                .build();
+    }
+
+    // Link tải tạo mới mỗi lần hỏi trạng thái nên luôn còn hạn download-url-expiry-minutes
+    private String downloadUrl(String objectName) {
+        try {
+            return minioClient.getPresignedObjectUrl(GetPresignedObjectUrlArgs.builder()
+                    .method(Method.GET)
+                    .bucket(bucketName)
+                    .object(objectName)
+                    .expiry(downloadUrlExpiryMinutes, TimeUnit.MINUTES)
+                    .build());
+        } catch (Exception e) {
+            log.warn("Cannot create download url for {}: {}", objectName, e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package iuh.fit.ecommerce.services.impl;
+
+import iuh.fit.ecommerce.enums.ScheduledJobType;
+import iuh.fit.ecommerce.services.FlashSaleService;
+import iuh.fit.ecommerce.services.ScheduledJobHandler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Hết thời gian flash sale: đóng flash sale và trả phần chưa bán về kho.
+ */
+@Component
+@RequiredArgsConstructor
+public class FlashSaleEndJobHandler implements ScheduledJobHandler {
+
+    private final FlashSaleService flashSaleService;
+
+    @Override
+    public ScheduledJobType getType() {
+        return ScheduledJobType.FLASH_SALE_END;
+    }
+
+    @Override
+    public void handle(Map<String, Object> payload) {
+        flashSaleService.stopFlashSale(((Number) payload.get("flashSaleId")).longValue());
+    }
+}
@@ -0,0 +1,91 @@
+package iuh.fit.ecommerce.services.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import iuh.fit.ecommerce.dtos.request.order.FlashSaleQueuedOrder;
+import iuh.fit.ecommerce.services.FlashSaleService;
+import iuh.fit.ecommerce.services.OrderService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ghi các đơn flash sale đã giành được hàng vào MySQL theo batch, mỗi batch một transaction.
+ * Batch lỗi thì ghi lại từng đơn riêng để một đơn hỏng (giỏ đã đổi, voucher hết hạn...) không kéo cả batch,
+ * đơn không ghi được bị đánh dấu FAILED và trả hàng về counter flash sale.
+ * Batch được lấy sang danh sách đang xử lý của node và chỉ gỡ ra sau khi commit; node dừng giữa chừng thì
+ * FlashSaleService.recoverOrphanedOrders ở node khác đưa các đơn chưa ghi trở lại hàng đợi, cột flash_sale_ticket_id
+ * unique nên ghi lại một ticket không tạo đơn thứ hai.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FlashSaleOrderWriter {
+
+    private final FlashSaleService flashSaleService;
+    private final OrderService orderService;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${flash-sale.writer.batch-size:100}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${flash-sale.writer.interval-ms:200}")
+    public void flush() {
+        List<FlashSaleQueuedOrder> batch;
+        try {
+            batch = flashSaleService.takeQueuedOrders(batchSize);
+        } catch (Exception e) {
+            log.error("Cannot read flash sale order queue: {}", e.getMessage());
+            return;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "batch";
+        try {
+            Map<String, Long> created = tx.execute(status -> {
+                Map<String, Long> orderIds = new LinkedHashMap<>();
+                for (FlashSaleQueuedOrder order : batch) {
+                    orderIds.put(order.getTicketId(), orderService.createFlashSaleOrder(order).getId());
+                }
+                return orderIds;
+            });
+            if (created != null) {
+                batch.forEach(order -> flashSaleService.markCreated(order, created.get(order.getTicketId())));
+            }
+        } catch (Exception e) {
+            log.warn("Flash sale batch of {} orders failed, retrying one by one: {}", batch.size(), e.getMessage());
+            outcome = "single";
+            batch.forEach(order -> writeOne(tx, order));
+        }
+        sample.stop(Timer.builder("flash.sale.writer")
+                .tag("mode", outcome)
+                .register(meterRegistry));
+    }
+
+    private void writeOne(TransactionTemplate tx, FlashSaleQueuedOrder order) {
+        try {
+            Long orderId = tx.execute(status -> orderService.createFlashSaleOrder(order).getId());
+            flashSaleService.markCreated(order, orderId);
+        } catch (Exception e) {
+            log.warn("Flash sale ticket {} failed: {}", order.getTicketId(), e.getMessage());
+            try {
+                flashSaleService.markFailed(order, e.getMessage());
+            } catch (Exception ex) {
+                log.error("Cannot return flash sale units of ticket {}: {}", order.getTicketId(), ex.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,720 @@
+package iuh.fit.ecommerce.services.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import iuh.fit.ecommerce.dtos.request.flashSale.FlashSaleRequest;
+import iuh.fit.ecommerce.dtos.request.order.FlashSaleQueuedOrder;
+import iuh.fit.ecommerce.dtos.request.order.OrderCreationRequest;
+import iuh.fit.ecommerce.dtos.response.flashSale.FlashSaleResponse;
+import iuh.fit.ecommerce.dtos.response.flashSale.FlashSaleTicketResponse;
+import iuh.fit.ecommerce.entities.Customer;
+import iuh.fit.ecommerce.entities.FlashSale;
+import iuh.fit.ecommerce.entities.ProductVariant;
+import iuh.fit.ecommerce.entities.Promotion;
+import iuh.fit.ecommerce.enums.FlashSaleTicketStatus;
+import iuh.fit.ecommerce.enums.ScheduledJobType;
+import iuh.fit.ecommerce.exceptions.custom.ConflictException;
+import iuh.fit.ecommerce.exceptions.custom.InvalidParamException;
+import iuh.fit.ecommerce.exceptions.custom.ResourceNotFoundException;
+import iuh.fit.ecommerce.repositories.FlashSaleRepository;
+import iuh.fit.ecommerce.repositories.OrderRepository;
+import iuh.fit.ecommerce.repositories.ProductVariantRepository;
+import iuh.fit.ecommerce.repositories.PromotionRepository;
+import iuh.fit.ecommerce.services.FlashSaleService;
+import iuh.fit.ecommerce.services.InventoryService;
+import iuh.fit.ecommerce.services.ScheduledJobService;
+import iuh.fit.ecommerce.services.StockReservationService;
+import iuh.fit.ecommerce.utils.SecurityUtils;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Flash sale bật riêng cho từng variant. Lúc mở, số lượng bán được chuyển khỏi product_variants.stock
+ * và chia đều vào N counter trên Redis (flash:stock:{flashSaleId}:{shard}); mỗi lần lấy hàng chỉ chạm một key
+ * nên tải không dồn vào một dòng MySQL hay một key Redis duy nhất, và tổng lấy ra không bao giờ vượt số đã chia.
+ * Request checkout đi qua cổng admission giới hạn số request đồng thời, hết hàng hoặc quá tải thì từ chối ngay.
+ * Người mua giành được hàng nhận ticket, đơn được FlashSaleOrderWriter ghi vào MySQL theo batch.
+ * Lúc đóng, cờ flash:stopped:{flashSaleId} được đặt trước khi rút shard; script lấy/trả hàng kiểm tra cờ này
+ * nên hàng trả lại sau khi đóng đi thẳng về kho DB thay vì tạo lại shard đã rút.
+ * Writer lấy đơn bằng cách chuyển sang danh sách đang xử lý của node (flash:orders:processing:{nodeId}) và chỉ gỡ ra
+ * sau khi ghi xong; danh sách của node đã mất heartbeat được node khác thu hồi: đơn đã có trong DB thì đánh dấu CREATED,
+ * chưa có thì đưa lại hàng đợi.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FlashSaleServiceImpl implements FlashSaleService {
+
+    private static final String SHARD_KEY = "flash:stock:";
+    private static final String QUEUE_KEY = "flash:orders";
+    private static final String TICKET_KEY = "flash:ticket:";
+    private static final String STOPPED_KEY = "flash:stopped:";
+    private static final String PROCESSING_KEY = "flash:orders:processing:";
+    private static final String HEARTBEAT_KEY = "flash:writer:";
+
+    private static final RedisScript<Long> CLAIM_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/flash-sale-claim.lua"), Long.class);
+    private static final RedisScript<Long> GIVE_BACK_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/flash-sale-give-back.lua"), Long.class);
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> TAKE_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/flash-sale-take.lua"), List.class);
+    private static final RedisScript<Long> REQUEUE_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/flash-sale-requeue.lua"), Long.class);
+
+    private record ActiveSale(Long id, Long variantId, int shardCount) {}
+
+    private final FlashSaleRepository flashSaleRepository;
+    private final ProductVariantRepository productVariantRepository;
+    private final PromotionRepository promotionRepository;
+    private final OrderRepository orderRepository;
+    private final InventoryService inventoryService;
+    private final StockReservationService stockReservationService;
+    private final ScheduledJobService scheduledJobService;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper;
+    private final SecurityUtils securityUtils;
+    private final MeterRegistry meterRegistry;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${flash-sale.default-shard-count:8}")
+    private int defaultShardCount;
+
+    @Value("${flash-sale.admission.max-concurrent:200}")
+    private int maxConcurrent;
+
+    @Value("${flash-sale.admission.wait-ms:50}")
+    private long admissionWaitMs;
+
+    @Value("${flash-sale.queue.max-pending:10000}")
+    private long maxPending;
+
+    @Value("${flash-sale.ticket-ttl-minutes:60}")
+    private long ticketTtlMinutes;
+
+    // Phải dài hơn thời gian một đơn có thể nằm trong hàng đợi, hết hạn sớm thì hàng trả muộn lại tạo shard mồ côi
+    @Value("${flash-sale.stopped-marker-ttl-hours:168}")
+    private long stoppedMarkerTtlHours;
+
+    // Node không gia hạn heartbeat trong khoảng này bị coi là đã chết, đơn đang xử lý của nó bị thu hồi
+    @Value("${flash-sale.writer.node-ttl-seconds:30}")
+    private long nodeTtlSeconds;
+
+    // variantId -> flash sale đang mở, đọc lại từ DB định kỳ để nhận thay đổi do node khác
+    private volatile Map<Long, ActiveSale> activeByVariant = Map.of();
+    // flashSaleId đã hết hàng, từ chối ngay không cần gọi Redis
+    private final Set<Long> soldOut = ConcurrentHashMap.newKeySet();
+    private Semaphore admission;
+    private final String nodeId = UUID.randomUUID().toString();
+    private volatile long heartbeatAt;
+
+    @PostConstruct
+    void init() {
+        admission = new Semaphore(maxConcurrent);
+    }
+
+    @Scheduled(fixedDelayString = "${flash-sale.refresh-interval-ms:5000}")
+    public void refreshActiveSales() {
+        try {
+            Map<Long, ActiveSale> fresh = new HashMap<>();
+            for (FlashSale sale : flashSaleRepository.findAllActive()) {
+                fresh.put(sale.getProductVariant().getId(), toActiveSale(sale));
+            }
+            activeByVariant = Map.copyOf(fresh);
+
+            // Đơn ghi lỗi trả hàng về counter nên cờ hết hàng được tính lại theo số còn thật
+            Set<Long> empty = new HashSet<>();
+            for (ActiveSale sale : fresh.values()) {
+                if (remainingOf(sale) <= 0) {
+                    empty.add(sale.id());
+                }
+            }
+            soldOut.retainAll(empty);
+            soldOut.addAll(empty);
+        } catch (Exception e) {
+            log.warn("Cannot refresh active flash sales: {}", e.getMessage());
+        }
+
+        try {
+            flashSaleRepository.findAllUnsettled().forEach(sale -> settle(toActiveSale(sale)));
+        } catch (Exception e) {
+            log.warn("Cannot settle stopped flash sales: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Thu hồi đơn đang xử lý của các node đã mất heartbeat (chết giữa lúc lấy batch và ghi xong).
+     * Chạy cả lúc khởi động nên đơn của lần chạy trước của chính máy này cũng được thu hồi khi heartbeat cũ hết hạn.
+     */
+    @Scheduled(fixedDelayString = "${flash-sale.writer.recover-interval-ms:30000}")
+    public void recoverOrphanedOrders() {
+        Set<String> keys = new HashSet<>();
+        try (Cursor<String> cursor = stringRedisTemplate.scan(
+                ScanOptions.scanOptions().match(PROCESSING_KEY + "*").count(100).build())) {
+            cursor.forEachRemaining(keys::add);
+        } catch (Exception e) {
+            log.warn("Cannot scan flash sale processing lists: {}", e.getMessage());
+            return;
+        }
+
+        for (String key : keys) {
+            String owner = key.substring(PROCESSING_KEY.length());
+            if (owner.equals(nodeId) || Boolean.TRUE.equals(stringRedisTemplate.hasKey(HEARTBEAT_KEY + owner))) {
+                continue;
+            }
+            try {
+                recover(key);
+            } catch (Exception e) {
+                log.warn("Cannot recover flash sale orders of node {}: {}", owner, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    @Transactional
+    public FlashSaleResponse startFlashSale(FlashSaleRequest request) {
+        ProductVariant variant = productVariantRepository.findById(request.getProductVariantId())
+                .orElseThrow(() -> new ResourceNotFoundException("Product variant not found with id: " + request.getProductVariantId()));
+        if (flashSaleRepository.existsByProductVariant_IdAndActiveTrue(variant.getId())) {
+            throw new ConflictException("Variant đang có flash sale khác");
+        }
+
+        Promotion promotion = request.getPromotionId() != null
+                ? promotionRepository.findById(request.getPromotionId())
+                        .orElseThrow(() -> new ResourceNotFoundException("Promotion not found with id: " + request.getPromotionId()))
+                : null;
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime endAt = request.getEndAt();
+        if (endAt == null && promotion != null && promotion.getEndDate() != null) {
+            endAt = promotion.getEndDate().plusDays(1).atStartOfDay();
+        }
+        if (endAt != null && !endAt.isAfter(now)) {
+            throw new InvalidParamException("Flash sale end time must be in the future");
+        }
+
+        int quantity = request.getQuantity();
+        int shardCount = Math.min(request.getShardCount() != null ? request.getShardCount() : defaultShardCount, quantity);
+
+        // Hàng đang giữ cho đơn VN_PAY/PayOS chờ thanh toán không được đưa vào flash sale,
+        // trừ kho trần thì đơn đó thanh toán xong lại không còn hàng để trừ
+        int available = stockReservationService.getAvailableStock(List.of(variant.getId()))
+                .getOrDefault(variant.getId(), 0);
+        if (available < quantity) {
+            throw new ConflictException(String.format(
+                    "Variant chỉ còn %d sản phẩm chưa được giữ cho đơn chờ thanh toán, không đủ %d cho flash sale",
+                    available, quantity));
+        }
+
+        // Hàng flash sale rời khỏi kho DB, đơn flash sale không còn tranh khoá dòng product_variants
+        inventoryService.decreaseStock(Map.of(variant.getId(), (long) quantity));
+
+        FlashSale sale = flashSaleRepository.save(FlashSale.builder()
+                .productVariant(variant)
+                .promotion(promotion)
+                .allocatedQuantity(quantity)
+                .shardCount(shardCount)
+                .startedAt(now)
+                .endAt(endAt)
+                .build());
+
+        writeShards(sale.getId(), quantity, shardCount);
+        ActiveSale active = toActiveSale(sale);
+        runAfterCompletion(committed -> {
+            if (committed) {
+                Map<Long, ActiveSale> updated = new HashMap<>(activeByVariant);
+                updated.put(variant.getId(), active);
+                activeByVariant = Map.copyOf(updated);
+            } else {
+                drainShards(active);
+            }
+        });
+
+        if (endAt != null) {
+            scheduledJobService.schedule(ScheduledJobType.FLASH_SALE_END, String.valueOf(sale.getId()),
+                    Map.of("flashSaleId", sale.getId()), Duration.between(now, endAt));
+        }
+
+        log.info("Flash sale {} started for variant {} with {} units in {} shards", sale.getId(), variant.getId(), quantity, shardCount);
+        return toResponse(sale, quantity);
+    }
+
+    @Override
+    @Transactional
+    public FlashSaleResponse stopFlashSale(Long id) {
+        FlashSale sale = flashSaleRepository.findByIdForUpdate(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Flash sale not found with id = " + id));
+        // Job kết thúc có thể chạy sau khi admin đã đóng tay
+        if (!Boolean.TRUE.equals(sale.getActive())) {
+            return toResponse(sale, 0);
+        }
+
+        sale.setActive(false);
+        sale.setEndedAt(LocalDateTime.now());
+        flashSaleRepository.save(sale);
+
+        // Rút Redis sau khi commit: transaction rollback thì flash sale vẫn mở với đủ hàng trên shard
+        ActiveSale active = toActiveSale(sale);
+        runAfterCompletion(committed -> {
+            if (committed) {
+                Map<Long, ActiveSale> updated = new HashMap<>(activeByVariant);
+                updated.remove(active.variantId());
+                activeByVariant = Map.copyOf(updated);
+                soldOut.remove(active.id());
+                settle(active);
+            }
+        });
+
+        log.info("Flash sale {} stopped", sale.getId());
+        return toResponse(sale, 0);
+    }
+
+    @Override
+    public List<FlashSaleResponse> getActiveFlashSales() {
+        List<FlashSaleResponse> responses = new ArrayList<>();
+        for (FlashSale sale : flashSaleRepository.findAllActive()) {
+            responses.add(toResponse(sale, remainingOf(toActiveSale(sale))));
+        }
+        return responses;
+    }
+
+    @Override
+    public Set<Long> findFlashSaleVariantIds(Collection<Long> variantIds) {
+        Map<Long, ActiveSale> active = activeByVariant;
+        Set<Long> result = new HashSet<>();
+        if (active.isEmpty()) {
+            return result;
+        }
+        for (Long variantId : variantIds) {
+            if (active.containsKey(variantId)) {
+                result.add(variantId);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public FlashSaleTicketResponse admit(Long customerId, OrderCreationRequest request, Map<Long, Long> quantities) {
+        Map<Long, ActiveSale> sales = new LinkedHashMap<>();
+        for (Long variantId : quantities.keySet()) {
+            ActiveSale sale = activeByVariant.get(variantId);
+            if (sale == null || soldOut.contains(sale.id())) {
+                throw reject("sold_out", "Sản phẩm flash sale đã hết hàng");
+            }
+            sales.put(variantId, sale);
+        }
+
+        Long pending = stringRedisTemplate.opsForList().size(QUEUE_KEY);
+        if (pending != null && pending >= maxPending) {
+            throw reject("busy", "Hệ thống đang xử lý quá nhiều đơn flash sale, vui lòng thử lại");
+        }
+
+        try {
+            if (!admission.tryAcquire(admissionWaitMs, TimeUnit.MILLISECONDS)) {
+                throw reject("busy", "Hệ thống đang xử lý quá nhiều đơn flash sale, vui lòng thử lại");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw reject("busy", "Hệ thống đang xử lý quá nhiều đơn flash sale, vui lòng thử lại");
+        }
+
+        Map<ActiveSale, Map<Integer, Long>> claims = new HashMap<>();
+        try {
+            for (Map.Entry<Long, ActiveSale> entry : sales.entrySet()) {
+                Map<Integer, Long> taken = claim(entry.getValue(), quantities.get(entry.getKey()));
+                if (taken == null) {
+                    throw reject("sold_out", "Sản phẩm flash sale không đủ số lượng");
+                }
+                claims.put(entry.getValue(), taken);
+            }
+
+            String ticketId = UUID.randomUUID().toString();
+            String ticketKey = TICKET_KEY + ticketId;
+            stringRedisTemplate.opsForHash().putAll(ticketKey, Map.of(
+                    "status", FlashSaleTicketStatus.QUEUED.name(),
+                    "customerId", String.valueOf(customerId)
+            ));
+            stringRedisTemplate.expire(ticketKey, Duration.ofMinutes(ticketTtlMinutes));
+            stringRedisTemplate.opsForList().leftPush(QUEUE_KEY, writeOrder(FlashSaleQueuedOrder.builder()
+                    .ticketId(ticketId)
+                    .customerId(customerId)
+                    .request(request)
+                    .quantities(quantities)
+                    .build()));
+
+            countCheckout("admitted");
+            return FlashSaleTicketResponse.builder()
+                    .ticketId(ticketId)
+                    .status(FlashSaleTicketStatus.QUEUED)
+                    .build();
+        } catch (RuntimeException e) {
+            // Không xếp được vào hàng đợi thì trả lại phần đã lấy
+            claims.forEach(this::giveBack);
+            throw e;
+        } finally {
+            admission.release();
+        }
+    }
+
+    @Override
+    public FlashSaleTicketResponse getMyTicket(String ticketId) {
+        Customer customer = securityUtils.getCurrentCustomer();
+        Map<Object, Object> ticket = stringRedisTemplate.opsForHash().entries(TICKET_KEY + ticketId);
+        if (ticket.isEmpty() || !String.valueOf(customer.getId()).equals(ticket.get("customerId"))) {
+            throw new ResourceNotFoundException("Flash sale ticket not found with id = " + ticketId);
+        }
+
+        Object orderId = ticket.get("orderId");
+        return FlashSaleTicketResponse.builder()
+                .ticketId(ticketId)
+                .status(FlashSaleTicketStatus.valueOf(ticket.get("status").toString()))
+                .orderId(orderId != null ? Long.valueOf(orderId.toString()) : null)
+                .message((String) ticket.get("message"))
+                .build();
+    }
+
+    @Override
+    public List<FlashSaleQueuedOrder> takeQueuedOrders(int max) {
+        heartbeat();
+        // Writer không chạy chồng nên lúc này không đơn nào của node đang ghi dở;
+        // phần còn sót trong danh sách là đơn ghi xong nhưng chưa gỡ được, xử lý như đơn mồ côi
+        Long leftover = stringRedisTemplate.opsForList().size(processingKey());
+        if (leftover != null && leftover > 0) {
+            recover(processingKey());
+        }
+
+        @SuppressWarnings("unchecked")
+        List<String> values = stringRedisTemplate.execute(TAKE_SCRIPT,
+                List.of(QUEUE_KEY, processingKey()), String.valueOf(max));
+        List<FlashSaleQueuedOrder> orders = new ArrayList<>();
+        if (values == null) {
+            return orders;
+        }
+        for (String value : values) {
+            FlashSaleQueuedOrder order = readOrder(value);
+            if (order != null) {
+                orders.add(order);
+            } else {
+                stringRedisTemplate.opsForList().remove(processingKey(), 1, value);
+            }
+        }
+        return orders;
+    }
+
+    @Override
+    public void markCreated(FlashSaleQueuedOrder order, Long orderId) {
+        updateTicket(order.getTicketId(), Map.of(
+                "status", FlashSaleTicketStatus.CREATED.name(),
+                "orderId", String.valueOf(orderId)
+        ));
+        stringRedisTemplate.opsForList().remove(processingKey(), 1, order.getPayload());
+    }
+
+    @Override
+    public void markFailed(FlashSaleQueuedOrder order, String message) {
+        // Ticket đã được node khác ghi thành công (node này bị coi là chết rồi thu hồi), lỗi chỉ là do trùng ticket
+        Long existing = orderRepository.findIdByFlashSaleTicketId(order.getTicketId()).orElse(null);
+        if (existing != null) {
+            markCreated(order, existing);
+            return;
+        }
+        // Gỡ khỏi danh sách trước khi trả hàng: đơn đã bị node khác thu hồi thì không trả lần hai
+        Long removed = stringRedisTemplate.opsForList().remove(processingKey(), 1, order.getPayload());
+        if (removed == null || removed == 0) {
+            log.warn("Flash sale ticket {} was recovered by another node, skipping give-back", order.getTicketId());
+            return;
+        }
+
+        order.getQuantities().forEach((variantId, quantity) -> {
+            ActiveSale sale = activeByVariant.get(variantId);
+            if (sale != null) {
+                // Flash sale có thể vừa đóng ở node khác, giveBack tự trả về kho nếu thấy cờ đã dừng
+                giveBack(sale, Map.of(ThreadLocalRandom.current().nextInt(sale.shardCount()), quantity));
+            } else {
+                // Flash sale đã đóng, phần hàng này trả thẳng về kho
+                inventoryService.increaseStock(Map.of(variantId, quantity));
+            }
+        });
+        updateTicket(order.getTicketId(), Map.of(
+                "status", FlashSaleTicketStatus.FAILED.name(),
+                "message", message != null ? message : "Không thể tạo đơn hàng"
+        ));
+    }
+
+    /**
+     * Xử lý từng đơn trong một danh sách đang xử lý: đơn đã có trong DB thì đánh dấu CREATED và gỡ ra,
+     * chưa có thì đưa lại hàng đợi. Hàng của đơn vẫn đang được giữ nên không phải trả lại counter.
+     */
+    private void recover(String key) {
+        List<String> values = stringRedisTemplate.opsForList().range(key, 0, -1);
+        if (values == null || values.isEmpty()) {
+            return;
+        }
+        int created = 0;
+        int requeued = 0;
+        for (String value : values) {
+            FlashSaleQueuedOrder order = readOrder(value);
+            if (order == null) {
+                stringRedisTemplate.opsForList().remove(key, 1, value);
+                continue;
+            }
+            Long orderId = orderRepository.findIdByFlashSaleTicketId(order.getTicketId()).orElse(null);
+            if (orderId != null) {
+                updateTicket(order.getTicketId(), Map.of(
+                        "status", FlashSaleTicketStatus.CREATED.name(),
+                        "orderId", String.valueOf(orderId)
+                ));
+                stringRedisTemplate.opsForList().remove(key, 1, value);
+                created++;
+            } else if (Long.valueOf(1).equals(stringRedisTemplate.execute(REQUEUE_SCRIPT, List.of(key, QUEUE_KEY), value))) {
+                requeued++;
+            }
+        }
+        Counter.builder("flash.sale.recovered").tag("outcome", "created").register(meterRegistry).increment(created);
+        Counter.builder("flash.sale.recovered").tag("outcome", "requeued").register(meterRegistry).increment(requeued);
+        log.info("Recovered flash sale orders from {}: {} already created, {} requeued", key, created, requeued);
+    }
+
+    /**
+     * Lấy quantity đơn vị, bắt đầu từ một shard ngẫu nhiên và đi vòng sang shard kế tiếp khi shard đang xét không đủ.
+     * Không đủ thì trả lại phần đã lấy và trả về null.
+     */
+    private Map<Integer, Long> claim(ActiveSale sale, long quantity) {
+        int start = ThreadLocalRandom.current().nextInt(sale.shardCount());
+        Map<Integer, Long> taken = new HashMap<>();
+        long need = quantity;
+        for (int i = 0; i < sale.shardCount() && need > 0; i++) {
+            int shard = (start + i) % sale.shardCount();
+            Long got = stringRedisTemplate.execute(CLAIM_SCRIPT,
+                    List.of(shardKey(sale.id(), shard), stoppedKey(sale.id())), String.valueOf(need));
+            if (got != null && got > 0) {
+                taken.merge(shard, got, Long::sum);
+                need -= got;
+            }
+        }
+        if (need <= 0) {
+            return taken;
+        }
+        if (taken.isEmpty()) {
+            soldOut.add(sale.id());
+        }
+        giveBack(sale, taken);
+        return null;
+    }
+
+    private void giveBack(ActiveSale sale, Map<Integer, Long> taken) {
+        long toStock = 0;
+        for (Map.Entry<Integer, Long> entry : taken.entrySet()) {
+            Long returned = stringRedisTemplate.execute(GIVE_BACK_SCRIPT,
+                    List.of(shardKey(sale.id(), entry.getKey()), stoppedKey(sale.id())), String.valueOf(entry.getValue()));
+            if (returned == null || returned == 0) {
+                toStock += entry.getValue();
+            }
+        }
+        if (toStock > 0) {
+            // Flash sale đã đóng và shard đã bị rút, phần này trả thẳng về kho
+            inventoryService.increaseStock(Map.of(sale.variantId(), toStock));
+        } else if (!taken.isEmpty()) {
+            soldOut.remove(sale.id());
+        }
+    }
+
+    /**
+     * Rút phần còn lại của flash sale đã đóng về kho DB. Đặt cờ đã dừng trước khi rút để hàng trả lại sau đó
+     * không tạo lại shard; chạy lại nhiều lần vẫn an toàn vì getAndDelete chỉ trả mỗi đơn vị một lần.
+     */
+    private void settle(ActiveSale sale) {
+        long remaining;
+        try {
+            stringRedisTemplate.opsForValue().set(stoppedKey(sale.id()), "1", Duration.ofHours(stoppedMarkerTtlHours));
+            remaining = drainShards(sale);
+        } catch (Exception e) {
+            // Chưa rút được thì returnedQuantity vẫn null, refreshActiveSales sẽ thử lại
+            log.warn("Cannot drain stopped flash sale {}: {}", sale.id(), e.getMessage());
+            return;
+        }
+
+        try {
+            // Có thể đang ở afterCompletion của transaction vừa commit nên phải mở transaction mới
+            TransactionTemplate tx = new TransactionTemplate(transactionManager);
+            tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            tx.executeWithoutResult(status -> {
+                FlashSale flashSale = flashSaleRepository.findByIdForUpdate(sale.id())
+                        .orElseThrow(() -> new ResourceNotFoundException("Flash sale not found with id = " + sale.id()));
+                if (remaining > 0) {
+                    inventoryService.increaseStock(Map.of(sale.variantId(), remaining));
+                }
+                int returned = flashSale.getReturnedQuantity() != null ? flashSale.getReturnedQuantity() : 0;
+                flashSale.setReturnedQuantity(returned + (int) remaining);
+                flashSaleRepository.save(flashSale);
+            });
+            log.info("Flash sale {} settled, {} units returned to stock", sale.id(), remaining);
+        } catch (Exception e) {
+            log.error("Flash sale {} drained {} units from Redis but could not return them to stock of variant {}: {}",
+                    sale.id(), remaining, sale.variantId(), e.getMessage());
+        }
+    }
+
+    private void writeShards(Long flashSaleId, int quantity, int shardCount) {
+        int base = quantity / shardCount;
+        int remainder = quantity % shardCount;
+        for (int shard = 0; shard < shardCount; shard++) {
+            int units = base + (shard < remainder ? 1 : 0);
+            stringRedisTemplate.opsForValue().set(shardKey(flashSaleId, shard), String.valueOf(units));
+        }
+    }
+
+    private long drainShards(ActiveSale sale) {
+        long remaining = 0;
+        for (int shard = 0; shard < sale.shardCount(); shard++) {
+            String value = stringRedisTemplate.opsForValue().getAndDelete(shardKey(sale.id(), shard));
+            if (value != null) {
+                remaining += Math.max(0, Long.parseLong(value));
+            }
+        }
+        return remaining;
+    }
+
+    private long remainingOf(ActiveSale sale) {
+        List<String> keys = new ArrayList<>(sale.shardCount());
+        for (int shard = 0; shard < sale.shardCount(); shard++) {
+            keys.add(shardKey(sale.id(), shard));
+        }
+        List<String> values = stringRedisTemplate.opsForValue().multiGet(keys);
+        long remaining = 0;
+        if (values != null) {
+            for (String value : values) {
+                if (value != null) {
+                    remaining += Math.max(0, Long.parseLong(value));
+                }
+            }
+        }
+        return remaining;
+    }
+
+    // Gia hạn heartbeat khi đã qua một phần ba TTL, writer gọi mỗi vài trăm ms nên không cần ghi Redis mỗi lần
+    private void heartbeat() {
+        long now = System.currentTimeMillis();
+        if (now - heartbeatAt < TimeUnit.SECONDS.toMillis(nodeTtlSeconds) / 3) {
+            return;
+        }
+        stringRedisTemplate.opsForValue().set(HEARTBEAT_KEY + nodeId, "1", Duration.ofSeconds(nodeTtlSeconds));
+        heartbeatAt = now;
+    }
+
+    private String processingKey() {
+        return PROCESSING_KEY + nodeId;
+    }
+
+    private FlashSaleQueuedOrder readOrder(String value) {
+        try {
+            FlashSaleQueuedOrder order = objectMapper.readValue(value, FlashSaleQueuedOrder.class);
+            order.setPayload(value);
+            return order;
+        } catch (JsonProcessingException e) {
+            log.error("Dropping malformed flash sale order: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void updateTicket(String ticketId, Map<String, String> fields) {
+        String ticketKey = TICKET_KEY + ticketId;
+        stringRedisTemplate.opsForHash().putAll(ticketKey, fields);
+        stringRedisTemplate.expire(ticketKey, Duration.ofMinutes(ticketTtlMinutes));
+    }
+
+    private ConflictException reject(String outcome, String message) {
+        countCheckout(outcome);
+        return new ConflictException(message);
+    }
+
+    private void countCheckout(String outcome) {
+        Counter.builder("flash.sale.checkout")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private String writeOrder(FlashSaleQueuedOrder order) {
+        try {
+            return objectMapper.writeValueAsString(order);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize flash sale order", e);
+        }
+    }
+
+    private void runAfterCompletion(Consumer<Boolean> action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.accept(true);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                action.accept(status == STATUS_COMMITTED);
+            }
+        });
+    }
+
+    private static String shardKey(Long flashSaleId, int shard) {
+        return SHARD_KEY + flashSaleId + ":" + shard;
+    }
+
+    private static String stoppedKey(Long flashSaleId) {
+        return STOPPED_KEY + flashSaleId;
+    }
+
+    private static ActiveSale toActiveSale(FlashSale sale) {
+        return new ActiveSale(sale.getId(), sale.getProductVariant().getId(), sale.getShardCount());
+    }
+
+    private FlashSaleResponse toResponse(FlashSale sale, long remaining) {
+        return FlashSaleResponse.builder()
+                .id(sale.getId())
+                .productVariantId(sale.getProductVariant().getId())
+                .sku(sale.getProductVariant().getSku())
+                .promotionId(sale.getPromotion() != null ? sale.getPromotion().getId() : null)
+                .allocatedQuantity(sale.getAllocatedQuantity())
+                .remainingQuantity(remaining)
+                .shardCount(sale.getShardCount())
+                .active(sale.getActive())
+                .startedAt(sale.getStartedAt())
+                .endAt(sale.getEndAt())
+                .endedAt(sale.getEndedAt())
+                .build();
+    }
+}
@@ -0,0 +1,145 @@
+package iuh.fit.ecommerce.services.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iuh.fit.ecommerce.exceptions.custom.ConflictException;
+import iuh.fit.ecommerce.services.IdempotencyService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Chống xử lý trùng (client bấm lại, retry, cổng thanh toán gửi lại callback) bằng một key Redis cho mỗi request:
+ * request đầu giữ key ở trạng thái PROCESSING, xong thì lưu response kèm TTL;
+ * request lặp lại chỉ đọc một key và trả lại response cũ, không chạy lại tính giá, trừ kho, voucher.
+ * Trong transaction thì response chỉ được lưu sau khi commit, rollback thì bỏ key để client thử lại được.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IdempotencyServiceImpl implements IdempotencyService {
+
+    private static final String KEY_PREFIX = "idempotency:";
+    private static final String PROCESSING = "PROCESSING";
+    private static final String COMPLETED = "COMPLETED";
+
+    record IdempotencyRecord(String status, String fingerprint, Object response) {}
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${idempotency.ttl-hours:24}")
+    private long ttlHours;
+
+    // Node chết giữa chừng thì key PROCESSING tự hết hạn sau khoảng này
+    @Value("${idempotency.processing-ttl-seconds:60}")
+    private long processingTtlSeconds;
+
+    @Override
+    public Optional<Object> begin(String key, String fingerprint) {
+        String redisKey = KEY_PREFIX + key;
+        for (int attempt = 0; attempt < 2; attempt++) {
+            Boolean claimed = stringRedisTemplate.opsForValue().setIfAbsent(
+                    redisKey,
+                    write(new IdempotencyRecord(PROCESSING, fingerprint, null)),
+                    Duration.ofSeconds(processingTtlSeconds));
+            if (Boolean.TRUE.equals(claimed)) {
+                runAfterCompletion(committed -> {
+                    if (!committed) {
+                        abort(key);
+                    }
+                });
+                return Optional.empty();
+            }
+
+            String stored = stringRedisTemplate.opsForValue().get(redisKey);
+            // Key vừa hết hạn giữa hai lệnh thì thử giữ lại một lần
+            if (stored == null) {
+                continue;
+            }
+            IdempotencyRecord record = read(stored);
+            if (fingerprint != null && record.fingerprint() != null && !fingerprint.equals(record.fingerprint())) {
+                throw new ConflictException("Idempotency-Key đã được dùng cho một yêu cầu khác");
+            }
+            if (!COMPLETED.equals(record.status())) {
+                throw new ConflictException("Yêu cầu với Idempotency-Key này đang được xử lý");
+            }
+            log.debug("Replaying stored response for idempotency key {}", key);
+            return Optional.of(record.response());
+        }
+        throw new ConflictException("Yêu cầu với Idempotency-Key này đang được xử lý");
+    }
+
+    @Override
+    public void complete(String key, String fingerprint, Object response) {
+        Objects.requireNonNull(response, "Idempotent response must not be null");
+        // Serialize ngay để dữ liệu lazy còn đọc được trong transaction
+        String value = write(new IdempotencyRecord(COMPLETED, fingerprint, response));
+        runAfterCompletion(committed -> {
+            if (committed) {
+                stringRedisTemplate.opsForValue().set(KEY_PREFIX + key, value, Duration.ofHours(ttlHours));
+            }
+        });
+    }
+
+    @Override
+    public void abort(String key) {
+        try {
+            stringRedisTemplate.delete(KEY_PREFIX + key);
+        } catch (Exception e) {
+            // Key PROCESSING vẫn tự hết hạn
+            log.warn("Cannot release idempotency key {}: {}", key, e.getMessage());
+        }
+    }
+
+    @Override
+    public String fingerprint(Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(objectMapper.writeValueAsBytes(request)));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Cannot fingerprint request", e);
+        }
+    }
+
+    private String write(IdempotencyRecord record) {
+        try {
+            return objectMapper.writeValueAsString(record);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize idempotent response", e);
+        }
+    }
+
+    private IdempotencyRecord read(String value) {
+        try {
+            return objectMapper.readValue(value, IdempotencyRecord.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Invalid idempotency record", e);
+        }
+    }
+
+    private void runAfterCompletion(Consumer<Boolean> action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.accept(true);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                action.accept(status == STATUS_COMMITTED);
+            }
+        });
+    }
+}
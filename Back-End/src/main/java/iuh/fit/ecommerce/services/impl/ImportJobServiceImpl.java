@@ -0,0 +1,244 @@
+package iuh.fit.ecommerce.services.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import iuh.fit.ecommerce.dtos.excel.ImportResult;
+import iuh.fit.ecommerce.dtos.response.imports.ImportJobResponse;
+import iuh.fit.ecommerce.enums.ImportType;
+import iuh.fit.ecommerce.exceptions.custom.ConflictException;
+import iuh.fit.ecommerce.exceptions.custom.InvalidParamException;
+import iuh.fit.ecommerce.services.ImportJobService;
+import iuh.fit.ecommerce.services.excel.CustomerExcelService;
+import iuh.fit.ecommerce.services.excel.StaffExcelService;
+import iuh.fit.ecommerce.services.excel.SupplierExcelService;
+import iuh.fit.ecommerce.utils.excel.BaseExcelHandler;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Import Excel chạy nền cho file lớn: file upload được chép ra file tạm (multipart bị xoá khi request kết thúc),
+ * rồi đọc SAX, validate và ghi theo chunk qua {@link BaseExcelHandler#importFile}.
+ * Sau mỗi chunk, số liệu tiến độ được cập nhật vào hash import:job:{id} và lỗi từng dòng được nối vào
+ * list import:job:{id}:errors (tối đa max-stored-errors), nên client vừa theo dõi tiến độ vừa đọc dần lỗi
+ * trong khi file còn đang chạy, từ bất kỳ instance nào.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ImportJobServiceImpl implements ImportJobService {
+
+    private static final String ERRORS_KEY_SUFFIX = ":errors";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final MeterRegistry meterRegistry;
+    private final CustomerExcelService customerExcelService;
+    private final StaffExcelService staffExcelService;
+    private final SupplierExcelService supplierExcelService;
+
+    @Value("${excel.import.job.max-concurrent:1}")
+    private int maxConcurrent;
+
+    @Value("${excel.import.job.queue-capacity:10}")
+    private int queueCapacity;
+
+    @Value("${excel.import.job.retention-hours:24}")
+    private long retentionHours;
+
+    @Value("${excel.import.job.max-stored-errors:10000}")
+    private int maxStoredErrors;
+
+    @Value("${excel.import.job.max-errors-per-page:1000}")
+    private int maxErrorsPerPage;
+
+    private BackgroundJobs jobs;
+
+    @PostConstruct
+    void init() {
+        jobs = new BackgroundJobs("import", redisTemplate, maxConcurrent, queueCapacity, retentionHours);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        jobs.shutdown();
+    }
+
+    @Override
+    public ImportJobResponse submit(ImportType type, MultipartFile file) {
+        if (file == null || file.isEmpty()) {
+            throw new InvalidParamException("File is empty");
+        }
+        String fileName = file.getOriginalFilename();
+        if (fileName == null || !fileName.endsWith(".xlsx")) {
+            throw new InvalidParamException("Invalid file format. Only .xlsx is supported");
+        }
+        BaseExcelHandler<?> handler = switch (type) {
+            case CUSTOMERS -> customerExcelService;
+            case STAFF -> staffExcelService;
+            case SUPPLIERS -> supplierExcelService;
+        };
+
+        Path tempFile;
+        try {
+            tempFile = Files.createTempFile("import-", ".xlsx");
+            file.transferTo(tempFile);
+        } catch (IOException e) {
+            throw new InvalidParamException("Cannot read uploaded file: " + e.getMessage());
+        }
+
+        String jobId = jobs.create(type.name(), fileName);
+        // Người tạo bản ghi (created_by) lấy từ security context của request
+        SecurityContext securityContext = SecurityContextHolder.getContext();
+        try {
+            jobs.execute(jobId, () -> {
+                SecurityContextHolder.setContext(securityContext);
+                try {
+                    run(jobId, type, handler, tempFile);
+                } finally {
+                    SecurityContextHolder.clearContext();
+                }
+            });
+        } catch (ConflictException e) {
+            deleteQuietly(tempFile);
+            throw e;
+        }
+        return getJob(jobId);
+    }
+
+    @Override
+    public ImportJobResponse getJob(String jobId) {
+        return toResponse(jobId, jobs.find(jobId));
+    }
+
+    @Override
+    public List<ImportResult.ImportError> getErrors(String jobId, int offset, int limit) {
+        if (offset < 0 || limit <= 0) {
+            throw new InvalidParamException("offset must be >= 0 and limit must be > 0");
+        }
+        if (!jobs.exists(jobId)) {
+            throw new ResourceNotFoundException("Import job not found: " + jobId);
+        }
+        int size = Math.min(limit, maxErrorsPerPage);
+        List<Object> values = redisTemplate.opsForList()
+                .range(jobs.key(jobId) + ERRORS_KEY_SUFFIX, offset, offset + size - 1L);
+        List<ImportResult.ImportError> errors = new ArrayList<>();
+        if (values == null) {
+            return errors;
+        }
+        for (Object value : values) {
+            if (value instanceof Map<?, ?> error) {
+                Object rowIndex = error.get("rowIndex");
+                errors.add(ImportResult.ImportError.builder()
+                        .rowIndex(rowIndex instanceof Number number ? number.intValue() : 0)
+                        .field(String.valueOf(error.get("field")))
+                        .message(String.valueOf(error.get("message")))
+                        .build());
+            }
+        }
+        return errors;
+    }
+
+    private void run(String jobId, ImportType type, BaseExcelHandler<?> handler, Path file) {
+        jobs.save(jobId, Map.of("status", "RUNNING"));
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "success";
+        String errorsKey = jobs.key(jobId) + ERRORS_KEY_SUFFIX;
+        long[] storedErrors = {0};
+        try {
+            ImportResult result = handler.importFile(file, (progress, chunkErrors) -> {
+                int room = (int) Math.min(chunkErrors.size(), maxStoredErrors - storedErrors[0]);
+                if (room > 0) {
+                    List<Object> values = new ArrayList<>(room);
+                    for (ImportResult.ImportError error : chunkErrors.subList(0, room)) {
+                        values.add(Map.of(
+                                "rowIndex", error.getRowIndex(),
+                                "field", String.valueOf(error.getField()),
+                                "message", String.valueOf(error.getMessage())));
+                    }
+                    redisTemplate.opsForList().rightPushAll(errorsKey, values);
+                    redisTemplate.expire(errorsKey, jobs.retention());
+                    storedErrors[0] += room;
+                }
+                jobs.save(jobId, progressFields(progress, storedErrors[0]));
+            });
+
+            // importFile ghi lỗi hệ thống (file hỏng, không đọc được sheet) thành lỗi dòng 0: job coi là FAILED
+            Map<String, Object> done = progressFields(result, storedErrors[0]);
+            done.put("status", "COMPLETED");
+            done.put("message", String.valueOf(result.getMessage()));
+            done.put("finishedAt", LocalDateTime.now().toString());
+            if (result.getErrors().stream().anyMatch(error -> error.getRowIndex() == 0)) {
+                outcome = "error";
+                done.put("status", "FAILED");
+                done.put("error", String.valueOf(result.getMessage()));
+            }
+            jobs.save(jobId, done);
+            log.info("Import job {} ({}) finished: {}", jobId, type, result.getMessage());
+        } catch (Exception e) {
+            outcome = "error";
+            log.error("Import job {} ({}) failed: {}", jobId, type, e.getMessage(), e);
+            jobs.fail(jobId, e);
+        } finally {
+            deleteQuietly(file);
+            sample.stop(Timer.builder("excel.import.job")
+                    .tag("type", type.name())
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    private Map<String, Object> progressFields(ImportResult progress, long storedErrors) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("processedRows", String.valueOf(progress.getTotalRows()));
+        fields.put("successCount", String.valueOf(progress.getSuccessCount()));
+        fields.put("errorCount", String.valueOf(progress.getErrorCount()));
+        fields.put("storedErrorCount", String.valueOf(storedErrors));
+        return fields;
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Cannot delete import temp file {}: {}", file, e.getMessage());
+        }
+    }
+
+    private ImportJobResponse toResponse(String jobId, Map<Object, Object> job) {
+        return ImportJobResponse.builder()
+                .jobId(jobId)
+                .type(BackgroundJobs.value(job, "type"))
+                .status(BackgroundJobs.value(job, "status"))
+                .fileName(BackgroundJobs.value(job, "fileName"))
+                .processedRows(longValue(job, "processedRows"))
+                .successCount(longValue(job, "successCount"))
+                .errorCount(longValue(job, "errorCount"))
+                .storedErrorCount(longValue(job, "storedErrorCount"))
+                .message(BackgroundJobs.value(job, "message"))
+                .createdAt(BackgroundJobs.time(job, "createdAt"))
+                .finishedAt(BackgroundJobs.time(job, "finishedAt"))
+                .error(BackgroundJobs.value(job, "error"))
+                .build();
+    }
+
+    private Long longValue(Map<Object, Object> job, String field) {
+        String value = BackgroundJobs.value(job, field);
+        return value != null ? Long.parseLong(value) : 0L;
+    }
+}
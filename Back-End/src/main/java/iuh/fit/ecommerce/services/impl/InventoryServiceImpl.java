@@ -0,0 +1,176 @@
+package iuh.fit.ecommerce.services.impl;
+
+import iuh.fit.ecommerce.dtos.projection.VariantStockProjection;
+import iuh.fit.ecommerce.entities.OrderDetail;
+import iuh.fit.ecommerce.entities.ProductVariant;
+import iuh.fit.ecommerce.exceptions.custom.InsufficientStockException;
+import iuh.fit.ecommerce.exceptions.custom.InvalidParamException;
+import iuh.fit.ecommerce.repositories.ProductVariantRepository;
+import iuh.fit.ecommerce.services.InventoryService;
+import iuh.fit.ecommerce.services.SearchIndexOutboxService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Thay đổi tồn kho bằng UPDATE có điều kiện trên DB thay vì đọc stock, tính trong Java rồi save.
+ * Các dòng được gộp theo variant và cập nhật theo thứ tự id tăng dần để các đơn đồng thời không deadlock.
+ * Dòng nào không đủ hàng thì cả batch bị rollback cùng transaction đặt hàng.
+ * UPDATE hàng loạt bỏ qua persistence context nên ProductVariant đã load trong transaction được refresh lại sau đó.
+ * Sản phẩm đổi tồn kho được đưa vào outbox index trong cùng transaction để tồn kho và bộ lọc còn hàng trên Elasticsearch
+ * không bị cũ; outbox gộp theo productId nên nhiều đơn cùng sản phẩm chỉ index lại một lần mỗi batch.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InventoryServiceImpl implements InventoryService {
+
+    private final ProductVariantRepository productVariantRepository;
+    // ObjectProvider để tránh vòng phụ thuộc qua ProductSearchService/PricingService
+    private final ObjectProvider<SearchIndexOutboxService> searchIndexOutboxService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public void decreaseStock(Map<Long, Long> quantitiesByVariantId) {
+        Map<Long, Long> lines = normalize(quantitiesByVariantId);
+
+        List<Long> failedIds = new ArrayList<>();
+        for (Map.Entry<Long, Long> line : lines.entrySet()) {
+            // Vẫn chạy hết các dòng để báo đủ mọi sản phẩm thiếu hàng trong một lần
+            if (productVariantRepository.decrementStock(line.getKey(), line.getValue().intValue()) == 0) {
+                failedIds.add(line.getKey());
+            }
+        }
+
+        refreshLoaded(lines.keySet());
+        if (!failedIds.isEmpty()) {
+            throw new InsufficientStockException(buildShortages(failedIds, lines));
+        }
+        enqueueReindex(lines.keySet());
+    }
+
+    @Override
+    @Transactional
+    public void increaseStock(Map<Long, Long> quantitiesByVariantId) {
+        Map<Long, Long> lines = normalize(quantitiesByVariantId);
+        for (Map.Entry<Long, Long> line : lines.entrySet()) {
+            if (productVariantRepository.incrementStock(line.getKey(), line.getValue().intValue()) == 0) {
+                log.warn("Cannot restore stock, product variant {} no longer exists", line.getKey());
+            }
+        }
+        refreshLoaded(lines.keySet());
+        enqueueReindex(lines.keySet());
+    }
+
+    @Override
+    @Transactional
+    public void decreaseStock(Collection<OrderDetail> orderDetails) {
+        decreaseStock(quantitiesOf(orderDetails));
+    }
+
+    @Override
+    @Transactional
+    public void restoreStock(Collection<OrderDetail> orderDetails) {
+        increaseStock(quantitiesOf(orderDetails));
+    }
+
+    @Override
+    @Transactional
+    public List<InsufficientStockException.Shortage> tryDecreaseStock(Collection<OrderDetail> orderDetails) {
+        Map<Long, Long> lines = normalize(quantitiesOf(orderDetails));
+
+        Map<Long, Long> decreased = new TreeMap<>();
+        List<Long> failedIds = new ArrayList<>();
+        for (Map.Entry<Long, Long> line : lines.entrySet()) {
+            if (productVariantRepository.decrementStock(line.getKey(), line.getValue().intValue()) == 0) {
+                failedIds.add(line.getKey());
+            } else {
+                decreased.put(line.getKey(), line.getValue());
+            }
+        }
+
+        if (failedIds.isEmpty()) {
+            refreshLoaded(lines.keySet());
+            enqueueReindex(lines.keySet());
+            return List.of();
+        }
+        decreased.forEach((variantId, quantity) -> productVariantRepository.incrementStock(variantId, quantity.intValue()));
+        refreshLoaded(decreased.keySet());
+        return buildShortages(failedIds, lines);
+    }
+
+    /**
+     * Chỉ refresh các variant đã nằm trong persistence context (getReference không query, proxy chưa load sẽ đọc
+     * giá trị mới khi được dùng). Không dùng clearAutomatically vì clear cả context sẽ detach Order, Cart...
+     * mà nơi gọi vẫn đang sửa trong cùng transaction.
+     */
+    private void refreshLoaded(Collection<Long> variantIds) {
+        for (Long variantId : variantIds) {
+            ProductVariant variant = entityManager.getReference(ProductVariant.class, variantId);
+            if (Hibernate.isInitialized(variant)) {
+                entityManager.refresh(variant);
+            }
+        }
+    }
+
+    private void enqueueReindex(Collection<Long> variantIds) {
+        SearchIndexOutboxService outbox = searchIndexOutboxService.getObject();
+        productVariantRepository.findProductIdsByIdIn(variantIds).forEach(outbox::enqueueProduct);
+    }
+
+    private Map<Long, Long> quantitiesOf(Collection<OrderDetail> orderDetails) {
+        return orderDetails.stream()
+                .collect(Collectors.groupingBy(
+                        detail -> detail.getProductVariant().getId(),
+                        Collectors.summingLong(OrderDetail::getQuantity)
+                ));
+    }
+
+    /**
+     * Sắp theo variantId để mọi transaction khoá các dòng product_variants cùng một thứ tự.
+     */
+    private Map<Long, Long> normalize(Map<Long, Long> quantitiesByVariantId) {
+        Map<Long, Long> lines = new TreeMap<>();
+        quantitiesByVariantId.forEach((variantId, quantity) -> {
+            if (quantity == null || quantity <= 0 || quantity > Integer.MAX_VALUE) {
+                throw new InvalidParamException("Invalid quantity for product variant " + variantId);
+            }
+            lines.merge(variantId, quantity, Long::sum);
+        });
+        return lines;
+    }
+
+    private List<InsufficientStockException.Shortage> buildShortages(List<Long> failedIds, Map<Long, Long> lines) {
+        Map<Long, VariantStockProjection> stocks = productVariantRepository.findStockByIdIn(failedIds).stream()
+                .collect(Collectors.toMap(VariantStockProjection::getId, Function.identity()));
+
+        List<InsufficientStockException.Shortage> shortages = new ArrayList<>();
+        for (Long variantId : failedIds) {
+            VariantStockProjection stock = stocks.get(variantId);
+            shortages.add(new InsufficientStockException.Shortage(
+                    variantId,
+                    stock != null ? stock.getProductName() : null,
+                    stock != null ? stock.getSku() : null,
+                    lines.get(variantId),
+                    stock != null && stock.getStock() != null ? stock.getStock() : 0
+            ));
+        }
+        return shortages;
+    }
+}
@@ -0,0 +1,113 @@
+package iuh.fit.ecommerce.services.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import iuh.fit.ecommerce.repositories.OrderArchiveRepository;
+import iuh.fit.ecommerce.services.OrderArchiveService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Giữ bảng orders và các bảng con ở kích thước "nóng": đơn đã kết thúc (COMPLETED/CANCELED/FAILED/PAYMENT_FAILED)
+ * cũ hơn retention-months được chuyển sang các bảng *_archive theo từng batch, mỗi batch một transaction ngắn.
+ * Đơn còn feedback được giữ lại vì feedback vẫn tham chiếu tới orders. Bản đọc order_view không bị xoá
+ * nên lịch sử đơn của khách và trang theo dõi đơn vẫn hoạt động sau khi lưu trữ.
+ * Nhiều node có thể chạy cùng lúc: các id được khoá bằng FOR UPDATE SKIP LOCKED nên không chuyển trùng.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderArchiveServiceImpl implements OrderArchiveService {
+
+    private final OrderArchiveRepository orderArchiveRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${order-archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${order-archive.retention-months:24}")
+    private int retentionMonths;
+
+    @Value("${order-archive.batch-size:500}")
+    private int batchSize;
+
+    @Value("${order-archive.max-batches-per-run:200}")
+    private int maxBatchesPerRun;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    @Scheduled(cron = "${order-archive.cron:0 30 2 * * *}")
+    public void scheduledArchive() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            int archived = archiveCompletedOrders();
+            if (archived > 0) {
+                log.info("Archived {} orders older than {} months", archived, retentionMonths);
+            }
+        } catch (Exception e) {
+            log.error("Order archiving failed: {}", e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public int archiveCompletedOrders() {
+        if (!running.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            LocalDateTime cutoff = LocalDateTime.now().minusMonths(retentionMonths);
+            TransactionTemplate tx = new TransactionTemplate(transactionManager);
+            int total = 0;
+            for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+                Timer.Sample sample = Timer.start(meterRegistry);
+                Integer moved = tx.execute(status -> archiveBatch(cutoff));
+                sample.stop(meterRegistry.timer("orders.archive.batch"));
+                if (moved == null || moved == 0) {
+                    break;
+                }
+                meterRegistry.counter("orders.archived").increment(moved);
+                total += moved;
+                if (moved < batchSize) {
+                    break;
+                }
+            }
+            return total;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private int archiveBatch(LocalDateTime cutoff) {
+        List<Long> orderIds = orderArchiveRepository.lockArchivableIds(cutoff, batchSize);
+        if (orderIds.isEmpty()) {
+            return 0;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        orderArchiveRepository.copyOrders(orderIds, now);
+        orderArchiveRepository.copyOrderDetails(orderIds);
+        orderArchiveRepository.copyPromotionUsages(orderIds);
+        orderArchiveRepository.copyVoucherUsages(orderIds);
+        orderArchiveRepository.copyDeliveryAssignments(orderIds);
+
+        // Xoá từ bảng con lên bảng cha để không vướng khoá ngoại
+        orderArchiveRepository.deletePromotionUsages(orderIds);
+        orderArchiveRepository.deleteOrderDetails(orderIds);
+        orderArchiveRepository.deleteVoucherUsages(orderIds);
+        orderArchiveRepository.deleteDeliveryImages(orderIds);
+        orderArchiveRepository.deleteDeliveryAssignments(orderIds);
+        return orderArchiveRepository.deleteOrders(orderIds);
+    }
+}
@@ -0,0 +1,42 @@
+package iuh.fit.ecommerce.services.impl;
+
+import iuh.fit.ecommerce.exceptions.custom.InvalidParamException;
+import iuh.fit.ecommerce.utils.CursorUtils;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+
+/**
+ * Vị trí phân trang danh sách đơn theo (orderDate, id) của dòng cuối trang trước; cursor rỗng là trang đầu.
+ */
+record OrderCursor(LocalDateTime orderDate, Long id) {
+
+    static OrderCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return new OrderCursor(null, null);
+        }
+        Map<String, Object> position = CursorUtils.decode(cursor);
+        if (!(position.get("lastDate") instanceof String date) || !(position.get("lastId") instanceof Number id)) {
+            throw new InvalidParamException("Invalid cursor");
+        }
+        try {
+            return new OrderCursor(LocalDateTime.parse(date), id.longValue());
+        } catch (DateTimeParseException e) {
+            throw new InvalidParamException("Invalid cursor");
+        }
+    }
+
+    // Lấy dư một bản ghi để biết còn trang sau hay không; size < 1 sẽ làm subList/limit ở bước cắt trang bị lỗi
+    static PageRequest pageRequest(int size) {
+        if (size < 1) {
+            throw new InvalidParamException("Page size must be at least 1");
+        }
+        return PageRequest.of(0, size + 1);
+    }
+
+    static String encode(LocalDateTime orderDate, Long id) {
+        return CursorUtils.encode(Map.of("lastDate", orderDate.toString(), "lastId", id));
+    }
+}
@@ -0,0 +1,48 @@
+package iuh.fit.ecommerce.services.impl;
+
+import iuh.fit.ecommerce.entities.Order;
+import iuh.fit.ecommerce.events.OrderCreatedEvent;
+import iuh.fit.ecommerce.events.OrderEvent;
+import iuh.fit.ecommerce.repositories.OrderRepository;
+import iuh.fit.ecommerce.services.EmailService;
+import iuh.fit.ecommerce.services.OrderEventConsumer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Gửi email xác nhận cho đơn mới.
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderEmailEventConsumer implements OrderEventConsumer {
+
+    private final OrderRepository orderRepository;
+    private final EmailService emailService;
+
+    @Override
+    public String getName() {
+        return "email";
+    }
+
+    @Override
+    public boolean supports(OrderEvent event) {
+        return event instanceof OrderCreatedEvent created && created.notifyCustomer();
+    }
+
+    @Override
+    public void handle(List<OrderEvent> events) {
+        for (OrderEvent event : events) {
+            // Đọc đơn kèm chi tiết để template email không phải lazy load
+            Order order = orderRepository.findByIdWithDetailsForEmail(event.orderId());
+            if (order == null || order.getCustomer() == null) {
+                continue;
+            }
+            String customerEmail = order.getCustomer().getEmail();
+            if (customerEmail != null && !customerEmail.isBlank()) {
+                emailService.sendOrderConfirmation(customerEmail, order);
+            }
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package iuh.fit.ecommerce.services.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import iuh.fit.ecommerce.entities.OrderEventOutbox;
+import iuh.fit.ecommerce.events.OrderCreatedEvent;
+import iuh.fit.ecommerce.events.OrderEvent;
+import iuh.fit.ecommerce.events.OrderStatusChangedEvent;
+import iuh.fit.ecommerce.repositories.OrderEventOutboxRepository;
+import iuh.fit.ecommerce.services.OrderEventConsumer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chuyển sự kiện đơn hàng cho từng consumer theo hai đường:
+ * <ul>
+ *     <li>Consumer bền (ranking, order_view, số liệu tổng hợp): sự kiện được ghi vào order_event_outbox ngay trước khi
+ *     transaction của đơn commit, rồi được lấy theo batch bằng SKIP LOCKED. handle chạy chung transaction với việc xoá
+ *     dòng outbox nên mỗi sự kiện có hiệu lực đúng một lần dù restart hay chạy nhiều instance. Lỗi thì thử lại với
+ *     backoff, quá số lần thì đánh dấu failed và giữ lại trong bảng, không bỏ.</li>
+ *     <li>Consumer thông báo (email, WebSocket, push): nhận sau commit qua hàng đợi trong bộ nhớ và thread riêng,
+ *     hàng đợi đầy hoặc quá số lần thử thì bỏ và ghi log, mất khi restart.</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OrderEventDispatcher {
+
+    private static final long MAX_BACKOFF_MS = 30_000;
+    private static final long MAX_OUTBOX_BACKOFF_SECONDS = 600;
+    // Node đã claim batch giữ lease trong khoảng này, quá hạn thì node khác được xử lý lại
+    private static final Duration CLAIM_LEASE = Duration.ofMinutes(2);
+
+    private final List<OrderEventConsumer> consumers;
+    private final OrderEventOutboxRepository outboxRepository;
+    private final ObjectMapper objectMapper;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${events.order.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${events.order.batch-size:50}")
+    private int batchSize;
+
+    @Value("${events.order.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${events.order.retry-backoff-ms:500}")
+    private long retryBackoffMs;
+
+    @Value("${events.order.outbox.max-attempts:10}")
+    private int outboxMaxAttempts;
+
+    private final List<Worker> workers = new ArrayList<>();
+    private final AtomicLong outboxLagSeconds = new AtomicLong();
+    private final AtomicLong outboxFailed = new AtomicLong();
+
+    @PostConstruct
+    void start() {
+        Gauge.builder("order.events.outbox.lag", outboxLagSeconds, AtomicLong::get)
+                .baseUnit("seconds")
+                .description("Age of the oldest order event not yet handled by a durable consumer")
+                .register(meterRegistry);
+        Gauge.builder("order.events.outbox.failed", outboxFailed, AtomicLong::get)
+                .description("Order events that exhausted their retries and wait for manual handling")
+                .register(meterRegistry);
+        for (OrderEventConsumer consumer : consumers) {
+            if (consumer.isDurable()) {
+                continue;
+            }
+            Worker worker = new Worker(consumer, new ArrayBlockingQueue<>(queueCapacity));
+            Gauge.builder("order.events.queue", worker.queue, BlockingQueue::size)
+                    .tag("consumer", consumer.getName())
+                    .description("Order events waiting for a consumer")
+                    .register(meterRegistry);
+            worker.thread.start();
+            workers.add(worker);
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        workers.forEach(worker -> worker.running = false);
+        for (Worker worker : workers) {
+            try {
+                // Cho thread xử lý nốt phần còn trong hàng đợi
+                worker.thread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // Ghi outbox trong chính transaction của đơn: đơn commit thì sự kiện cũng đã được lưu
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void persistDurable(OrderEvent event) {
+        String payload = writeEvent(event);
+        LocalDateTime now = LocalDateTime.now();
+        for (OrderEventConsumer consumer : consumers) {
+            if (consumer.isDurable() && consumer.supports(event)) {
+                outboxRepository.save(OrderEventOutbox.builder()
+                        .consumer(consumer.getName())
+                        .eventType(event.getClass().getSimpleName())
+                        .payload(payload)
+                        .nextAttemptAt(now)
+                        .build());
+            }
+        }
+    }
+
+    // fallbackExecution: nơi publish không có transaction thì chuyển đi ngay
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onOrderEvent(OrderEvent event) {
+        for (Worker worker : workers) {
+            if (!worker.consumer.supports(event)) {
+                continue;
+            }
+            if (!worker.queue.offer(event)) {
+                count(worker.consumer, "dropped");
+                log.warn("Order event queue of {} is full, dropping {}", worker.consumer.getName(), event);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${events.order.outbox.poll-interval-ms:500}")
+    public void dispatchDurable() {
+        for (OrderEventConsumer consumer : consumers) {
+            if (consumer.isDurable()) {
+                try {
+                    dispatchDurable(consumer);
+                } catch (Exception e) {
+                    log.error("Cannot dispatch outbox events for {}: {}", consumer.getName(), e.getMessage(), e);
+                }
+            }
+        }
+        updateOutboxMetrics();
+    }
+
+    private void dispatchDurable(OrderEventConsumer consumer) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        List<OrderEventOutbox> claimed = tx.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<OrderEventOutbox> due = outboxRepository.findDueForUpdate(
+                    consumer.getName(), now, PageRequest.of(0, batchSize));
+            due.forEach(row -> row.setNextAttemptAt(now.plus(CLAIM_LEASE)));
+            return outboxRepository.saveAll(due);
+        });
+        if (claimed == null || claimed.isEmpty()) {
+            return;
+        }
+
+        // READ COMMITTED: consumer chỉ đọc lại dữ liệu đã commit, không giữ next-key lock trên bảng orders
+        TransactionTemplate handleTx = new TransactionTemplate(transactionManager);
+        handleTx.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        try {
+            handleTx.executeWithoutResult(status -> {
+                consumer.handle(claimed.stream().map(this::readEvent).toList());
+                outboxRepository.deleteByIdIn(claimed.stream().map(OrderEventOutbox::getId).toList());
+            });
+            count(consumer, "delivered", claimed.size());
+            return;
+        } catch (Exception e) {
+            log.warn("Order event consumer {} failed on a batch of {}: {}", consumer.getName(), claimed.size(), e.getMessage());
+        }
+
+        // Batch lỗi: xử lý từng sự kiện để một sự kiện hỏng không chặn các sự kiện khác
+        for (OrderEventOutbox row : claimed) {
+            try {
+                handleTx.executeWithoutResult(status -> {
+                    consumer.handle(List.of(readEvent(row)));
+                    outboxRepository.deleteByIdIn(List.of(row.getId()));
+                });
+                count(consumer, "delivered");
+            } catch (Exception e) {
+                scheduleOutboxRetry(tx, consumer, row, e.getMessage());
+            }
+        }
+    }
+
+    private void scheduleOutboxRetry(TransactionTemplate tx, OrderEventConsumer consumer, OrderEventOutbox row, String error) {
+        tx.executeWithoutResult(status -> outboxRepository.findById(row.getId()).ifPresent(current -> {
+            int attempts = current.getAttempts() + 1;
+            long backoff = Math.min(MAX_OUTBOX_BACKOFF_SECONDS, 1L << Math.min(attempts, 16));
+            current.setAttempts(attempts);
+            current.setNextAttemptAt(LocalDateTime.now().plusSeconds(backoff));
+            current.setLastError(error != null && error.length() > 1000 ? error.substring(0, 1000) : error);
+            if (attempts >= outboxMaxAttempts) {
+                current.setFailed(true);
+                count(consumer, "failed");
+                log.error("Order event consumer {} gave up on outbox event {} after {} attempts: {}",
+                        consumer.getName(), current.getId(), attempts, error);
+            } else {
+                count(consumer, "retried");
+            }
+            outboxRepository.save(current);
+        }));
+    }
+
+    private String writeEvent(OrderEvent event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize order event " + event, e);
+        }
+    }
+
+    private OrderEvent readEvent(OrderEventOutbox row) {
+        Class<? extends OrderEvent> type = switch (row.getEventType()) {
+            case "OrderCreatedEvent" -> OrderCreatedEvent.class;
+            case "OrderStatusChangedEvent" -> OrderStatusChangedEvent.class;
+            default -> throw new IllegalStateException("Unknown order event type " + row.getEventType());
+        };
+        try {
+            return objectMapper.readValue(row.getPayload(), type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Invalid order event payload " + row.getId(), e);
+        }
+    }
+
+    private void updateOutboxMetrics() {
+        try {
+            LocalDateTime oldest = outboxRepository.findOldestCreatedAt();
+            outboxLagSeconds.set(oldest == null ? 0 : Math.max(0, Duration.between(oldest, LocalDateTime.now()).toSeconds()));
+            outboxFailed.set(outboxRepository.countByFailedTrue());
+        } catch (Exception e) {
+            log.warn("Cannot compute order event outbox metrics: {}", e.getMessage());
+        }
+    }
+
+    private void deliver(OrderEventConsumer consumer, List<OrderEvent> batch) {
+        try {
+            consumer.handle(batch);
+            count(consumer, "delivered", batch.size());
+            return;
+        } catch (Exception e) {
+            log.warn("Order event consumer {} failed on a batch of {}: {}", consumer.getName(), batch.size(), e.getMessage());
+        }
+        for (OrderEvent event : batch) {
+            deliverWithRetry(consumer, event);
+        }
+    }
+
+    private void deliverWithRetry(OrderEventConsumer consumer, OrderEvent event) {
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            try {
+                consumer.handle(List.of(event));
+                count(consumer, "delivered");
+                return;
+            } catch (Exception e) {
+                if (attempt == maxAttempts) {
+                    count(consumer, "failed");
+                    log.error("Order event consumer {} gave up on {} after {} attempts: {}",
+                            consumer.getName(), event, attempt, e.getMessage(), e);
+                    return;
+                }
+                count(consumer, "retried");
+                try {
+                    Thread.sleep(Math.min(MAX_BACKOFF_MS, retryBackoffMs << (attempt - 1)));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void count(OrderEventConsumer consumer, String outcome) {
+        count(consumer, outcome, 1);
+    }
+
+    private void count(OrderEventConsumer consumer, String outcome, int amount) {
+        Counter.builder("order.events")
+                .tag("consumer", consumer.getName())
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment(amount);
+    }
+
+    private final class Worker {
+        private final OrderEventConsumer consumer;
+        private final BlockingQueue<OrderEvent> queue;
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        private Worker(OrderEventConsumer consumer, BlockingQueue<OrderEvent> queue) {
+            this.consumer = consumer;
+            this.queue = queue;
+            this.thread = new Thread(this::run, "order-events-" + consumer.getName());
+            this.thread.setDaemon(true);
+        }
+
+        private void run() {
+            while (running || !queue.isEmpty()) {
+                try {
+                    OrderEvent first = queue.poll(1, TimeUnit.SECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    List<OrderEvent> batch = new ArrayList<>(batchSize);
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    deliver(consumer, batch);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    log.error("Order event worker {} crashed on a batch: {}", consumer.getName(), e.getMessage(), e);
+                }
+            }
+        }
+    }
+}
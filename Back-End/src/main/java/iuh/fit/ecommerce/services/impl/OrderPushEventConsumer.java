@@ -0,0 +1,89 @@
+package iuh.fit.ecommerce.services.impl;
+
+import iuh.fit.ecommerce.entities.Customer;
+import iuh.fit.ecommerce.entities.Order;
+import iuh.fit.ecommerce.events.OrderEvent;
+import iuh.fit.ecommerce.events.OrderStatusChangedEvent;
+import iuh.fit.ecommerce.repositories.OrderRepository;
+import iuh.fit.ecommerce.services.OrderEventConsumer;
+import iuh.fit.ecommerce.services.PushNotificationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Gửi push notification (Expo) cho khách khi trạng thái đơn thay đổi.
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderPushEventConsumer implements OrderEventConsumer {
+
+    private final OrderRepository orderRepository;
+    private final PushNotificationService pushNotificationService;
+
+    @Override
+    public String getName() {
+        return "push";
+    }
+
+    @Override
+    public boolean supports(OrderEvent event) {
+        return event instanceof OrderStatusChangedEvent changed && titleOf(changed) != null;
+    }
+
+    @Override
+    public void handle(List<OrderEvent> events) {
+        Map<Long, Order> orders = orderRepository.findAllById(events.stream().map(OrderEvent::orderId).toList())
+                .stream()
+                .collect(Collectors.toMap(Order::getId, Function.identity()));
+
+        for (OrderEvent event : events) {
+            Order order = orders.get(event.orderId());
+            Customer customer = order != null ? order.getCustomer() : null;
+            if (customer == null || customer.getExpoPushToken() == null || customer.getExpoPushToken().isEmpty()) {
+                continue;
+            }
+            OrderStatusChangedEvent changed = (OrderStatusChangedEvent) event;
+
+            Map<String, Object> notificationData = new HashMap<>();
+            notificationData.put("orderId", order.getId());
+            notificationData.put("type", "order_status");
+            notificationData.put("status", changed.status().name());
+
+            pushNotificationService.sendPushNotification(
+                    customer.getExpoPushToken(),
+                    titleOf(changed),
+                    bodyOf(changed),
+                    notificationData
+            );
+        }
+    }
+
+    private static String titleOf(OrderStatusChangedEvent event) {
+        return switch (event.status()) {
+            case PROCESSING -> "Đơn hàng đã được tiếp nhận";
+            case CANCELED -> "Đơn hàng đã bị hủy";
+            case READY_FOR_PICKUP -> "Đơn hàng sẵn sàng nhận";
+            case SHIPPED -> "Đơn hàng đang được giao";
+            case COMPLETED -> "Đơn hàng đã được nhận";
+            default -> null;
+        };
+    }
+
+    private static String bodyOf(OrderStatusChangedEvent event) {
+        Long orderId = event.orderId();
+        return switch (event.status()) {
+            case PROCESSING -> String.format("Đơn hàng #%d của bạn đã được tiếp nhận và đang được xử lý.", orderId);
+            case CANCELED -> String.format("Đơn hàng #%d của bạn đã bị hủy.", orderId);
+            case READY_FOR_PICKUP -> String.format("Đơn hàng #%d của bạn đã sẵn sàng để nhận. Vui lòng đến cửa hàng để nhận hàng.", orderId);
+            case SHIPPED -> String.format("Đơn hàng #%d của bạn đang được giao đến địa chỉ của bạn.", orderId);
+            case COMPLETED -> String.format("Đơn hàng #%d của bạn đã được hoàn thành. Cảm ơn bạn đã mua sắm!", orderId);
+            default -> null;
+        };
+    }
+}
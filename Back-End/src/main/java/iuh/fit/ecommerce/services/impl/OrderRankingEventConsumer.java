@@ -0,0 +1,53 @@
+package iuh.fit.ecommerce.services.impl;
+
+import iuh.fit.ecommerce.events.OrderEvent;
+import iuh.fit.ecommerce.events.OrderStatusChangedEvent;
+import iuh.fit.ecommerce.repositories.OrderRepository;
+import iuh.fit.ecommerce.services.OrderEventConsumer;
+import iuh.fit.ecommerce.services.RankingService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static iuh.fit.ecommerce.enums.OrderStatus.COMPLETED;
+
+/**
+ * Cộng chi tiêu và xếp hạng lại khách khi đơn hoàn thành.
+ * Sự kiện đến từ outbox và batch chạy chung transaction với việc xoá dòng outbox,
+ * nên lỗi thì rollback hết và thử lại mà không cộng hai lần.
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderRankingEventConsumer implements OrderEventConsumer {
+
+    private final OrderRepository orderRepository;
+    private final RankingService rankingService;
+    private final PlatformTransactionManager transactionManager;
+
+    @Override
+    public String getName() {
+        return "ranking";
+    }
+
+    @Override
+    public boolean isDurable() {
+        return true;
+    }
+
+    @Override
+    public boolean supports(OrderEvent event) {
+        return event instanceof OrderStatusChangedEvent changed && COMPLETED.equals(changed.status());
+    }
+
+    @Override
+    public void handle(List<OrderEvent> events) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            for (OrderEvent event : events) {
+                orderRepository.findById(event.orderId()).ifPresent(rankingService::updateCustomerRanking);
+            }
+        });
+    }
+}
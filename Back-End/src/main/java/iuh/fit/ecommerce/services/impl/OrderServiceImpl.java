@@ -1,11 +1,19 @@
 package iuh.fit.ecommerce.services.impl;
 
+import iuh.fit.ecommerce.dtos.pricing.PricingContext;
+import iuh.fit.ecommerce.dtos.projection.OrderSummaryProjection;
+import iuh.fit.ecommerce.dtos.request.order.FlashSaleQueuedOrder;
 import iuh.fit.ecommerce.dtos.request.order.OrderCreationRequest;
+import iuh.fit.ecommerce.dtos.request.order.OrderQuoteRequest;
 import iuh.fit.ecommerce.dtos.request.order.StaffOrderCreationRequest;
 import iuh.fit.ecommerce.dtos.request.order.StaffOrderItem;
 import iuh.fit.ecommerce.dtos.response.base.ResponseWithPagination;
+import iuh.fit.ecommerce.dtos.response.order.OrderQuoteResponse;
 import iuh.fit.ecommerce.dtos.response.order.OrderResponse;
+import iuh.fit.ecommerce.dtos.response.order.OrderSummaryResponse;
 import iuh.fit.ecommerce.entities.*;
+import iuh.fit.ecommerce.events.OrderCreatedEvent;
+import iuh.fit.ecommerce.events.OrderStatusChangedEvent;
 import iuh.fit.ecommerce.enums.OrderStatus;
 import iuh.fit.ecommerce.enums.PaymentMethod;
 import iuh.fit.ecommerce.exceptions.custom.InvalidParamException;
@@ -18,6 +26,7 @@ import iuh.fit.ecommerce.specifications.OrderSpecification;
 import iuh.fit.ecommerce.utils.SecurityUtils;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -27,8 +36,8 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Supplier;
 
-import static iuh.fit.ecommerce.enums.VoucherType.*;
 import static iuh.fit.ecommerce.enums.OrderStatus.*;
 import static iuh.fit.ecommerce.enums.PaymentMethod.*;
 
@@ -39,113 +48,207 @@ public class OrderServiceImpl implements OrderService {
     private final OrderRepository orderRepository;
     private final SecurityUtils securityUtils;
     private final CartRepository cartRepository;
-    private final VoucherRepository voucherRepository;
-    private final VoucherCustomerRepository voucherCustomerRepository;
     private final VoucherUsageHistoryRepository voucherUsageHistoryRepository;
     private final ProductVariantRepository productVariantRepository;
-    private final PromotionService promotionService;
+    private final InventoryService inventoryService;
+    private final StockReservationService stockReservationService;
+    private final FlashSaleService flashSaleService;
+    private final IdempotencyService idempotencyService;
+    private final PricingService pricingService;
+    private final PromotionRepository promotionRepository;
     private final PromotionUsageRepository promotionUsageRepository;
     private final OrderMapper orderMapper;
     private final PaymentService paymentService;
-    private final RankingService rankingService;
-    private final PushNotificationService pushNotificationService;
     private final CustomerService customerService;
-    private final VoucherService voucherService;
-    private final EmailService emailService;
-    private final NotificationWebSocketService notificationWebSocketService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     @Transactional
     public Object customerCreateOrder(OrderCreationRequest request, HttpServletRequest httpRequest) {
         Customer customer = securityUtils.getCurrentCustomer();
+        return runIdempotent(httpRequest, "order:customer:" + customer.getId(), request,
+                () -> createCustomerOrder(customer, request, httpRequest));
+    }
+
+    private Object createCustomerOrder(Customer customer, OrderCreationRequest request, HttpServletRequest httpRequest) {
         Cart cart = getCustomerCart(customer);
 
         validateCartNotEmpty(cart);
 
+        // Giỏ có sản phẩm đang flash sale thì đi qua hàng đợi flash sale, đơn được ghi sau theo batch
+        Map<Long, Long> flashSaleQuantities = findFlashSaleQuantities(cart, request);
+        if (!flashSaleQuantities.isEmpty()) {
+            return flashSaleService.admit(customer.getId(), request, flashSaleQuantities);
+        }
+
         Order order = buildOrder(request, customer);
 
-        List<OrderDetail> orderDetails = buildOrderDetails(cart, order, request.getCartItemIds());
-        double totalPrice = calculateTotalPrice(orderDetails);
-        double totalDiscount = calculatePromotionDiscount(orderDetails);
+        PricingContext pricing = priceCart(cart, customer, request.getCartItemIds(), request.getVoucherId());
+        applyPricing(order, pricing, request.getPaymentMethod(), PENDING);
 
-        totalDiscount += applyRankingDiscount(customer, totalPrice - totalDiscount);
+        return processPayment(request, httpRequest, pricing.getVoucher(), order, cart, request.getCartItemIds());
+    }
 
-        Voucher voucher = request.getVoucherId() != null ? voucherService.getVoucherEntityById(request.getVoucherId()) : null;
+    @Override
+    @Transactional
+    public OrderResponse createFlashSaleOrder(FlashSaleQueuedOrder queuedOrder) {
+        Customer customer = customerService.getCustomerEntityById(queuedOrder.getCustomerId());
+        OrderCreationRequest request = queuedOrder.getRequest();
+        Cart cart = getCustomerCart(customer);
 
-        double voucherDiscountAmount = applyVoucherIfValid(voucher, customer, totalPrice, totalDiscount);
+        validateCartNotEmpty(cart);
 
-        double finalTotalPrice = totalPrice - (totalDiscount + voucherDiscountAmount);
+        Order order = buildOrder(request, customer);
+        order.setFlashSaleTicketId(queuedOrder.getTicketId());
 
-        prepareOrderDetailAndPrice(order, orderDetails, totalPrice, totalDiscount, voucher, voucherDiscountAmount, finalTotalPrice, request.getPaymentMethod(), PENDING);
+        PricingContext pricing = priceCart(cart, customer, request.getCartItemIds(), request.getVoucherId());
+        validateFlashSaleQuantities(pricing, queuedOrder.getQuantities());
+        applyPricing(order, pricing, request.getPaymentMethod(), PENDING);
 
-        return processPayment(request, httpRequest, voucher, order, cart, request.getCartItemIds());
+        // Hàng đã rời product_variants lúc mở flash sale nên không trừ kho nữa
+        clearCart(cart, request.getCartItemIds());
+        eventPublisher.publishEvent(new OrderCreatedEvent(order.getId(), false, true, LocalDateTime.now()));
+        return orderMapper.toResponse(order);
     }
 
-
     @Override
-    @Transactional
-    public Object staffCreateOrder(StaffOrderCreationRequest request, HttpServletRequest httpRequest) {
+    @Transactional(readOnly = true)
+    public OrderQuoteResponse quoteOrder(OrderQuoteRequest request) {
+        Customer customer = securityUtils.getCurrentCustomer();
+        Cart cart = getCustomerCart(customer);
 
-        Order order = buildStaffOrder(request);
-        Customer customer = order.getCustomer();
+        validateCartNotEmpty(cart);
 
-        List<OrderDetail> orderDetails = buildStaffOrderDetails(order, request.getItems());
+        PricingContext pricing = priceCart(cart, customer, request.getCartItemIds(), request.getVoucherId());
+        return OrderQuoteResponse.from(pricing);
+    }
 
-        double totalPrice = calculateTotalPrice(orderDetails);
-        double totalDiscount = calculatePromotionDiscount(orderDetails);
+    private PricingContext priceCart(Cart cart, Customer customer, List<Long> cartItemIds, Long voucherId) {
+        List<PricingContext.Item> items = cart.getCartDetails().stream()
+                .filter(cd -> cartItemIds.contains(cd.getId()))
+                .map(cd -> new PricingContext.Item(cd.getProductVariant(), cd.getPrice(), cd.getQuantity()))
+                .toList();
 
-        double rankingDiscount = applyRankingDiscount(customer, totalPrice - totalDiscount);
-        totalDiscount += rankingDiscount;
+        if (items.isEmpty()) {
+            throw new InvalidParamException("No valid cart items found to create order");
+        }
 
-        Voucher voucher = request.getVoucherId() != null ? voucherService.getVoucherEntityById(request.getVoucherId()) : null;
+        return pricingService.priceCheckout(customer, items, voucherId);
+    }
 
-        double voucherDiscountAmount = applyVoucherIfValid(voucher, customer, totalPrice, totalDiscount);
-        
-        double finalTotalPrice = totalPrice - totalDiscount - voucherDiscountAmount;
+    private Map<Long, Long> findFlashSaleQuantities(Cart cart, OrderCreationRequest request) {
+        Map<Long, Long> quantities = new TreeMap<>();
+        for (CartDetail cartDetail : cart.getCartDetails()) {
+            if (request.getCartItemIds().contains(cartDetail.getId())) {
+                quantities.merge(cartDetail.getProductVariant().getId(), cartDetail.getQuantity(), Long::sum);
+            }
+        }
 
-        prepareOrderDetailAndPrice(order, orderDetails, totalPrice, totalDiscount, voucher, voucherDiscountAmount, finalTotalPrice, request.getPaymentMethod(), PROCESSING);
+        Set<Long> flashSaleVariantIds = flashSaleService.findFlashSaleVariantIds(quantities.keySet());
+        if (flashSaleVariantIds.isEmpty()) {
+            return Map.of();
+        }
+        if (flashSaleVariantIds.size() != quantities.size()) {
+            throw new InvalidParamException("Sản phẩm flash sale phải được đặt trong một đơn riêng");
+        }
+        if (!CASH_ON_DELIVERY.equals(request.getPaymentMethod())) {
+            throw new InvalidParamException("Đơn flash sale chỉ hỗ trợ thanh toán khi nhận hàng");
+        }
+        return quantities;
+    }
+
+    // Giỏ hàng đổi sau khi giành được hàng thì không tạo đơn, phần hàng đã lấy được trả về flash sale
+    private void validateFlashSaleQuantities(PricingContext pricing, Map<Long, Long> claimed) {
+        Map<Long, Long> ordered = new HashMap<>();
+        for (PricingContext.Line line : pricing.getLines()) {
+            ordered.merge(line.variant().getId(), line.quantity(), Long::sum);
+        }
+        if (!ordered.equals(claimed)) {
+            throw new InvalidParamException("Giỏ hàng đã thay đổi so với lúc đặt flash sale");
+        }
+    }
 
-        return processStaffPayment(request, httpRequest, order, voucher);
+    @Override
+    @Transactional
+    public Object staffCreateOrder(StaffOrderCreationRequest request, HttpServletRequest httpRequest) {
+        Long staffId = securityUtils.getCurrentUser().getId();
+        return runIdempotent(httpRequest, "order:staff:" + staffId, request,
+                () -> createStaffOrder(request, httpRequest));
     }
 
+    private Object createStaffOrder(StaffOrderCreationRequest request, HttpServletRequest httpRequest) {
+        Order order = buildStaffOrder(request);
 
-    private void prepareOrderDetailAndPrice(Order order, List<OrderDetail> orderDetails, double totalPrice,
-                                            double totalDiscount, Voucher voucher, double voucherDiscountAmount,
-                                            double finalTotalPrice, PaymentMethod paymentMethod, OrderStatus orderStatus) {
-        order.setOrderDetails(orderDetails);
-        order.setTotalPrice(totalPrice);
-        order.setTotalDiscount(totalDiscount + voucherDiscountAmount);
-        order.setFinalTotalPrice(finalTotalPrice);
+        List<PricingContext.Item> items = buildStaffItems(request.getItems());
+        PricingContext pricing = pricingService.priceCheckout(order.getCustomer(), items, request.getVoucherId());
+        applyPricing(order, pricing, request.getPaymentMethod(), PROCESSING);
 
-        order.setStatus(CASH_ON_DELIVERY.equals(paymentMethod) ? orderStatus : PENDING_PAYMENT);
+        return processStaffPayment(request, httpRequest, order, pricing.getVoucher());
+    }
 
-        orderRepository.save(order);
-        handleVoucherUsage(voucher, order, voucherDiscountAmount);
-        handlePromotionUsage(orderDetails);
+
+    /**
+     * Request có header Idempotency-Key thì lần gửi lại (cùng người tạo, cùng key) nhận lại response của lần đầu,
+     * không tạo thêm đơn. Không có header thì xử lý như cũ.
+     */
+    private Object runIdempotent(HttpServletRequest httpRequest, String scope, Object request, Supplier<Object> action) {
+        String key = httpRequest != null ? httpRequest.getHeader(IdempotencyService.HEADER) : null;
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > 128) {
+            throw new InvalidParamException("Idempotency-Key must be at most 128 characters");
+        }
+
+        String scopedKey = scope + ":" + key.trim();
+        String fingerprint = idempotencyService.fingerprint(request);
+        Optional<Object> replay = idempotencyService.begin(scopedKey, fingerprint);
+        if (replay.isPresent()) {
+            return replay.get();
+        }
+        Object result = action.get();
+        idempotencyService.complete(scopedKey, fingerprint, result);
+        return result;
     }
 
-    private void handlePromotionUsage(List<OrderDetail> orderDetails) {
+    /**
+     * Ghi đơn từ kết quả tính giá: OrderDetail, PromotionUsage và VoucherUsageHistory lấy số liệu từ cùng một PricingContext,
+     * không tra lại promotion/voucher.
+     */
+    private void applyPricing(Order order, PricingContext pricing, PaymentMethod paymentMethod, OrderStatus orderStatus) {
+        List<OrderDetail> orderDetails = new ArrayList<>(pricing.getLines().size());
         List<PromotionUsage> promotionUsages = new ArrayList<>();
 
-        for (OrderDetail orderDetail : orderDetails) {
-            if (orderDetail.getDiscount() != null && orderDetail.getDiscount() > 0) {
-                ProductVariant variant = orderDetail.getProductVariant();
-                Promotion promotion = promotionService.getBestPromotionForVariant(variant);
-
-                if (promotion != null) {
-                    double itemTotal = orderDetail.getPrice() * orderDetail.getQuantity();
-                    double discountAmount = itemTotal * (orderDetail.getDiscount() / 100.0);
-
-                    PromotionUsage usage = PromotionUsage.builder()
-                            .promotion(promotion)
-                            .orderDetail(orderDetail)
-                            .discountAmount(discountAmount)
-                            .build();
-                    promotionUsages.add(usage);
-                }
+        for (PricingContext.Line line : pricing.getLines()) {
+            OrderDetail orderDetail = OrderDetail.builder()
+                    .order(order)
+                    .productVariant(line.variant())
+                    .price(line.unitPrice())
+                    .quantity(line.quantity())
+                    .discount(line.discountPercent())
+                    .finalPrice(line.finalPrice())
+                    .build();
+            orderDetails.add(orderDetail);
+
+            if (line.promotionId() != null && line.discountPercent() > 0) {
+                promotionUsages.add(PromotionUsage.builder()
+                        .promotion(promotionRepository.getReferenceById(line.promotionId()))
+                        .orderDetail(orderDetail)
+                        .discountAmount(line.discountAmount())
+                        .build());
             }
         }
 
+        order.setOrderDetails(orderDetails);
+        order.setTotalPrice(pricing.getTotalPrice());
+        order.setTotalDiscount(pricing.getTotalDiscount());
+        order.setFinalTotalPrice(pricing.getFinalTotalPrice());
+
+        order.setStatus(CASH_ON_DELIVERY.equals(paymentMethod) ? orderStatus : PENDING_PAYMENT);
+
+        orderRepository.save(order);
+        handleVoucherUsage(pricing.getVoucher(), order, pricing.getVoucherDiscount());
+
         if (!promotionUsages.isEmpty()) {
             promotionUsageRepository.saveAll(promotionUsages);
         }
@@ -167,45 +270,22 @@ public class OrderServiceImpl implements OrderService {
                 .build();
     }
 
-    private List<OrderDetail> buildStaffOrderDetails(Order order, List<StaffOrderItem> items) {
-        List<OrderDetail> details = new ArrayList<>();
+    private List<PricingContext.Item> buildStaffItems(List<StaffOrderItem> items) {
+        Set<Long> variantIds = new HashSet<>();
+        items.forEach(item -> variantIds.add(item.getProductVariantId()));
+        Map<Long, ProductVariant> variants = new HashMap<>();
+        productVariantRepository.findAllWithProductByIdIn(variantIds).forEach(v -> variants.put(v.getId(), v));
 
+        List<PricingContext.Item> pricingItems = new ArrayList<>(items.size());
         for (StaffOrderItem item : items) {
-            ProductVariant variant = productVariantRepository.findById(item.getProductVariantId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Product variant not found with id: " + item.getProductVariantId()));
-
-            int quantity = item.getQuantity();
-
-            if (variant.getStock() == null || variant.getStock() < quantity) {
-                throw new InvalidParamException(
-                        String.format(
-                                "Sản phẩm \"%s\" không đủ số lượng. Tồn kho hiện tại: %d, số lượng yêu cầu: %d",
-                                variant.getProduct().getName(),
-                                variant.getStock(),
-                                quantity
-                        )
-                );
+            ProductVariant variant = variants.get(item.getProductVariantId());
+            if (variant == null) {
+                throw new ResourceNotFoundException("Product variant not found with id: " + item.getProductVariantId());
             }
-
-            Promotion promotion = promotionService.getBestPromotionForVariant(variant);
-            double discountPercent = promotion != null ? promotion.getDiscount() : 0.0;
-
-            double price = variant.getPrice();
-            double itemTotal = price * quantity;
-            double discountAmount = itemTotal * discountPercent / 100.0;
-            double finalPrice = itemTotal - discountAmount;
-
-            details.add(OrderDetail.builder()
-                    .order(order)
-                    .productVariant(variant)
-                    .price(price)
-                    .quantity((long) quantity)
-                    .discount(discountPercent)
-                    .finalPrice(finalPrice)
-                    .build());
+            pricingItems.add(new PricingContext.Item(variant, variant.getPrice(), item.getQuantity()));
         }
 
-        return details;
+        return pricingItems;
     }
 
     private Object processStaffPayment(StaffOrderCreationRequest request, HttpServletRequest httpRequest, Order order, Voucher voucher) {
@@ -213,17 +293,13 @@ public class OrderServiceImpl implements OrderService {
 
         switch (request.getPaymentMethod()) {
             case CASH_ON_DELIVERY -> {
-                updateVariantStockAfterOrderCreated(order.getOrderDetails());
-                // Gửi WebSocket notification
-                notificationWebSocketService.sendOrderNotification(
-                    order, 
-                    "CREATED", 
-                    String.format("Đơn hàng mới #%d đã được tạo bởi staff", order.getId())
-                );
+                updateVariantStockAfterOrderCreated(order);
+                eventPublisher.publishEvent(new OrderCreatedEvent(order.getId(), true, false, LocalDateTime.now()));
                 return orderMapper.toResponse(order);
             }
             case VN_PAY -> {
-                updateVariantStockAfterOrderCreated(order.getOrderDetails());
+                stockReservationService.reserve(order.getId(), order.getOrderDetails());
+                eventPublisher.publishEvent(new OrderStatusChangedEvent(order.getId(), null, PENDING_PAYMENT, LocalDateTime.now()));
                 return ((PaymentServiceImpl) paymentService).createPaymentUrl(voucher, order, null, httpRequest, platform, true);
             }
             default -> throw new InvalidParamException("Unsupported payment method for staff order");
@@ -237,30 +313,59 @@ public class OrderServiceImpl implements OrderService {
         Pageable pageable = PageRequest.of(page, size);
         Customer customer = securityUtils.getCurrentCustomer();
 
-        List<OrderStatus> orderStatuses = null;
-        if (status != null && !status.isEmpty()) {
-            orderStatuses = new ArrayList<>();
-            for (String s : status) {
-                try {
-                    orderStatuses.add(OrderStatus.valueOf(s.trim().toUpperCase()));
-                } catch (IllegalArgumentException e) {
-                    throw new InvalidParamException("Invalid status: " + s);
-                }
+        Page<Order> ordersPage = orderRepository.findMyOrders(customer, parseStatuses(status),
+                parseStartDate(startDate), parseEndDate(endDate), pageable);
+        return ResponseWithPagination.fromPage(ordersPage, orderMapper::toResponse);
+    }
+
+    @Override
+    public ResponseWithPagination<List<OrderSummaryResponse>> getMyOrdersByCursor(int size, List<String> status, String startDate, String endDate, String cursor) {
+        Customer customer = securityUtils.getCurrentCustomer();
+        OrderCursor position = OrderCursor.decode(cursor);
+
+        // Lấy dư một bản ghi để biết còn trang sau hay không, không cần COUNT
+        List<OrderSummaryProjection> orders = orderRepository.findMyOrderSummaries(
+                customer.getId(), parseStatuses(status), parseStartDate(startDate), parseEndDate(endDate),
+                position.orderDate(), position.id(), OrderCursor.pageRequest(size));
+        return toCursorPage(orders, size);
+    }
+
+    private List<OrderStatus> parseStatuses(List<String> status) {
+        if (status == null || status.isEmpty()) {
+            return null;
+        }
+        List<OrderStatus> orderStatuses = new ArrayList<>();
+        for (String s : status) {
+            try {
+                orderStatuses.add(OrderStatus.valueOf(s.trim().toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                throw new InvalidParamException("Invalid status: " + s);
             }
         }
+        return orderStatuses;
+    }
 
-        LocalDateTime start = null;
-        if (startDate != null && !startDate.isBlank()) {
-            start = DateUtils.convertStringToLocalDate(startDate).atStartOfDay();
-        }
+    private LocalDateTime parseStartDate(String startDate) {
+        return startDate != null && !startDate.isBlank()
+                ? DateUtils.convertStringToLocalDate(startDate).atStartOfDay()
+                : null;
+    }
 
-        LocalDateTime endDt = null;
-        if (endDate != null && !endDate.isBlank()) {
-            endDt = DateUtils.convertStringToLocalDate(endDate).plusDays(1).atStartOfDay();
-        }
+    private LocalDateTime parseEndDate(String endDate) {
+        return endDate != null && !endDate.isBlank()
+                ? DateUtils.convertStringToLocalDate(endDate).plusDays(1).atStartOfDay()
+                : null;
+    }
 
-        Page<Order> ordersPage = orderRepository.findMyOrders(customer, orderStatuses, start, endDt, pageable);
-        return ResponseWithPagination.fromPage(ordersPage, orderMapper::toResponse);
+    private ResponseWithPagination<List<OrderSummaryResponse>> toCursorPage(List<OrderSummaryProjection> orders, int size) {
+        boolean hasNext = orders.size() > size;
+        List<OrderSummaryProjection> content = hasNext ? orders.subList(0, size) : orders;
+
+        return ResponseWithPagination.<List<OrderSummaryResponse>>builder()
+                .data(content.stream().map(OrderSummaryResponse::from).toList())
+                .limit(size)
+                .nextCursor(hasNext ? OrderCursor.encode(content.getLast().getOrderDate(), content.getLast().getId()) : null)
+                .build();
     }
 
     public Order findById(Long id) {
@@ -292,86 +397,6 @@ public class OrderServiceImpl implements OrderService {
                 .build();
     }
 
-    private List<OrderDetail> buildOrderDetails(Cart cart, Order order, List<Long> cartItemIds) {
-        List<OrderDetail> details = new ArrayList<>();
-
-        List<CartDetail> selectedItems = cart.getCartDetails().stream()
-                .filter(cd -> cartItemIds.contains(cd.getId()))
-                .toList();
-
-        if (selectedItems.isEmpty()) {
-            throw new InvalidParamException("No valid cart items found to create order");
-        }
-
-        for (CartDetail cartDetail : selectedItems) {
-            ProductVariant variant = cartDetail.getProductVariant();
-            double price = cartDetail.getPrice();
-            long quantity = cartDetail.getQuantity();
-
-            if (variant.getStock() == null || variant.getStock() < quantity) {
-                throw new InvalidParamException(
-                        String.format(
-                                "Sản phẩm \"%s\" không đủ số lượng. Tồn kho hiện tại: %d, số lượng yêu cầu: %d",
-                                variant.getProduct().getName(),
-                                variant.getStock(),
-                                quantity
-                        )
-                );
-            }
-
-            Promotion promotion = promotionService.getBestPromotionForVariant(variant);
-            double discountPercent = promotion != null ? promotion.getDiscount() : 0.0;
-
-            double itemTotal = price * quantity;
-            double discountAmount = itemTotal * discountPercent / 100.0;
-            double finalPrice = itemTotal - discountAmount;
-
-            details.add(OrderDetail.builder()
-                    .order(order)
-                    .productVariant(variant)
-                    .price(price)
-                    .quantity(quantity)
-                    .discount(discountPercent)
-                    .finalPrice(finalPrice)
-                    .build());
-        }
-
-        return details;
-    }
-
-    private double calculateTotalPrice(List<OrderDetail> orderDetails) {
-        return orderDetails.stream().mapToDouble(d -> d.getPrice() * d.getQuantity()).sum();
-    }
-
-    private double calculatePromotionDiscount(List<OrderDetail> orderDetails) {
-        return orderDetails.stream().mapToDouble(d -> {
-            double total = d.getPrice() * d.getQuantity();
-            return total * (d.getDiscount() / 100.0);
-        }).sum();
-    }
-
-    private double applyRankingDiscount(Customer customer, double currentAmount) {
-        Ranking ranking = customer.getRanking();
-        if (ranking == null || ranking.getDiscountRate() == null || ranking.getDiscountRate() <= 0) return 0.0;
-        return currentAmount * (ranking.getDiscountRate() / 100.0);
-    }
-
-
-    private double applyVoucherIfValid(Voucher voucher, Customer customer, double totalPrice, double totalDiscount) {
-        if (voucher == null) return 0.0;
-
-        double baseAmount = totalPrice - totalDiscount;
-        validateVoucher(voucher, customer, baseAmount);
-
-        double discountAmount = baseAmount * (voucher.getDiscount() / 100.0);
-        if (voucher.getMaxDiscountAmount() != null && discountAmount > voucher.getMaxDiscountAmount()) {
-            discountAmount = voucher.getMaxDiscountAmount();
-        }
-        return discountAmount;
-    }
-
-
-
     private void handleVoucherUsage(Voucher voucher, Order order, double discountAmount) {
         if (voucher == null) return;
 
@@ -390,77 +415,36 @@ public class OrderServiceImpl implements OrderService {
         switch (orderCreationRequest.getPaymentMethod()) {
             case CASH_ON_DELIVERY -> {
                 clearCart(cart, cartItemIds);
-                updateVariantStockAfterOrderCreated(order.getOrderDetails());
-                // Gửi email xác nhận đơn hàng
-                sendOrderConfirmationEmail(order);
-                // Gửi WebSocket notification
-                notificationWebSocketService.sendOrderNotification(
-                    order, 
-                    "CREATED", 
-                    String.format("Đơn hàng mới #%d đã được tạo", order.getId())
-                );
+                updateVariantStockAfterOrderCreated(order);
+                // Email, WebSocket chạy sau khi commit, không nằm trong thời gian đặt hàng
+                eventPublisher.publishEvent(new OrderCreatedEvent(order.getId(), false, true, LocalDateTime.now()));
                 return orderMapper.toResponse(order);
             }
             case VN_PAY -> {
-                updateVariantStockAfterOrderCreated(order.getOrderDetails());
+                stockReservationService.reserve(order.getId(), order.getOrderDetails());
+                eventPublisher.publishEvent(new OrderStatusChangedEvent(order.getId(), null, PENDING_PAYMENT, LocalDateTime.now()));
                 return paymentService.createPaymentUrl(voucher, order, cartItemIds, request, platform);
             }
             case PAY_OS -> {
-                updateVariantStockAfterOrderCreated(order.getOrderDetails());
+                stockReservationService.reserve(order.getId(), order.getOrderDetails());
+                eventPublisher.publishEvent(new OrderStatusChangedEvent(order.getId(), null, PENDING_PAYMENT, LocalDateTime.now()));
                 return paymentService.createPayOsPaymentUrl(voucher, order, cartItemIds, platform);
             }
             default -> throw new InvalidParamException("Unsupported payment method");
         }
     }
 
-    private void sendOrderConfirmationEmail(Order order) {
-        try {
-            String customerEmail = order.getCustomer().getEmail();
-            if (customerEmail != null && !customerEmail.isBlank()) {
-                // Fetch order with all necessary data for email to avoid lazy loading issues
-                Order orderWithDetails = orderRepository.findByIdWithDetailsForEmail(order.getId());
-                if (orderWithDetails != null) {
-                    emailService.sendOrderConfirmation(customerEmail, orderWithDetails);
-                }
-            }
-        } catch (Exception e) {
-            // Log error but don't fail the order
-            // Email is sent asynchronously, so this won't block
-        }
-    }
-
     private void clearCart(Cart cart, List<Long> cartItemIds) {
         cart.getCartDetails().removeIf(cd -> cartItemIds.contains(cd.getId()));
         cart.setTotalItems((long) cart.getCartDetails().size());
         cartRepository.save(cart);
     }
 
-    private void updateVariantStockAfterOrderCreated(List<OrderDetail> orderDetails) {
-        orderDetails.forEach(detail -> {
-            ProductVariant variant = detail.getProductVariant();
-            int newStock = variant.getStock() - detail.getQuantity().intValue();
-            variant.setStock(newStock);
-            productVariantRepository.save(variant);
-        });
-    }
-
-    private void validateVoucher(Voucher voucher, Customer customer, double currentAmount) {
-        if (!ALL.equals(voucher.getVoucherType())) {
-            boolean assigned = voucherCustomerRepository.existsByVoucherAndCustomer(voucher, customer);
-            if (!assigned) throw new InvalidParamException("Voucher not assigned to this customer");
-        }
-
-        boolean used = voucherUsageHistoryRepository.existsByVoucherAndOrder_Customer(voucher, customer);
-        if (used) throw new InvalidParamException("Voucher already used by this customer");
-
-        LocalDate today = LocalDate.now();
-        if (today.isBefore(voucher.getStartDate()) || today.isAfter(voucher.getEndDate())) {
-            throw new InvalidParamException("Voucher expired or not active");
-        }
-
-        if (voucher.getMinOrderAmount() != null && currentAmount < voucher.getMinOrderAmount()) {
-            throw new InvalidParamException("Order does not meet minimum amount for voucher");
-        }
+    // Giữ hàng rồi trừ kho ngay để đơn COD không lấy mất phần hàng đang được giữ cho đơn chờ thanh toán online.
+    // Thiếu hàng ở bất kỳ dòng nào thì cả đơn bị rollback
+    private void updateVariantStockAfterOrderCreated(Order order) {
+        stockReservationService.reserve(order.getId(), order.getOrderDetails());
+        stockReservationService.commit(order.getId(), order.getOrderDetails());
     }
 
     @Override
@@ -484,6 +468,32 @@ public class OrderServiceImpl implements OrderService {
         return ResponseWithPagination.fromPage(orderPage, orderMapper::toResponse);
     }
 
+    @Override
+    public ResponseWithPagination<List<OrderSummaryResponse>> getAllOrdersForAdminByCursor(
+            String customerName,
+            LocalDate orderDate,
+            String customerPhone,
+            OrderStatus status,
+            Boolean isPickup,
+            int size,
+            String cursor
+    ) {
+        OrderCursor position = OrderCursor.decode(cursor);
+
+        List<OrderSummaryProjection> orders = orderRepository.findOrderSummaries(
+                customerName != null && !customerName.isBlank() ? customerName.trim() : null,
+                customerPhone != null && !customerPhone.isBlank() ? customerPhone.trim() : null,
+                orderDate != null ? orderDate.atStartOfDay() : null,
+                orderDate != null ? orderDate.plusDays(1).atStartOfDay() : null,
+                status,
+                isPickup,
+                position.orderDate(),
+                position.id(),
+                OrderCursor.pageRequest(size)
+        );
+        return toCursorPage(orders, size);
+    }
+
     @Override
     public OrderResponse getOrderDetailById(Long id) {
         Order order = findById(id);
@@ -504,15 +514,7 @@ public class OrderServiceImpl implements OrderService {
         order.setStatus(PROCESSING);
         orderRepository.save(order);
 
-        sendOrderStatusNotification(order, PROCESSING, "Đơn hàng đã được tiếp nhận", 
-                String.format("Đơn hàng #%d của bạn đã được tiếp nhận và đang được xử lý.", order.getId()));
-        
-        // Gửi WebSocket notification
-        notificationWebSocketService.sendOrderNotification(
-            order, 
-            "UPDATED", 
-            String.format("Đơn hàng #%d đã được tiếp nhận", order.getId())
-        );
+        eventPublisher.publishEvent(new OrderStatusChangedEvent(order.getId(), PENDING, PROCESSING, LocalDateTime.now()));
 
         return orderMapper.toResponse(order);
     }
@@ -534,29 +536,17 @@ public class OrderServiceImpl implements OrderService {
         restoreVoucher(order);
         deletePromotionUsage(order);
 
+        OrderStatus previousStatus = order.getStatus();
         order.setStatus(CANCELED);
         orderRepository.save(order);
 
-        sendOrderStatusNotification(order, CANCELED, "Đơn hàng đã bị hủy", 
-                String.format("Đơn hàng #%d của bạn đã bị hủy.", order.getId()));
-        
-        // Gửi WebSocket notification
-        notificationWebSocketService.sendOrderNotification(
-            order, 
-            "CANCELLED", 
-            String.format("Đơn hàng #%d đã bị hủy", order.getId())
-        );
+        eventPublisher.publishEvent(new OrderStatusChangedEvent(order.getId(), previousStatus, CANCELED, LocalDateTime.now()));
 
         return orderMapper.toResponse(order);
     }
 
     private void restoreProductStock(List<OrderDetail> orderDetails) {
-        orderDetails.forEach(detail -> {
-            ProductVariant variant = detail.getProductVariant();
-            int newStock = variant.getStock() + detail.getQuantity().intValue();
-            variant.setStock(newStock);
-            productVariantRepository.save(variant);
-        });
+        inventoryService.restoreStock(orderDetails);
     }
 
     private void restoreVoucher(Order order) {
@@ -585,20 +575,7 @@ public class OrderServiceImpl implements OrderService {
         order.setStatus(newStatus);
         orderRepository.save(order);
 
-        if (READY_FOR_PICKUP.equals(newStatus)) {
-            sendOrderStatusNotification(order, READY_FOR_PICKUP, "Đơn hàng sẵn sàng nhận", 
-                    String.format("Đơn hàng #%d của bạn đã sẵn sàng để nhận. Vui lòng đến cửa hàng để nhận hàng.", order.getId()));
-        } else {
-            sendOrderStatusNotification(order, SHIPPED, "Đơn hàng đang được giao", 
-                    String.format("Đơn hàng #%d của bạn đang được giao đến địa chỉ của bạn.", order.getId()));
-        }
-        
-        // Gửi WebSocket notification
-        notificationWebSocketService.sendOrderNotification(
-            order, 
-            "PROCESSED", 
-            String.format("Đơn hàng #%d đã được xử lý", order.getId())
-        );
+        eventPublisher.publishEvent(new OrderStatusChangedEvent(order.getId(), PROCESSING, newStatus, LocalDateTime.now()));
 
         return orderMapper.toResponse(order);
     }
@@ -617,17 +594,8 @@ public class OrderServiceImpl implements OrderService {
         order.setStatus(COMPLETED);
         orderRepository.save(order);
 
-        rankingService.updateCustomerRanking(order);
-
-        sendOrderStatusNotification(order, COMPLETED, "Đơn hàng đã được nhận", 
-                String.format("Đơn hàng #%d của bạn đã được hoàn thành. Cảm ơn bạn đã mua sắm!", order.getId()));
-        
-        // Gửi WebSocket notification
-        notificationWebSocketService.sendOrderNotification(
-            order, 
-            "COMPLETED", 
-            String.format("Đơn hàng #%d đã hoàn thành", order.getId())
-        );
+        // Cộng chi tiêu/xếp hạng khách và gửi thông báo sau khi commit
+        eventPublisher.publishEvent(new OrderStatusChangedEvent(order.getId(), READY_FOR_PICKUP, COMPLETED, LocalDateTime.now()));
 
         return orderMapper.toResponse(order);
     }
@@ -644,26 +612,4 @@ public class OrderServiceImpl implements OrderService {
 
         return ResponseWithPagination.fromPage(orderPage, orderMapper::toResponse);
     }
-
-    private void sendOrderStatusNotification(Order order, OrderStatus status, String title, String body) {
-        Customer customer = order.getCustomer();
-        if (customer == null) return;
-
-        String expoPushToken = customer.getExpoPushToken();
-        if (expoPushToken == null || expoPushToken.isEmpty()) {
-            return;
-        }
-
-        Map<String, Object> notificationData = new HashMap<>();
-        notificationData.put("orderId", order.getId());
-        notificationData.put("type", "order_status");
-        notificationData.put("status", status.name());
-
-        pushNotificationService.sendPushNotification(
-                expoPushToken,
-                title,
-                body,
-                notificationData
-        );
-    }
 }
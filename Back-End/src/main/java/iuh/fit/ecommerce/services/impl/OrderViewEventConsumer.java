@@ -0,0 +1,39 @@
+package iuh.fit.ecommerce.services.impl;
+
+import iuh.fit.ecommerce.events.OrderEvent;
+import iuh.fit.ecommerce.services.OrderEventConsumer;
+import iuh.fit.ecommerce.services.OrderViewService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Giữ order_view khớp với đơn hàng: mọi sự kiện đơn đều dựng lại dòng tương ứng.
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderViewEventConsumer implements OrderEventConsumer {
+
+    private final OrderViewService orderViewService;
+
+    @Override
+    public String getName() {
+        return "order-view";
+    }
+
+    @Override
+    public boolean isDurable() {
+        return true;
+    }
+
+    @Override
+    public boolean supports(OrderEvent event) {
+        return true;
+    }
+
+    @Override
+    public void handle(List<OrderEvent> events) {
+        orderViewService.apply(events);
+    }
+}
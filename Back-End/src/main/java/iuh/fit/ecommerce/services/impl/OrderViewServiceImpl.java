@@ -0,0 +1,370 @@
+package iuh.fit.ecommerce.services.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iuh.fit.ecommerce.dtos.response.base.ResponseWithPagination;
+import iuh.fit.ecommerce.dtos.response.order.OrderViewResponse;
+import iuh.fit.ecommerce.entities.Customer;
+import iuh.fit.ecommerce.entities.DeliveryAssignment;
+import iuh.fit.ecommerce.entities.Order;
+import iuh.fit.ecommerce.entities.OrderDetail;
+import iuh.fit.ecommerce.entities.OrderView;
+import iuh.fit.ecommerce.entities.Product;
+import iuh.fit.ecommerce.entities.ProductVariant;
+import iuh.fit.ecommerce.enums.OrderStatus;
+import iuh.fit.ecommerce.events.OrderEvent;
+import iuh.fit.ecommerce.events.OrderStatusChangedEvent;
+import iuh.fit.ecommerce.exceptions.custom.ConflictException;
+import iuh.fit.ecommerce.exceptions.custom.ResourceNotFoundException;
+import iuh.fit.ecommerce.repositories.DeliveryAssignmentRepository;
+import iuh.fit.ecommerce.repositories.OrderRepository;
+import iuh.fit.ecommerce.repositories.OrderViewRepository;
+import iuh.fit.ecommerce.services.OrderViewService;
+import iuh.fit.ecommerce.utils.SecurityUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Read model order_view: mỗi đơn một dòng phẳng gồm thông tin đơn, tóm tắt sản phẩm, giao hàng và lịch sử trạng thái.
+ * Ghi từ consumer sự kiện đơn hàng (qua outbox, bất đồng bộ) nên có thể trễ so với bảng orders một chút, reconcile
+ * định kỳ theo orders.modified_at sửa các dòng bị lệch; entity phía ghi (Order, OrderDetail, DeliveryAssignment) giữ nguyên.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderViewServiceImpl implements OrderViewService {
+
+    private static final TypeReference<List<OrderViewResponse.Item>> ITEMS_TYPE = new TypeReference<>() {};
+    private static final TypeReference<List<OrderViewResponse.TimelineEntry>> TIMELINE_TYPE = new TypeReference<>() {};
+    private static final int SUMMARY_LENGTH = 500;
+
+    private final OrderViewRepository orderViewRepository;
+    private final OrderRepository orderRepository;
+    private final DeliveryAssignmentRepository deliveryAssignmentRepository;
+    private final SecurityUtils securityUtils;
+    private final ObjectMapper objectMapper;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${order-view.rebuild-batch-size:500}")
+    private int rebuildBatchSize;
+
+    @Value("${order-view.reconcile-window-minutes:1440}")
+    private long reconcileWindowMinutes;
+
+    @Value("${order-view.reconcile-grace-seconds:60}")
+    private long reconcileGraceSeconds;
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+
+    @Override
+    public void apply(List<OrderEvent> events) {
+        // Giữ thứ tự sự kiện của từng đơn để timeline đúng thứ tự chuyển trạng thái
+        Map<Long, List<OrderEvent>> changes = new LinkedHashMap<>();
+        for (OrderEvent event : events) {
+            changes.computeIfAbsent(event.orderId(), id -> new ArrayList<>()).add(event);
+        }
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> refresh(changes));
+    }
+
+    /**
+     * Dựng lại các đơn sửa trong khoảng reconcile-window mà order_view chưa theo kịp (sự kiện còn kẹt hoặc đã
+     * failed trong outbox). Bỏ qua các đơn vừa sửa trong grace để không tranh với sự kiện đang trên đường tới.
+     */
+    @Scheduled(fixedDelayString = "${order-view.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime since = now.minusMinutes(reconcileWindowMinutes);
+        LocalDateTime until = now.minusSeconds(reconcileGraceSeconds);
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        long lastId = 0;
+        long total = 0;
+        while (true) {
+            List<Long> ids = orderRepository.findIdsOutOfSyncWithView(since, until, lastId, PageRequest.of(0, rebuildBatchSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+            Map<Long, List<OrderEvent>> changes = new LinkedHashMap<>();
+            ids.forEach(id -> changes.put(id, List.of()));
+            tx.executeWithoutResult(status -> refresh(changes));
+            lastId = ids.getLast();
+            total += ids.size();
+        }
+        if (total > 0) {
+            log.warn("Order view reconcile refreshed {} orders modified since {}", total, since);
+        }
+    }
+
+    /**
+     * Mốc thời gian trong timeline lấy từ occurredAt của sự kiện; đơn không có sự kiện (dựng lại, reconcile) thì lấy
+     * thời điểm sửa cuối của đơn.
+     */
+    private void refresh(Map<Long, List<OrderEvent>> changes) {
+        Collection<Long> orderIds = changes.keySet();
+
+        Map<Long, OrderView> views = new HashMap<>();
+        orderViewRepository.findAllForUpdate(orderIds).forEach(view -> views.put(view.getOrderId(), view));
+
+        Map<Long, DeliveryAssignment> assignments = new HashMap<>();
+        deliveryAssignmentRepository.findAllWithShipperByOrderIdIn(orderIds)
+                .forEach(assignment -> assignments.put(assignment.getOrder().getId(), assignment));
+
+        LocalDateTime now = LocalDateTime.now();
+        List<OrderView> updated = new ArrayList<>();
+        for (Order order : orderRepository.findAllWithItemsByIdIn(orderIds)) {
+            OrderView view = views.computeIfAbsent(order.getId(), id -> OrderView.builder().orderId(id).build());
+            fill(view, order, assignments.get(order.getId()));
+
+            LocalDateTime changedAt = order.getModifiedAt() != null ? order.getModifiedAt() : order.getOrderDate();
+            List<OrderViewResponse.TimelineEntry> timeline = readJson(view.getTimeline(), TIMELINE_TYPE);
+            for (OrderEvent event : changes.get(order.getId())) {
+                // Sự kiện ghi trước khi có occurredAt thì không có mốc riêng
+                LocalDateTime at = event.occurredAt() != null ? event.occurredAt() : changedAt;
+                if (event instanceof OrderStatusChangedEvent changed) {
+                    appendStatus(timeline, changed.status(), at);
+                }
+                changedAt = at;
+            }
+            appendStatus(timeline, order.getStatus(), changedAt);
+            // Reconcile có thể ghi trạng thái hiện tại trước khi sự kiện của trạng thái trước đó tới
+            timeline.sort(Comparator.comparing(OrderViewServiceImpl::timelineAt, Comparator.nullsLast(Comparator.naturalOrder())));
+            view.setTimeline(writeJson(timeline));
+
+            view.setUpdatedAt(now);
+            updated.add(view);
+        }
+        orderViewRepository.saveAll(updated);
+    }
+
+    private void fill(OrderView view, Order order, DeliveryAssignment assignment) {
+        Customer customer = order.getCustomer();
+        view.setCustomerId(customer != null ? customer.getId() : null);
+        view.setCustomerName(customer != null ? customer.getFullName() : null);
+        view.setReceiverName(order.getReceiverName());
+        view.setReceiverPhone(order.getReceiverPhone());
+        view.setReceiverAddress(order.getReceiverAddress());
+        view.setOrderDate(order.getOrderDate());
+        view.setStatus(order.getStatus());
+        view.setPaymentMethod(order.getPaymentMethod());
+        view.setIsPickup(order.getIsPickup());
+        view.setTotalPrice(order.getTotalPrice());
+        view.setTotalDiscount(order.getTotalDiscount());
+        view.setFinalTotalPrice(order.getFinalTotalPrice());
+
+        List<OrderViewResponse.Item> items = new ArrayList<>();
+        long itemCount = 0;
+        StringBuilder summary = new StringBuilder();
+        if (order.getOrderDetails() != null) {
+            for (OrderDetail detail : order.getOrderDetails()) {
+                ProductVariant variant = detail.getProductVariant();
+                Product product = variant != null ? variant.getProduct() : null;
+                String productName = product != null ? product.getName() : null;
+
+                items.add(OrderViewResponse.Item.builder()
+                        .productVariantId(variant != null ? variant.getId() : null)
+                        .sku(variant != null ? variant.getSku() : null)
+                        .productName(productName)
+                        .productSlug(product != null ? product.getSlug() : null)
+                        .thumbnail(product != null ? product.getThumbnail() : null)
+                        .quantity(detail.getQuantity())
+                        .price(detail.getPrice())
+                        .discount(detail.getDiscount())
+                        .finalPrice(detail.getFinalPrice())
+                        .build());
+
+                itemCount += detail.getQuantity() != null ? detail.getQuantity() : 0;
+                if (!summary.isEmpty()) {
+                    summary.append(", ");
+                }
+                summary.append(productName).append(" x").append(detail.getQuantity());
+            }
+        }
+        view.setItems(writeJson(items));
+        view.setItemCount(itemCount);
+        view.setItemSummary(summary.length() > SUMMARY_LENGTH
+                ? summary.substring(0, SUMMARY_LENGTH - 3) + "..."
+                : summary.toString());
+        view.setThumbnail(items.isEmpty() ? null : items.getFirst().getThumbnail());
+
+        view.setDeliveryAssignmentId(assignment != null ? assignment.getId() : null);
+        view.setShipperId(assignment != null && assignment.getShipper() != null ? assignment.getShipper().getId() : null);
+        view.setShipperName(assignment != null && assignment.getShipper() != null ? assignment.getShipper().getFullName() : null);
+        view.setDeliveryStatus(assignment != null ? assignment.getDeliveryStatus() : null);
+        view.setExpectedDeliveryDate(assignment != null ? assignment.getExpectedDeliveryDate() : null);
+        view.setDeliveredAt(assignment != null ? assignment.getDeliveredAt() : null);
+    }
+
+    // Trạng thái đơn chỉ đi một chiều nên trạng thái đã có trong timeline (sự kiện gửi lại, thử lại) thì bỏ qua
+    private void appendStatus(List<OrderViewResponse.TimelineEntry> timeline, OrderStatus status, LocalDateTime at) {
+        if (status == null || timeline.stream().anyMatch(entry -> status.equals(entry.getStatus()))) {
+            return;
+        }
+        timeline.add(new OrderViewResponse.TimelineEntry(status, at != null ? at.toString() : null));
+    }
+
+    private static LocalDateTime timelineAt(OrderViewResponse.TimelineEntry entry) {
+        return entry.getAt() != null ? LocalDateTime.parse(entry.getAt()) : null;
+    }
+
+    @Override
+    public ResponseWithPagination<List<OrderViewResponse>> getMyOrders(OrderStatus status, int size, String cursor) {
+        Long customerId = securityUtils.getCurrentCustomer().getId();
+        OrderCursor position = OrderCursor.decode(cursor);
+        return toPage(orderViewRepository.findByCustomer(
+                customerId, status, position.orderDate(), position.id(), OrderCursor.pageRequest(size)), size);
+    }
+
+    @Override
+    public ResponseWithPagination<List<OrderViewResponse>> getOrders(OrderStatus status, int size, String cursor) {
+        OrderCursor position = OrderCursor.decode(cursor);
+        return toPage(orderViewRepository.findAllByStatus(
+                status, position.orderDate(), position.id(), OrderCursor.pageRequest(size)), size);
+    }
+
+    @Override
+    public ResponseWithPagination<List<OrderViewResponse>> getMyDeliveries(int size, String cursor) {
+        Long shipperId = securityUtils.getCurrentStaff().getId();
+        OrderCursor position = OrderCursor.decode(cursor);
+        return toPage(orderViewRepository.findByShipper(
+                shipperId, position.orderDate(), position.id(), OrderCursor.pageRequest(size)), size);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public OrderViewResponse getTracking(Long orderId) {
+        return orderViewRepository.findById(orderId)
+                .map(this::toResponse)
+                .orElseGet(() -> buildUnsaved(orderId));
+    }
+
+    // Đơn chưa có trong read model (sự kiện chưa xử lý xong hoặc chưa dựng lại dữ liệu cũ): dựng tạm từ bảng ghi, không lưu
+    private OrderViewResponse buildUnsaved(Long orderId) {
+        Order order = orderRepository.findAllWithItemsByIdIn(List.of(orderId)).stream().findFirst()
+                .orElseThrow(() -> new ResourceNotFoundException("Order not found with id = " + orderId));
+        DeliveryAssignment assignment = deliveryAssignmentRepository.findAllWithShipperByOrderIdIn(List.of(orderId))
+                .stream().findFirst().orElse(null);
+
+        OrderView view = OrderView.builder().orderId(orderId).build();
+        fill(view, order, assignment);
+        List<OrderViewResponse.TimelineEntry> timeline = new ArrayList<>();
+        appendStatus(timeline, order.getStatus(), order.getModifiedAt() != null ? order.getModifiedAt() : order.getOrderDate());
+        view.setTimeline(writeJson(timeline));
+        return toResponse(view);
+    }
+
+    @Override
+    public void startRebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            throw new ConflictException("Order view rebuild is already running");
+        }
+
+        Thread worker = new Thread(() -> {
+            try {
+                rebuild();
+            } catch (Exception e) {
+                log.error("Order view rebuild failed: {}", e.getMessage(), e);
+            } finally {
+                rebuilding.set(false);
+            }
+        }, "order-view-rebuild");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private void rebuild() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        long lastId = 0;
+        long total = 0;
+        while (true) {
+            List<Long> ids = orderRepository.findIdsAfter(lastId, PageRequest.of(0, rebuildBatchSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+            Map<Long, List<OrderEvent>> changes = new LinkedHashMap<>();
+            ids.forEach(id -> changes.put(id, List.of()));
+            tx.executeWithoutResult(status -> refresh(changes));
+
+            lastId = ids.getLast();
+            total += ids.size();
+            log.info("Order view rebuild: {} orders done (last id {})", total, lastId);
+        }
+        log.info("Order view rebuild finished, {} orders", total);
+    }
+
+    private ResponseWithPagination<List<OrderViewResponse>> toPage(List<OrderView> views, int size) {
+        // Lấy dư một bản ghi để biết còn trang sau hay không, không cần COUNT
+        boolean hasNext = views.size() > size;
+        List<OrderView> content = hasNext ? views.subList(0, size) : views;
+
+        return ResponseWithPagination.<List<OrderViewResponse>>builder()
+                .data(content.stream().map(this::toResponse).toList())
+                .limit(size)
+                .nextCursor(hasNext ? OrderCursor.encode(content.getLast().getOrderDate(), content.getLast().getOrderId()) : null)
+                .build();
+    }
+
+    private OrderViewResponse toResponse(OrderView view) {
+        return OrderViewResponse.builder()
+                .id(view.getOrderId())
+                .customerId(view.getCustomerId())
+                .customerName(view.getCustomerName())
+                .receiverName(view.getReceiverName())
+                .receiverPhone(view.getReceiverPhone())
+                .receiverAddress(view.getReceiverAddress())
+                .orderDate(view.getOrderDate() != null ? view.getOrderDate().toString() : null)
+                .status(view.getStatus())
+                .paymentMethod(view.getPaymentMethod())
+                .isPickup(view.getIsPickup())
+                .totalPrice(view.getTotalPrice())
+                .totalDiscount(view.getTotalDiscount())
+                .finalTotalPrice(view.getFinalTotalPrice())
+                .itemCount(view.getItemCount())
+                .itemSummary(view.getItemSummary())
+                .thumbnail(view.getThumbnail())
+                .items(readJson(view.getItems(), ITEMS_TYPE))
+                .timeline(readJson(view.getTimeline(), TIMELINE_TYPE))
+                .deliveryAssignmentId(view.getDeliveryAssignmentId())
+                .shipperId(view.getShipperId())
+                .shipperName(view.getShipperName())
+                .deliveryStatus(view.getDeliveryStatus())
+                .expectedDeliveryDate(view.getExpectedDeliveryDate() != null ? view.getExpectedDeliveryDate().toString() : null)
+                .deliveredAt(view.getDeliveredAt() != null ? view.getDeliveredAt().toString() : null)
+                .build();
+    }
+
+    private <T> List<T> readJson(String json, TypeReference<List<T>> type) {
+        if (json == null || json.isBlank()) {
+            return new ArrayList<>();
+        }
+        try {
+            return new ArrayList<>(objectMapper.readValue(json, type));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Invalid order view JSON", e);
+        }
+    }
+
+    private String writeJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize order view", e);
+        }
+    }
+}
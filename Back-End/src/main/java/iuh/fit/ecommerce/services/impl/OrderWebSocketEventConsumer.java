@@ -0,0 +1,80 @@
+package iuh.fit.ecommerce.services.impl;
+
+import iuh.fit.ecommerce.entities.Order;
+import iuh.fit.ecommerce.events.OrderCreatedEvent;
+import iuh.fit.ecommerce.events.OrderEvent;
+import iuh.fit.ecommerce.events.OrderStatusChangedEvent;
+import iuh.fit.ecommerce.repositories.OrderRepository;
+import iuh.fit.ecommerce.services.NotificationWebSocketService;
+import iuh.fit.ecommerce.services.OrderEventConsumer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Đẩy thông báo đơn hàng lên topic WebSocket cho trang quản trị.
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderWebSocketEventConsumer implements OrderEventConsumer {
+
+    private final OrderRepository orderRepository;
+    private final NotificationWebSocketService notificationWebSocketService;
+
+    @Override
+    public String getName() {
+        return "websocket";
+    }
+
+    @Override
+    public boolean supports(OrderEvent event) {
+        return event instanceof OrderCreatedEvent || actionOf(event) != null;
+    }
+
+    @Override
+    public void handle(List<OrderEvent> events) {
+        // Cả batch đọc đơn bằng một query
+        Map<Long, Order> orders = orderRepository.findAllById(events.stream().map(OrderEvent::orderId).toList())
+                .stream()
+                .collect(Collectors.toMap(Order::getId, Function.identity()));
+
+        for (OrderEvent event : events) {
+            Order order = orders.get(event.orderId());
+            if (order == null) {
+                continue;
+            }
+            notificationWebSocketService.sendOrderNotification(order, actionOf(event), messageOf(event));
+        }
+    }
+
+    private static String actionOf(OrderEvent event) {
+        return switch (event) {
+            case OrderCreatedEvent created -> "CREATED";
+            case OrderStatusChangedEvent changed -> switch (changed.status()) {
+                case PROCESSING -> "UPDATED";
+                case CANCELED -> "CANCELLED";
+                case READY_FOR_PICKUP, SHIPPED -> "PROCESSED";
+                case COMPLETED -> "COMPLETED";
+                default -> null;
+            };
+        };
+    }
+
+    private static String messageOf(OrderEvent event) {
+        return switch (event) {
+            case OrderCreatedEvent created -> created.createdByStaff()
+                    ? String.format("Đơn hàng mới #%d đã được tạo bởi staff", created.orderId())
+                    : String.format("Đơn hàng mới #%d đã được tạo", created.orderId());
+            case OrderStatusChangedEvent changed -> switch (changed.status()) {
+                case PROCESSING -> String.format("Đơn hàng #%d đã được tiếp nhận", changed.orderId());
+                case CANCELED -> String.format("Đơn hàng #%d đã bị hủy", changed.orderId());
+                case COMPLETED -> String.format("Đơn hàng #%d đã hoàn thành", changed.orderId());
+                default -> String.format("Đơn hàng #%d đã được xử lý", changed.orderId());
+            };
+        };
+    }
+}
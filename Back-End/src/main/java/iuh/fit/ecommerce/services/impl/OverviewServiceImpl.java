@@ -1,26 +1,24 @@
 package iuh.fit.ecommerce.services.impl;
 
-import iuh.fit.ecommerce.repositories.CustomerRepository;
-import iuh.fit.ecommerce.repositories.OrderRepository;
-import iuh.fit.ecommerce.repositories.ProductRepository;
+import iuh.fit.ecommerce.dtos.projection.RevenueByMonthProjection;
+import iuh.fit.ecommerce.dtos.projection.SalesTotalsProjection;
+import iuh.fit.ecommerce.repositories.SalesRollupRepository;
 import iuh.fit.ecommerce.services.OverviewService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
 import java.time.YearMonth;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+// Số liệu tổng quan đọc từ bảng tổng hợp theo ngày (sales_daily), mỗi tháng chỉ cộng tối đa 31 dòng
 @Service
 @RequiredArgsConstructor
 public class OverviewServiceImpl implements OverviewService {
 
-    private final OrderRepository orderRepository;
-    private final ProductRepository productRepository;
-    private final CustomerRepository customerRepository;
+    private final SalesRollupRepository salesRollupRepository;
 
     public Map<String, Object> getDashboardStats() {
         YearMonth currentMonth = YearMonth.now();
@@ -60,19 +58,17 @@ public class OverviewServiceImpl implements OverviewService {
     }
 
     public Double getValue(YearMonth month, String type) {
-        LocalDateTime start = month.atDay(1).atStartOfDay();
-        LocalDateTime end = month.atEndOfMonth().atTime(23, 59, 59);
+        SalesTotalsProjection totals = salesRollupRepository.sumSales(month.atDay(1), month.atEndOfMonth());
 
         switch (type) {
             case "revenue":
-                Double revenue = orderRepository.sumRevenueByDateRange(start, end);
-                return revenue != null ? revenue : 0.0;
+                return totals.getRevenue() != null ? totals.getRevenue() : 0.0;
             case "orders":
-                return orderRepository.countCompletedOrdersByDateRange(start, end).doubleValue();
+                return totals.getCompletedOrders().doubleValue();
             case "products":
-                return productRepository.countNewProductsByDateRange(start, end).doubleValue();
+                return totals.getNewProducts().doubleValue();
             case "customers":
-                 return customerRepository.countNewCustomersByDateRange(start, end).doubleValue();
+                 return totals.getNewCustomers().doubleValue();
             default:
                 return 0.0;
         }
@@ -82,14 +78,19 @@ public class OverviewServiceImpl implements OverviewService {
     public List<Map<String, Object>> getMonthlyRevenue() {
         List<Map<String, Object>> result = new ArrayList<>();
         YearMonth currentMonth = YearMonth.now();
+        YearMonth firstMonth = currentMonth.minusMonths(11);
+
+        // 12 tháng gần nhất trong một query
+        Map<YearMonth, Double> revenueByMonth = new HashMap<>();
+        for (RevenueByMonthProjection projection : salesRollupRepository.getRevenueByMonth(
+                firstMonth.atDay(1), currentMonth.atEndOfMonth())) {
+            revenueByMonth.put(YearMonth.of(projection.getYear(), projection.getMonth()), projection.getRevenue());
+        }
 
         for (int i = 11; i >= 0; i--) {
             YearMonth targetMonth = currentMonth.minusMonths(i);
 
-            LocalDateTime start = targetMonth.atDay(1).atStartOfDay();
-            LocalDateTime end = targetMonth.atEndOfMonth().atTime(23, 59, 59);
-
-            Double revenue = orderRepository.sumRevenueByDateRange(start, end);
+            Double revenue = revenueByMonth.get(targetMonth);
             if (revenue == null) revenue = 0.0;
 
             Map<String, Object> item = new HashMap<>();
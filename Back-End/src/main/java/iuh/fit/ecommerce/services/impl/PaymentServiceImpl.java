@@ -3,27 +3,37 @@ package iuh.fit.ecommerce.services.impl;
 import iuh.fit.ecommerce.entities.Cart;
 import iuh.fit.ecommerce.entities.Order;
 import iuh.fit.ecommerce.entities.Voucher;
+import iuh.fit.ecommerce.enums.OrderStatus;
+import iuh.fit.ecommerce.events.OrderCreatedEvent;
+import iuh.fit.ecommerce.events.OrderStatusChangedEvent;
 import iuh.fit.ecommerce.exceptions.custom.ResourceNotFoundException;
 import iuh.fit.ecommerce.repositories.*;
-import iuh.fit.ecommerce.services.EmailService;
-import iuh.fit.ecommerce.services.NotificationWebSocketService;
+import iuh.fit.ecommerce.services.IdempotencyService;
+import iuh.fit.ecommerce.services.StockReservationService;
 import iuh.fit.ecommerce.services.PaymentService;
+import iuh.fit.ecommerce.services.ScheduledJobService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
 import static iuh.fit.ecommerce.enums.OrderStatus.*;
+import static iuh.fit.ecommerce.enums.ScheduledJobType.PAYMENT_TIMEOUT;
 
 import vn.payos.PayOS;
 import vn.payos.model.v2.paymentRequests.CreatePaymentLinkRequest;
@@ -31,6 +41,7 @@ import vn.payos.model.v2.paymentRequests.CreatePaymentLinkResponse;
 import vn.payos.model.v2.paymentRequests.PaymentLinkItem;
 import vn.payos.model.v2.paymentRequests.PaymentLink;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class PaymentServiceImpl implements PaymentService {
@@ -56,16 +67,21 @@ public class PaymentServiceImpl implements PaymentService {
     private String payOsReturnUrl;
     @Value("${payment.pay_os.cancel-url}")
     private String payOsCancelUrl;
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
     private final OrderRepository orderRepository;
     private final VoucherUsageHistoryRepository voucherUsageHistoryRepository;
     private final VoucherRepository voucherRepository;
     private final CartRepository cartRepository;
-    private final ProductVariantRepository productVariantRepository;
+    private final StockReservationService stockReservationService;
+    private final ScheduledJobService scheduledJobService;
     private final PayOS payOS;
-    private final EmailService emailService;
-    private final NotificationWebSocketService notificationWebSocketService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final IdempotencyService idempotencyService;
+    private final PlatformTransactionManager transactionManager;
     private final int TIME_OUT = 15;
+    private static final String VN_PAY_CALLBACK_KEY = "payment:vn-pay:";
+    private static final String PAY_OS_CALLBACK_KEY = "payment:pay-os:";
+    // Mã trả về giao diện khi đã thu tiền nhưng không còn hàng (đơn bị huỷ để hoàn tiền)
+    private static final String OUT_OF_STOCK_RESPONSE_CODE = "OUT_OF_STOCK";
 
     @Override
     public String createPaymentUrl(Voucher voucher, Order order, List<Long> cartItemIds, HttpServletRequest request, String platform) {
@@ -99,22 +115,37 @@ public class PaymentServiceImpl implements PaymentService {
     }
 
     public void scheduleRevokeJob(Voucher voucher, Long orderId, int delayMinutes) {
-        scheduler.schedule(() -> {
-            Order order = orderRepository.findById(orderId).orElse(null);
-            if(order != null && PENDING_PAYMENT.equals(order.getStatus())) {
-                order.setStatus(PAYMENT_FAILED);
-                orderRepository.save(order);
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("orderId", orderId);
+        payload.put("voucherId", voucher != null ? voucher.getId() : null);
+        scheduledJobService.schedule(PAYMENT_TIMEOUT, String.valueOf(orderId), payload, Duration.ofMinutes(delayMinutes));
+    }
 
-                restoreVariantStock(order);
-                if(voucher != null){
-                    voucherUsageHistoryRepository.deleteByVoucherAndOrder(voucher, order);
-                }
+    @Override
+    @Transactional
+    public void expirePendingPayment(Long orderId, Long voucherId) {
+        Order order = orderRepository.findById(orderId).orElse(null);
+        if(order != null && PENDING_PAYMENT.equals(order.getStatus())) {
+            order.setStatus(PAYMENT_FAILED);
+            orderRepository.save(order);
+            eventPublisher.publishEvent(new OrderStatusChangedEvent(orderId, PENDING_PAYMENT, PAYMENT_FAILED, LocalDateTime.now()));
+
+            releaseStockHold(order);
+            if(voucherId != null){
+                voucherRepository.findById(voucherId)
+                        .ifPresent(voucher -> voucherUsageHistoryRepository.deleteByVoucherAndOrder(voucher, order));
             }
-        }, delayMinutes, TimeUnit.MINUTES);
+        }
     }
 
     @Override
     public void handlePaymentCallBack(HttpServletRequest request, HttpServletResponse response) throws Exception {
+        // VNPay gửi lại cùng một giao dịch thì trả lại redirect cũ, không trừ kho/gửi email lần nữa
+        String idempotencyKey = VN_PAY_CALLBACK_KEY + request.getParameter("orderId") + ":" + request.getParameter("vnp_TxnRef");
+        redirectOnce(idempotencyKey, response, () -> processVnPayCallback(request));
+    }
+
+    private String processVnPayCallback(HttpServletRequest request) {
         String status = request.getParameter("vnp_ResponseCode");
         Long orderId = Long.parseLong(request.getParameter("orderId"));
         long voucherId = Long.parseLong(request.getParameter("voucherId"));
@@ -129,11 +160,14 @@ public class PaymentServiceImpl implements PaymentService {
 
         Order order = orderRepository.findById(orderId).orElseThrow(() -> new ResourceNotFoundException("Order not found with id: " + orderId));
 
+        boolean outOfStock = "00".equals(status) && !commitStockHold(order);
+        String responseCode = outOfStock ? OUT_OF_STOCK_RESPONSE_CODE : status;
+
         String redirectUrl;
         if ("mobile".equals(platform)) {
             redirectUrl = String.format(
                     "ecom-store://payment-status?vnp_ResponseCode=%s&orderId=%s&vnp_TransactionNo=%s&vnp_TxnRef=%s&vnp_Amount=%s&vnp_BankCode=%s&vnp_PayDate=%s",
-                    request.getParameter("vnp_ResponseCode"),
+                    responseCode,
                     request.getParameter("orderId"),
                     request.getParameter("vnp_TransactionNo"),
                     request.getParameter("vnp_TxnRef"),
@@ -145,7 +179,7 @@ public class PaymentServiceImpl implements PaymentService {
             redirectUrl = String.format(
                     "%s/payment-status?vnp_ResponseCode=%s&orderId=%s&vnp_TransactionNo=%s&vnp_TxnRef=%s&vnp_Amount=%s&vnp_BankCode=%s&vnp_PayDate=%s",
                     domainFrontendStaff,
-                    request.getParameter("vnp_ResponseCode"),
+                    responseCode,
                     request.getParameter("orderId"),
                     request.getParameter("vnp_TransactionNo"),
                     request.getParameter("vnp_TxnRef"),
@@ -157,7 +191,7 @@ public class PaymentServiceImpl implements PaymentService {
             redirectUrl = String.format(
                     "%s/payment-status?vnp_ResponseCode=%s&orderId=%s&vnp_TransactionNo=%s&vnp_TxnRef=%s&vnp_Amount=%s&vnp_BankCode=%s&vnp_PayDate=%s",
                     domainFrontend,
-                    request.getParameter("vnp_ResponseCode"),
+                    responseCode,
                     request.getParameter("orderId"),
                     request.getParameter("vnp_TransactionNo"),
                     request.getParameter("vnp_TxnRef"),
@@ -167,28 +201,32 @@ public class PaymentServiceImpl implements PaymentService {
             );
         }
 
+        if (outOfStock) {
+            cancelPaidOrderWithoutStock(order, voucherId);
+            return redirectUrl;
+        }
         if ("00".equals(status)) {
             order.setStatus(isStaffOrder ? PROCESSING : PENDING);
             if (!isStaffOrder && order.getCustomer() != null && order.getCustomer().getCart() != null) {
                 clearCart(order.getCustomer().getCart(), cartItemIds);
             }
-            sendOrderConfirmationEmail(order);
-            notificationWebSocketService.sendOrderNotification(
-                order,
-                "CREATED",
-                String.format("Đơn hàng mới #%d đã được tạo", order.getId())
-            );
         } else {
             order.setStatus(PAYMENT_FAILED);
-            restoreVariantStock(order);
+            releaseStockHold(order);
             if (voucherId != 0) {
                 Voucher voucher = voucherRepository.findById(voucherId).orElseThrow(() -> new ResourceNotFoundException("Voucher not found with id: " + voucherId));
                 voucherUsageHistoryRepository.deleteByVoucherAndOrder(voucher, order);
             }
         }
         orderRepository.save(order);
+        scheduledJobService.cancel(PAYMENT_TIMEOUT, String.valueOf(orderId));
+        if ("00".equals(status)) {
+            eventPublisher.publishEvent(new OrderCreatedEvent(order.getId(), isStaffOrder, true, LocalDateTime.now()));
+        } else {
+            eventPublisher.publishEvent(new OrderStatusChangedEvent(order.getId(), PENDING_PAYMENT, PAYMENT_FAILED, LocalDateTime.now()));
+        }
 
-        response.sendRedirect(redirectUrl);
+        return redirectUrl;
     }
 
     @Override
@@ -230,6 +268,12 @@ public class PaymentServiceImpl implements PaymentService {
 
     @Override
     public void handlePayOsSuccess(HttpServletRequest request, HttpServletResponse response) throws Exception {
+        // Thành công và huỷ của cùng một orderCode dùng chung key: kết quả đến trước được giữ,
+        // trang huỷ mở lại sau khi đã thanh toán không làm đơn thành thất bại
+        redirectOnce(PAY_OS_CALLBACK_KEY + request.getParameter("orderCode"), response, () -> processPayOsSuccess(request));
+    }
+
+    private String processPayOsSuccess(HttpServletRequest request) {
         Long orderId = Long.parseLong(request.getParameter("orderId"));
         long voucherId = Long.parseLong(request.getParameter("voucherId"));
         List<Long> cartItemIds = Arrays.stream(request.getParameter("cartItemIds").split(","))
@@ -244,16 +288,16 @@ public class PaymentServiceImpl implements PaymentService {
         try {
             PaymentLink paymentInfo = payOS.paymentRequests().get(Long.parseLong(orderCode));
             if ("PAID".equals(paymentInfo.getStatus().toString())) {
+                if (!commitStockHold(order)) {
+                    cancelPaidOrderWithoutStock(order, voucherId);
+                    return buildFailureUrl(orderId, orderCode, order.getFinalTotalPrice().longValue(),
+                            OUT_OF_STOCK_RESPONSE_CODE, platform);
+                }
                 order.setStatus(PENDING);
                 clearCart(order.getCustomer().getCart(), cartItemIds);
                 orderRepository.save(order);
-                
-                sendOrderConfirmationEmail(order);
-                notificationWebSocketService.sendOrderNotification(
-                    order,
-                    "CREATED",
-                    String.format("Đơn hàng mới #%d đã được tạo", order.getId())
-                );
+                scheduledJobService.cancel(PAYMENT_TIMEOUT, String.valueOf(orderId));
+                eventPublisher.publishEvent(new OrderCreatedEvent(order.getId(), false, true, LocalDateTime.now()));
                 
                 SimpleDateFormat formatter = new SimpleDateFormat("yyyyMMddHHmmss");
                 String payDate = formatter.format(new Date());
@@ -286,21 +330,26 @@ public class PaymentServiceImpl implements PaymentService {
                             payDate
                     );
                 }
-                response.sendRedirect(redirectUrl);
+                return redirectUrl;
             } else {
                 handlePaymentFailure(order, voucherId);
-                String redirectUrl = buildFailureUrl(orderId, orderCode, order.getFinalTotalPrice().longValue(), "01", platform);
-                response.sendRedirect(redirectUrl);
+                return buildFailureUrl(orderId, orderCode, order.getFinalTotalPrice().longValue(), "01", platform);
             }
         } catch (Exception e) {
-            handlePaymentFailure(order, voucherId);
-            String redirectUrl = buildFailureUrl(orderId, orderCode, order.getFinalTotalPrice().longValue(), "99", platform);
-            response.sendRedirect(redirectUrl);
+            // Đã xác nhận thanh toán (kho đã trừ) thì không đánh dấu thất bại vì lỗi phía sau
+            if (PENDING_PAYMENT.equals(order.getStatus())) {
+                handlePaymentFailure(order, voucherId);
+            }
+            return buildFailureUrl(orderId, orderCode, order.getFinalTotalPrice().longValue(), "99", platform);
         }
     }
 
     @Override
     public void handlePayOsCancel(HttpServletRequest request, HttpServletResponse response) throws Exception {
+        redirectOnce(PAY_OS_CALLBACK_KEY + request.getParameter("orderCode"), response, () -> processPayOsCancel(request));
+    }
+
+    private String processPayOsCancel(HttpServletRequest request) {
         Long orderId = Long.parseLong(request.getParameter("orderId"));
         long voucherId = Long.parseLong(request.getParameter("voucherId"));
         String orderCode = request.getParameter("orderCode");
@@ -311,19 +360,51 @@ public class PaymentServiceImpl implements PaymentService {
         
         handlePaymentFailure(order, voucherId);
         
-        String redirectUrl = buildFailureUrl(orderId, orderCode, order.getFinalTotalPrice().longValue(), "24", platform);
+        return buildFailureUrl(orderId, orderCode, order.getFinalTotalPrice().longValue(), "24", platform);
+    }
+
+    /**
+     * Xử lý callback một lần cho mỗi giao dịch của cổng thanh toán, lần gửi lại nhận đúng redirect của lần đầu.
+     * Xử lý lỗi thì bỏ key để cổng thanh toán gửi lại được. Handler chạy trong một transaction để thay đổi đơn
+     * và sự kiện ghi vào outbox cùng commit.
+     */
+    private void redirectOnce(String idempotencyKey, HttpServletResponse response, Callable<String> handler) throws Exception {
+        Optional<Object> replay = idempotencyService.begin(idempotencyKey, null);
+        if (replay.isPresent()) {
+            response.sendRedirect(replay.get().toString());
+            return;
+        }
+
+        String redirectUrl;
+        try {
+            redirectUrl = new TransactionTemplate(transactionManager).execute(status -> {
+                try {
+                    return handler.call();
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        } catch (Exception e) {
+            idempotencyService.abort(idempotencyKey);
+            throw e;
+        }
+        idempotencyService.complete(idempotencyKey, null, redirectUrl);
         response.sendRedirect(redirectUrl);
     }
 
     private void handlePaymentFailure(Order order, long voucherId) {
         order.setStatus(PAYMENT_FAILED);
-        restoreVariantStock(order);
+        releaseStockHold(order);
         if (voucherId != 0) {
             Voucher voucher = voucherRepository.findById(voucherId)
                     .orElseThrow(() -> new ResourceNotFoundException("Voucher not found with id: " + voucherId));
             voucherUsageHistoryRepository.deleteByVoucherAndOrder(voucher, order);
         }
         orderRepository.save(order);
+        scheduledJobService.cancel(PAYMENT_TIMEOUT, String.valueOf(order.getId()));
+        eventPublisher.publishEvent(new OrderStatusChangedEvent(order.getId(), PENDING_PAYMENT, PAYMENT_FAILED, LocalDateTime.now()));
     }
 
     private String buildFailureUrl(Long orderId, String orderCode, Long amount, String responseCode, String platform) {
@@ -362,13 +443,40 @@ public class PaymentServiceImpl implements PaymentService {
         cartRepository.save(cart);
     }
 
-    private void restoreVariantStock(Order order) {
-        order.getOrderDetails().forEach(detail -> {
-            var variant = detail.getProductVariant();
-            int newStock = variant.getStock() + detail.getQuantity().intValue();
-            variant.setStock(newStock);
-            productVariantRepository.save(variant);
-        });
+    /**
+     * Thanh toán thành công: trừ kho thật và bỏ hold. Trừ kho không ném lỗi nên transaction của callback
+     * không bị đánh dấu rollback khi thiếu hàng.
+     *
+     * @return false nếu hold đã hết hạn và hàng đã bị bán hết, người gọi phải huỷ đơn (cancelPaidOrderWithoutStock)
+     */
+    private boolean commitStockHold(Order order) {
+        // Callback lặp lại cho đơn đã xác nhận thì kho đã được trừ
+        if (!PENDING_PAYMENT.equals(order.getStatus()) && !PAYMENT_FAILED.equals(order.getStatus())) {
+            return true;
+        }
+        return stockReservationService.tryCommit(order.getId(), order.getOrderDetails());
+    }
+
+    /**
+     * Bù trừ cho đơn đã thu tiền nhưng không còn hàng: huỷ đơn, trả lại lượt dùng voucher và báo cho khách qua sự kiện
+     * huỷ đơn; tiền được hoàn thủ công theo log lỗi.
+     */
+    private void cancelPaidOrderWithoutStock(Order order, long voucherId) {
+        OrderStatus previousStatus = order.getStatus();
+        order.setStatus(CANCELED);
+        if (voucherId != 0) {
+            voucherRepository.findById(voucherId)
+                    .ifPresent(voucher -> voucherUsageHistoryRepository.deleteByVoucherAndOrder(voucher, order));
+        }
+        orderRepository.save(order);
+        scheduledJobService.cancel(PAYMENT_TIMEOUT, String.valueOf(order.getId()));
+        eventPublisher.publishEvent(new OrderStatusChangedEvent(order.getId(), previousStatus, CANCELED, LocalDateTime.now()));
+        log.error("Paid order {} was canceled because its stock is no longer available, refund {} manually",
+                order.getId(), order.getFinalTotalPrice());
+    }
+
+    private void releaseStockHold(Order order) {
+        stockReservationService.release(order.getId(), order.getOrderDetails());
     }
 
 
@@ -448,19 +556,4 @@ public class PaymentServiceImpl implements PaymentService {
                                         , StandardCharsets.US_ASCII))
                 .collect(Collectors.joining("&"));
     }
-
-    private void sendOrderConfirmationEmail(Order order) {
-        try {
-            String customerEmail = order.getCustomer().getEmail();
-            if (customerEmail != null && !customerEmail.isBlank()) {
-                // Fetch order with all necessary data for email to avoid lazy loading issues
-                Order orderWithDetails = orderRepository.findByIdWithDetailsForEmail(order.getId());
-                if (orderWithDetails != null) {
-                    emailService.sendOrderConfirmation(customerEmail, orderWithDetails);
-                }
-            }
-        } catch (Exception e) {
-            // Log error but don't fail the payment callback
-        }
-    }
 }
@@ -0,0 +1,31 @@
+package iuh.fit.ecommerce.services.impl;
+
+import iuh.fit.ecommerce.enums.ScheduledJobType;
+import iuh.fit.ecommerce.services.PaymentService;
+import iuh.fit.ecommerce.services.ScheduledJobHandler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Hết thời gian thanh toán online: đơn còn PENDING_PAYMENT thì chuyển PAYMENT_FAILED, bỏ giữ hàng và trả voucher.
+ */
+@Component
+@RequiredArgsConstructor
+public class PaymentTimeoutJobHandler implements ScheduledJobHandler {
+
+    private final PaymentService paymentService;
+
+    @Override
+    public ScheduledJobType getType() {
+        return ScheduledJobType.PAYMENT_TIMEOUT;
+    }
+
+    @Override
+    public void handle(Map<String, Object> payload) {
+        Long orderId = ((Number) payload.get("orderId")).longValue();
+        Object voucherId = payload.get("voucherId");
+        paymentService.expirePendingPayment(orderId, voucherId instanceof Number number ? number.longValue() : null);
+    }
+}
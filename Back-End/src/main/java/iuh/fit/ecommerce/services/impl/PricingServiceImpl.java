@@ -0,0 +1,217 @@
+package iuh.fit.ecommerce.services.impl;
+
+import iuh.fit.ecommerce.dtos.pricing.PricingContext;
+import iuh.fit.ecommerce.dtos.response.product.ProductResponse;
+import iuh.fit.ecommerce.dtos.response.product.ProductVariantResponse;
+import iuh.fit.ecommerce.dtos.response.product.VariantPriceResponse;
+import iuh.fit.ecommerce.entities.Customer;
+import iuh.fit.ecommerce.entities.Product;
+import iuh.fit.ecommerce.entities.ProductVariant;
+import iuh.fit.ecommerce.entities.Promotion;
+import iuh.fit.ecommerce.entities.Ranking;
+import iuh.fit.ecommerce.entities.Voucher;
+import iuh.fit.ecommerce.exceptions.custom.InvalidParamException;
+import iuh.fit.ecommerce.exceptions.custom.ResourceNotFoundException;
+import iuh.fit.ecommerce.mappers.ProductMapper;
+import iuh.fit.ecommerce.repositories.OrderArchiveRepository;
+import iuh.fit.ecommerce.repositories.ProductVariantRepository;
+import iuh.fit.ecommerce.repositories.VoucherCustomerRepository;
+import iuh.fit.ecommerce.repositories.VoucherRepository;
+import iuh.fit.ecommerce.repositories.VoucherUsageHistoryRepository;
+import iuh.fit.ecommerce.services.PricingService;
+import iuh.fit.ecommerce.services.PromotionIndexService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static iuh.fit.ecommerce.enums.VoucherType.ALL;
+
+/**
+ * Tính giá bán cho cả danh sách sản phẩm/variant trong một lần.
+ * Promotion lấy từ chỉ mục trong bộ nhớ (PromotionIndexService) nên không phát sinh query theo từng sản phẩm.
+ * Checkout cũng tính giá tại đây (priceCheckout) để đơn hàng và báo giá dùng chung một cách tính.
+ */
+@Service
+@RequiredArgsConstructor
+public class PricingServiceImpl implements PricingService {
+
+    private static final Comparator<ProductVariantResponse> BY_PRICE = Comparator.comparing(
+            ProductVariantResponse::getPrice, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final PromotionIndexService promotionIndexService;
+    private final ProductVariantRepository productVariantRepository;
+    private final ProductMapper productMapper;
+    private final VoucherRepository voucherRepository;
+    private final VoucherCustomerRepository voucherCustomerRepository;
+    private final VoucherUsageHistoryRepository voucherUsageHistoryRepository;
+    private final OrderArchiveRepository orderArchiveRepository;
+
+    @Override
+    public Map<Long, VariantPriceResponse> priceProducts(Collection<Product> products) {
+        Map<Long, VariantPriceResponse> prices = new HashMap<>();
+        for (Product product : products) {
+            if (product.getProductVariants() == null) {
+                continue;
+            }
+            for (ProductVariant variant : product.getProductVariants()) {
+                prices.put(variant.getId(), price(variant, product));
+            }
+        }
+        return prices;
+    }
+
+    @Override
+    public Map<Long, VariantPriceResponse> priceVariants(Collection<Long> variantIds) {
+        Map<Long, VariantPriceResponse> prices = new HashMap<>();
+        if (variantIds == null || variantIds.isEmpty()) {
+            return prices;
+        }
+        for (ProductVariant variant : productVariantRepository.findAllWithProductByIdIn(variantIds)) {
+            prices.put(variant.getId(), price(variant, variant.getProduct()));
+        }
+        return prices;
+    }
+
+    @Override
+    public List<ProductResponse> toPricedResponses(Collection<Product> products) {
+        Map<Long, VariantPriceResponse> prices = priceProducts(products);
+        List<ProductResponse> responses = new ArrayList<>(products.size());
+        for (Product product : products) {
+            responses.add(applyPrices(productMapper.toResponse(product), prices));
+        }
+        return responses;
+    }
+
+    @Override
+    public ProductResponse toPricedResponse(Product product) {
+        return applyPrices(productMapper.toResponse(product), priceProducts(List.of(product)));
+    }
+
+    @Override
+    public PricingContext priceCheckout(Customer customer, List<PricingContext.Item> items, Long voucherId) {
+        List<PricingContext.Line> lines = new ArrayList<>(items.size());
+        double totalPrice = 0;
+        double promotionDiscount = 0;
+        for (PricingContext.Item item : items) {
+            ProductVariant variant = item.variant();
+            VariantPriceResponse price = price(variant, variant.getProduct());
+
+            double itemTotal = item.unitPrice() * item.quantity();
+            double discountAmount = itemTotal * price.getDiscount() / 100.0;
+            lines.add(new PricingContext.Line(
+                    variant,
+                    item.unitPrice(),
+                    item.quantity(),
+                    price.getDiscount(),
+                    price.getPromotionId(),
+                    discountAmount,
+                    itemTotal - discountAmount
+            ));
+            totalPrice += itemTotal;
+            promotionDiscount += discountAmount;
+        }
+
+        double rankingDiscount = rankingDiscountOf(customer, totalPrice - promotionDiscount);
+
+        Voucher voucher = null;
+        double voucherDiscount = 0;
+        if (voucherId != null) {
+            voucher = voucherRepository.findById(voucherId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Voucher not found"));
+            double baseAmount = totalPrice - promotionDiscount - rankingDiscount;
+            validateVoucher(voucher, customer, baseAmount);
+            voucherDiscount = baseAmount * (voucher.getDiscount() / 100.0);
+            if (voucher.getMaxDiscountAmount() != null && voucherDiscount > voucher.getMaxDiscountAmount()) {
+                voucherDiscount = voucher.getMaxDiscountAmount();
+            }
+        }
+
+        return PricingContext.builder()
+                .lines(lines)
+                .totalPrice(totalPrice)
+                .promotionDiscount(promotionDiscount)
+                .rankingDiscount(rankingDiscount)
+                .voucher(voucher)
+                .voucherDiscount(voucherDiscount)
+                .finalTotalPrice(totalPrice - promotionDiscount - rankingDiscount - voucherDiscount)
+                .build();
+    }
+
+    private double rankingDiscountOf(Customer customer, double currentAmount) {
+        Ranking ranking = customer != null ? customer.getRanking() : null;
+        if (ranking == null || ranking.getDiscountRate() == null || ranking.getDiscountRate() <= 0) {
+            return 0.0;
+        }
+        return currentAmount * (ranking.getDiscountRate() / 100.0);
+    }
+
+    private void validateVoucher(Voucher voucher, Customer customer, double currentAmount) {
+        if (!ALL.equals(voucher.getVoucherType())) {
+            boolean assigned = voucherCustomerRepository.existsByVoucherAndCustomer(voucher, customer);
+            if (!assigned) throw new InvalidParamException("Voucher not assigned to this customer");
+        }
+
+        boolean used = voucherUsageHistoryRepository.existsByVoucherAndOrder_Customer(voucher, customer)
+                || orderArchiveRepository.existsVoucherUsage(voucher.getId(), customer.getId());
+        if (used) throw new InvalidParamException("Voucher already used by this customer");
+
+        LocalDate today = LocalDate.now();
+        if (today.isBefore(voucher.getStartDate()) || today.isAfter(voucher.getEndDate())) {
+            throw new InvalidParamException("Voucher expired or not active");
+        }
+
+        if (voucher.getMinOrderAmount() != null && currentAmount < voucher.getMinOrderAmount()) {
+            throw new InvalidParamException("Order does not meet minimum amount for voucher");
+        }
+    }
+
+    /**
+     * Gán giá bán, giá gốc, % giảm cho từng variant rồi sắp xếp variant theo giá bán thấp nhất.
+     */
+    private ProductResponse applyPrices(ProductResponse response, Map<Long, VariantPriceResponse> prices) {
+        if (response.getVariants() == null || response.getVariants().isEmpty()) {
+            return response;
+        }
+        List<ProductVariantResponse> variants = new ArrayList<>(response.getVariants());
+        for (ProductVariantResponse variant : variants) {
+            VariantPriceResponse price = prices.get(variant.getId());
+            if (price == null) {
+                continue;
+            }
+            variant.setPrice(price.getPrice());
+            variant.setOldPrice(price.getOldPrice());
+            variant.setDiscount(price.getDiscount());
+        }
+        variants.sort(BY_PRICE);
+        response.setVariants(variants);
+        return response;
+    }
+
+    private VariantPriceResponse price(ProductVariant variant, Product product) {
+        Promotion promotion = promotionIndexService.getBestPromotion(
+                variant.getId(),
+                product.getId(),
+                product.getCategory() != null ? product.getCategory().getId() : null,
+                product.getBrand() != null ? product.getBrand().getId() : null
+        );
+
+        Double oldPrice = variant.getPrice();
+        double discount = promotion != null && promotion.getDiscount() != null ? promotion.getDiscount() : 0.0;
+        Double price = oldPrice != null ? oldPrice - (oldPrice * discount / 100) : null;
+
+        return VariantPriceResponse.builder()
+                .variantId(variant.getId())
+                .price(price)
+                .oldPrice(oldPrice)
+                .discount(discount)
+                .promotionId(promotion != null ? promotion.getId() : null)
+                .build();
+    }
+}
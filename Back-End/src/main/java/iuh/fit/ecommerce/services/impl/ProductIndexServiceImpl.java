@@ -0,0 +1,312 @@
+package iuh.fit.ecommerce.services.impl;
+
+import iuh.fit.ecommerce.entities.elasticsearch.ProductDocument;
+import iuh.fit.ecommerce.repositories.SearchIndexCounterRepository;
+import iuh.fit.ecommerce.services.AutocompleteService;
+import iuh.fit.ecommerce.services.ProductIndexService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.elasticsearch.BulkFailureException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.index.AliasAction;
+import org.springframework.data.elasticsearch.core.index.AliasActionParameters;
+import org.springframework.data.elasticsearch.core.index.AliasActions;
+import org.springframework.data.elasticsearch.core.index.AliasData;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Quản lý index vật lý products_v{n} phía sau hai alias:
+ * - products: alias đọc, luôn trỏ tới đúng một index đang phục vụ search
+ * - products_write: alias ghi, trỏ tới index đang phục vụ và index đang được rebuild (dual-write)
+ * Document ghi với version ngoài lấy từ bộ đếm DB trước khi đọc sản phẩm, bị từ chối vì version cũ hơn
+ * thì coi như đã có bản mới hơn. Xoá cũng là một lần ghi có version (tombstone) nên không bị bản cũ ghi đè.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProductIndexServiceImpl implements ProductIndexService {
+
+    public static final String READ_ALIAS = "products";
+    public static final String WRITE_ALIAS = "products_write";
+    private static final String INDEX_PREFIX = "products_v";
+    private static final Pattern INDEX_VERSION = Pattern.compile("^" + INDEX_PREFIX + "(\\d+)$");
+    private static final String VERSION_COUNTER = "product";
+
+    // Các node khác đọc lại alias ghi sau tối đa khoảng thời gian này
+    public static final Duration WRITE_ALIAS_REFRESH = Duration.ofSeconds(5);
+
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final AutocompleteService autocompleteService;
+    private final SearchIndexCounterRepository searchIndexCounterRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    private volatile List<String> cachedWriteIndices;
+    private volatile long writeIndicesLoadedAt;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            ensureIndex();
+        } catch (Exception e) {
+            log.error("Cannot prepare product index aliases: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void ensureIndex() {
+        IndexOperations readOps = elasticsearchOperations.indexOps(IndexCoordinates.of(READ_ALIAS));
+        if (readOps.exists()) {
+            if (findAliasTargets(READ_ALIAS).isEmpty()) {
+                log.warn("Index '{}' is a legacy physical index, run a full reindex to move it behind aliases", READ_ALIAS);
+            }
+            return;
+        }
+
+        String indexName = INDEX_PREFIX + 1;
+        createIndex(indexName);
+        readOps.alias(new AliasActions(
+                new AliasAction.Add(AliasActionParameters.builder().withIndices(indexName).withAliases(READ_ALIAS).build()),
+                new AliasAction.Add(AliasActionParameters.builder().withIndices(indexName).withAliases(WRITE_ALIAS).build())
+        ));
+        invalidateWriteIndices();
+        log.info("Created product index {} behind aliases {} / {}", indexName, READ_ALIAS, WRITE_ALIAS);
+    }
+
+    @Override
+    public String getLiveIndex() {
+        List<String> targets = findAliasTargets(READ_ALIAS);
+        // Chưa có alias: index cũ tên "products" vẫn là index vật lý
+        return targets.isEmpty() ? READ_ALIAS : targets.getFirst();
+    }
+
+    @Override
+    public List<String> getWriteIndices() {
+        List<String> indices = cachedWriteIndices;
+        if (indices != null && System.currentTimeMillis() - writeIndicesLoadedAt < WRITE_ALIAS_REFRESH.toMillis()) {
+            return indices;
+        }
+
+        List<String> targets = findAliasTargets(WRITE_ALIAS);
+        if (targets.isEmpty()) {
+            targets = List.of(getLiveIndex());
+        }
+        cachedWriteIndices = targets;
+        writeIndicesLoadedAt = System.currentTimeMillis();
+        return targets;
+    }
+
+    @Override
+    public void save(ProductDocument document) {
+        saveAll(List.of(document));
+    }
+
+    @Override
+    public void saveAll(List<ProductDocument> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        for (String index : getWriteIndices()) {
+            saveVersioned(index, documents);
+        }
+        autocompleteService.onProductsIndexed(documents);
+    }
+
+    @Override
+    public void delete(Long productId, long version) {
+        // indexedAt để autocomplete của các node khác nhận được việc xoá khi đồng bộ
+        ProductDocument tombstone = ProductDocument.builder()
+                .id(String.valueOf(productId))
+                .productId(productId)
+                .status(false)
+                .indexedAt(System.currentTimeMillis())
+                .version(version)
+                .build();
+        for (String index : getWriteIndices()) {
+            saveVersioned(index, List.of(tombstone));
+        }
+        autocompleteService.onProductDeleted(String.valueOf(productId));
+    }
+
+    /**
+     * Transaction riêng và commit ngay: giá trị đã cấp không bị rollback theo transaction của người gọi,
+     * khoá dòng bộ đếm chỉ giữ trong lúc tăng. Giá trị khởi đầu là epoch millis để lớn hơn version
+     * của các document đã ghi theo đồng hồ trước khi có bộ đếm.
+     */
+    @Override
+    public long nextVersion() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        Long version = tx.execute(status -> {
+            searchIndexCounterRepository.increment(VERSION_COUNTER, System.currentTimeMillis());
+            return searchIndexCounterRepository.findCurrentValue(VERSION_COUNTER);
+        });
+        if (version == null) {
+            throw new IllegalStateException("Search index version counter is missing");
+        }
+        return version;
+    }
+
+    @Override
+    public String createNextIndex() {
+        int maxVersion = 0;
+        Map<String, Set<AliasData>> existing = elasticsearchOperations
+                .indexOps(IndexCoordinates.of(INDEX_PREFIX + "*"))
+                .getAliasesForIndex(INDEX_PREFIX + "*");
+        for (String name : existing.keySet()) {
+            Matcher matcher = INDEX_VERSION.matcher(name);
+            if (matcher.matches()) {
+                maxVersion = Math.max(maxVersion, Integer.parseInt(matcher.group(1)));
+            }
+        }
+
+        String indexName = INDEX_PREFIX + (maxVersion + 1);
+        createIndex(indexName);
+        log.info("Created product index {}", indexName);
+        return indexName;
+    }
+
+    @Override
+    public void beginDualWrite(String indexName) {
+        List<AliasAction> actions = new ArrayList<>();
+        actions.add(new AliasAction.Add(AliasActionParameters.builder()
+                .withIndices(indexName).withAliases(WRITE_ALIAS).build()));
+
+        // Index đang phục vụ chưa có alias ghi thì thêm vào để cập nhật trực tiếp vẫn tới được cả hai index.
+        // Kể cả index vật lý "products" cũ: alias ghi có thể trỏ tới nó (chỉ alias đọc trùng tên mới không được),
+        // nếu không cập nhật trong lúc rebuild chỉ vào index mới và search trên index cũ bị cũ tới khi promote.
+        // promote xoá index vật lý đó cùng các alias của nó trong cùng request swap alias đọc.
+        String liveIndex = getLiveIndex();
+        if (!findAliasTargets(WRITE_ALIAS).contains(liveIndex)) {
+            actions.add(new AliasAction.Add(AliasActionParameters.builder()
+                    .withIndices(liveIndex).withAliases(WRITE_ALIAS).build()));
+            if (READ_ALIAS.equals(liveIndex)) {
+                log.info("Legacy physical index '{}' joins {} for the duration of the rebuild", READ_ALIAS, WRITE_ALIAS);
+            }
+        }
+
+        elasticsearchOperations.indexOps(IndexCoordinates.of(indexName))
+                .alias(new AliasActions(actions.toArray(new AliasAction[0])));
+        invalidateWriteIndices();
+        log.info("Live product updates are now written to {} as well", indexName);
+    }
+
+    @Override
+    public void bulkIndex(String indexName, List<ProductDocument> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        saveVersioned(indexName, documents);
+    }
+
+    @Override
+    public void discardIndex(String indexName) {
+        if (indexName == null || indexName.equals(getLiveIndex()) || !INDEX_VERSION.matcher(indexName).matches()) {
+            return;
+        }
+        IndexOperations ops = elasticsearchOperations.indexOps(IndexCoordinates.of(indexName));
+        if (!ops.exists()) {
+            return;
+        }
+        if (findAliasTargets(WRITE_ALIAS).contains(indexName)) {
+            ops.alias(new AliasActions(new AliasAction.Remove(AliasActionParameters.builder()
+                    .withIndices(indexName).withAliases(WRITE_ALIAS).build())));
+            invalidateWriteIndices();
+            // Chờ các node khác đọc lại alias ghi, ghi muộn vào index đã xoá sẽ tự tạo lại index đó
+            try {
+                Thread.sleep(WRITE_ALIAS_REFRESH.multipliedBy(2).toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        ops.delete();
+        log.info("Discarded abandoned product index {}", indexName);
+    }
+
+    private void saveVersioned(String indexName, List<ProductDocument> documents) {
+        try {
+            elasticsearchOperations.save(documents, IndexCoordinates.of(indexName));
+        } catch (BulkFailureException e) {
+            // 409: index đã có bản đọc sau hơn, bỏ qua; lỗi khác thì ném lại để người gọi retry
+            Map<String, BulkFailureException.FailureDetails> failures = e.getFailedDocuments();
+            boolean onlyConflicts = failures.values().stream()
+                    .allMatch(failure -> failure.status() != null && failure.status() == 409);
+            if (!onlyConflicts) {
+                throw e;
+            }
+            log.debug("Skipped {} outdated product documents in {}", failures.size(), indexName);
+        }
+    }
+
+    @Override
+    public void promote(String indexName) {
+        String oldIndex = getLiveIndex();
+        boolean legacy = READ_ALIAS.equals(oldIndex);
+
+        IndexOperations ops = elasticsearchOperations.indexOps(IndexCoordinates.of(indexName));
+        ops.refresh();
+
+        List<AliasAction> actions = new ArrayList<>();
+        actions.add(new AliasAction.Add(AliasActionParameters.builder()
+                .withIndices(indexName).withAliases(READ_ALIAS).build()));
+        if (legacy) {
+            // Index vật lý "products" phải bị xoá trong cùng request để alias cùng tên thay thế nó
+            actions.add(new AliasAction.RemoveIndex(AliasActionParameters.builder()
+                    .withIndices(oldIndex).build()));
+        } else if (!oldIndex.equals(indexName)) {
+            actions.add(new AliasAction.Remove(AliasActionParameters.builder()
+                    .withIndices(oldIndex).withAliases(READ_ALIAS, WRITE_ALIAS).build()));
+        }
+        ops.alias(new AliasActions(actions.toArray(new AliasAction[0])));
+        invalidateWriteIndices();
+        log.info("Product read alias swapped from {} to {}", oldIndex, indexName);
+
+        if (legacy || oldIndex.equals(indexName)) {
+            return;
+        }
+
+        // Chờ các node khác đọc lại alias ghi rồi mới xoá index cũ
+        try {
+            Thread.sleep(WRITE_ALIAS_REFRESH.multipliedBy(2).toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        elasticsearchOperations.indexOps(IndexCoordinates.of(oldIndex)).delete();
+        log.info("Dropped old product index {}", oldIndex);
+    }
+
+    private void createIndex(String indexName) {
+        IndexOperations ops = elasticsearchOperations.indexOps(IndexCoordinates.of(indexName));
+        IndexOperations entityOps = elasticsearchOperations.indexOps(ProductDocument.class);
+        ops.create(entityOps.createSettings(ProductDocument.class), entityOps.createMapping(ProductDocument.class));
+    }
+
+    private List<String> findAliasTargets(String alias) {
+        try {
+            Map<String, Set<AliasData>> aliases = elasticsearchOperations
+                    .indexOps(IndexCoordinates.of(alias))
+                    .getAliases(alias);
+            return new ArrayList<>(aliases.keySet());
+        } catch (Exception e) {
+            return List.of();
+        }
+    }
+
+    private void invalidateWriteIndices() {
+        cachedWriteIndices = null;
+    }
+}
@@ -0,0 +1,466 @@
+package iuh.fit.ecommerce.services.impl;
+
+import iuh.fit.ecommerce.dtos.response.product.ReindexStatusResponse;
+import iuh.fit.ecommerce.entities.Product;
+import iuh.fit.ecommerce.entities.elasticsearch.ProductDocument;
+import iuh.fit.ecommerce.exceptions.custom.ConflictException;
+import iuh.fit.ecommerce.repositories.ProductRepository;
+import iuh.fit.ecommerce.services.ProductIndexService;
+import iuh.fit.ecommerce.services.ProductReindexService;
+import iuh.fit.ecommerce.services.ProductSearchService;
+import iuh.fit.ecommerce.services.SearchIndexOutboxService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Reindex toàn bộ products theo từng chunk:
+ * đọc id bằng keyset pagination, fetch-join dữ liệu của chunk, convert trên worker pool giới hạn
+ * và gửi bulk request sang Elasticsearch. Checkpoint được lưu trong Redis để chạy tiếp khi tiến trình bị dừng giữa chừng.
+ * Mỗi lần rebuild ghi vào một index products_v{n} mới (cập nhật trực tiếp được dual-write qua alias ghi),
+ * xong thì swap alias đọc một cách atomic và xoá index cũ. Document mang version ngoài lấy từ bộ đếm DB lúc đọc nên chunk
+ * đọc trước không ghi đè cập nhật trực tiếp đọc sau. Lần chạy lỗi hoặc bị thay bằng lần chạy mới thì index đích bị xoá.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProductReindexServiceImpl implements ProductReindexService {
+
+    private static final String CHECKPOINT_KEY = "search:reindex:checkpoint";
+    private static final String TARGET_INDEX_KEY = "search:reindex:target";
+    // Sản phẩm convert lỗi: checkpoint vẫn đi qua nên phải giữ id lại để thử lại trước khi promote (kể cả khi resume)
+    private static final String FAILED_IDS_KEY = "search:reindex:failed-ids";
+    private static final int MAX_CHUNK_ATTEMPTS = 3;
+
+    private final ProductRepository productRepository;
+    private final ProductIndexService productIndexService;
+    private final ProductSearchService productSearchService;
+    private final SearchIndexOutboxService searchIndexOutboxService;
+    private final PlatformTransactionManager transactionManager;
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    @Value("${search.reindex.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${search.reindex.workers:4}")
+    private int workers;
+
+    @Value("${search.reindex.max-in-flight-chunks:8}")
+    private int maxInFlightChunks;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile ReindexRun currentRun;
+
+    @Override
+    public ReindexStatusResponse startReindex(boolean resume) {
+        if (!running.compareAndSet(false, true)) {
+            throw new ConflictException("Product reindex is already running");
+        }
+
+        String previousTarget = loadTargetIndex();
+        String targetIndex = resume ? previousTarget : null;
+        boolean resumed = targetIndex != null;
+        long startAfterId = resumed ? loadCheckpoint() : 0L;
+
+        ReindexRun run;
+        try {
+            if (!resumed) {
+                clearCheckpoint();
+                targetIndex = productIndexService.createNextIndex();
+                productIndexService.beginDualWrite(targetIndex);
+                saveTargetIndex(targetIndex);
+            }
+            // Lần reindex trước bị bỏ dở mà không chạy tiếp: index đích của nó không còn dùng nữa
+            String abandonedIndex = resumed || Objects.equals(previousTarget, targetIndex) ? null : previousTarget;
+            run = new ReindexRun(resumed, startAfterId, targetIndex, abandonedIndex, maxInFlightChunks);
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+        currentRun = run;
+
+        Thread coordinator = new Thread(() -> {
+            try {
+                execute(run);
+            } finally {
+                running.set(false);
+            }
+        }, "product-reindex");
+        coordinator.setDaemon(true);
+        coordinator.start();
+
+        return toResponse(run);
+    }
+
+    @Override
+    public ReindexStatusResponse getReindexStatus() {
+        ReindexRun run = currentRun;
+        if (run == null) {
+            return ReindexStatusResponse.builder()
+                    .status("IDLE")
+                    .targetIndex(loadTargetIndex())
+                    .lastCheckpointId(loadCheckpoint())
+                    .build();
+        }
+        return toResponse(run);
+    }
+
+    private void execute(ReindexRun run) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxInFlightChunks),
+                workerThreadFactory()
+        );
+        TransactionTemplate readOnlyTx = new TransactionTemplate(transactionManager);
+        readOnlyTx.setReadOnly(true);
+
+        try {
+            if (run.abandonedIndex != null) {
+                discardTarget(run.abandonedIndex);
+            }
+            if (!run.resumed) {
+                // Đợi mọi node nhận alias ghi mới trước khi đọc dữ liệu, tránh mất cập nhật đồng thời
+                Thread.sleep(ProductIndexServiceImpl.WRITE_ALIAS_REFRESH.toMillis());
+            }
+            run.total = productRepository.countByIdGreaterThan(run.startAfterId);
+            log.info("Product reindex into {} started after id {} ({} products, resume = {})",
+                    run.targetIndex, run.startAfterId, run.total, run.resumed);
+
+            long lastId = run.startAfterId;
+            long seq = 0;
+            while (!run.aborted.get()) {
+                List<Long> ids = productRepository.findIdsAfter(lastId, PageRequest.of(0, chunkSize));
+                if (ids.isEmpty()) {
+                    break;
+                }
+
+                // Backpressure: không đọc thêm chunk khi đã có quá nhiều chunk đang convert/bulk
+                run.inFlight.acquire();
+                long chunkSeq = seq++;
+                long chunkLastId = ids.get(ids.size() - 1);
+                List<Product> products;
+                // Version ngoài của document: lấy từ bộ đếm DB trước khi đọc, cập nhật trực tiếp đọc sau sẽ không bị ghi đè
+                long version = productIndexService.nextVersion();
+                try {
+                    products = productSearchService.loadProductsForIndexing(ids);
+                } catch (RuntimeException e) {
+                    run.inFlight.release();
+                    throw e;
+                }
+
+                pool.execute(() -> {
+                    try {
+                        indexChunk(run, readOnlyTx, products, version);
+                        run.completeChunk(chunkSeq, chunkLastId, this::saveCheckpoint);
+                    } catch (Exception e) {
+                        log.error("Reindex chunk ending at product id {} failed: {}", chunkLastId, e.getMessage(), e);
+                        run.failedProducts.addAndGet(products.size());
+                        run.lastError = e.getMessage();
+                        run.aborted.set(true);
+                    } finally {
+                        run.inFlight.release();
+                    }
+                });
+                lastId = chunkLastId;
+            }
+
+            pool.shutdown();
+            pool.awaitTermination(1, TimeUnit.HOURS);
+
+            if (run.aborted.get()) {
+                run.status = "FAILED";
+                log.warn("Product reindex into {} failed at checkpoint {}, discarding the target index",
+                        run.targetIndex, run.checkpointId);
+                abandon(run);
+            } else {
+                retryFailedProducts(run, readOnlyTx);
+                run.status = "PROMOTING";
+                productIndexService.promote(run.targetIndex);
+                run.status = "COMPLETED";
+                clearCheckpoint();
+                log.info("Product reindex completed: {} products in {}s",
+                        run.indexedProducts.get(), run.elapsedSeconds());
+            }
+        } catch (Exception e) {
+            log.error("Product reindex failed: {}", e.getMessage(), e);
+            run.status = "FAILED";
+            run.lastError = e.getMessage();
+            pool.shutdownNow();
+            abandon(run);
+        } finally {
+            run.finishedAt = LocalDateTime.now();
+        }
+    }
+
+    private void indexChunk(ReindexRun run, TransactionTemplate readOnlyTx,
+                            List<Product> products, long version) throws InterruptedException {
+        List<ProductDocument> documents = readOnlyTx.execute(status -> {
+            List<ProductDocument> converted = new ArrayList<>();
+            for (Product product : products) {
+                try {
+                    ProductDocument document = productSearchService.convertToDocument(product);
+                    document.setVersion(version);
+                    converted.add(document);
+                } catch (Exception e) {
+                    log.error("Error converting product ID {}: {}", product.getId(), e.getMessage());
+                    recordFailedProduct(run, product.getId());
+                }
+            }
+            return converted;
+        });
+
+        if (documents == null || documents.isEmpty()) {
+            return;
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                productIndexService.bulkIndex(run.targetIndex, documents);
+                run.indexedProducts.addAndGet(documents.size());
+                return;
+            } catch (Exception e) {
+                if (attempt >= MAX_CHUNK_ATTEMPTS) {
+                    throw e;
+                }
+                log.warn("Bulk index attempt {} failed, retrying: {}", attempt, e.getMessage());
+                Thread.sleep(Duration.ofSeconds(attempt).toMillis());
+            }
+        }
+    }
+
+    private void recordFailedProduct(ReindexRun run, Long productId) {
+        run.failedProducts.incrementAndGet();
+        run.failedIds.add(productId);
+        try {
+            redisTemplate.opsForSet().add(FAILED_IDS_KEY, productId);
+        } catch (Exception e) {
+            log.warn("Cannot save failed reindex product {} to Redis: {}", productId, e.getMessage());
+        }
+    }
+
+    /**
+     * Thử lại một lần các sản phẩm convert lỗi trong lần chạy này và các đoạn trước (khi resume).
+     * Vẫn lỗi thì đưa vào outbox index để được thử lại với backoff, ghi qua alias ghi nên tới được index mới.
+     */
+    private void retryFailedProducts(ReindexRun run, TransactionTemplate readOnlyTx) {
+        Set<Long> failedIds = new HashSet<>(run.failedIds);
+        failedIds.addAll(loadFailedIds());
+        if (failedIds.isEmpty()) {
+            return;
+        }
+
+        long version = productIndexService.nextVersion();
+        List<Product> products = productSearchService.loadProductsForIndexing(failedIds);
+        Set<Long> stillFailed = new HashSet<>();
+        List<ProductDocument> documents = readOnlyTx.execute(status -> {
+            List<ProductDocument> converted = new ArrayList<>();
+            for (Product product : products) {
+                try {
+                    ProductDocument document = productSearchService.convertToDocument(product);
+                    document.setVersion(version);
+                    converted.add(document);
+                } catch (Exception e) {
+                    log.error("Error converting product ID {} again: {}", product.getId(), e.getMessage());
+                    stillFailed.add(product.getId());
+                }
+            }
+            return converted;
+        });
+        if (documents != null && !documents.isEmpty()) {
+            productIndexService.bulkIndex(run.targetIndex, documents);
+            run.indexedProducts.addAndGet(documents.size());
+        }
+
+        if (!stillFailed.isEmpty()) {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                    stillFailed.forEach(searchIndexOutboxService::enqueueProduct));
+            log.warn("{} products still fail to convert, queued in the search index outbox: {}", stillFailed.size(), stillFailed);
+        }
+        run.failedProducts.set(stillFailed.size());
+    }
+
+    private Set<Long> loadFailedIds() {
+        Set<Long> ids = new HashSet<>();
+        try {
+            Set<Object> members = redisTemplate.opsForSet().members(FAILED_IDS_KEY);
+            if (members != null) {
+                for (Object member : members) {
+                    ids.add(member instanceof Number number ? number.longValue() : Long.parseLong(member.toString()));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Cannot read failed reindex products from Redis: {}", e.getMessage());
+        }
+        return ids;
+    }
+
+    /**
+     * Lần chạy lỗi: dữ liệu ghi vào index đích có thể đã thiếu cập nhật nên không chạy tiếp từ checkpoint,
+     * gỡ index khỏi alias ghi và xoá để các cập nhật trực tiếp không phải ghi hai lần nữa.
+     */
+    private void abandon(ReindexRun run) {
+        discardTarget(run.targetIndex);
+        clearCheckpoint();
+    }
+
+    private void discardTarget(String indexName) {
+        try {
+            productIndexService.discardIndex(indexName);
+        } catch (Exception e) {
+            log.warn("Cannot discard product index {}: {}", indexName, e.getMessage());
+        }
+    }
+
+    private ThreadFactory workerThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "product-reindex-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private long loadCheckpoint() {
+        try {
+            Object value = redisTemplate.opsForValue().get(CHECKPOINT_KEY);
+            if (value instanceof Number number) {
+                return number.longValue();
+            }
+            return value != null ? Long.parseLong(value.toString()) : 0L;
+        } catch (Exception e) {
+            log.warn("Cannot read reindex checkpoint from Redis: {}", e.getMessage());
+            return 0L;
+        }
+    }
+
+    private void saveCheckpoint(long lastId) {
+        try {
+            redisTemplate.opsForValue().set(CHECKPOINT_KEY, lastId);
+        } catch (Exception e) {
+            log.warn("Cannot save reindex checkpoint to Redis: {}", e.getMessage());
+        }
+    }
+
+    private String loadTargetIndex() {
+        try {
+            Object value = redisTemplate.opsForValue().get(TARGET_INDEX_KEY);
+            return value != null ? value.toString() : null;
+        } catch (Exception e) {
+            log.warn("Cannot read reindex target index from Redis: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void saveTargetIndex(String targetIndex) {
+        try {
+            redisTemplate.opsForValue().set(TARGET_INDEX_KEY, targetIndex);
+        } catch (Exception e) {
+            log.warn("Cannot save reindex target index to Redis: {}", e.getMessage());
+        }
+    }
+
+    private void clearCheckpoint() {
+        try {
+            redisTemplate.delete(List.of(CHECKPOINT_KEY, TARGET_INDEX_KEY, FAILED_IDS_KEY));
+        } catch (Exception e) {
+            log.warn("Cannot clear reindex checkpoint in Redis: {}", e.getMessage());
+        }
+    }
+
+    private ReindexStatusResponse toResponse(ReindexRun run) {
+        double elapsed = run.elapsedSeconds();
+        long indexed = run.indexedProducts.get();
+        return ReindexStatusResponse.builder()
+                .status(run.status)
+                .resumed(run.resumed)
+                .targetIndex(run.targetIndex)
+                .startedAt(run.startedAt)
+                .finishedAt(run.finishedAt)
+                .lastCheckpointId(run.checkpointId)
+                .totalProducts(run.total)
+                .indexedProducts(indexed)
+                .failedProducts(run.failedProducts.get())
+                .inFlightChunks(maxInFlightChunks - run.inFlight.availablePermits())
+                .productsPerSecond(elapsed > 0 ? indexed / elapsed : 0.0)
+                .progressPercent(run.total > 0 ? Math.min(100.0, (indexed + run.failedProducts.get()) * 100.0 / run.total) : 0.0)
+                .lastError(run.lastError)
+                .build();
+    }
+
+    /**
+     * Trạng thái của một lần reindex. Chunk có thể hoàn thành không theo thứ tự,
+     * checkpoint chỉ tiến tới id cuối của dãy chunk liên tiếp đã xong; sản phẩm convert lỗi trong chunk nằm ở failedIds.
+     */
+    private static class ReindexRun {
+        private final boolean resumed;
+        private final long startAfterId;
+        private final String targetIndex;
+        private final String abandonedIndex;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final long startedNanos = System.nanoTime();
+        private final Semaphore inFlight;
+        private final AtomicLong indexedProducts = new AtomicLong();
+        private final AtomicLong failedProducts = new AtomicLong();
+        private final Set<Long> failedIds = ConcurrentHashMap.newKeySet();
+        private final AtomicBoolean aborted = new AtomicBoolean(false);
+        private final TreeMap<Long, Long> completedChunks = new TreeMap<>();
+        private long nextSeqToCommit = 0;
+
+        private volatile String status = "RUNNING";
+        private volatile long total;
+        private volatile long checkpointId;
+        private volatile LocalDateTime finishedAt;
+        private volatile String lastError;
+
+        private ReindexRun(boolean resumed, long startAfterId, String targetIndex, String abandonedIndex,
+                           int maxInFlightChunks) {
+            this.resumed = resumed;
+            this.startAfterId = startAfterId;
+            this.targetIndex = targetIndex;
+            this.abandonedIndex = abandonedIndex;
+            this.checkpointId = startAfterId;
+            this.inFlight = new Semaphore(maxInFlightChunks);
+        }
+
+        private synchronized void completeChunk(long seq, long lastId, LongConsumer checkpointWriter) {
+            completedChunks.put(seq, lastId);
+            Long committed = null;
+            while (completedChunks.containsKey(nextSeqToCommit)) {
+                committed = completedChunks.remove(nextSeqToCommit);
+                nextSeqToCommit++;
+            }
+            if (committed != null) {
+                checkpointId = committed;
+                checkpointWriter.accept(committed);
+            }
+        }
+
+        private double elapsedSeconds() {
+            return (System.nanoTime() - startedNanos) / 1_000_000_000.0;
+        }
+    }
+}
@@ -1,42 +1,85 @@
 package iuh.fit.ecommerce.services.impl;
 
 import co.elastic.clients.elasticsearch._types.FieldSort;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.aggregations.FilterAggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.HistogramBucket;
+import co.elastic.clients.elasticsearch._types.aggregations.LongTermsBucket;
+import co.elastic.clients.elasticsearch._types.aggregations.StringTermsBucket;
+import co.elastic.clients.elasticsearch._types.mapping.FieldType;
 import co.elastic.clients.elasticsearch._types.SortOptions;
 import co.elastic.clients.elasticsearch._types.SortOrder;
 import iuh.fit.ecommerce.dtos.response.base.ResponseWithPagination;
+import iuh.fit.ecommerce.dtos.response.product.FacetBucketResponse;
+import iuh.fit.ecommerce.dtos.response.product.PriceBucketResponse;
+import iuh.fit.ecommerce.dtos.response.product.ProductFacetedSearchResponse;
+import iuh.fit.ecommerce.dtos.response.product.ProductFacetsResponse;
 import iuh.fit.ecommerce.dtos.response.product.ProductResponse;
+import iuh.fit.ecommerce.dtos.response.product.ProductVariantResponse;
+import iuh.fit.ecommerce.dtos.response.product.ProductVariantValueResponse;
+import iuh.fit.ecommerce.dtos.response.product.VariantPriceResponse;
+import iuh.fit.ecommerce.dtos.response.variant.VariantValueResponse;
+import iuh.fit.ecommerce.entities.FilterCriteria;
+import iuh.fit.ecommerce.exceptions.custom.InvalidParamException;
 import iuh.fit.ecommerce.entities.Product;
 import iuh.fit.ecommerce.entities.ProductImage;
 import iuh.fit.ecommerce.entities.ProductVariant;
+import iuh.fit.ecommerce.entities.VariantValue;
 import iuh.fit.ecommerce.entities.elasticsearch.ProductDocument;
+import iuh.fit.ecommerce.entities.elasticsearch.ProductFilterValueDocument;
+import iuh.fit.ecommerce.entities.elasticsearch.ProductVariantDocument;
+import iuh.fit.ecommerce.entities.elasticsearch.ProductVariantValueDocument;
 import iuh.fit.ecommerce.mappers.ProductMapper;
 import iuh.fit.ecommerce.repositories.ProductRepository;
-import iuh.fit.ecommerce.repositories.elasticsearch.ProductSearchRepository;
+import iuh.fit.ecommerce.repositories.ProductVariantRepository;
+import iuh.fit.ecommerce.services.AutocompleteService;
+import iuh.fit.ecommerce.services.PricingService;
+import iuh.fit.ecommerce.services.ProductIndexService;
 import iuh.fit.ecommerce.services.ProductSearchService;
 import iuh.fit.ecommerce.services.PromotionService;
+import iuh.fit.ecommerce.services.SearchIndexOutboxService;
+import iuh.fit.ecommerce.utils.CursorUtils;
+import iuh.fit.ecommerce.utils.StringUtils;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchAggregations;
 import org.springframework.data.elasticsearch.client.elc.NativeQuery;
 import org.springframework.data.elasticsearch.client.elc.NativeQueryBuilder;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
 import org.springframework.data.elasticsearch.core.SearchHit;
 import org.springframework.data.elasticsearch.core.SearchHits;
-import org.springframework.data.elasticsearch.core.query.Criteria;
-import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
-import org.springframework.data.elasticsearch.core.query.Query;
-import co.elastic.clients.elasticsearch._types.query_dsl.TextQueryType;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.Query.PointInTime;
+import co.elastic.clients.elasticsearch._types.query_dsl.FieldValueFactorModifier;
+import co.elastic.clients.elasticsearch._types.query_dsl.FunctionBoostMode;
+import co.elastic.clients.elasticsearch._types.query_dsl.FunctionScoreMode;
 import co.elastic.clients.elasticsearch._types.query_dsl.Operator;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch._types.query_dsl.TextQueryType;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Service
@@ -44,19 +87,49 @@ import java.util.stream.Collectors;
 public class ProductSearchServiceImpl implements ProductSearchService {
     
     private static final Logger logger = LoggerFactory.getLogger(ProductSearchServiceImpl.class);
+
+    private static final String FACET_BRANDS = "brands";
+    private static final String FACET_CATEGORIES = "categories";
+    private static final String FACET_PRICES = "prices";
+    private static final String FACET_IN_STOCK = "inStock";
+    private static final String FACET_FILTER_VALUES = "filterValues";
+    private static final String FACET_VALUES = "values";
+    // Lọc, đếm và sắp xếp theo giá khách thực trả (đã áp khuyến mãi), không theo giá niêm yết minPrice
+    private static final String PRICE_FIELD = "effectivePrice";
+    // PIT được gia hạn mỗi lần client lấy trang tiếp theo
+    private static final Duration POINT_IN_TIME_KEEP_ALIVE = Duration.ofMinutes(2);
+    private static final Duration STALE_ENQUEUE_INTERVAL = Duration.ofSeconds(30);
+    private static final Duration FILTER_VALUES_MAPPING_CHECK_INTERVAL = Duration.ofMinutes(1);
+    private static final Query IN_STOCK_QUERY = Query.of(q -> q
+            .range(r -> r.number(n -> n.field("stock").gt(0.0))));
     
-    private final ProductSearchRepository productSearchRepository;
+    private final ProductIndexService productIndexService;
     private final ProductRepository productRepository;
+    private final ProductVariantRepository productVariantRepository;
     private final ProductMapper productMapper;
     private final ElasticsearchOperations elasticsearchOperations;
     private final PromotionService promotionService;
+    private final PricingService pricingService;
+    private final AutocompleteService autocompleteService;
+    // Outbox phụ thuộc ngược vào service này nên lấy lúc dùng để không tạo vòng phụ thuộc
+    private final ObjectProvider<SearchIndexOutboxService> searchIndexOutboxService;
+    private final PlatformTransactionManager transactionManager;
+
+    private final Map<Long, Long> recentlyEnqueued = new ConcurrentHashMap<>();
+    private volatile Boolean filterValuesNested;
+    private volatile long filterValuesCheckedAt;
+
+    @Value("${search.facets.price-interval:1000000}")
+    private double priceInterval;
 
     @Override
+    @Transactional(readOnly = true)
     public ResponseWithPagination<List<ProductResponse>> searchProducts(
             String query,
             int page,
             int size,
-            String sortBy
+            String sortBy,
+            String cursor
     ) {
         try {
             page = Math.max(page - 1, 0);
@@ -74,7 +147,8 @@ public class ProductSearchServiceImpl implements ProductSearchService {
                     case "price_asc":
                         sortOptionsList.add(SortOptions.of(s -> s
                                 .field(FieldSort.of(f -> f
-                                        .field("minPrice")
+                                        .field(PRICE_FIELD)
+                                        .unmappedType(FieldType.Double)
                                         .order(SortOrder.Asc)
                                 ))
                         ));
@@ -82,7 +156,8 @@ public class ProductSearchServiceImpl implements ProductSearchService {
                     case "price_desc":
                         sortOptionsList.add(SortOptions.of(s -> s
                                 .field(FieldSort.of(f -> f
-                                        .field("minPrice")
+                                        .field(PRICE_FIELD)
+                                        .unmappedType(FieldType.Double)
                                         .order(SortOrder.Desc)
                                 ))
                         ));
@@ -135,172 +210,68 @@ public class ProductSearchServiceImpl implements ProductSearchService {
                         ))
                 ));
             }
+            // Tiebreak cố định để thứ tự ổn định giữa các trang
+            sortOptionsList.add(fieldSort("productId", SortOrder.Desc));
 
             // -----------------------------
             // Build Native Query
             // -----------------------------
             NativeQueryBuilder queryBuilder = NativeQuery.builder()
-                    .withPageable(PageRequest.of(page, size))
-                    .withQuery(q -> q
-                            .bool(b -> {
-                                // status = true
-                                b.must(m -> m
-                                        .term(t -> t
-                                                .field("status")
-                                                .value(true)
-                                        )
-                                );
-
-                                // search user query
-                                if (hasQuery) {
-                                    String cleaned = query.trim().replaceAll("[\"*?/\\\\<>]", " ");
-                                    
-                                    // Sử dụng should với nhiều loại query để tăng độ chính xác
-                                    b.should(s -> s
-                                            // Exact phrase match - ưu tiên cao nhất
-                                            .matchPhrase(mp -> mp
-                                                    .field("name")
-                                                    .query(cleaned)
-                                                    .boost(10.0f)
-                                            )
-                                    );
-                                    
-                                    b.should(s -> s
-                                            // Prefix match trên name - ưu tiên cao
-                                            .prefix(p -> p
-                                                    .field("name")
-                                                    .value(cleaned.toLowerCase())
-                                                    .boost(8.0f)
-                                            )
-                                    );
-                                    
-                                    b.should(s -> s
-                                            // Multi-match với boost cho name
-                                            .multiMatch(mm -> mm
-                                                    .query(cleaned)
-                                                    .fields("name^5", "description^2", "searchableText^1")
-                                                    .type(TextQueryType.BestFields)
-                                                    .operator(Operator.Or)
-                                                    .fuzziness("AUTO")
-                                                    .minimumShouldMatch("50%")
-                                                    .boost(5.0f)
-                                            )
-                                    );
-                                    
-                                    // Match tất cả các từ trong query
-                                    String[] words = cleaned.split("\\s+");
-                                    if (words.length > 1) {
-                                        b.should(s -> s
-                                                .multiMatch(mm -> mm
-                                                        .query(cleaned)
-                                                        .fields("name^3", "description^1", "searchableText^1")
-                                                        .type(TextQueryType.CrossFields)
-                                                        .operator(Operator.And)
-                                                        .boost(3.0f)
-                                                )
-                                        );
-                                    }
-                                    
-                                    // Minimum should match: ít nhất 1 should clause phải match
-                                    b.minimumShouldMatch("1");
-                                }
-
-                                return b;
-                            })
-                    );
+                    .withQuery(hasQuery ? buildRelevanceQuery(query) : Query.of(q -> q
+                            .bool(b -> b.filter(f -> f.term(t -> t.field("status").value(true))))));
             
             // Thêm sort options vào query builder
             if (!sortOptionsList.isEmpty()) {
                 queryBuilder.withSort(sortOptionsList);
             }
 
-            NativeQuery searchQuery = queryBuilder.build();
-
-            logger.debug("Executing Elasticsearch query: {}", searchQuery.getQuery());
             logger.debug("Sort options count: {}", sortOptionsList.size());
 
             // -----------------------------
             // Execute
             // -----------------------------
-            SearchHits<ProductDocument> searchHits =
-                    elasticsearchOperations.search(searchQuery, ProductDocument.class);
+            CursorPage result = executePaged(queryBuilder, page, size, cursor);
+            SearchHits<ProductDocument> searchHits = result.hits();
 
-            List<Long> productIds = searchHits
+            List<ProductDocument> documents = searchHits
                     .getSearchHits()
                     .stream()
-                    .map(hit -> hit.getContent().getProductId())
-                    .filter(Objects::nonNull)
-                    .distinct()
+                    .map(SearchHit::getContent)
+                    .filter(doc -> doc.getProductId() != null)
                     .collect(Collectors.toList());
 
-            logger.debug("Found {} product IDs from Elasticsearch", productIds.size());
+            logger.debug("Found {} products from Elasticsearch", documents.size());
 
-            if (productIds.isEmpty()) {
+            if (documents.isEmpty()) {
                 return ResponseWithPagination.<List<ProductResponse>>builder()
                         .data(new ArrayList<>())
                         .page(page + 1)
                         .limit(size)
                         .totalItem(0)
                         .totalPage(0)
+                        .nextCursor(result.nextCursor())
                         .build();
             }
 
             // -----------------------------
-            // Lấy dữ liệu từ DB (giữ nguyên thứ tự từ Elasticsearch)
+            // Dựng response từ _source, chỉ đọc DB cho các document đã cũ (giữ nguyên thứ tự từ Elasticsearch)
             // -----------------------------
-            List<Product> found = productRepository.findAllById(productIds);
-
-            Map<Long, Product> map = found.stream()
-                    .filter(p -> p.getStatus() != null && p.getStatus())
-                    .collect(Collectors.toMap(Product::getId, p -> p, (p1, p2) -> p1));
-
-            // Giữ nguyên thứ tự từ Elasticsearch
-            List<Product> ordered = new ArrayList<>();
-            for (Long id : productIds) {
-                Product product = map.get(id);
-                if (product != null) {
-                    ordered.add(product);
-                }
-            }
-
-            // Nếu có query và không có sortBy cụ thể, sắp xếp lại theo relevance
-            if (hasQuery && !hasCustomSort && ordered.size() > 1) {
-                String searchText = query.trim().toLowerCase();
-                String[] queryWords = searchText.split("\\s+");
-                
-                ordered.sort((p1, p2) -> {
-                    String name1 = (p1.getName() != null ? p1.getName() : "").toLowerCase();
-                    String name2 = (p2.getName() != null ? p2.getName() : "").toLowerCase();
-                    
-                    int score1 = calculateRelevanceScore(name1, searchText, queryWords);
-                    int score2 = calculateRelevanceScore(name2, searchText, queryWords);
-                    
-                    int compare = Integer.compare(score2, score1);
-                    if (compare == 0) {
-                        // Nếu relevance bằng nhau, sắp xếp theo rating
-                        Double rating1 = p1.getRating() != null ? p1.getRating() : 0.0;
-                        Double rating2 = p2.getRating() != null ? p2.getRating() : 0.0;
-                        return Double.compare(rating2, rating1);
-                    }
-                    return compare;
-                });
-            }
-
-            List<ProductResponse> productResponses = ordered.stream()
-                    .map(promotionService::addPromotionToProductResponseByProduct)
-                    .collect(Collectors.toList());
+            List<ProductResponse> ordered = buildResponsesFromDocuments(documents);
 
             long totalItem = searchHits.getTotalHits();
             int totalPages = (int) Math.ceil((double) totalItem / size);
 
             return ResponseWithPagination.<List<ProductResponse>>builder()
-                    .data(productResponses)
+                    .data(ordered)
                     .page(page + 1)
                     .limit(size)
                     .totalItem(totalItem)
                     .totalPage(totalPages)
+                    .nextCursor(result.nextCursor())
                     .build();
 
+        } catch (InvalidParamException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Search failed: {}", e.getMessage(), e);
             throw new RuntimeException("Elasticsearch search failed: " + e.getMessage(), e);
@@ -308,117 +279,38 @@ public class ProductSearchServiceImpl implements ProductSearchService {
     }
 
 
+    @Override
+    @Transactional(readOnly = true)
+    public ResponseWithPagination<List<ProductResponse>> searchByFilters(
+            String categorySlug,
+            int page,
+            int size,
+            Map<String, String> filters
+    ) {
+        return executeFilteredSearch(categorySlug, page, size, filters, false).getProducts();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ProductFacetedSearchResponse searchWithFacets(
+            String categorySlug,
+            int page,
+            int size,
+            Map<String, String> filters
+    ) {
+        return executeFilteredSearch(categorySlug, page, size, filters, true);
+    }
+
     @Override
     public List<String> getAutoCompleteSuggestions(String query, int limit) {
-        try {
-            if (query == null || query.trim().isEmpty()) {
-                return new ArrayList<>();
-            }
-            
-            String searchText = query.trim().toLowerCase();
-            limit = Math.min(Math.max(limit, 1), 10); // Limit between 1-10
-            
-            // Tìm products có name chứa query (toàn bộ hoặc một phần)
-            // Sử dụng wildcard để tìm các tên bắt đầu với query
-            Criteria criteria = new Criteria("status").is(true)
-                .and(
-                    new Criteria("name").matches(searchText)
-                        .or(new Criteria("name").matches(searchText + "*"))
-                );
-            
-            Pageable pageable = PageRequest.of(0, limit * 3); // Lấy nhiều hơn để filter và sắp xếp sau
-            Query searchQuery = new CriteriaQuery(criteria)
-                .setPageable(pageable)
-                .addSort(Sort.by("rating").descending());
-            
-            SearchHits<ProductDocument> searchHits = elasticsearchOperations.search(
-                searchQuery, 
-                ProductDocument.class
-            );
-            
-            // Phân loại suggestions theo độ khớp:
-            // 1. Bắt đầu với toàn bộ query (exact prefix match) - ưu tiên cao nhất
-            // 2. Chứa toàn bộ query như một cụm từ (phrase match) - ưu tiên cao
-            // 3. Chứa tất cả các từ trong query (all words match) - ưu tiên trung bình
-            // 4. Chứa một phần query - ưu tiên thấp
-            List<String> exactStartsWith = new ArrayList<>(); // Bắt đầu với toàn bộ query
-            List<String> phraseContains = new ArrayList<>(); // Chứa toàn bộ query như cụm từ
-            List<String> allWordsMatch = new ArrayList<>(); // Chứa tất cả các từ
-            List<String> partialMatch = new ArrayList<>(); // Chứa một phần
-            
-            String[] queryWords = searchText.split("\\s+");
-            
-            for (SearchHit<ProductDocument> hit : searchHits.getSearchHits()) {
-                String name = hit.getContent().getName();
-                if (name == null || name.isEmpty()) {
-                    continue;
-                }
-                
-                String lowerName = name.toLowerCase();
-                
-                // Kiểm tra độ khớp và phân loại
-                if (lowerName.startsWith(searchText)) {
-                    // Bắt đầu với toàn bộ query - ưu tiên cao nhất
-                    if (!exactStartsWith.contains(name)) {
-                        exactStartsWith.add(name);
-                    }
-                } else if (lowerName.contains(searchText)) {
-                    // Chứa toàn bộ query như một cụm từ - ưu tiên cao
-                    if (!phraseContains.contains(name)) {
-                        phraseContains.add(name);
-                    }
-                } else {
-                    // Kiểm tra xem có chứa tất cả các từ không
-                    boolean containsAllWords = true;
-                    for (String word : queryWords) {
-                        if (!lowerName.contains(word)) {
-                            containsAllWords = false;
-                            break;
-                        }
-                    }
-                    
-                    if (containsAllWords) {
-                        // Chứa tất cả các từ - ưu tiên trung bình
-                        if (!allWordsMatch.contains(name)) {
-                            allWordsMatch.add(name);
-                        }
-                    } else {
-                        // Chỉ chứa một phần - ưu tiên thấp
-                        boolean hasAnyWord = false;
-                        for (String word : queryWords) {
-                            if (lowerName.contains(word)) {
-                                hasAnyWord = true;
-                                break;
-                            }
-                        }
-                        if (hasAnyWord && !partialMatch.contains(name)) {
-                            partialMatch.add(name);
-                        }
-                    }
-                }
-            }
-            
-            // Kết hợp theo thứ tự ưu tiên
-            List<String> suggestions = new ArrayList<>();
-            suggestions.addAll(exactStartsWith);
-            suggestions.addAll(phraseContains);
-            suggestions.addAll(allWordsMatch);
-            suggestions.addAll(partialMatch);
-            
-            return suggestions.stream()
-                .distinct()
-                .limit(limit)
-                .collect(Collectors.toList());
-                
-        } catch (Exception e) {
-            logger.error("Error getting auto complete suggestions: {}", e.getMessage(), e);
-            return new ArrayList<>();
-        }
+        return autocompleteService.suggest(query, limit);
     }
     
     @Override
     @Transactional
     public void indexProduct(Product product) {
+        // Version ngoài của document: lấy từ bộ đếm DB trước khi đọc
+        long version = productIndexService.nextVersion();
         // Reload product with all relationships
         Product fullProduct = productRepository.findById(product.getId())
             .orElse(product);
@@ -454,105 +346,601 @@ public class ProductSearchServiceImpl implements ProductSearchService {
         }
         
         ProductDocument document = convertToDocument(fullProduct);
-        productSearchRepository.save(document);
+        document.setVersion(version);
+        productIndexService.save(document);
     }
 
     @Override
-    public void deleteProduct(Long productId) {
-        productSearchRepository.deleteById(String.valueOf(productId));
+    @Transactional(readOnly = true)
+    public List<Product> loadProductsForIndexing(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Product> products = productRepository.findAllWithVariantsByIdIn(productIds);
+        productRepository.fetchAttributesByIdIn(productIds);
+        productRepository.fetchFilterValuesByIdIn(productIds);
+        productRepository.fetchImagesByIdIn(productIds);
+        productVariantRepository.fetchVariantValuesByProductIdIn(productIds);
+        return products;
     }
 
     @Override
-    @Transactional
-    public void reindexAllProducts() {
-        // Delete all existing documents
+    public void deleteProduct(Long productId) {
+        productIndexService.delete(productId, productIndexService.nextVersion());
+    }
+
+    /**
+     * Dựng ProductResponse trực tiếp từ ProductDocument.
+     * Document thiếu variants hoặc có khoá giá khác với khoá tính từ chỉ mục promotion hiện tại được coi là cũ:
+     * chỉ những sản phẩm đó mới được đọc lại từ DB để trả về, còn việc index lại được đưa vào outbox
+     * (search chạy trong transaction chỉ đọc, không ghi Elasticsearch trên đường đọc).
+     * Thay đổi một promotion chỉ làm cũ các sản phẩm mà nó thực sự áp dụng.
+     */
+    private List<ProductResponse> buildResponsesFromDocuments(List<ProductDocument> documents) {
+        Map<Long, ProductResponse> responses = new HashMap<>();
+        List<Long> staleIds = new ArrayList<>();
+        for (ProductDocument document : documents) {
+            if (isFresh(document)) {
+                responses.putIfAbsent(document.getProductId(), toProductResponse(document));
+            } else {
+                staleIds.add(document.getProductId());
+            }
+        }
+
+        if (!staleIds.isEmpty()) {
+            logger.debug("Re-hydrating {} stale product documents from DB", staleIds.size());
+            List<Product> active = loadProductsForIndexing(staleIds).stream()
+                    .filter(product -> product.getStatus() != null && product.getStatus())
+                    .collect(Collectors.toList());
+            for (ProductResponse response : pricingService.toPricedResponses(active)) {
+                responses.put(response.getId(), response);
+            }
+            enqueueStale(staleIds);
+        }
+
+        return documents.stream()
+                .map(ProductDocument::getProductId)
+                .distinct()
+                .map(responses::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    // Transaction riêng vì search đang ở transaction chỉ đọc; sản phẩm vừa đưa vào outbox thì bỏ qua một lúc
+    private void enqueueStale(List<Long> staleIds) {
+        long now = System.currentTimeMillis();
+        recentlyEnqueued.values().removeIf(enqueuedAt -> now - enqueuedAt > STALE_ENQUEUE_INTERVAL.toMillis());
+        List<Long> productIds = staleIds.stream()
+                .distinct()
+                .filter(id -> recentlyEnqueued.putIfAbsent(id, now) == null)
+                .toList();
+        if (productIds.isEmpty()) {
+            return;
+        }
         try {
-            productSearchRepository.deleteAll();
+            TransactionTemplate tx = new TransactionTemplate(transactionManager);
+            tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            tx.executeWithoutResult(status -> productIds.forEach(searchIndexOutboxService.getObject()::enqueueProduct));
         } catch (Exception e) {
-            // Ignore if index doesn't exist yet
+            productIds.forEach(recentlyEnqueued::remove);
+            logger.warn("Cannot queue {} stale products for reindexing: {}", productIds.size(), e.getMessage());
         }
-        // Index all products - load with all relationships
-        List<Product> products = productRepository.findAll();
-        List<ProductDocument> documents = new ArrayList<>();
-        
-        for (Product product : products) {
+    }
+
+    private boolean isFresh(ProductDocument document) {
+        if (document.getVariants() == null || document.getPricingKey() == null) {
+            return false;
+        }
+        List<Long> variantIds = document.getVariants().stream().map(ProductVariantDocument::getId).toList();
+        return document.getPricingKey().equals(promotionService.getPricingKey(
+                variantIds, document.getProductId(), document.getCategoryId(), document.getBrandId()));
+    }
+
+    private ProductResponse toProductResponse(ProductDocument document) {
+        List<ProductVariantResponse> variants = document.getVariants().stream()
+                .map(variant -> ProductVariantResponse.builder()
+                        .id(variant.getId())
+                        .sku(variant.getSku())
+                        .price(variant.getPrice())
+                        .oldPrice(variant.getOldPrice())
+                        .discount(variant.getDiscount())
+                        .stock(variant.getStock())
+                        .productVariantValues(variant.getProductVariantValues() == null ? new ArrayList<>() :
+                                variant.getProductVariantValues().stream()
+                                        .map(value -> ProductVariantValueResponse.builder()
+                                                .id(value.getId())
+                                                .variantValue(VariantValueResponse.builder()
+                                                        .id(value.getVariantValueId())
+                                                        .value(value.getValue())
+                                                        .slug(value.getSlug())
+                                                        .status(true)
+                                                        .variantId(value.getVariantId())
+                                                        .variantName(value.getVariantName())
+                                                        .build())
+                                                .build())
+                                        .collect(Collectors.toList()))
+                        .build())
+                .collect(Collectors.toList());
+
+        return ProductResponse.builder()
+                .id(document.getProductId())
+                .name(document.getName())
+                .slug(document.getSlug())
+                .stock(document.getStock())
+                .description(document.getDescription())
+                .thumbnail(document.getThumbnail())
+                .status(Boolean.TRUE.equals(document.getStatus()))
+                .rating(document.getRating())
+                .spu(document.getSpu())
+                .brandId(document.getBrandId())
+                .categoryId(document.getCategoryId())
+                .productImages(document.getProductImages())
+                .variants(variants)
+                .build();
+    }
+
+    /**
+     * Query relevance cho search: các tín hiệu khớp cụm từ, khớp đầu tên, khớp đủ từ được cộng điểm ngay trong Elasticsearch
+     * (function_score), rating cộng thêm một lượng nhỏ để phân định các sản phẩm khớp như nhau.
+     * Điểm được tính trên toàn bộ kết quả nên thứ tự đúng qua mọi trang.
+     */
+    private Query buildRelevanceQuery(String query) {
+        String cleaned = query.trim().replaceAll("[\"*?/\\\\<>]", " ").trim();
+        String folded = StringUtils.foldForSearch(cleaned);
+        boolean multiWord = cleaned.split("\\s+").length > 1;
+
+        Query matchQuery = Query.of(q -> q
+                .bool(b -> {
+                    b.filter(f -> f.term(t -> t.field("status").value(true)));
+
+                    // Khớp nguyên cụm từ - ưu tiên cao nhất
+                    b.should(s -> s.matchPhrase(mp -> mp
+                            .field("name")
+                            .query(cleaned)
+                            .boost(10.0f)));
+
+                    // Tên bắt đầu bằng từ khoá (so khớp không dấu trên toàn bộ tên)
+                    if (!folded.isEmpty()) {
+                        b.should(s -> s.prefix(pf -> pf
+                                .field("name.prefix")
+                                .value(folded)
+                                .boost(8.0f)));
+                    }
+
+                    b.should(s -> s.multiMatch(mm -> mm
+                            .query(cleaned)
+                            .fields("name^5", "description^2", "searchableText^1")
+                            .type(TextQueryType.BestFields)
+                            .operator(Operator.Or)
+                            .fuzziness("AUTO")
+                            .minimumShouldMatch("50%")
+                            .boost(5.0f)));
+
+                    // Khớp đủ tất cả các từ
+                    if (multiWord) {
+                        b.should(s -> s.multiMatch(mm -> mm
+                                .query(cleaned)
+                                .fields("name^3", "description^1", "searchableText^1")
+                                .type(TextQueryType.CrossFields)
+                                .operator(Operator.And)
+                                .boost(3.0f)));
+                    }
+
+                    b.minimumShouldMatch("1");
+                    return b;
+                }));
+
+        return Query.of(q -> q
+                .functionScore(fs -> fs
+                        .query(matchQuery)
+                        .functions(fn -> fn
+                                .fieldValueFactor(fv -> fv
+                                        .field("rating")
+                                        .modifier(FieldValueFactorModifier.Log1p)
+                                        .factor(0.5)
+                                        .missing(0.0)))
+                        .scoreMode(FunctionScoreMode.Sum)
+                        .boostMode(FunctionBoostMode.Sum)));
+    }
+
+    /**
+     * Lọc sản phẩm theo danh mục/bộ lọc sidebar và (tuỳ chọn) đếm facet trong cùng một request Elasticsearch.
+     * Chỉ từ khoá nằm ở query chính; danh mục, brands, giá, tồn kho, filterValues nằm ở post_filter
+     * để mỗi facet được đếm với mọi bộ lọc trừ chính nó (chọn một brand vẫn thấy số lượng của brand khác,
+     * đang ở một danh mục vẫn thấy số lượng của các danh mục khác).
+     */
+    private ProductFacetedSearchResponse executeFilteredSearch(
+            String categorySlug,
+            int page,
+            int size,
+            Map<String, String> filters,
+            boolean includeFacets
+    ) {
+        try {
+            page = Math.max(page - 1, 0);
+            String keyword = filters.get("query");
+            boolean hasQuery = keyword != null && !keyword.isBlank();
+
+            Query baseQuery = hasQuery ? buildRelevanceQuery(keyword) : Query.of(q -> q
+                    .bool(b -> b.filter(f -> f.term(t -> t.field("status").value(true)))));
+            Map<String, Query> facetFilters = buildFacetFilters(filters);
+            if (categorySlug != null && !categorySlug.isBlank()) {
+                facetFilters.put(FACET_CATEGORIES, Query.of(q -> q
+                        .term(t -> t.field("categorySlug").value(categorySlug))));
+            }
+
+            NativeQueryBuilder queryBuilder = NativeQuery.builder()
+                    .withQuery(baseQuery)
+                    .withSort(buildListingSort(filters.get("sortBy"), hasQuery));
+            if (!facetFilters.isEmpty()) {
+                queryBuilder.withFilter(combineFilters(facetFilters, null));
+            }
+
+            double interval = parseDouble(filters.get("priceInterval"));
+            if (interval <= 0) {
+                interval = priceInterval;
+            }
+            if (includeFacets) {
+                addFacetAggregations(queryBuilder, facetFilters, interval);
+            }
+
+            // Có tham số cursor (kể cả rỗng ở trang đầu) thì phân trang bằng search_after
+            String cursor = filters.containsKey("cursor") ? filters.get("cursor") : null;
+            CursorPage result = executePaged(queryBuilder, page, size, cursor);
+            SearchHits<ProductDocument> searchHits = result.hits();
+
+            List<ProductDocument> documents = searchHits.getSearchHits().stream()
+                    .map(SearchHit::getContent)
+                    .filter(doc -> doc.getProductId() != null)
+                    .collect(Collectors.toList());
+
+            long totalItem = searchHits.getTotalHits();
+            ResponseWithPagination<List<ProductResponse>> products = ResponseWithPagination.<List<ProductResponse>>builder()
+                    .data(documents.isEmpty() ? new ArrayList<>() : buildResponsesFromDocuments(documents))
+                    .page(page + 1)
+                    .limit(size)
+                    .totalItem(totalItem)
+                    .totalPage((int) Math.ceil((double) totalItem / size))
+                    .nextCursor(result.nextCursor())
+                    .build();
+
+            return ProductFacetedSearchResponse.builder()
+                    .products(products)
+                    .facets(includeFacets ? readFacets(searchHits, interval) : null)
+                    .build();
+        } catch (InvalidParamException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Filtered search failed: {}", e.getMessage(), e);
+            throw new RuntimeException("Elasticsearch search failed: " + e.getMessage(), e);
+        }
+    }
+
+    private record CursorPage(SearchHits<ProductDocument> hits, String nextCursor) {}
+
+    /**
+     * Không có cursor: phân trang from/size như cũ.
+     * Có cursor: search_after trên point-in-time, trang sâu tốn như trang đầu. Cursor rỗng mở PIT mới,
+     * cursor trả về chứa PIT id và sort values của hit cuối; trang cuối đóng PIT và trả nextCursor null.
+     */
+    private CursorPage executePaged(NativeQueryBuilder queryBuilder, int page, int size, String cursor) {
+        if (cursor == null) {
+            queryBuilder.withPageable(PageRequest.of(page, size));
+            return new CursorPage(elasticsearchOperations.search(queryBuilder.build(), ProductDocument.class), null);
+        }
+
+        String pitId;
+        List<Object> searchAfter = null;
+        if (cursor.isBlank()) {
+            pitId = elasticsearchOperations.openPointInTime(
+                    IndexCoordinates.of(productIndexService.getLiveIndex()), POINT_IN_TIME_KEEP_ALIVE);
+        } else {
+            Map<String, Object> position = CursorUtils.decode(cursor);
+            if (!(position.get("pit") instanceof String id) || !(position.get("after") instanceof List<?> after)) {
+                throw new InvalidParamException("Invalid cursor");
+            }
+            pitId = id;
+            searchAfter = new ArrayList<>(after);
+        }
+
+        queryBuilder.withPageable(PageRequest.of(0, size))
+                .withPointInTime(new PointInTime(pitId, POINT_IN_TIME_KEEP_ALIVE));
+        if (searchAfter != null) {
+            queryBuilder.withSearchAfter(searchAfter);
+        }
+
+        SearchHits<ProductDocument> hits;
+        try {
+            hits = elasticsearchOperations.search(queryBuilder.build(), ProductDocument.class);
+        } catch (Exception e) {
+            if (searchAfter == null) {
+                throw e;
+            }
+            // PIT hết hạn (client dừng quá lâu giữa hai trang)
+            logger.warn("Cursor search failed: {}", e.getMessage());
+            throw new InvalidParamException("Cursor has expired, please reload from the first page");
+        }
+
+        String nextPitId = hits.getPointInTimeId() != null ? hits.getPointInTimeId() : pitId;
+        if (hits.getSearchHits().size() < size) {
+            closePointInTime(nextPitId);
+            return new CursorPage(hits, null);
+        }
+
+        Map<String, Object> next = new HashMap<>();
+        next.put("pit", nextPitId);
+        next.put("after", hits.getSearchHits().getLast().getSortValues());
+        return new CursorPage(hits, CursorUtils.encode(next));
+    }
+
+    private void closePointInTime(String pitId) {
+        try {
+            elasticsearchOperations.closePointInTime(pitId);
+        } catch (Exception e) {
+            // PIT sẽ tự hết hạn sau keep-alive
+            logger.debug("Cannot close point in time: {}", e.getMessage());
+        }
+    }
+
+    private Map<String, Query> buildFacetFilters(Map<String, String> filters) {
+        Map<String, Query> facetFilters = new LinkedHashMap<>();
+
+        List<FieldValue> brandSlugs = parseList(filters.get("brands")).stream()
+                .map(FieldValue::of)
+                .toList();
+        if (!brandSlugs.isEmpty()) {
+            facetFilters.put(FACET_BRANDS, Query.of(q -> q
+                    .terms(t -> t.field("brandSlug").terms(v -> v.value(brandSlugs)))));
+        }
+
+        Double priceMin = parseNullableDouble(filters.get("priceMin"));
+        Double priceMax = parseNullableDouble(filters.get("priceMax"));
+        if (priceMin != null || priceMax != null) {
+            facetFilters.put(FACET_PRICES, Query.of(q -> q
+                    .range(r -> r.number(n -> n.field(PRICE_FIELD).gte(priceMin).lte(priceMax)))));
+        }
+
+        if (Boolean.parseBoolean(filters.get("inStock"))) {
+            facetFilters.put(FACET_IN_STOCK, IN_STOCK_QUERY);
+        }
+
+        List<FieldValue> filterValueIds = new ArrayList<>();
+        for (String id : parseList(filters.get("filterValues"))) {
             try {
-                // Force load all lazy relationships by accessing them
-                if (product.getProductVariants() != null) {
-                    product.getProductVariants().forEach(variant -> {
-                        if (variant.getProductVariantValues() != null) {
-                            variant.getProductVariantValues().size(); // Force load
-                        }
-                    });
-                }
-                if (product.getAttributes() != null) {
-                    product.getAttributes().size(); // Force load
-                }
-                if (product.getProductFilterValues() != null) {
-                    product.getProductFilterValues().forEach(pfv -> {
-                        if (pfv.getFilterValue() != null) {
-                            pfv.getFilterValue().getValue();
-                        }
-                    });
-                }
-                if (product.getProductImages() != null) {
-                    product.getProductImages().size();
-                }
-                
-                ProductDocument document = convertToDocument(product);
-                documents.add(document);
-            } catch (Exception e) {
-                System.err.println("Error indexing product ID " + product.getId() + ": " + e.getMessage());
+                filterValueIds.add(FieldValue.of(Long.parseLong(id)));
+            } catch (NumberFormatException e) {
+                // Bỏ qua id không hợp lệ
             }
         }
-        
-        // Save in batches to avoid memory issues
-        if (!documents.isEmpty()) {
-            productSearchRepository.saveAll(documents);
+        if (!filterValueIds.isEmpty()) {
+            if (hasNestedFilterValues()) {
+                facetFilters.put(FACET_FILTER_VALUES, Query.of(q -> q
+                        .nested(n -> n
+                                .path("filterValueRefs")
+                                .ignoreUnmapped(true)
+                                .query(nq -> nq.terms(t -> t.field("filterValueRefs.id").terms(v -> v.value(filterValueIds)))))));
+            } else {
+                // Index chưa có filterValueRefs dạng nested: bỏ bộ lọc này và trả kết quả chưa lọc thay vì trang rỗng
+                logger.warn("Ignoring filterValues {} until the product index is rebuilt with nested filterValueRefs", filterValueIds.size());
+            }
         }
+
+        return facetFilters;
     }
-    
+
     /**
-     * Tính điểm khớp của text với query tìm kiếm
-     * Điểm càng cao = khớp càng tốt
+     * filterValueRefs chỉ là nested trên index tạo từ mapping hiện tại. Index tạo trước khi thêm trường này
+     * không có mapping (hoặc đã bị dynamic mapping thành object khi ghi document mới), query/aggregation nested
+     * trên đó sẽ lỗi. Sau khi deploy cần chạy reindex (POST /products/search/reindex) để tạo index mới với
+     * mapping nested và chuyển alias; trước đó facet filterValues bị bỏ qua. Kết quả kiểm tra được cache một phút.
      */
-    private int calculateRelevanceScore(String text, String fullQuery, String[] queryWords) {
-        if (text == null || text.isEmpty()) {
-            return 0;
+    private boolean hasNestedFilterValues() {
+        long now = System.currentTimeMillis();
+        Boolean nested = filterValuesNested;
+        if (nested != null && now - filterValuesCheckedAt < FILTER_VALUES_MAPPING_CHECK_INTERVAL.toMillis()) {
+            return nested;
         }
-        
-        int score = 0;
-        
-        // Ưu tiên cao nhất: text chứa đầy đủ cụm từ tìm kiếm (exact phrase match)
-        if (text.contains(fullQuery)) {
-            score += 1000;
+        try {
+            Map<String, Object> mapping = elasticsearchOperations
+                    .indexOps(IndexCoordinates.of(productIndexService.getLiveIndex()))
+                    .getMapping();
+            nested = mapping.get("properties") instanceof Map<?, ?> properties
+                    && properties.get("filterValueRefs") instanceof Map<?, ?> field
+                    && "nested".equals(field.get("type"));
+            if (!nested) {
+                logger.warn("Live product index has no nested filterValueRefs mapping, run a reindex to enable filter value facets");
+            }
+        } catch (Exception e) {
+            logger.warn("Cannot read product index mapping: {}", e.getMessage());
+            nested = false;
         }
-        
-        // Ưu tiên cao: text bắt đầu với query
-        if (text.startsWith(fullQuery)) {
-            score += 500;
+        filterValuesNested = nested;
+        filterValuesCheckedAt = now;
+        return nested;
+    }
+
+    private void addFacetAggregations(NativeQueryBuilder queryBuilder, Map<String, Query> facetFilters, double interval) {
+        queryBuilder.withAggregation(FACET_BRANDS, Aggregation.of(a -> a
+                .filter(combineFilters(facetFilters, FACET_BRANDS))
+                .aggregations(FACET_VALUES, labelledTerms("brandSlug", "brandName", 50))));
+
+        queryBuilder.withAggregation(FACET_CATEGORIES, Aggregation.of(a -> a
+                .filter(combineFilters(facetFilters, FACET_CATEGORIES))
+                .aggregations(FACET_VALUES, labelledTerms("categorySlug", "categoryName", 50))));
+
+        queryBuilder.withAggregation(FACET_PRICES, Aggregation.of(a -> a
+                .filter(combineFilters(facetFilters, FACET_PRICES))
+                .aggregations(FACET_VALUES, Aggregation.of(h -> h
+                        .histogram(hg -> hg.field(PRICE_FIELD).interval(interval).minDocCount(1))))
+                .aggregations("min", Aggregation.of(m -> m.min(mn -> mn.field(PRICE_FIELD))))
+                .aggregations("max", Aggregation.of(m -> m.max(mx -> mx.field(PRICE_FIELD))))));
+
+        Query othersWithStock = Query.of(q -> q.bool(b -> b
+                .filter(combineFilters(facetFilters, FACET_IN_STOCK))
+                .filter(IN_STOCK_QUERY)));
+        queryBuilder.withAggregation(FACET_IN_STOCK, Aggregation.of(a -> a.filter(othersWithStock)));
+
+        // Aggregation nested không có ignore_unmapped: index cũ chưa có mapping nested thì bỏ facet này
+        if (!hasNestedFilterValues()) {
+            return;
         }
-        
-        // Đếm số từ trong query có trong text
-        int matchedWords = 0;
-        for (String word : queryWords) {
-            if (text.contains(word)) {
-                matchedWords++;
-                // Ưu tiên các từ dài hơn
-                score += word.length() * 10;
+        queryBuilder.withAggregation(FACET_FILTER_VALUES, Aggregation.of(a -> a
+                .filter(combineFilters(facetFilters, FACET_FILTER_VALUES))
+                .aggregations(FACET_VALUES, Aggregation.of(n -> n
+                        .nested(nt -> nt.path("filterValueRefs"))
+                        .aggregations(FACET_VALUES, Aggregation.of(t -> t
+                                .terms(tm -> tm.field("filterValueRefs.id").size(200))
+                                .aggregations("label", Aggregation.of(l -> l
+                                        .terms(tm -> tm.field("filterValueRefs.value").size(1))))
+                                .aggregations("group", Aggregation.of(g -> g
+                                        .terms(tm -> tm.field("filterValueRefs.criteriaId").size(1))))
+                                .aggregations("groupName", Aggregation.of(g -> g
+                                        .terms(tm -> tm.field("filterValueRefs.criteriaName").size(1))))))))));
+    }
+
+    private ProductFacetsResponse readFacets(SearchHits<ProductDocument> searchHits, double interval) {
+        Map<String, Aggregate> aggregates = new HashMap<>();
+        if (searchHits.getAggregations() instanceof ElasticsearchAggregations aggregations) {
+            aggregations.aggregationsAsMap().forEach((name, aggregation) ->
+                    aggregates.put(name, aggregation.aggregation().getAggregate()));
+        }
+        if (aggregates.isEmpty()) {
+            return null;
+        }
+
+        List<PriceBucketResponse> prices = new ArrayList<>();
+        FilterAggregate priceFacet = aggregates.get(FACET_PRICES).filter();
+        for (HistogramBucket bucket : priceFacet.aggregations().get(FACET_VALUES).histogram().buckets().array()) {
+            prices.add(PriceBucketResponse.builder()
+                    .from(bucket.key())
+                    .to(bucket.key() + interval)
+                    .count(bucket.docCount())
+                    .build());
+        }
+
+        List<FacetBucketResponse> filterValues = new ArrayList<>();
+        List<LongTermsBucket> filterValueBuckets = aggregates.containsKey(FACET_FILTER_VALUES)
+                ? aggregates.get(FACET_FILTER_VALUES).filter()
+                        .aggregations().get(FACET_VALUES).nested()
+                        .aggregations().get(FACET_VALUES).lterms().buckets().array()
+                : List.of();
+        for (LongTermsBucket bucket : filterValueBuckets) {
+            List<LongTermsBucket> group = bucket.aggregations().get("group").lterms().buckets().array();
+            filterValues.add(FacetBucketResponse.builder()
+                    .key(String.valueOf(bucket.key()))
+                    .label(firstKey(bucket.aggregations().get("label")))
+                    .groupId(group.isEmpty() ? null : group.getFirst().key())
+                    .groupName(firstKey(bucket.aggregations().get("groupName")))
+                    .count(bucket.docCount())
+                    .build());
+        }
+
+        return ProductFacetsResponse.builder()
+                .brands(readLabelledTerms(aggregates.get(FACET_BRANDS)))
+                .categories(readLabelledTerms(aggregates.get(FACET_CATEGORIES)))
+                .filterValues(filterValues)
+                .prices(prices)
+                .priceMin(finiteOrNull(priceFacet.aggregations().get("min").min().value()))
+                .priceMax(finiteOrNull(priceFacet.aggregations().get("max").max().value()))
+                .inStockCount(aggregates.get(FACET_IN_STOCK).filter().docCount())
+                .build();
+    }
+
+    private List<FacetBucketResponse> readLabelledTerms(Aggregate facet) {
+        List<FacetBucketResponse> buckets = new ArrayList<>();
+        for (StringTermsBucket bucket : facet.filter().aggregations().get(FACET_VALUES).sterms().buckets().array()) {
+            buckets.add(FacetBucketResponse.builder()
+                    .key(bucket.key().stringValue())
+                    .label(firstKey(bucket.aggregations().get("label")))
+                    .count(bucket.docCount())
+                    .build());
+        }
+        return buckets;
+    }
+
+    private static Aggregation labelledTerms(String keyField, String labelField, int size) {
+        return Aggregation.of(a -> a
+                .terms(t -> t.field(keyField).size(size))
+                .aggregations("label", Aggregation.of(l -> l.terms(t -> t.field(labelField).size(1)))));
+    }
+
+    private static String firstKey(Aggregate aggregate) {
+        List<StringTermsBucket> buckets = aggregate.sterms().buckets().array();
+        return buckets.isEmpty() ? null : buckets.getFirst().key().stringValue();
+    }
+
+    private static Double finiteOrNull(Double value) {
+        return value == null || value.isNaN() || value.isInfinite() ? null : value;
+    }
+
+    /**
+     * Gộp các bộ lọc facet thành một bool filter, bỏ qua bộ lọc của facet đang đếm (excluded).
+     */
+    private static Query combineFilters(Map<String, Query> facetFilters, String excluded) {
+        return Query.of(q -> q.bool(b -> {
+            facetFilters.forEach((name, filter) -> {
+                if (!name.equals(excluded)) {
+                    b.filter(filter);
+                }
+            });
+            return b;
+        }));
+    }
+
+    private static List<SortOptions> buildListingSort(String sortBy, boolean hasQuery) {
+        List<SortOptions> sortOptions = new ArrayList<>();
+        switch (sortBy != null ? sortBy : "") {
+            case "price_asc" -> sortOptions.add(priceSort(SortOrder.Asc));
+            case "price_desc" -> sortOptions.add(priceSort(SortOrder.Desc));
+            case "rating_asc" -> sortOptions.add(fieldSort("rating", SortOrder.Asc));
+            case "rating_desc" -> sortOptions.add(fieldSort("rating", SortOrder.Desc));
+            default -> {
+                if (hasQuery) {
+                    sortOptions.add(SortOptions.of(s -> s.score(sc -> sc.order(SortOrder.Desc))));
+                }
             }
         }
-        
-        // Ưu tiên các text có nhiều từ khớp hơn
-        score += matchedWords * 50;
-        
-        // Ưu tiên các text có tỷ lệ từ khớp cao hơn
-        if (queryWords.length > 0) {
-            double matchRatio = (double) matchedWords / queryWords.length;
-            score += (int) (matchRatio * 100);
+        // Mặc định sản phẩm mới nhất trước, cũng là tiebreak để phân trang ổn định
+        sortOptions.add(fieldSort("productId", SortOrder.Desc));
+        return sortOptions;
+    }
+
+    private static SortOptions fieldSort(String field, SortOrder order) {
+        return SortOptions.of(s -> s.field(FieldSort.of(f -> f.field(field).order(order))));
+    }
+
+    // Index tạo trước khi có effectivePrice chưa có mapping, unmapped_type để sort không lỗi cho tới khi reindex
+    private static SortOptions priceSort(SortOrder order) {
+        return SortOptions.of(s -> s.field(FieldSort.of(f -> f
+                .field(PRICE_FIELD)
+                .unmappedType(FieldType.Double)
+                .order(order))));
+    }
+
+    private static List<String> parseList(String param) {
+        if (param == null || param.isBlank()) {
+            return List.of();
         }
-        
-        return score;
+        return Arrays.stream(param.split(","))
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .toList();
+    }
+
+    private static Double parseNullableDouble(String param) {
+        if (param == null || param.isBlank()) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(param.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static double parseDouble(String param) {
+        Double value = parseNullableDouble(param);
+        return value != null ? value : 0;
     }
     
     /**
@@ -569,7 +957,65 @@ public class ProductSearchServiceImpl implements ProductSearchService {
                 .orElse(null);
     }
     
-    private ProductDocument convertToDocument(Product product) {
+    /**
+     * Tính giá khuyến mãi cho từng variant để lưu kèm document (đã sắp xếp theo giá thấp nhất)
+     */
+    private List<ProductVariantDocument> buildVariantDocuments(Product product) {
+        List<ProductVariant> variants = product.getProductVariants();
+        if (variants == null || variants.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<Long, VariantPriceResponse> prices = pricingService.priceProducts(List.of(product));
+
+        return variants.stream()
+                .map(variant -> {
+                    VariantPriceResponse price = prices.get(variant.getId());
+
+                    List<ProductVariantValueDocument> values = new ArrayList<>();
+                    if (variant.getProductVariantValues() != null) {
+                        for (var pvv : variant.getProductVariantValues()) {
+                            VariantValue variantValue = pvv.getVariantValue();
+                            if (variantValue == null) {
+                                continue;
+                            }
+                            values.add(ProductVariantValueDocument.builder()
+                                    .id(pvv.getId())
+                                    .variantValueId(variantValue.getId())
+                                    .value(variantValue.getValue())
+                                    .slug(variantValue.getSlug())
+                                    .variantId(variantValue.getVariant() != null ? variantValue.getVariant().getId() : null)
+                                    .variantName(variantValue.getVariant() != null ? variantValue.getVariant().getName() : null)
+                                    .build());
+                        }
+                    }
+
+                    return ProductVariantDocument.builder()
+                            .id(variant.getId())
+                            .sku(variant.getSku())
+                            .price(price.getPrice())
+                            .oldPrice(price.getOldPrice())
+                            .discount(price.getDiscount())
+                            .stock(variant.getStock())
+                            .productVariantValues(values)
+                            .build();
+                })
+                .sorted(Comparator.comparing(ProductVariantDocument::getPrice,
+                        Comparator.nullsLast(Comparator.naturalOrder())))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public ProductDocument convertToDocument(Product product) {
+        // Tính khoá giá trước khi tính giá: promotion đổi xen giữa thì document mang khoá cũ và sẽ bị phát hiện là cũ
+        String pricingKey = promotionService.getPricingKey(
+                product.getProductVariants() != null
+                        ? product.getProductVariants().stream().map(ProductVariant::getId).toList()
+                        : List.of(),
+                product.getId(),
+                product.getCategory() != null ? product.getCategory().getId() : null,
+                product.getBrand() != null ? product.getBrand().getId() : null);
+        List<ProductVariantDocument> variantDocuments = buildVariantDocuments(product);
         // Calculate min and max prices from variants, and total stock
         Double minPrice = null;
         Double maxPrice = null;
@@ -640,10 +1086,18 @@ public class ProductSearchServiceImpl implements ProductSearchService {
 
         // Collect filter values
         List<String> filterValues = new ArrayList<>();
+        List<ProductFilterValueDocument> filterValueRefs = new ArrayList<>();
         if (product.getProductFilterValues() != null) {
             for (var pfv : product.getProductFilterValues()) {
                 if (pfv.getFilterValue() != null && pfv.getFilterValue().getValue() != null) {
                     filterValues.add(pfv.getFilterValue().getValue());
+                    FilterCriteria criteria = pfv.getFilterValue().getFilterCriteria();
+                    filterValueRefs.add(ProductFilterValueDocument.builder()
+                        .id(pfv.getFilterValue().getId())
+                        .value(pfv.getFilterValue().getValue())
+                        .criteriaId(criteria != null ? criteria.getId() : null)
+                        .criteriaName(criteria != null ? criteria.getName() : null)
+                        .build());
                 }
             }
         }
@@ -675,6 +1129,7 @@ public class ProductSearchServiceImpl implements ProductSearchService {
             .id(String.valueOf(product.getId()))
             .productId(product.getId())
             .name(product.getName())
+            .nameSuggest(product.getName())
             .slug(product.getSlug())
             .description(product.getDescription())
             .thumbnail(product.getThumbnail())
@@ -684,18 +1139,26 @@ public class ProductSearchServiceImpl implements ProductSearchService {
             .spu(product.getSpu())
             .brandId(product.getBrand() != null ? product.getBrand().getId() : null)
             .brandName(product.getBrand() != null ? product.getBrand().getName() : null)
+            .brandSlug(product.getBrand() != null ? product.getBrand().getSlug() : null)
             .categoryId(product.getCategory() != null ? product.getCategory().getId() : null)
             .categoryName(product.getCategory() != null ? product.getCategory().getName() : null)
             .categorySlug(product.getCategory() != null ? product.getCategory().getSlug() : null)
             .productImages(imageUrls)
             .minPrice(minPrice)
             .maxPrice(maxPrice)
+            // variantDocuments đã sắp theo giá khuyến mãi tăng dần, null ở cuối
+            .effectivePrice(variantDocuments.isEmpty() ? null : variantDocuments.getFirst().getPrice())
             .searchableText(searchableText)
             .variantSkus(variantSkus)
             .variantValues(variantValues)
             .attributeNames(attributeNames)
             .attributeValues(attributeValues)
             .filterValues(filterValues)
+            .filterValueRefs(filterValueRefs)
+            .variants(variantDocuments)
+            .pricingKey(pricingKey)
+            .pricedOn(LocalDate.now())
+            .indexedAt(System.currentTimeMillis())
             .build();
     }
 }
\ No newline at end of file
@@ -16,8 +16,8 @@ import iuh.fit.ecommerce.exceptions.custom.ResourceNotFoundException;
 import iuh.fit.ecommerce.mappers.ProductMapper;
 import iuh.fit.ecommerce.repositories.*;
 import iuh.fit.ecommerce.services.*;
-import iuh.fit.ecommerce.services.ProductSearchService;
-import iuh.fit.ecommerce.services.VectorStoreService;
+import iuh.fit.ecommerce.services.SearchIndexOutboxService;
+import iuh.fit.ecommerce.utils.CursorUtils;
 import iuh.fit.ecommerce.utils.StringUtils;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
@@ -40,7 +40,7 @@ public class ProductServiceImpl implements ProductService {
     private final CategoryService categoryService;
     private final AttributeService attributeService;
     private final VariantValueService variantValueService;
-    private final PromotionService promotionService;
+    private final PricingService pricingService;
     private final UploadService uploadService;
     private final ProductRepository productRepository;
     private final ProductMapper productMapper;
@@ -50,8 +50,8 @@ public class ProductServiceImpl implements ProductService {
     private final ProductFilterValueRepository productFilterValueRepository;
     private final FilterValueRepository filterValueRepository;
     private final ProductImageRepository productImageRepository;
-    private final VectorStoreService vectorStoreService;
-    private final ProductSearchService productSearchService;
+    private final SearchIndexOutboxService searchIndexOutboxService;
+    private final StockReservationService stockReservationService;
 
     @Override
     @Transactional
@@ -71,13 +71,9 @@ public class ProductServiceImpl implements ProductService {
         saveVariants(productAddRequest.getVariants(), product);
 
         saveFilterValues(productAddRequest.getFilterValueIds(), product);
-        
-        // Reload product with all relationships before indexing
-        Product savedProduct = productRepository.findById(product.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("Product not found after creation"));
-        
-        // Index product to Elasticsearch
-        productSearchService.indexProduct(savedProduct);
+
+        // Index Elasticsearch + Qdrant bất đồng bộ qua outbox, ghi cùng transaction
+        searchIndexOutboxService.enqueueProduct(product.getId());
     }
 
     private void saveAttributes(List<ProductAttributeRequest> attributes, Product product) {
@@ -93,11 +89,36 @@ public class ProductServiceImpl implements ProductService {
     }
 
     @Override
-    public ResponseWithPagination<List<ProductResponse>> getAllProducts(int page, int size, String keyword, Long brandId, Long categoryId, Boolean status, Double minPrice, Double maxPrice) {
+    public ResponseWithPagination<List<ProductResponse>> getAllProducts(int page, int size, String keyword, Long brandId, Long categoryId, Boolean status, Double minPrice, Double maxPrice, String cursor) {
+        if (cursor != null) {
+            return getProductsByCursor(size, keyword, brandId, categoryId, status, minPrice, maxPrice, cursor);
+        }
         page = Math.max(page - 1, 0);
         Pageable pageable = PageRequest.of(page, size);
         Page<Product> productPage = productRepository.findProductsWithFilters(keyword, brandId, categoryId, status, minPrice, maxPrice, pageable);
-        return ResponseWithPagination.fromPage(productPage, productMapper::toResponse);
+        return ResponseWithPagination.fromPage(productPage, pricingService.toPricedResponses(productPage.getContent()));
+    }
+
+    private ResponseWithPagination<List<ProductResponse>> getProductsByCursor(int size, String keyword, Long brandId, Long categoryId, Boolean status, Double minPrice, Double maxPrice, String cursor) {
+        Long lastId = null;
+        if (!cursor.isBlank()) {
+            if (!(CursorUtils.decode(cursor).get("lastId") instanceof Number id)) {
+                throw new InvalidParamException("Invalid cursor");
+            }
+            lastId = id.longValue();
+        }
+
+        // Lấy dư một bản ghi để biết còn trang sau hay không, không cần COUNT
+        List<Product> products = productRepository.findProductsWithFiltersAfter(
+                keyword, brandId, categoryId, status, minPrice, maxPrice, lastId, PageRequest.of(0, size + 1));
+        boolean hasNext = products.size() > size;
+        List<Product> content = hasNext ? products.subList(0, size) : products;
+
+        return ResponseWithPagination.<List<ProductResponse>>builder()
+                .data(pricingService.toPricedResponses(content))
+                .limit(size)
+                .nextCursor(hasNext ? CursorUtils.encode(Map.of("lastId", content.getLast().getId())) : null)
+                .build();
     }
 
     @Override
@@ -111,7 +132,27 @@ public class ProductServiceImpl implements ProductService {
         if (product == null) {
             return null;
         }
-        return promotionService.addPromotionToProductResponseByProduct( product);
+        return withAvailableStock(pricingService.toPricedResponse(product));
+    }
+
+    // Trang sản phẩm hiển thị số còn bán được (đã trừ hàng đang giữ cho đơn chờ thanh toán), không phải tồn kho DB
+    private ProductResponse withAvailableStock(ProductResponse response) {
+        if (response.getVariants() == null || response.getVariants().isEmpty()) {
+            return response;
+        }
+        Map<Long, Integer> available = stockReservationService.getAvailableStock(response.getVariants().stream()
+                .map(ProductVariantResponse::getId)
+                .collect(Collectors.toSet()));
+        int total = 0;
+        for (ProductVariantResponse variant : response.getVariants()) {
+            Integer stock = available.get(variant.getId());
+            if (stock != null) {
+                variant.setStock(stock);
+            }
+            total += variant.getStock() != null ? variant.getStock() : 0;
+        }
+        response.setStock(total);
+        return response;
     }
 
     @Override
@@ -164,13 +205,11 @@ public class ProductServiceImpl implements ProductService {
         updateFilterValues(product, request.getFilterValueIds());
         
         productRepository.save(product);
-        
-        // Re-index to Elasticsearch
-        Product savedProduct = productRepository.findById(product.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("Product not found after update"));
-        productSearchService.indexProduct(savedProduct);
-        
-        return productMapper.toResponse(savedProduct);
+
+        // Re-index Elasticsearch + Qdrant qua outbox
+        searchIndexOutboxService.enqueueProduct(product.getId());
+
+        return productMapper.toResponse(product);
     }
     
     @Override
@@ -179,9 +218,9 @@ public class ProductServiceImpl implements ProductService {
         Product product = getProductEntityById(id);
         product.setStatus(!product.getStatus());
         productRepository.save(product);
-        
-        // Re-index to Elasticsearch
-        productSearchService.indexProduct(product);
+
+        // Re-index Elasticsearch qua outbox
+        searchIndexOutboxService.enqueueProduct(product.getId());
     }
     
     private void updateProductImages(Product product, List<String> newImageUrls) {
@@ -262,9 +301,6 @@ public class ProductServiceImpl implements ProductService {
                 existingVariant.setStock(req.getStock());
                 productVariantRepository.save(existingVariant);
                 variantIdsToKeep.add(existingVariant.getId());
-                
-                // Re-index variant
-                vectorStoreService.indexProductVariant(existingVariant);
             } else {
                 // Create new variant
                 ProductVariant variant = ProductVariant.builder()
@@ -276,11 +312,6 @@ public class ProductServiceImpl implements ProductService {
                 productVariantRepository.save(variant);
                 saveVariantValues(req.getVariantValueIds(), variant);
                 variantIdsToKeep.add(variant.getId());
-                
-                // Index new variant
-                ProductVariant savedVariant = productVariantRepository.findById(variant.getId())
-                        .orElse(variant);
-                vectorStoreService.indexProductVariant(savedVariant);
             }
         }
         
@@ -328,93 +359,6 @@ public class ProductServiceImpl implements ProductService {
                 .orElseThrow(() -> new ResourceNotFoundException("Product not found with slug: " + slug));
     }
 
-    @Override
-    public ResponseWithPagination<List<ProductResponse>> searchProductForUser(String categorySlug, int page, int size, Map<String, String> filters) {
-        page = Math.max(page - 1, 0);
-        
-        List<String> brandSlugs = parseCommaSeparatedParam(filters.get("brands"));
-        Boolean inStock = parseBooleanParam(filters.get("inStock"));
-        Double priceMin = parseDoubleParam(filters.get("priceMin"));
-        Double priceMax = parseDoubleParam(filters.get("priceMax"));
-        String sortBy = filters.get("sortBy");
-        
-        // Parse filter value IDs from params
-        List<Long> filterValueIds = null;
-        String filterValuesParam = filters.get("filterValues");
-        if (filterValuesParam != null && !filterValuesParam.trim().isEmpty()) {
-            try {
-                filterValueIds = java.util.Arrays.stream(filterValuesParam.split(","))
-                    .map(String::trim)
-                    .filter(s -> !s.isEmpty())
-                    .map(Long::parseLong)
-                    .collect(java.util.stream.Collectors.toList());
-            } catch (NumberFormatException e) {
-                // Invalid format, ignore
-            }
-        }
-        
-        // Create Pageable with sorting
-        Pageable pageable = createPageableWithSort(page, size, sortBy);
-        
-        Page<Product> productPage = productRepository.findAll(
-            iuh.fit.ecommerce.specifications.ProductSpecification.filterProducts(
-                categorySlug, brandSlugs, inStock, priceMin, priceMax, filterValueIds, sortBy
-            ),
-            pageable
-        );
-        
-        return ResponseWithPagination.fromPage(productPage, productMapper::toResponse);
-    }
-    
-    private Pageable createPageableWithSort(int page, int size, String sortBy) {
-        if (sortBy == null || sortBy.isEmpty() || "popular".equals(sortBy)) {
-            // Default: sort by id (newest first)
-            return PageRequest.of(page, size, org.springframework.data.domain.Sort.by("id").descending());
-        }
-        
-        switch (sortBy) {
-            case "price_asc":
-                // Sort by min price ascending - will be handled in specification
-                return PageRequest.of(page, size);
-            case "price_desc":
-                // Sort by min price descending - will be handled in specification
-                return PageRequest.of(page, size);
-            case "rating_asc":
-                // Sort by rating ascending - will be handled in specification
-                return PageRequest.of(page, size);
-            case "rating_desc":
-                // Sort by rating descending - will be handled in specification
-                return PageRequest.of(page, size);
-            default:
-                return PageRequest.of(page, size, org.springframework.data.domain.Sort.by("id").descending());
-        }
-    }
-    
-    private List<String> parseCommaSeparatedParam(String param) {
-        if (param == null || param.trim().isEmpty()) {
-            return null;
-        }
-        return java.util.Arrays.asList(param.split(","));
-    }
-    
-    private Boolean parseBooleanParam(String param) {
-        if (param == null || param.trim().isEmpty()) {
-            return null;
-        }
-        return Boolean.parseBoolean(param);
-    }
-    
-    private Double parseDoubleParam(String param) {
-        if (param == null || param.trim().isEmpty()) {
-            return null;
-        }
-        try {
-            return Double.parseDouble(param);
-        } catch (NumberFormatException e) {
-            return null;
-        }
-    }
-
     private Product buildProduct(ProductAddRequest request, Brand brand, Category category) {
         Product product = new Product();
         productMapper.requestToEntity(request, product);
@@ -459,13 +403,6 @@ public class ProductServiceImpl implements ProductService {
 
             productVariantRepository.save(variant);
             saveVariantValues(req.getVariantValueIds(), variant);
-            
-            // Reload variant để có đầy đủ thông tin (product, variant values)
-            ProductVariant savedVariant = productVariantRepository.findById(variant.getId())
-                    .orElse(variant);
-            
-            // Index vào Qdrant vector store
-            vectorStoreService.indexProductVariant(savedVariant);
         }
     }
 
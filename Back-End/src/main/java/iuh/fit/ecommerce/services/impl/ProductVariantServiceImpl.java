@@ -3,22 +3,21 @@ package iuh.fit.ecommerce.services.impl;
 import iuh.fit.ecommerce.dtos.request.product.ProductVariantPromotionRequest;
 import iuh.fit.ecommerce.dtos.response.product.ProductVariantDescriptionResponse;
 import iuh.fit.ecommerce.dtos.response.product.ProductVariantPromotionResponse;
+import iuh.fit.ecommerce.dtos.response.product.VariantPriceResponse;
 import iuh.fit.ecommerce.entities.Product;
 import iuh.fit.ecommerce.entities.ProductVariant;
-import iuh.fit.ecommerce.entities.Promotion;
 import iuh.fit.ecommerce.exceptions.custom.InvalidParamException;
 import iuh.fit.ecommerce.mappers.ProductVariantMapper;
 import iuh.fit.ecommerce.repositories.ProductVariantRepository;
 import iuh.fit.ecommerce.services.ProductService;
+import iuh.fit.ecommerce.services.PricingService;
 import iuh.fit.ecommerce.services.ProductVariantService;
-import iuh.fit.ecommerce.services.PromotionService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -27,7 +26,7 @@ public class ProductVariantServiceImpl implements ProductVariantService {
     private final ProductService productService;
     private final ProductVariantMapper productVariantMapper;
     private final ProductVariantRepository productVariantRepository;
-    private final PromotionService promotionService;
+    private final PricingService pricingService;
 
     @Override
     public List<ProductVariantDescriptionResponse> getAllSkusForPromotion(Long productId) {
@@ -42,22 +41,19 @@ public class ProductVariantServiceImpl implements ProductVariantService {
         if(productVariantPromotionRequest.getProductVariantIds().isEmpty())
             throw new InvalidParamException("Product variant ids list is empty");
 
-        Map<Long, ProductVariant> productVariants = productVariantRepository.findAllById(
+        Map<Long, VariantPriceResponse> prices = pricingService.priceVariants(
                 productVariantPromotionRequest.getProductVariantIds()
-        ).stream().collect(Collectors.toMap(ProductVariant::getId, pv -> pv));
+        );
 
         List<ProductVariantPromotionResponse> responses = new ArrayList<>();
 
         for(Long pvId : productVariantPromotionRequest.getProductVariantIds()){
-            ProductVariant variant = productVariants.get(pvId);
-            if(variant == null) continue;
-
-            Promotion bestPromotion = promotionService.getBestPromotionForVariant(variant);
-            Double discount = bestPromotion != null ? bestPromotion.getDiscount() : 0.0;
+            VariantPriceResponse price = prices.get(pvId);
+            if(price == null) continue;
 
             ProductVariantPromotionResponse response = ProductVariantPromotionResponse.builder()
                     .productVariantId(pvId)
-                    .discount(discount)
+                    .discount(price.getDiscount())
                     .build();
             responses.add(response);
         }
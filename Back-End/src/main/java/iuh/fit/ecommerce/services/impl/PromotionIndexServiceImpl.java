@@ -0,0 +1,256 @@
+package iuh.fit.ecommerce.services.impl;
+
+import iuh.fit.ecommerce.entities.Promotion;
+import iuh.fit.ecommerce.entities.PromotionTarget;
+import iuh.fit.ecommerce.enums.PromotionType;
+import iuh.fit.ecommerce.repositories.PromotionRepository;
+import iuh.fit.ecommerce.services.PromotionIndexService;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Chỉ mục promotion trong bộ nhớ: variant/product/category/brand id (và loại ALL) -> danh sách promotion
+ * đã sắp theo độ ưu tiên. Mỗi snapshot là bất biến và gắn với một version trong Redis;
+ * khi admin thay đổi promotion, version tăng và được publish để mọi instance dựng lại snapshot.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PromotionIndexServiceImpl implements PromotionIndexService {
+
+    private static final String PROMOTION_VERSION_KEY = "promotion:version";
+    private static final String PROMOTION_CHANNEL = "promotion:changed";
+
+    // Cùng thứ tự với query cũ: priority tăng dần, discount giảm dần
+    private static final Comparator<Promotion> PRIORITY_ORDER = Comparator
+            .comparing(Promotion::getPriority, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(Promotion::getDiscount, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(Promotion::getId);
+
+    private record PromotionIndex(
+            Long version,
+            LocalDate validOn,
+            Map<Long, List<Promotion>> byVariant,
+            Map<Long, List<Promotion>> byProduct,
+            Map<Long, List<Promotion>> byCategory,
+            Map<Long, List<Promotion>> byBrand,
+            List<Promotion> forAll
+    ) {}
+
+    private final PromotionRepository promotionRepository;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    private final PlatformTransactionManager transactionManager;
+
+    private volatile PromotionIndex index;
+
+    @PostConstruct
+    void subscribe() {
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+            log.debug("Promotion change received, rebuilding promotion index");
+            refresh();
+        }, new ChannelTopic(PROMOTION_CHANNEL));
+    }
+
+    @Override
+    public List<Promotion> getApplicablePromotions(Long variantId, Long productId, Long categoryId, Long brandId) {
+        PromotionIndex current = currentIndex();
+        Set<Promotion> applicable = new LinkedHashSet<>();
+        applicable.addAll(lookup(current.byVariant(), variantId));
+        applicable.addAll(lookup(current.byProduct(), productId));
+        applicable.addAll(lookup(current.byCategory(), categoryId));
+        applicable.addAll(lookup(current.byBrand(), brandId));
+        applicable.addAll(current.forAll());
+
+        List<Promotion> ordered = new ArrayList<>(applicable);
+        ordered.sort(PRIORITY_ORDER);
+        return ordered;
+    }
+
+    @Override
+    public Promotion getBestPromotion(Long variantId, Long productId, Long categoryId, Long brandId) {
+        PromotionIndex current = currentIndex();
+        // Mỗi danh sách đã sắp sẵn nên chỉ cần so sánh phần tử đầu
+        Promotion best = null;
+        for (List<Promotion> candidates : List.of(
+                lookup(current.byVariant(), variantId),
+                lookup(current.byProduct(), productId),
+                lookup(current.byCategory(), categoryId),
+                lookup(current.byBrand(), brandId),
+                current.forAll())) {
+            if (!candidates.isEmpty() && (best == null || PRIORITY_ORDER.compare(candidates.getFirst(), best) < 0)) {
+                best = candidates.getFirst();
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Khoá giá của một sản phẩm: promotion tốt nhất (id và mức giảm) của từng variant theo snapshot hiện tại.
+     * Khoá chỉ đổi khi giá khuyến mãi của chính sản phẩm đó đổi, kể cả khi promotion bắt đầu/hết hạn qua ngày.
+     */
+    @Override
+    public String getPricingKey(Collection<Long> variantIds, Long productId, Long categoryId, Long brandId) {
+        Set<String> best = new TreeSet<>();
+        for (Long variantId : variantIds) {
+            Promotion promotion = getBestPromotion(variantId, productId, categoryId, brandId);
+            if (promotion != null) {
+                best.add(promotion.getId() + ":" + promotion.getDiscount());
+            }
+        }
+        return String.join(",", best);
+    }
+
+    @Override
+    public Long getVersion() {
+        return currentIndex().version();
+    }
+
+    @Override
+    public void publishChange() {
+        try {
+            Long version = redisTemplate.opsForValue().increment(PROMOTION_VERSION_KEY);
+            redisTemplate.convertAndSend(PROMOTION_CHANNEL, version);
+        } catch (Exception e) {
+            log.warn("Cannot publish promotion change to Redis: {}", e.getMessage());
+        }
+        // Instance hiện tại dựng lại ngay, không chờ message quay về
+        refresh();
+    }
+
+    @Override
+    @Scheduled(cron = "0 0 0 * * *")
+    public synchronized void refresh() {
+        // Đọc version trước khi nạp DB: thay đổi commit sau thời điểm này sẽ tăng version và kích hoạt lần nạp tiếp theo
+        Long version = readVersion();
+        LocalDate today = LocalDate.now();
+
+        // REQUIRES_NEW: khi gọi từ afterCommit, persistence context của transaction vừa commit vẫn gắn với thread
+        // và còn giữ Promotion cũ; transaction mới dùng EntityManager riêng nên đọc đúng dữ liệu đã lưu
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        tx.setReadOnly(true);
+        List<Promotion> promotions = tx.execute(status -> promotionRepository.findAllActiveWithTargets());
+
+        Map<Long, Set<Promotion>> byVariant = new HashMap<>();
+        Map<Long, Set<Promotion>> byProduct = new HashMap<>();
+        Map<Long, Set<Promotion>> byCategory = new HashMap<>();
+        Map<Long, Set<Promotion>> byBrand = new HashMap<>();
+        List<Promotion> forAll = new ArrayList<>();
+
+        for (Promotion promotion : promotions != null ? promotions : List.<Promotion>of()) {
+            if (!isValidOn(promotion, today)) {
+                continue;
+            }
+            if (promotion.getPromotionType() == PromotionType.ALL) {
+                forAll.add(promotion);
+            }
+            if (promotion.getPromotionTargets() == null) {
+                continue;
+            }
+            for (PromotionTarget target : promotion.getPromotionTargets()) {
+                // Chỉ đọc id nên không khởi tạo proxy lazy của variant/product
+                if (target.getProductVariant() != null) {
+                    byVariant.computeIfAbsent(target.getProductVariant().getId(), k -> new LinkedHashSet<>()).add(promotion);
+                }
+                if (target.getProduct() != null) {
+                    byProduct.computeIfAbsent(target.getProduct().getId(), k -> new LinkedHashSet<>()).add(promotion);
+                }
+                if (target.getCategory() != null) {
+                    byCategory.computeIfAbsent(target.getCategory().getId(), k -> new LinkedHashSet<>()).add(promotion);
+                }
+                if (target.getBrand() != null) {
+                    byBrand.computeIfAbsent(target.getBrand().getId(), k -> new LinkedHashSet<>()).add(promotion);
+                }
+            }
+        }
+
+        forAll.sort(PRIORITY_ORDER);
+        index = new PromotionIndex(version, today,
+                freeze(byVariant), freeze(byProduct), freeze(byCategory), freeze(byBrand), List.copyOf(forAll));
+        log.info("Promotion index rebuilt: version {}, {} promotions", version, promotions != null ? promotions.size() : 0);
+    }
+
+    /**
+     * Phòng trường hợp mất message pub/sub (Redis reconnect): định kỳ so version với Redis.
+     */
+    @Scheduled(fixedDelayString = "${promotion.index.check-interval-ms:30000}")
+    public void checkVersion() {
+        PromotionIndex current = index;
+        if (current == null) {
+            return;
+        }
+        Long version = readVersion();
+        if (version != null && !version.equals(current.version())) {
+            refresh();
+        }
+    }
+
+    private PromotionIndex currentIndex() {
+        PromotionIndex current = index;
+        // Qua ngày mới thì các promotion hết hạn/bắt đầu phải được tính lại
+        if (current == null || !LocalDate.now().equals(current.validOn())) {
+            synchronized (this) {
+                current = index;
+                if (current == null || !LocalDate.now().equals(current.validOn())) {
+                    refresh();
+                    current = index;
+                }
+            }
+        }
+        return current;
+    }
+
+    private Long readVersion() {
+        try {
+            Object value = redisTemplate.opsForValue().get(PROMOTION_VERSION_KEY);
+            if (value instanceof Number number) {
+                return number.longValue();
+            }
+            return value != null ? Long.parseLong(value.toString()) : 0L;
+        } catch (Exception e) {
+            log.warn("Cannot read promotion version from Redis: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean isValidOn(Promotion promotion, LocalDate date) {
+        return Boolean.TRUE.equals(promotion.getActive())
+                && (promotion.getStartDate() == null || !promotion.getStartDate().isAfter(date))
+                && (promotion.getEndDate() == null || !promotion.getEndDate().isBefore(date));
+    }
+
+    private static List<Promotion> lookup(Map<Long, List<Promotion>> promotions, Long id) {
+        return id == null ? List.of() : promotions.getOrDefault(id, List.of());
+    }
+
+    private static Map<Long, List<Promotion>> freeze(Map<Long, Set<Promotion>> promotions) {
+        return promotions.entrySet().stream()
+                .collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, entry -> entry.getValue().stream()
+                        .filter(Objects::nonNull)
+                        .sorted(PRIORITY_ORDER)
+                        .toList()));
+    }
+}
@@ -3,8 +3,6 @@ package iuh.fit.ecommerce.services.impl;
 import iuh.fit.ecommerce.dtos.request.promotion.PromotionAddRequest;
 import iuh.fit.ecommerce.dtos.request.promotion.PromotionUpdateRequest;
 import iuh.fit.ecommerce.dtos.response.base.ResponseWithPagination;
-import iuh.fit.ecommerce.dtos.response.product.ProductResponse;
-import iuh.fit.ecommerce.dtos.response.product.ProductVariantResponse;
 import iuh.fit.ecommerce.dtos.response.promotion.PromotionResponse;
 import iuh.fit.ecommerce.entities.Product;
 import iuh.fit.ecommerce.entities.ProductVariant;
@@ -12,13 +10,14 @@ import iuh.fit.ecommerce.entities.Promotion;
 import iuh.fit.ecommerce.entities.PromotionTarget;
 import iuh.fit.ecommerce.enums.PromotionType;
 import iuh.fit.ecommerce.exceptions.custom.ResourceNotFoundException;
-import iuh.fit.ecommerce.mappers.ProductMapper;
 import iuh.fit.ecommerce.mappers.PromotionMapper;
 import iuh.fit.ecommerce.repositories.PromotionRepository;
 import iuh.fit.ecommerce.repositories.PromotionTargetRepository;
+import iuh.fit.ecommerce.services.PromotionIndexService;
 import iuh.fit.ecommerce.services.PromotionService;
 import iuh.fit.ecommerce.specifications.PromotionSpecification;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -27,11 +26,14 @@ import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDate;
 import java.util.*;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class PromotionServiceImpl implements PromotionService {
@@ -39,7 +41,7 @@ public class PromotionServiceImpl implements PromotionService {
     private final PromotionRepository promotionRepository;
     private final PromotionTargetRepository promotionTargetRepository;
     private final PromotionMapper promotionMapper;
-    private final ProductMapper productMapper;
+    private final PromotionIndexService promotionIndexService;
 
     @Override
     @Transactional
@@ -55,6 +57,7 @@ public class PromotionServiceImpl implements PromotionService {
             promotionTargetRepository.saveAll(promotionTargets);
         }
 
+        bumpPromotionVersion();
         return promotionMapper.toResponse(promotion);
     }
 
@@ -102,12 +105,15 @@ public class PromotionServiceImpl implements PromotionService {
         promotionMapper.updatePromotionFromDto(request, promotion);
         promotionRepository.save(promotion);
 
-        // Xoá targets cũ và thêm targets mới
+        // Xoá targets cũ và thêm targets mới, cập nhật cả collection của entity đang quản lý để response không trả targets cũ
         promotionTargetRepository.deleteByPromotion(promotion);
-        if (request.getPromotionTargets() != null) {
-            promotionTargetRepository.saveAll(promotionMapper.toPromotionTargets(request.getPromotionTargets(), promotion));
-        }
+        List<PromotionTarget> promotionTargets = request.getPromotionTargets() != null
+                ? promotionMapper.toPromotionTargets(request.getPromotionTargets(), promotion)
+                : new ArrayList<>();
+        promotionTargetRepository.saveAll(promotionTargets);
+        promotion.setPromotionTargets(promotionTargets);
 
+        bumpPromotionVersion();
         return promotionMapper.toResponse(promotion);
     }
 
@@ -117,6 +123,7 @@ public class PromotionServiceImpl implements PromotionService {
         Promotion promotion = findById(id);
         promotionTargetRepository.deleteByPromotion(promotion);
         promotionRepository.delete(promotion);
+        bumpPromotionVersion();
     }
 
     @Override
@@ -125,6 +132,7 @@ public class PromotionServiceImpl implements PromotionService {
         Promotion promotion = findById(id);
         promotion.setActive(!promotion.getActive());
         promotionRepository.save(promotion);
+        bumpPromotionVersion();
     }
 
     private Promotion findById(Long id) {
@@ -133,100 +141,36 @@ public class PromotionServiceImpl implements PromotionService {
                 .orElseThrow(() -> new ResourceNotFoundException("Promotion not found with id = " + id));
     }
 
-    @Override
-    public Double calculateDiscountPrice(ProductVariant variant, Promotion promotion) {
-        double original = variant.getPrice();
-        double bestDiscount = promotion.getDiscount();
-        return original - (original * bestDiscount / 100);
-    }
-
-    @Override
-    public Double calculateOriginalPrice(ProductVariant variant) {
-        return variant.getPrice();
-    }
-
-    @Override
-    public Promotion getBestPromotion(ProductVariant variant, Map<Long, List<Promotion>> promosByVariant) {
-        List<Promotion> promos = promosByVariant.getOrDefault(variant.getId(), List.of());
-        return promos.isEmpty() ? null : promos.getFirst();
-    }
-
-    @Override
-    public Map<Long, List<Promotion>> getPromotionsGroupByVariantId(List<ProductVariant> variants, Product product) {
-        List<Long> variantIds = variants.stream().map(ProductVariant::getId).toList();
-        List<Long> productIds = List.of(product.getId());
-        List<Long> categoryIds = List.of(product.getCategory().getId());
-        List<Long> brandIds = List.of(product.getBrand().getId());
-
-        List<Promotion> allPromotions = promotionRepository.findAllValidPromotions(
-                variantIds, productIds, categoryIds, brandIds
-        );
-
-        // Map variantId -> list promotion, đã ordered
-        return variants.stream()
-                .collect(Collectors.toMap(
-                        ProductVariant::getId,
-                        v -> allPromotions.stream()
-                                .filter(p -> appliesToVariant(p, v))
-                                .toList()
-                ));
-    }
-
     @Override
     public Promotion getBestPromotionForVariant(ProductVariant variant) {
-        List<Promotion> promos = promotionRepository.findBestPromotionForVariant(
+        Product product = variant.getProduct();
+        return promotionIndexService.getBestPromotion(
                 variant.getId(),
-                variant.getProduct().getId(),
-                variant.getProduct().getCategory().getId(),
-                variant.getProduct().getBrand().getId(),
-                PageRequest.of(0, 1)  // chỉ lấy 1 promotion đầu tiên
+                product.getId(),
+                product.getCategory() != null ? product.getCategory().getId() : null,
+                product.getBrand() != null ? product.getBrand().getId() : null
         );
-
-        return promos.isEmpty() ? null : promos.get(0);
     }
 
     @Override
-    public ProductResponse addPromotionToProductResponseByProduct(Product product) {
-        ProductResponse response = productMapper.toResponse(product);
-
-        List<ProductVariant> variants = product.getProductVariants();
-        if (variants == null || variants.isEmpty()) return response;
-
-        Map<Long, List<Promotion>>  promosByVariant = getPromotionsGroupByVariantId(variants, product);
-
-        Map<Long, ProductVariant> variantMap = variants.stream()
-                .collect(Collectors.toMap(ProductVariant::getId, v -> v));
-
-        for (ProductVariantResponse v : response.getVariants()) {
-            ProductVariant entityVariant = variantMap.get(v.getId());
-            if (entityVariant == null) continue;
-
-            Double originalPrice = calculateOriginalPrice(entityVariant);
-            v.setOldPrice(originalPrice);
-
-            Promotion bestPromo = getBestPromotion(entityVariant, promosByVariant);
-
-            if (bestPromo != null) {
-                Double finalPrice = calculateDiscountPrice(entityVariant, bestPromo);
-                v.setPrice(finalPrice);
-                v.setDiscount(bestPromo.getDiscount());
-            } else {
-                v.setPrice(originalPrice);
-                v.setDiscount(0.0);
-            }
-        }
-        return response;
+    public String getPricingKey(Collection<Long> variantIds, Long productId, Long categoryId, Long brandId) {
+        return promotionIndexService.getPricingKey(variantIds, productId, categoryId, brandId);
     }
 
-
-    private boolean appliesToVariant(Promotion promo, ProductVariant variant) {
-        return promo.getPromotionTargets().stream().anyMatch(pt ->
-                (pt.getProductVariant() != null && pt.getProductVariant().getId().equals(variant.getId())) ||
-                        (pt.getProduct() != null && pt.getProduct().getId().equals(variant.getProduct().getId())) ||
-                        (pt.getCategory() != null && pt.getCategory().getId().equals(variant.getProduct().getCategory().getId())) ||
-                        (pt.getBrand() != null && pt.getBrand().getId().equals(variant.getProduct().getBrand().getId()))
-        )
-                || promo.getPromotionType() == PromotionType.ALL;
+    /**
+     * Báo thay đổi sau khi transaction commit, để các instance dựng lại chỉ mục từ dữ liệu đã lưu.
+     */
+    private void bumpPromotionVersion() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    promotionIndexService.publishChange();
+                }
+            });
+        } else {
+            promotionIndexService.publishChange();
+        }
     }
 
 }
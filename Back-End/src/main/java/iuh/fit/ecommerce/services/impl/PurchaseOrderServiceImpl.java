@@ -9,6 +9,7 @@ import iuh.fit.ecommerce.exceptions.custom.ResourceNotFoundException;
 import iuh.fit.ecommerce.mappers.PurchaseOrderDetailMapper;
 import iuh.fit.ecommerce.mappers.PurchaseOrderMapper;
 import iuh.fit.ecommerce.repositories.*;
+import iuh.fit.ecommerce.services.InventoryService;
 import iuh.fit.ecommerce.services.PurchaseOrderService;
 import iuh.fit.ecommerce.specifications.PurchaseOrderSpecification;
 import iuh.fit.ecommerce.utils.SecurityUtils;
@@ -24,7 +25,9 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
@@ -34,6 +37,7 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
     private final PurchaseOrderDetailRepository purchaseOrderDetailRepository;
     private final SupplierRepository supplierRepository;
     private final ProductVariantRepository productVariantRepository;
+    private final InventoryService inventoryService;
     private final SecurityUtils securityUtils;
     private final PurchaseOrderMapper purchaseOrderMapper;
     private final PurchaseOrderDetailMapper purchaseOrderDetailMapper;
@@ -62,6 +66,7 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
         // Calculate total price and create details
         double totalPrice = 0.0;
         List<PurchaseOrderDetail> details = new ArrayList<>();
+        Map<Long, Long> receivedQuantities = new HashMap<>();
 
         for (PurchaseOrderDetailRequest detailRequest : request.getDetails()) {
             ProductVariant productVariant = productVariantRepository.findById(detailRequest.getProductVariantId())
@@ -75,12 +80,12 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
 
             totalPrice += detailRequest.getPrice() * detailRequest.getQuantity();
             details.add(detail);
-
-            // Update product variant stock
-            productVariant.setStock(productVariant.getStock() + detailRequest.getQuantity().intValue());
-            productVariantRepository.save(productVariant);
+            receivedQuantities.merge(productVariant.getId(), detailRequest.getQuantity().longValue(), Long::sum);
         }
 
+        // Cộng kho bằng UPDATE trực tiếp để không ghi đè số lượng vừa bị trừ bởi đơn hàng đồng thời
+        inventoryService.increaseStock(receivedQuantities);
+
         purchaseOrder.setTotalPrice(totalPrice);
 
         // Save purchase order and details
@@ -9,6 +9,7 @@ import iuh.fit.ecommerce.entities.Ranking;
 import iuh.fit.ecommerce.exceptions.custom.ResourceNotFoundException;
 import iuh.fit.ecommerce.mappers.RankingMapper;
 import iuh.fit.ecommerce.repositories.CustomerRepository;
+import iuh.fit.ecommerce.repositories.OrderArchiveRepository;
 import iuh.fit.ecommerce.repositories.OrderRepository;
 import iuh.fit.ecommerce.repositories.RankingRepository;
 import iuh.fit.ecommerce.services.RankingService;
@@ -29,6 +30,7 @@ public class RankingServiceImpl implements RankingService {
     private final RankingMapper rankingMapper;
     private final CustomerRepository customerRepository;
     private final OrderRepository orderRepository;
+    private final OrderArchiveRepository orderArchiveRepository;
     private final SecurityUtils securityUtils;
 
     @Override
@@ -79,10 +81,11 @@ public class RankingServiceImpl implements RankingService {
     @Override
     public RankResponse getMyRank() {
         Customer currentCustomer = securityUtils.getCurrentCustomer();
-        Double totalSpending = orderRepository.getTotalSpendingByCustomerId(currentCustomer.getId());
-        if (totalSpending == null) {
-            totalSpending = 0.0;
-        }
+        // Đơn cũ đã được chuyển sang orders_archive vẫn tính vào tổng chi tiêu
+        Double hotSpending = orderRepository.getTotalSpendingByCustomerId(currentCustomer.getId());
+        Double archivedSpending = orderArchiveRepository.getTotalSpendingByCustomerId(currentCustomer.getId());
+        double totalSpending = (hotSpending == null ? 0.0 : hotSpending)
+                + (archivedSpending == null ? 0.0 : archivedSpending);
         
         // Lấy rank dựa trên tổng tiền tích lũy
         Ranking ranking = getRankingForSpending(totalSpending);
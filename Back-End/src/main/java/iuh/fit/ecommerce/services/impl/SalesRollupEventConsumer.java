@@ -0,0 +1,44 @@
+package iuh.fit.ecommerce.services.impl;
+
+import iuh.fit.ecommerce.enums.OrderStatus;
+import iuh.fit.ecommerce.events.OrderEvent;
+import iuh.fit.ecommerce.events.OrderStatusChangedEvent;
+import iuh.fit.ecommerce.services.OrderEventConsumer;
+import iuh.fit.ecommerce.services.SalesRollupService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Đánh dấu những ngày có đơn vừa được tạo hoặc đổi trạng thái để SalesRollupService tính lại số liệu tổng hợp.
+ * Có đơn hoàn thành thì cache dashboard của kỳ đang mở bị xoá sau khi ngày đó được tính lại, để lần đọc sau thấy doanh thu mới.
+ */
+@Component
+@RequiredArgsConstructor
+public class SalesRollupEventConsumer implements OrderEventConsumer {
+
+    private final SalesRollupService salesRollupService;
+
+    @Override
+    public String getName() {
+        return "sales-rollup";
+    }
+
+    @Override
+    public boolean isDurable() {
+        return true;
+    }
+
+    @Override
+    public boolean supports(OrderEvent event) {
+        return true;
+    }
+
+    @Override
+    public void handle(List<OrderEvent> events) {
+        boolean completed = events.stream().anyMatch(event ->
+                event instanceof OrderStatusChangedEvent changed && changed.status() == OrderStatus.COMPLETED);
+        salesRollupService.markOrderDaysDirty(events.stream().map(OrderEvent::orderId).distinct().toList(), completed);
+    }
+}
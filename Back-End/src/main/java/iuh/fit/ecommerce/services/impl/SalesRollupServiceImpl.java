@@ -0,0 +1,260 @@
+package iuh.fit.ecommerce.services.impl;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import iuh.fit.ecommerce.entities.SalesRollupDirtyDay;
+import iuh.fit.ecommerce.exceptions.custom.ConflictException;
+import iuh.fit.ecommerce.exceptions.custom.InvalidParamException;
+import iuh.fit.ecommerce.repositories.SalesRollupDirtyDayRepository;
+import iuh.fit.ecommerce.repositories.SalesRollupRepository;
+import iuh.fit.ecommerce.services.SalesRollupService;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Giữ các bảng tổng hợp theo ngày (sales_daily, order_status_daily, product_sales_daily,
+ * voucher_usage_daily, promotion_usage_daily) khớp với dữ liệu đơn hàng.
+ * Đơn vị cập nhật là một ngày: mỗi lần tính lại thì xoá và dựng lại các dòng của ngày đó trong một transaction,
+ * nên sự kiện trùng/lệch thứ tự hay bị bỏ không làm số liệu lệch dần.
+ * Ba nguồn kích hoạt: sự kiện đơn hàng, làm mới ngày hôm nay theo chu kỳ
+ * (khách hàng/sản phẩm mới không có sự kiện) và đối soát hằng đêm: toàn bộ các ngày chưa chốt của dashboard
+ * (ít nhất settle-days) cùng ngày đặt của mọi đơn sửa trong khoảng đó.
+ * Cả ba nguồn không tính lại ngay mà đánh dấu ngày vào sales_rollup_dirty_days (chỉ refreshRange/backfill do admin
+ * gọi mới dựng lại trực tiếp); job recomputeDirtyDays
+ * lấy từng ngày bằng SKIP LOCKED và tính lại trong cùng transaction giữ khoá dòng đó. Batch sự kiện dồn dập chỉ làm
+ * một ngày bị tính lại một lần mỗi chu kỳ, và hai node không bao giờ xoá/dựng lại cùng một ngày cùng lúc.
+ * Tính lại chạy ở READ COMMITTED: INSERT ... SELECT đọc snapshot, không giữ next-key lock trên orders và chặn đơn mới.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SalesRollupServiceImpl implements SalesRollupService {
+
+    private final SalesRollupRepository salesRollupRepository;
+    private final SalesRollupDirtyDayRepository dirtyDayRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+    private final DashboardCache dashboardCache;
+
+    @Value("${rollup.reconcile-days:7}")
+    private int reconcileDays;
+
+    // Kỳ cũ hơn settle-days được cache không hết hạn nên đối soát phải phủ hết khoảng chưa chốt
+    @Value("${dashboard.cache.settle-days:7}")
+    private int settleDays;
+
+    @Value("${rollup.backfill-chunk-days:31}")
+    private int backfillChunkDays;
+
+    // Số ngày tối đa một lượt job tính lại, phần còn lại để lượt sau
+    @Value("${rollup.dirty-batch-size:50}")
+    private int dirtyBatchSize;
+
+    private final AtomicBoolean backfilling = new AtomicBoolean(false);
+    private final AtomicLong dirtyDays = new AtomicLong();
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("sales.rollup.dirty.days", dirtyDays, AtomicLong::get)
+                .description("Days marked by order events whose rollups are not recomputed yet")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void markOrderDaysDirty(List<Long> orderIds, boolean evictOpen) {
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        TreeSet<LocalDate> days = new TreeSet<>();
+        for (LocalDateTime orderDate : salesRollupRepository.findOrderDates(orderIds)) {
+            if (orderDate != null) {
+                days.add(orderDate.toLocalDate());
+            }
+        }
+        // Đánh dấu theo thứ tự ngày để hai batch cùng chạm vài ngày không khoá chéo nhau
+        days.forEach(day -> dirtyDayRepository.mark(day, evictOpen));
+    }
+
+    @Scheduled(fixedDelayString = "${rollup.dirty-interval-ms:5000}")
+    public void recomputeDirtyDays() {
+        try {
+            for (int i = 0; i < dirtyBatchSize; i++) {
+                if (!recomputeOldestDirtyDay()) {
+                    break;
+                }
+            }
+            dirtyDays.set(dirtyDayRepository.count());
+        } catch (Exception e) {
+            log.warn("Cannot recompute dirty sales rollup days: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void refreshRange(LocalDate startDate, LocalDate endDate) {
+        recompute(startDate, endDate.plusDays(1), "range");
+    }
+
+    @Scheduled(fixedDelayString = "${rollup.refresh-today-interval-ms:300000}")
+    public void refreshToday() {
+        try {
+            markDirty(List.of(LocalDate.now()), false);
+        } catch (Exception e) {
+            log.warn("Cannot refresh today's sales rollup: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(cron = "${rollup.reconcile-cron:0 15 1 * * *}")
+    public void reconcile() {
+        LocalDate today = LocalDate.now();
+        int days = Math.max(reconcileDays, settleDays + 1);
+        LocalDate from = today.minusDays(days);
+        try {
+            // Mọi node cùng chạy đối soát lúc đó nên chỉ đánh dấu, job tính lại mỗi ngày đúng một lần
+            TreeSet<LocalDate> dirty = new TreeSet<>();
+            for (LocalDate day = from; day.isBefore(today); day = day.plusDays(1)) {
+                dirty.add(day);
+            }
+            // Đơn cũ hơn khoảng trên nhưng vừa được sửa (trả hàng, huỷ muộn) mà sự kiện chưa xử lý được
+            int older = 0;
+            for (LocalDateTime orderDate : salesRollupRepository.findOrderDatesModifiedSince(from.atStartOfDay())) {
+                if (orderDate != null && orderDate.toLocalDate().isBefore(from) && dirty.add(orderDate.toLocalDate())) {
+                    older++;
+                }
+            }
+            markDirty(dirty, true);
+            log.info("Marked sales rollups of the last {} days and {} older modified days for reconciliation", days, older);
+        } catch (Exception e) {
+            log.error("Sales rollup reconciliation failed: {}", e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void startBackfill(LocalDate startDate, LocalDate endDate) {
+        LocalDate from = startDate != null ? startDate : earliestOrderDate();
+        LocalDate to = endDate != null ? endDate : LocalDate.now();
+        if (from.isAfter(to)) {
+            throw new InvalidParamException("startDate must not be after endDate");
+        }
+        if (!backfilling.compareAndSet(false, true)) {
+            throw new ConflictException("Sales rollup backfill is already running");
+        }
+
+        Thread worker = new Thread(() -> {
+            try {
+                backfill(from, to);
+            } catch (Exception e) {
+                log.error("Sales rollup backfill failed: {}", e.getMessage(), e);
+            } finally {
+                backfilling.set(false);
+            }
+        }, "sales-rollup-backfill");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private void backfill(LocalDate from, LocalDate to) {
+        // Chia theo chunk để mỗi transaction chỉ giữ khoá trên một đoạn ngày ngắn
+        LocalDate chunkStart = from;
+        while (!chunkStart.isAfter(to)) {
+            LocalDate chunkEnd = chunkStart.plusDays(backfillChunkDays);
+            if (chunkEnd.isAfter(to.plusDays(1))) {
+                chunkEnd = to.plusDays(1);
+            }
+            recompute(chunkStart, chunkEnd, "backfill");
+            log.info("Sales rollup backfill: {} to {} done", chunkStart, chunkEnd.minusDays(1));
+            chunkStart = chunkEnd;
+        }
+        log.info("Sales rollup backfill finished ({} to {})", from, to);
+    }
+
+    private void markDirty(Collection<LocalDate> days, boolean evictOpen) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                days.forEach(day -> dirtyDayRepository.mark(day, evictOpen)));
+    }
+
+    /**
+     * Lấy ngày đánh dấu lâu nhất mà chưa node nào giữ, tính lại rồi xoá dấu trong cùng transaction.
+     * Sự kiện đánh dấu lại đúng ngày đang tính thì chờ transaction này xong rồi tạo dấu mới cho lượt sau.
+     *
+     * @return false khi không còn ngày nào để lấy
+     */
+    private boolean recomputeOldestDirtyDay() {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        SalesRollupDirtyDay day = tx.execute(status -> {
+            List<SalesRollupDirtyDay> claimed = dirtyDayRepository.findOldestForUpdate(PageRequest.of(0, 1));
+            if (claimed.isEmpty()) {
+                return null;
+            }
+            SalesRollupDirtyDay dirty = claimed.get(0);
+            rebuild(dirty.getStatDate(), dirty.getStatDate().plusDays(1));
+            dirtyDayRepository.delete(dirty);
+            return dirty;
+        });
+        if (day == null) {
+            return false;
+        }
+        sample.stop(Timer.builder("sales.rollup.refresh")
+                .tag("trigger", "dirty")
+                .register(meterRegistry));
+        // Kỳ đang mở chỉ hết hạn theo TTL, trừ khi ngày có đơn hoàn thành
+        dashboardCache.onRollupChanged(day.getStatDate());
+        if (Boolean.TRUE.equals(day.getEvictOpen())) {
+            dashboardCache.evictOpen();
+        }
+        return true;
+    }
+
+    // Tính lại các ngày trong [from, to)
+    private void recompute(LocalDate from, LocalDate to, String trigger) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        tx.executeWithoutResult(status -> rebuild(from, to));
+        sample.stop(Timer.builder("sales.rollup.refresh")
+                .tag("trigger", trigger)
+                .register(meterRegistry));
+        dashboardCache.onRollupChanged(from);
+        dashboardCache.evictOpen();
+    }
+
+    private void rebuild(LocalDate from, LocalDate to) {
+        salesRollupRepository.deleteSalesDaily(from, to);
+        salesRollupRepository.insertSalesDaily(from, to);
+        salesRollupRepository.deleteOrderStatusDaily(from, to);
+        salesRollupRepository.insertOrderStatusDaily(from, to);
+        salesRollupRepository.deleteProductSalesDaily(from, to);
+        salesRollupRepository.insertProductSalesDaily(from, to);
+        salesRollupRepository.deleteVoucherUsageDaily(from, to);
+        salesRollupRepository.insertVoucherUsageDaily(from, to);
+        salesRollupRepository.deletePromotionUsageDaily(from, to);
+        salesRollupRepository.insertPromotionUsageDaily(from, to);
+    }
+
+    private LocalDate earliestOrderDate() {
+        LocalDateTime hot = salesRollupRepository.findEarliestOrderDate();
+        LocalDateTime archived = salesRollupRepository.findEarliestArchivedOrderDate();
+        LocalDateTime earliest = hot == null ? archived
+                : archived == null ? hot
+                : archived.isBefore(hot) ? archived : hot;
+        return earliest != null ? earliest.toLocalDate() : LocalDate.now();
+    }
+}
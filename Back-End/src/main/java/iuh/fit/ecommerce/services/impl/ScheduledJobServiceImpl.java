@@ -0,0 +1,216 @@
+package iuh.fit.ecommerce.services.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import iuh.fit.ecommerce.entities.ScheduledJob;
+import iuh.fit.ecommerce.enums.ScheduledJobStatus;
+import iuh.fit.ecommerce.enums.ScheduledJobType;
+import iuh.fit.ecommerce.repositories.ScheduledJobRepository;
+import iuh.fit.ecommerce.services.ScheduledJobHandler;
+import iuh.fit.ecommerce.services.ScheduledJobService;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Job hẹn giờ lưu trong bảng scheduled_jobs nên không mất khi restart/deploy.
+ * Mỗi node claim các job đến hạn theo batch bằng SKIP LOCKED kèm lease, handler chạy cùng transaction
+ * với việc xoá job nên mỗi job chỉ có hiệu lực một lần dù chạy nhiều instance.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ScheduledJobServiceImpl implements ScheduledJobService {
+
+    // Node đã claim batch giữ lease trong khoảng này, quá hạn thì node khác được chạy lại
+    private static final Duration CLAIM_LEASE = Duration.ofMinutes(2);
+    private static final long MAX_BACKOFF_SECONDS = 600;
+    private static final TypeReference<Map<String, Object>> PAYLOAD_TYPE = new TypeReference<>() {};
+
+    private final ScheduledJobRepository scheduledJobRepository;
+    // Lấy handler lúc chạy để các service vừa lên lịch job vừa là dependency của handler không tạo vòng phụ thuộc
+    private final ObjectProvider<ScheduledJobHandler> handlerProvider;
+    private final ObjectMapper objectMapper;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${jobs.batch-size:50}")
+    private int batchSize;
+
+    @Value("${jobs.max-attempts:10}")
+    private int maxAttempts;
+
+    private final AtomicLong lagSeconds = new AtomicLong();
+    private final AtomicLong failedJobs = new AtomicLong();
+    private volatile Map<ScheduledJobType, ScheduledJobHandler> handlers;
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("scheduled.jobs.lag", lagSeconds, AtomicLong::get)
+                .baseUnit("seconds")
+                .description("How late the oldest due job is")
+                .register(meterRegistry);
+        Gauge.builder("scheduled.jobs.failed", failedJobs, AtomicLong::get)
+                .description("Jobs that exhausted their retries")
+                .register(meterRegistry);
+    }
+
+    @Override
+    @Transactional
+    public void schedule(ScheduledJobType type, String jobKey, Map<String, Object> payload, Duration delay) {
+        ScheduledJob job = scheduledJobRepository.findByTypeAndJobKey(type, jobKey)
+                .orElseGet(() -> ScheduledJob.builder().type(type).jobKey(jobKey).build());
+        job.setPayload(writePayload(payload));
+        job.setRunAt(LocalDateTime.now().plus(delay));
+        job.setStatus(ScheduledJobStatus.PENDING);
+        job.setAttempts(0);
+        job.setLastError(null);
+        scheduledJobRepository.save(job);
+    }
+
+    @Override
+    @Transactional
+    public boolean cancel(ScheduledJobType type, String jobKey) {
+        return scheduledJobRepository.deleteByTypeAndJobKey(type, jobKey) > 0;
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${jobs.poll-interval-ms:1000}")
+    public void dispatch() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        List<ScheduledJob> claimed;
+        try {
+            claimed = tx.execute(status -> claimBatch());
+        } catch (Exception e) {
+            log.error("Cannot claim scheduled jobs: {}", e.getMessage());
+            return;
+        }
+
+        if (claimed != null) {
+            for (ScheduledJob job : claimed) {
+                run(tx, job);
+            }
+        }
+
+        updateMetrics();
+    }
+
+    private List<ScheduledJob> claimBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<ScheduledJob> due = scheduledJobRepository.findDueForUpdate(
+                ScheduledJobStatus.PENDING, now, PageRequest.of(0, batchSize));
+        // Làm tròn giây để so sánh được với giá trị đọc lại từ DB (độ chính xác cột có thể thấp hơn)
+        LocalDateTime leaseUntil = now.plus(CLAIM_LEASE).truncatedTo(ChronoUnit.SECONDS);
+        due.forEach(job -> job.setRunAt(leaseUntil));
+        return scheduledJobRepository.saveAll(due);
+    }
+
+    private void run(TransactionTemplate tx, ScheduledJob job) {
+        ScheduledJobHandler handler = getHandlers().get(job.getType());
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome;
+        try {
+            if (handler == null) {
+                throw new IllegalStateException("No handler for job type " + job.getType());
+            }
+            tx.executeWithoutResult(status -> {
+                // Khoá dòng job trong lúc chạy; job đã bị huỷ, lên lịch lại hoặc node khác claim lại (lease đổi) thì bỏ qua
+                scheduledJobRepository.findByIdForUpdate(job.getId())
+                        .filter(current -> current.getRunAt().equals(job.getRunAt()))
+                        .ifPresent(current -> {
+                            handler.handle(readPayload(current.getPayload()));
+                            scheduledJobRepository.delete(current);
+                        });
+            });
+            outcome = "success";
+        } catch (Exception e) {
+            log.error("Scheduled job {} ({}:{}) failed: {}", job.getId(), job.getType(), job.getJobKey(), e.getMessage(), e);
+            outcome = scheduleRetry(tx, job, e.getMessage()) ? "retry" : "failed";
+        }
+        sample.stop(Timer.builder("scheduled.jobs.execution")
+                .tag("type", job.getType().name())
+                .tag("outcome", outcome)
+                .register(meterRegistry));
+    }
+
+    /**
+     * Lùi lịch theo cấp số nhân, quá số lần thử thì chuyển FAILED để không chạy lại nữa.
+     */
+    private boolean scheduleRetry(TransactionTemplate tx, ScheduledJob job, String error) {
+        Boolean retried = tx.execute(status -> scheduledJobRepository.findById(job.getId())
+                .filter(current -> current.getRunAt().equals(job.getRunAt()))
+                .map(current -> {
+                    int attempts = current.getAttempts() + 1;
+                    long backoff = Math.min(MAX_BACKOFF_SECONDS, 1L << Math.min(attempts, 16));
+                    current.setAttempts(attempts);
+                    current.setRunAt(LocalDateTime.now().plusSeconds(backoff));
+                    current.setLastError(error != null && error.length() > 1000 ? error.substring(0, 1000) : error);
+                    if (attempts >= maxAttempts) {
+                        current.setStatus(ScheduledJobStatus.FAILED);
+                    }
+                    scheduledJobRepository.save(current);
+                    return attempts < maxAttempts;
+                })
+                .orElse(true));
+        return Boolean.TRUE.equals(retried);
+    }
+
+    private Map<ScheduledJobType, ScheduledJobHandler> getHandlers() {
+        Map<ScheduledJobType, ScheduledJobHandler> current = handlers;
+        if (current == null) {
+            current = new EnumMap<>(ScheduledJobType.class);
+            for (ScheduledJobHandler handler : handlerProvider) {
+                current.put(handler.getType(), handler);
+            }
+            handlers = current;
+        }
+        return current;
+    }
+
+    private void updateMetrics() {
+        try {
+            LocalDateTime oldest = scheduledJobRepository.findOldestRunAt(ScheduledJobStatus.PENDING);
+            lagSeconds.set(oldest == null ? 0 : Math.max(0, Duration.between(oldest, LocalDateTime.now()).toSeconds()));
+            failedJobs.set(scheduledJobRepository.countByStatus(ScheduledJobStatus.FAILED));
+        } catch (Exception e) {
+            log.warn("Cannot compute scheduled job metrics: {}", e.getMessage());
+        }
+    }
+
+    private String writePayload(Map<String, Object> payload) {
+        try {
+            return objectMapper.writeValueAsString(payload != null ? payload : Map.of());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialize job payload", e);
+        }
+    }
+
+    private Map<String, Object> readPayload(String payload) {
+        try {
+            return payload == null || payload.isBlank() ? Map.of() : objectMapper.readValue(payload, PAYLOAD_TYPE);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Invalid job payload", e);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package iuh.fit.ecommerce.services.impl;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import iuh.fit.ecommerce.entities.Product;
+import iuh.fit.ecommerce.entities.ProductVariant;
+import iuh.fit.ecommerce.entities.SearchIndexOutbox;
+import iuh.fit.ecommerce.entities.elasticsearch.ProductDocument;
+import iuh.fit.ecommerce.repositories.SearchIndexOutboxRepository;
+import iuh.fit.ecommerce.services.ProductIndexService;
+import iuh.fit.ecommerce.services.ProductSearchService;
+import iuh.fit.ecommerce.services.SearchIndexOutboxService;
+import iuh.fit.ecommerce.services.VectorStoreService;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Outbox cho việc index sản phẩm: ghi cùng transaction với thay đổi của admin,
+ * dispatcher chạy nền gộp các event theo productId rồi index theo batch sang Elasticsearch và Qdrant.
+ * Lỗi thì thử lại với backoff, quá search.outbox.max-attempts lần thì đánh dấu failed và giữ lại trong bảng
+ * để xử lý tay, không chặn các dòng khác và không bị claim lại mãi.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SearchIndexOutboxServiceImpl implements SearchIndexOutboxService {
+
+    // Node đã claim batch giữ lease trong khoảng này, quá hạn thì node khác được xử lý lại
+    private static final Duration CLAIM_LEASE = Duration.ofMinutes(2);
+    private static final long MAX_BACKOFF_SECONDS = 300;
+
+    private final SearchIndexOutboxRepository searchIndexOutboxRepository;
+    private final ProductSearchService productSearchService;
+    private final ProductIndexService productIndexService;
+    private final VectorStoreService vectorStoreService;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${search.outbox.batch-size:200}")
+    private int batchSize;
+
+    @Value("${search.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    private final AtomicLong lagSeconds = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("search.index.outbox.lag", lagSeconds, AtomicLong::get)
+                .baseUnit("seconds")
+                .description("Age of the oldest product change not yet indexed")
+                .register(meterRegistry);
+        Gauge.builder("search.index.outbox.failed", failedCount, AtomicLong::get)
+                .description("Product index events that exhausted their retries and wait for manual handling")
+                .register(meterRegistry);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueProduct(Long productId) {
+        searchIndexOutboxRepository.save(SearchIndexOutbox.builder()
+                .productId(productId)
+                .nextAttemptAt(LocalDateTime.now())
+                .build());
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${search.outbox.poll-interval-ms:1000}")
+    public void dispatch() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        List<SearchIndexOutbox> claimed;
+        try {
+            claimed = tx.execute(status -> claimBatch());
+        } catch (Exception e) {
+            log.error("Cannot claim search index outbox: {}", e.getMessage());
+            return;
+        }
+
+        if (claimed != null && !claimed.isEmpty()) {
+            Set<Long> productIds = claimed.stream()
+                    .map(SearchIndexOutbox::getProductId)
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+
+            Set<Long> failedProductIds;
+            String error = null;
+            try {
+                failedProductIds = indexProducts(productIds);
+            } catch (Exception e) {
+                log.error("Indexing {} products from outbox failed: {}", productIds.size(), e.getMessage(), e);
+                failedProductIds = productIds;
+                error = e.getMessage();
+            }
+
+            List<Long> doneIds = new ArrayList<>();
+            List<Long> failedIds = new ArrayList<>();
+            for (SearchIndexOutbox event : claimed) {
+                (failedProductIds.contains(event.getProductId()) ? failedIds : doneIds).add(event.getId());
+            }
+            String lastError = error != null ? error : "Product conversion failed";
+            tx.executeWithoutResult(status -> {
+                if (!doneIds.isEmpty()) {
+                    searchIndexOutboxRepository.deleteByIdIn(doneIds);
+                }
+                if (!failedIds.isEmpty()) {
+                    scheduleRetry(failedIds, lastError);
+                }
+            });
+        }
+
+        updateMetrics();
+    }
+
+    private List<SearchIndexOutbox> claimBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<SearchIndexOutbox> due = searchIndexOutboxRepository.findDueForUpdate(now, PageRequest.of(0, batchSize));
+        due.forEach(event -> event.setNextAttemptAt(now.plus(CLAIM_LEASE)));
+        return searchIndexOutboxRepository.saveAll(due);
+    }
+
+    /**
+     * Index một batch sản phẩm (đã gộp theo id), trả về các productId convert lỗi để retry riêng.
+     */
+    private Set<Long> indexProducts(Set<Long> productIds) {
+        // Version ngoài của document: lấy từ bộ đếm DB trước khi đọc
+        long version = productIndexService.nextVersion();
+        List<Product> products = productSearchService.loadProductsForIndexing(productIds);
+
+        TransactionTemplate readOnlyTx = new TransactionTemplate(transactionManager);
+        readOnlyTx.setReadOnly(true);
+
+        Set<Long> failed = new HashSet<>();
+        List<ProductDocument> documents = readOnlyTx.execute(status -> {
+            List<ProductDocument> converted = new ArrayList<>();
+            for (Product product : products) {
+                try {
+                    ProductDocument document = productSearchService.convertToDocument(product);
+                    document.setVersion(version);
+                    converted.add(document);
+                } catch (Exception e) {
+                    log.error("Error converting product ID {}: {}", product.getId(), e.getMessage());
+                    failed.add(product.getId());
+                }
+            }
+            return converted;
+        });
+        productIndexService.saveAll(documents != null ? documents : List.of());
+
+        // Sản phẩm không còn trong DB thì xoá khỏi index
+        Set<Long> found = products.stream().map(Product::getId).collect(Collectors.toSet());
+        for (Long productId : productIds) {
+            if (!found.contains(productId)) {
+                productIndexService.delete(productId, version);
+            }
+        }
+
+        List<ProductVariant> variants = products.stream()
+                .filter(product -> !failed.contains(product.getId()))
+                .filter(product -> product.getProductVariants() != null)
+                .flatMap(product -> product.getProductVariants().stream())
+                .collect(Collectors.toList());
+        vectorStoreService.indexProductVariants(variants);
+
+        return failed;
+    }
+
+    private void scheduleRetry(List<Long> eventIds, String error) {
+        LocalDateTime now = LocalDateTime.now();
+        List<SearchIndexOutbox> events = searchIndexOutboxRepository.findAllById(eventIds);
+        for (SearchIndexOutbox event : events) {
+            int attempts = event.getAttempts() + 1;
+            long backoff = Math.min(MAX_BACKOFF_SECONDS, 1L << Math.min(attempts, 16));
+            event.setAttempts(attempts);
+            event.setNextAttemptAt(now.plusSeconds(backoff));
+            event.setLastError(error != null && error.length() > 1000 ? error.substring(0, 1000) : error);
+            if (attempts >= maxAttempts) {
+                event.setFailed(true);
+                log.error("Giving up on indexing product {} (outbox event {}) after {} attempts: {}",
+                        event.getProductId(), event.getId(), attempts, error);
+            }
+        }
+        searchIndexOutboxRepository.saveAll(events);
+    }
+
+    private void updateMetrics() {
+        try {
+            LocalDateTime oldest = searchIndexOutboxRepository.findOldestCreatedAt();
+            lagSeconds.set(oldest == null ? 0 : Math.max(0, Duration.between(oldest, LocalDateTime.now()).toSeconds()));
+            failedCount.set(searchIndexOutboxRepository.countByFailedTrue());
+        } catch (Exception e) {
+            log.warn("Cannot compute search index outbox metrics: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package iuh.fit.ecommerce.services.impl;
+
+import iuh.fit.ecommerce.dtos.projection.VariantStockProjection;
+import iuh.fit.ecommerce.entities.OrderDetail;
+import iuh.fit.ecommerce.exceptions.custom.InsufficientStockException;
+import iuh.fit.ecommerce.repositories.ProductVariantRepository;
+import iuh.fit.ecommerce.services.InventoryService;
+import iuh.fit.ecommerce.services.StockReservationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Giữ hàng trên Redis cho đơn chờ thanh toán online thay vì trừ thẳng product_variants.
+ * Mỗi variant có một sorted set (orderId -> hạn giữ) và một hash (orderId -> số lượng),
+ * hàng có thể bán = tồn kho DB - tổng các hold chưa hết hạn.
+ * Giữ/bỏ giữ chạy bằng Lua nên kiểm tra và ghi hold của cả đơn là một thao tác nguyên tử. Tồn kho DB truyền vào script
+ * được đọc trước đó nên có thể đã cũ (đơn khác vừa trừ kho rồi bỏ hold); vì vậy sau khi ghi hold sẽ kiểm tra lại:
+ * đọc tổng hold trước rồi mới đọc tồn kho DB. Đơn trừ kho luôn commit DB trước khi bỏ hold, nên lần đọc này
+ * không thể bỏ sót cả hold lẫn phần kho đã trừ của cùng một đơn; vượt tồn kho thì bỏ hold vừa ghi và báo thiếu hàng.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StockReservationServiceImpl implements StockReservationService {
+
+    private static final String HOLDS_KEY = "stock:holds:";
+    private static final String HOLD_QUANTITY_KEY = "stock:hold-qty:";
+    private static final String ORDER_HOLD_KEY = "stock:order-hold:";
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> RESERVE_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/stock-reserve.lua"), List.class);
+    private static final RedisScript<Long> RELEASE_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/stock-release.lua"), Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ProductVariantRepository productVariantRepository;
+    private final InventoryService inventoryService;
+
+    @Value("${inventory.reservation.ttl-minutes:16}")
+    private long ttlMinutes;
+
+    @Override
+    public void reserve(Long orderId, Collection<OrderDetail> orderDetails) {
+        Map<Long, Long> quantities = quantitiesOf(orderDetails);
+        Map<Long, VariantStockProjection> stocks = loadStocks(quantities.keySet());
+
+        long now = System.currentTimeMillis();
+        Duration ttl = Duration.ofMinutes(ttlMinutes);
+        List<String> keys = keysOf(orderId, quantities.keySet());
+        List<String> args = new ArrayList<>(List.of(
+                String.valueOf(orderId),
+                String.valueOf(now),
+                String.valueOf(now + ttl.toMillis()),
+                // Key sống lâu hơn hold để hold hết hạn được dọn bởi lần giữ/bỏ giữ sau
+                String.valueOf(ttl.multipliedBy(2).toMillis())
+        ));
+        quantities.forEach((variantId, quantity) -> {
+            VariantStockProjection stock = stocks.get(variantId);
+            args.add(String.valueOf(variantId));
+            args.add(String.valueOf(quantity));
+            args.add(String.valueOf(stock != null && stock.getStock() != null ? stock.getStock() : 0));
+        });
+
+        List<?> failed = stringRedisTemplate.execute(RESERVE_SCRIPT, keys, args.toArray());
+        if (failed != null && !failed.isEmpty()) {
+            throw new InsufficientStockException(buildShortages(failed, quantities, stocks));
+        }
+
+        List<InsufficientStockException.Shortage> oversold = recheck(quantities);
+        if (!oversold.isEmpty()) {
+            release(orderId, quantities.keySet());
+            throw new InsufficientStockException(oversold);
+        }
+
+        // Đơn không lưu được thì bỏ giữ luôn, không chờ hết hạn
+        runAfterCompletion(committed -> {
+            if (!committed) {
+                release(orderId, quantities.keySet());
+            }
+        });
+    }
+
+    @Override
+    public void commit(Long orderId, Collection<OrderDetail> orderDetails) {
+        inventoryService.decreaseStock(orderDetails);
+        // Bỏ giữ sau khi trừ kho đã commit, trong khoảng giữa hàng bị tính hai lần (an toàn, không bán vượt)
+        Set<Long> variantIds = quantitiesOf(orderDetails).keySet();
+        runAfterCompletion(committed -> release(orderId, variantIds));
+    }
+
+    @Override
+    public boolean tryCommit(Long orderId, Collection<OrderDetail> orderDetails) {
+        List<InsufficientStockException.Shortage> shortages = inventoryService.tryDecreaseStock(orderDetails);
+        Set<Long> variantIds = quantitiesOf(orderDetails).keySet();
+        if (!shortages.isEmpty()) {
+            log.warn("Order {} cannot take stock: {}", orderId, shortages);
+            release(orderId, variantIds);
+            return false;
+        }
+        runAfterCompletion(committed -> release(orderId, variantIds));
+        return true;
+    }
+
+    @Override
+    public boolean release(Long orderId, Collection<OrderDetail> orderDetails) {
+        return release(orderId, quantitiesOf(orderDetails).keySet());
+    }
+
+    @Override
+    public Map<Long, Integer> getAvailableStock(Collection<Long> variantIds) {
+        Map<Long, Integer> available = new HashMap<>();
+        if (variantIds == null || variantIds.isEmpty()) {
+            return available;
+        }
+        Map<Long, Long> held = heldQuantities(variantIds);
+        for (VariantStockProjection stock : productVariantRepository.findStockByIdIn(variantIds)) {
+            int dbStock = stock.getStock() != null ? stock.getStock() : 0;
+            available.put(stock.getId(), (int) Math.max(0, dbStock - held.getOrDefault(stock.getId(), 0L)));
+        }
+        return available;
+    }
+
+    // Đọc hold trước, tồn kho DB sau (xem chú thích lớp)
+    private List<InsufficientStockException.Shortage> recheck(Map<Long, Long> quantities) {
+        Map<Long, Long> held = heldQuantities(quantities.keySet());
+        List<InsufficientStockException.Shortage> shortages = new ArrayList<>();
+        for (VariantStockProjection stock : productVariantRepository.findStockByIdIn(quantities.keySet())) {
+            long dbStock = stock.getStock() != null ? stock.getStock() : 0;
+            long heldQuantity = held.getOrDefault(stock.getId(), 0L);
+            if (heldQuantity > dbStock) {
+                long quantity = quantities.get(stock.getId());
+                shortages.add(new InsufficientStockException.Shortage(
+                        stock.getId(),
+                        stock.getProductName(),
+                        stock.getSku(),
+                        quantity,
+                        (int) Math.max(0, dbStock - (heldQuantity - quantity))
+                ));
+            }
+        }
+        return shortages;
+    }
+
+    private Map<Long, Long> heldQuantities(Collection<Long> variantIds) {
+        long now = System.currentTimeMillis();
+        Map<Long, Long> held = new HashMap<>();
+        for (Long variantId : variantIds) {
+            Set<String> activeOrders = stringRedisTemplate.opsForZSet()
+                    .rangeByScore(HOLDS_KEY + variantId, now, Double.POSITIVE_INFINITY);
+            long total = 0;
+            if (activeOrders != null && !activeOrders.isEmpty()) {
+                List<Object> values = stringRedisTemplate.opsForHash()
+                        .multiGet(HOLD_QUANTITY_KEY + variantId, new ArrayList<>(activeOrders));
+                for (Object value : values) {
+                    if (value != null) {
+                        total += Long.parseLong(value.toString());
+                    }
+                }
+            }
+            held.put(variantId, total);
+        }
+        return held;
+    }
+
+    private boolean release(Long orderId, Collection<Long> variantIds) {
+        try {
+            Long released = stringRedisTemplate.execute(RELEASE_SCRIPT, keysOf(orderId, variantIds), String.valueOf(orderId));
+            return released != null && released > 0;
+        } catch (Exception e) {
+            // Hold vẫn tự hết hạn theo TTL nên chỉ ghi log
+            log.warn("Cannot release stock hold of order {}: {}", orderId, e.getMessage());
+            return false;
+        }
+    }
+
+    private void runAfterCompletion(Consumer<Boolean> action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.accept(true);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                action.accept(status == STATUS_COMMITTED);
+            }
+        });
+    }
+
+    private List<String> keysOf(Long orderId, Collection<Long> variantIds) {
+        List<String> keys = new ArrayList<>();
+        keys.add(ORDER_HOLD_KEY + orderId);
+        for (Long variantId : variantIds) {
+            keys.add(HOLDS_KEY + variantId);
+            keys.add(HOLD_QUANTITY_KEY + variantId);
+        }
+        return keys;
+    }
+
+    private Map<Long, Long> quantitiesOf(Collection<OrderDetail> orderDetails) {
+        return orderDetails.stream()
+                .collect(Collectors.groupingBy(
+                        detail -> detail.getProductVariant().getId(),
+                        TreeMap::new,
+                        Collectors.summingLong(OrderDetail::getQuantity)
+                ));
+    }
+
+    private Map<Long, VariantStockProjection> loadStocks(Collection<Long> variantIds) {
+        return productVariantRepository.findStockByIdIn(variantIds).stream()
+                .collect(Collectors.toMap(VariantStockProjection::getId, Function.identity()));
+    }
+
+    private List<InsufficientStockException.Shortage> buildShortages(List<?> failed, Map<Long, Long> quantities,
+                                                                      Map<Long, VariantStockProjection> stocks) {
+        List<InsufficientStockException.Shortage> shortages = new ArrayList<>();
+        for (int i = 0; i + 1 < failed.size(); i += 2) {
+            Long variantId = Long.valueOf(failed.get(i).toString());
+            int available = (int) Math.max(0, Long.parseLong(failed.get(i + 1).toString()));
+            VariantStockProjection stock = stocks.get(variantId);
+            shortages.add(new InsufficientStockException.Shortage(
+                    variantId,
+                    stock != null ? stock.getProductName() : null,
+                    stock != null ? stock.getSku() : null,
+                    quantities.get(variantId),
+                    available
+            ));
+        }
+        return shortages;
+    }
+}
@@ -1,32 +1,101 @@
 package iuh.fit.ecommerce.services.impl;
 
+import iuh.fit.ecommerce.dtos.projection.VariantStockProjection;
 import iuh.fit.ecommerce.entities.Product;
 import iuh.fit.ecommerce.entities.ProductVariant;
+import iuh.fit.ecommerce.repositories.ProductVariantRepository;
 import iuh.fit.ecommerce.services.VectorStoreService;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
+/**
+ * Embedding variant vào Qdrant. Gọi embedding model tốn tiền và chậm nên chỉ upsert variant có text thay đổi:
+ * hash của text đã embed được lưu trong Redis (hash TEXT_HASH_KEY, field là variantId).
+ * Tồn kho đổi liên tục và không nằm trong text nên không làm embed lại; khi search, tồn kho đọc từ DB.
+ * Muốn embed lại toàn bộ (ví dụ sau khi tạo lại collection) thì xoá key TEXT_HASH_KEY.
+ */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class VectorStoreServiceImpl implements VectorStoreService {
 
+    private static final String TEXT_HASH_KEY = "vector:text-hash";
+
     private final VectorStore vectorStore;
+    private final StringRedisTemplate redisTemplate;
+    private final ProductVariantRepository productVariantRepository;
 
     @Override
     public void indexProductVariant(ProductVariant productVariant) {
-        // Xây dựng text để embed
-        String text = buildProductVariantText(productVariant);
+        indexProductVariants(List.of(productVariant));
+    }
+
+    @Override
+    public void indexProductVariants(List<ProductVariant> productVariants) {
+        if (productVariants.isEmpty()) {
+            return;
+        }
+
+        Map<String, String> hashes = new HashMap<>();
+        List<Document> changed = new ArrayList<>();
+        List<Object> fields = productVariants.stream().map(variant -> (Object) String.valueOf(variant.getId())).toList();
+        List<Object> embedded = readHashes(fields);
+        for (int i = 0; i < productVariants.size(); i++) {
+            ProductVariant variant = productVariants.get(i);
+            String text = buildProductVariantText(variant);
+            String hash = DigestUtils.md5DigestAsHex(text.getBytes(StandardCharsets.UTF_8));
+            if (hash.equals(embedded.get(i))) {
+                continue;
+            }
+            changed.add(toDocument(variant, text));
+            hashes.put(String.valueOf(variant.getId()), hash);
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        // Một lần upsert cho cả batch thay vì từng variant, ghi hash sau khi upsert thành công
+        vectorStore.add(changed);
+        try {
+            redisTemplate.opsForHash().putAll(TEXT_HASH_KEY, hashes);
+        } catch (Exception e) {
+            log.warn("Cannot store embedded text hashes: {}", e.getMessage());
+        }
+        log.debug("Embedded {} of {} product variants", changed.size(), productVariants.size());
+    }
 
+    // Không đọc được Redis thì coi như chưa embed, upsert lại cả batch
+    private List<Object> readHashes(List<Object> fields) {
+        try {
+            List<Object> hashes = redisTemplate.opsForHash().multiGet(TEXT_HASH_KEY, fields);
+            if (hashes != null && hashes.size() == fields.size()) {
+                return hashes;
+            }
+        } catch (Exception e) {
+            log.warn("Cannot read embedded text hashes: {}", e.getMessage());
+        }
+        return new ArrayList<>(Collections.nCopies(fields.size(), null));
+    }
+
+    private Document toDocument(ProductVariant productVariant, String text) {
         // Tạo document với metadata
-        Document doc = Document.builder()
+        return Document.builder()
                 .text(text)
                 .id(UUID.nameUUIDFromBytes(
                         String.valueOf(productVariant.getId()).getBytes()
@@ -38,13 +107,9 @@ public class VectorStoreServiceImpl implements VectorStoreService {
                         "brandName", productVariant.getProduct().getBrand().getName(),
                         "categoryName", productVariant.getProduct().getCategory().getName(),
                         "price", productVariant.getPrice(),
-                        "sku", productVariant.getSku() != null ? productVariant.getSku() : "",
-                        "stock", productVariant.getStock()
+                        "sku", productVariant.getSku() != null ? productVariant.getSku() : ""
                 ))
                 .build();
-
-        // Add to vector store
-        vectorStore.add(List.of(doc));
     }
 
     @Override
@@ -53,6 +118,7 @@ public class VectorStoreServiceImpl implements VectorStoreService {
                 String.valueOf(productVariantId).getBytes()
         ).toString();
         vectorStore.delete(List.of(docId));
+        redisTemplate.opsForHash().delete(TEXT_HASH_KEY, String.valueOf(productVariantId));
     }
 
     @Override
@@ -64,10 +130,20 @@ public class VectorStoreServiceImpl implements VectorStoreService {
 
         List<Document> retrievedDocs = vectorStore.similaritySearch(request);
 
+        // Tồn kho đọc từ DB: point trong Qdrant chỉ được ghi lại khi text đổi
+        List<Long> variantIds = retrievedDocs.stream()
+                .map(doc -> toLong(doc.getMetadata().get("productVariantId")))
+                .filter(Objects::nonNull)
+                .toList();
+        Map<Long, Integer> stocks = variantIds.isEmpty() ? Map.of() : productVariantRepository.findStockByIdIn(variantIds).stream()
+                .filter(stock -> stock.getStock() != null)
+                .collect(Collectors.toMap(VariantStockProjection::getId, VariantStockProjection::getStock));
+
         // Format kết quả thành string để đưa vào prompt
         return retrievedDocs.stream()
                 .map(doc -> {
                     Map<String, Object> metadata = doc.getMetadata();
+                    Long variantId = toLong(metadata.get("productVariantId"));
                     return String.format(
                             "Sản phẩm: %s\n" +
                             "Thương hiệu: %s\n" +
@@ -81,7 +157,7 @@ public class VectorStoreServiceImpl implements VectorStoreService {
                             metadata.get("categoryName"),
                             ((Number) metadata.get("price")).doubleValue(),
                             metadata.get("sku"),
-                            ((Number) metadata.get("stock")).intValue(),
+                            variantId != null ? stocks.getOrDefault(variantId, 0) : 0,
                             doc.getFormattedContent()
                     );
                 })
@@ -101,24 +177,24 @@ public class VectorStoreServiceImpl implements VectorStoreService {
         return retrievedDocs.stream()
                 .map(doc -> {
                     Map<String, Object> metadata = doc.getMetadata();
-                    Object productIdObj = metadata.get("productId");
-                    if (productIdObj == null) {
-                        return null;
-                    }
-                    // Xử lý cả Number và String
-                    if (productIdObj instanceof Number) {
-                        return ((Number) productIdObj).longValue();
-                    } else if (productIdObj instanceof String) {
-                        return Long.parseLong((String) productIdObj);
-                    } else {
-                        return Long.parseLong(productIdObj.toString());
-                    }
+                    return toLong(metadata.get("productId"));
                 })
                 .filter(id -> id != null) // Loại bỏ null
                 .distinct() // Loại bỏ trùng lặp
                 .collect(Collectors.toList());
     }
 
+    // Metadata đọc lại từ Qdrant có thể là Number hoặc String
+    private static Long toLong(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Number number) {
+            return number.longValue();
+        }
+        return Long.parseLong(value.toString());
+    }
+
     private String buildProductVariantText(ProductVariant productVariant) {
         StringBuilder text = new StringBuilder();
         
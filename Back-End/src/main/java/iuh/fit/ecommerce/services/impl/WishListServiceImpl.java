@@ -1,6 +1,7 @@
 package iuh.fit.ecommerce.services.impl;
 
 import iuh.fit.ecommerce.dtos.request.wishList.WishListRequest;
+import iuh.fit.ecommerce.dtos.response.product.VariantPriceResponse;
 import iuh.fit.ecommerce.dtos.response.wishList.WishListResponse;
 import iuh.fit.ecommerce.entities.Customer;
 import iuh.fit.ecommerce.entities.Product;
@@ -10,6 +11,7 @@ import iuh.fit.ecommerce.exceptions.custom.ResourceNotFoundException;
 import iuh.fit.ecommerce.mappers.WishListMapper;
 import iuh.fit.ecommerce.repositories.ProductRepository;
 import iuh.fit.ecommerce.repositories.WishListRepository;
+import iuh.fit.ecommerce.services.PricingService;
 import iuh.fit.ecommerce.services.WishListService;
 import iuh.fit.ecommerce.utils.SecurityUtils;
 import lombok.RequiredArgsConstructor;
@@ -17,6 +19,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -28,6 +31,7 @@ public class WishListServiceImpl implements WishListService {
     private final WishListRepository wishListRepository;
     private final ProductRepository productRepository;
     private final WishListMapper wishListMapper;
+    private final PricingService pricingService;
 
     private Customer getCurrentCustomer() {
         User user = securityUtil.getCurrentUser();
@@ -76,6 +80,28 @@ public class WishListServiceImpl implements WishListService {
         List<Product> products = wishLists.stream()
                 .map(WishList::getProduct)
                 .collect(Collectors.toList());
-        return wishListMapper.toResponseList(products);
+        List<WishListResponse> responses = wishListMapper.toResponseList(products);
+
+        // Hiển thị giá thấp nhất sau khuyến mãi, tính cho cả danh sách một lần
+        Map<Long, VariantPriceResponse> prices = pricingService.priceProducts(products);
+        for (int i = 0; i < products.size(); i++) {
+            Double lowest = lowestPrice(products.get(i), prices);
+            if (lowest != null) {
+                responses.get(i).setPrice(lowest);
+            }
+        }
+        return responses;
+    }
+
+    private Double lowestPrice(Product product, Map<Long, VariantPriceResponse> prices) {
+        if (product.getProductVariants() == null) {
+            return null;
+        }
+        return product.getProductVariants().stream()
+                .map(variant -> prices.get(variant.getId()))
+                .filter(price -> price != null && price.getPrice() != null && price.getOldPrice() > 0)
+                .map(VariantPriceResponse::getPrice)
+                .min(Double::compareTo)
+                .orElse(null);
     }
 }
\ No newline at end of file
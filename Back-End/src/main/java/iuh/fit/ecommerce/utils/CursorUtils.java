@@ -0,0 +1,32 @@
+package iuh.fit.ecommerce.utils;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iuh.fit.ecommerce.exceptions.custom.InvalidParamException;
+
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * Mã hoá vị trí phân trang (cursor) thành chuỗi base64 để client gửi lại nguyên vẹn ở trang sau.
+ */
+public class CursorUtils {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+
+    public static String encode(Map<String, Object> position) {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(OBJECT_MAPPER.writeValueAsBytes(position));
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot encode cursor", e);
+        }
+    }
+
+    public static Map<String, Object> decode(String cursor) {
+        try {
+            return OBJECT_MAPPER.readValue(Base64.getUrlDecoder().decode(cursor), MAP_TYPE);
+        } catch (Exception e) {
+            throw new InvalidParamException("Invalid cursor");
+        }
+    }
+}
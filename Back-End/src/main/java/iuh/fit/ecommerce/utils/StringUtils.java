@@ -9,4 +9,12 @@ public class StringUtils {
         text = text.replaceAll("^-+|-+$", "");
         return text;
     }
+
+    // Chuẩn hoá để so khớp không dấu: "Điện Thoại" -> "dien thoai"
+    public static String foldForSearch(String text){
+        if (text == null) return "";
+        text = text.replace('đ', 'd').replace('Đ', 'D');
+        text = org.apache.commons.lang3.StringUtils.stripAccents(text).toLowerCase().trim();
+        return text.replaceAll("\\s+", " ");
+    }
 }
@@ -0,0 +1,216 @@
+package iuh.fit.ecommerce.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Radix trie (prefix trie nén) cho gợi ý tìm kiếm.
+ * Mỗi node giữ sẵn TOP_K gợi ý điểm cao nhất của cả nhánh con nên tra cứu chỉ tốn O(độ dài prefix).
+ * Key là chuỗi đã bỏ dấu, mỗi entry được thêm dưới nhiều key (từng vị trí đầu từ) để gõ từ giữa tên vẫn ra.
+ */
+public class SuggestionTrie {
+
+    private static final int TOP_K = 20;
+    // Khớp từ đầu chuỗi được ưu tiên hơn khớp ở từ giữa
+    private static final double LEADING_MATCH_BOOST = 100;
+
+    public record Entry(String id, String text, double weight) {}
+
+    private record Posting(Entry entry, double score) {}
+
+    private static final Comparator<Posting> BY_SCORE = Comparator.comparingDouble(Posting::score).reversed();
+
+    private static class Node {
+        private String label;
+        private final Map<Character, Node> children = new HashMap<>();
+        private final List<Posting> postings = new ArrayList<>();
+        private List<Posting> top = List.of();
+
+        private Node(String label) {
+            this.label = label;
+        }
+    }
+
+    private final Node root = new Node("");
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Thêm entry dưới các key, key đầu tiên là toàn bộ chuỗi, các key sau là phần đuôi bắt đầu từ một từ.
+     */
+    public void add(Entry entry, List<String> keys) {
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < keys.size(); i++) {
+                String key = keys.get(i);
+                if (key.isEmpty()) {
+                    continue;
+                }
+                double score = entry.weight() + (i == 0 ? LEADING_MATCH_BOOST : 0);
+                insert(key, new Posting(entry, score));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String entryId, List<String> keys) {
+        lock.writeLock().lock();
+        try {
+            for (String key : keys) {
+                if (!key.isEmpty()) {
+                    delete(key, entryId);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<String> suggest(String prefix, int limit) {
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            int i = 0;
+            while (i < prefix.length()) {
+                Node child = node.children.get(prefix.charAt(i));
+                if (child == null) {
+                    return List.of();
+                }
+                String remaining = prefix.substring(i);
+                if (child.label.startsWith(remaining)) {
+                    node = child;
+                    break;
+                }
+                if (!remaining.startsWith(child.label)) {
+                    return List.of();
+                }
+                i += child.label.length();
+                node = child;
+            }
+
+            Set<String> result = new LinkedHashSet<>();
+            for (Posting posting : node.top) {
+                result.add(posting.entry().text());
+                if (result.size() >= limit) {
+                    break;
+                }
+            }
+            return new ArrayList<>(result);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            root.children.clear();
+            root.postings.clear();
+            root.top = List.of();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void insert(String key, Posting posting) {
+        Deque<Node> path = new ArrayDeque<>();
+        path.push(root);
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            char c = key.charAt(i);
+            Node child = node.children.get(c);
+            if (child == null) {
+                child = new Node(key.substring(i));
+                node.children.put(c, child);
+                node = child;
+                path.push(node);
+                break;
+            }
+
+            int common = commonPrefixLength(child.label, key, i);
+            if (common < child.label.length()) {
+                // Tách cạnh: node trung gian giữ phần chung, node cũ giữ phần còn lại
+                Node middle = new Node(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                middle.children.put(child.label.charAt(0), child);
+                node.children.put(c, middle);
+                child = middle;
+            }
+            node = child;
+            path.push(node);
+            i += common;
+        }
+
+        node.postings.removeIf(existing -> existing.entry().id().equals(posting.entry().id()));
+        node.postings.add(posting);
+        while (!path.isEmpty()) {
+            recomputeTop(path.pop());
+        }
+    }
+
+    private void delete(String key, String entryId) {
+        Deque<Node> path = new ArrayDeque<>();
+        path.push(root);
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            Node child = node.children.get(key.charAt(i));
+            if (child == null || !key.startsWith(child.label, i)) {
+                return;
+            }
+            node = child;
+            path.push(node);
+            i += child.label.length();
+        }
+
+        if (!node.postings.removeIf(existing -> existing.entry().id().equals(entryId))) {
+            return;
+        }
+        Node child = null;
+        while (!path.isEmpty()) {
+            Node current = path.pop();
+            // Bỏ node lá rỗng để trie không phình ra khi sản phẩm bị đổi tên/ẩn liên tục
+            if (child != null && child.postings.isEmpty() && child.children.isEmpty()) {
+                current.children.remove(child.label.charAt(0));
+            }
+            recomputeTop(current);
+            child = current;
+        }
+    }
+
+    private void recomputeTop(Node node) {
+        Map<String, Posting> best = new LinkedHashMap<>();
+        List<Posting> candidates = new ArrayList<>(node.postings);
+        for (Node child : node.children.values()) {
+            candidates.addAll(child.top);
+        }
+        candidates.sort(BY_SCORE);
+        for (Posting posting : candidates) {
+            best.putIfAbsent(posting.entry().id(), posting);
+            if (best.size() >= TOP_K) {
+                break;
+            }
+        }
+        node.top = List.copyOf(best.values());
+    }
+
+    private static int commonPrefixLength(String label, String key, int offset) {
+        int max = Math.min(label.length(), key.length() - offset);
+        int i = 0;
+        while (i < max && label.charAt(i) == key.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -3,84 +3,252 @@ package iuh.fit.ecommerce.utils.excel;
 import iuh.fit.ecommerce.dtos.excel.ImportResult;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 @Slf4j
 public abstract class BaseExcelHandler<T> implements ExcelImporter<T>, ExcelExporter<T> {
 
     protected static final int HEADER_ROW_INDEX = 0;
     protected static final int DATA_START_ROW_INDEX = 1;
+    // Dòng dữ liệu đầu tiên của file import (0-based): 2 dòng hướng dẫn + 1 dòng tiêu đề
+    protected static final int IMPORT_DATA_START_ROW_INDEX = 3;
 
-    @Override
-    public ImportResult importExcel(MultipartFile file) {
-        ImportResult result = ImportResult.builder()
-                .totalRows(0)
-                .successCount(0)
-                .errorCount(0)
-                .errors(new ArrayList<>())
-                .build();
+    // Số dòng SXSSF giữ trong heap, các dòng cũ hơn được flush ra file tạm
+    @Value("${excel.export.row-window:200}")
+    protected int exportRowWindow;
 
-        try {
-            // Step 1:
-            validateFile(file, result);
-            if (result.hasErrors()) {
-                result.setMessage("File validation failed");
-                return result;
-            }
+    // Số dòng đọc mỗi trang keyset khi export
+    @Value("${excel.export.page-size:1000}")
+    protected int exportPageSize;
 
-            // Step 2:
-            List<T> dataList = parseExcel(file);
-            result.setTotalRows(dataList.size());
+    // Số dòng mỗi chunk import: validate cùng nhau, ghi trong một transaction bằng JDBC batch
+    @Value("${excel.import.chunk-size:500}")
+    protected int importChunkSize;
 
-            if (dataList.isEmpty()) {
-                result.setMessage("No data found in Excel file");
-                return result;
-            }
+    // Số lỗi tối đa trả về trong ImportResult
+    @Value("${excel.import.max-errors:1000}")
+    protected int importMaxErrors;
 
-            // Step 3:
-            List<T> validData = new ArrayList<>();
-            for (int i = 0; i < dataList.size(); i++) {
-                T data = dataList.get(i);
-                // Row index in Excel: 3 (instruction rows) + 1 (header) + i (data index) = 4 + i
-                int rowIndex = 4 + i;
+    @Autowired
+    private ExcelImportExecutor importExecutor;
 
-                validateRow(data, rowIndex, result);
+    @Autowired
+    private PlatformTransactionManager transactionManager;
 
-                if (!hasRowErrors(result, rowIndex)) {
-                    validData.add(data);
+    public record ImportRow<T>(int rowIndex, T data) {
+    }
+
+    private record ValidatedChunk<T>(int rowCount, List<ImportRow<T>> valid, ImportResult errors) {
+    }
+
+    @Override
+    public ImportResult importExcel(MultipartFile file) {
+        ImportResult result = ImportResult.builder().build();
+        validateFile(file, result);
+        if (result.hasErrors()) {
+            result.setMessage("File validation failed");
+            return result;
+        }
+
+        // SAX đọc trực tiếp từ file zip trên đĩa, không nạp cả file upload vào heap
+        Path tempFile = null;
+        try {
+            tempFile = Files.createTempFile("import-", ".xlsx");
+            file.transferTo(tempFile);
+            return importFile(tempFile, null);
+        } catch (IOException e) {
+            log.error("Cannot store uploaded Excel file", e);
+            result.addError(0, "SYSTEM", "System error: " + e.getMessage());
+            result.setMessage("Import failed: " + e.getMessage());
+            return result;
+        } finally {
+            deleteQuietly(tempFile);
+        }
+    }
+
+    /**
+     * Import stream: đọc SAX trên luồng gọi, mỗi importChunkSize dòng thành một chunk được validate trên
+     * {@link ExcelImportExecutor}, rồi ghi lần lượt theo đúng thứ tự đọc, mỗi chunk một transaction
+     * (checkBeforeSave + saveData). Tối đa max-in-flight-chunks chunk chờ ghi nên bộ nhớ không tăng theo kích thước file.
+     * Lỗi của một chunk khi ghi chỉ làm hỏng chunk đó, các chunk khác vẫn được ghi.
+     *
+     * @param listener nhận tiến độ sau mỗi chunk, có thể null
+     */
+    public ImportResult importFile(Path file, ImportProgressListener listener) {
+        ImportResult result = ImportResult.builder().build();
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Deque<Future<ValidatedChunk<T>>> inFlight = new ArrayDeque<>();
+        List<ImportRow<T>> chunk = new ArrayList<>(importChunkSize);
+        try {
+            ExcelSaxReader.readFirstSheet(file, IMPORT_DATA_START_ROW_INDEX, getHeaders().length, (rowIndex, cells) -> {
+                if (isBlankRow(cells)) {
+                    return;
                 }
+                chunk.add(new ImportRow<>(rowIndex, readRow(cells)));
+                if (chunk.size() >= importChunkSize) {
+                    inFlight.add(submitValidation(new ArrayList<>(chunk)));
+                    chunk.clear();
+                    while (inFlight.size() > importExecutor.getMaxInFlightChunks()) {
+                        writeChunk(inFlight.poll(), tx, result, listener);
+                    }
+                }
+            });
+            if (!chunk.isEmpty()) {
+                inFlight.add(submitValidation(new ArrayList<>(chunk)));
             }
-
-            if (!validData.isEmpty()) {
-                saveData(validData);
-                result.setSuccessCount(validData.size());
+            while (!inFlight.isEmpty()) {
+                writeChunk(inFlight.poll(), tx, result, listener);
             }
 
-            if (result.hasErrors()) {
-                result.setMessage(String.format(
-                        "Import completed with errors. Success: %d, Failed: %d",
-                        result.getSuccessCount(), result.getErrorCount()));
+            if (result.getTotalRows() == 0) {
+                result.setMessage("No data found in Excel file");
             } else {
-                result.setMessage(String.format(
-                        "Import successful. Total: %d records",
-                        result.getSuccessCount()));
+                setResultMessage(result);
             }
-
         } catch (Exception e) {
+            inFlight.forEach(future -> future.cancel(true));
             log.error("Error during Excel import", e);
             result.addError(0, "SYSTEM", "System error: " + e.getMessage());
             result.setMessage("Import failed: " + e.getMessage());
         }
-
         return result;
     }
 
+    private Future<ValidatedChunk<T>> submitValidation(List<ImportRow<T>> rows) {
+        return importExecutor.submit(() -> {
+            // validateRow chạy song song trên nhiều luồng: chỉ kiểm tra dữ liệu của dòng, không đọc DB
+            ImportResult errors = ImportResult.builder().build();
+            List<ImportRow<T>> valid = new ArrayList<>(rows.size());
+            for (ImportRow<T> row : rows) {
+                int before = errors.getErrorCount();
+                validateRow(row.data(), row.rowIndex(), errors);
+                if (errors.getErrorCount() == before) {
+                    valid.add(row);
+                }
+            }
+            return new ValidatedChunk<>(rows.size(), valid, errors);
+        });
+    }
+
+    private void writeChunk(Future<ValidatedChunk<T>> future, TransactionTemplate tx,
+                            ImportResult result, ImportProgressListener listener) throws Exception {
+        ValidatedChunk<T> chunk;
+        try {
+            chunk = future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+
+        ImportResult chunkErrors = chunk.errors();
+        int saved = 0;
+        if (!chunk.valid().isEmpty()) {
+            try {
+                Integer count = tx.execute(status -> {
+                    List<ImportRow<T>> toSave = checkBeforeSave(chunk.valid(), chunkErrors);
+                    if (toSave.isEmpty()) {
+                        return 0;
+                    }
+                    try {
+                        saveData(toSave.stream().map(ImportRow::data).toList());
+                    } catch (RuntimeException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e.getMessage(), e);
+                    }
+                    return toSave.size();
+                });
+                saved = count != null ? count : 0;
+            } catch (RuntimeException e) {
+                // Transaction của chunk đã rollback: báo lỗi cho từng dòng của chunk rồi đi tiếp
+                log.warn("Cannot save import chunk: {}", e.getMessage());
+                for (ImportRow<T> row : chunk.valid()) {
+                    chunkErrors.addError(row.rowIndex(), "SYSTEM", "Không lưu được dòng: " + e.getMessage());
+                }
+            }
+        }
+
+        List<ImportResult.ImportError> errors = chunkErrors.getErrors();
+        errors.sort(Comparator.comparingInt(ImportResult.ImportError::getRowIndex));
+        result.setTotalRows(result.getTotalRows() + chunk.rowCount());
+        result.setSuccessCount(result.getSuccessCount() + saved);
+        result.setErrorCount(result.getErrorCount() + chunkErrors.getErrorCount());
+        // Phản hồi đồng bộ chỉ giữ max-errors lỗi đầu, tổng số lỗi vẫn nằm trong errorCount
+        int room = importMaxErrors - result.getErrors().size();
+        if (room > 0) {
+            result.getErrors().addAll(errors.subList(0, Math.min(room, errors.size())));
+        }
+        if (listener != null) {
+            listener.onChunk(result, errors);
+        }
+    }
+
+    private void setResultMessage(ImportResult result) {
+        if (result.hasErrors()) {
+            result.setMessage(String.format(
+                    "Import completed with errors. Success: %d, Failed: %d",
+                    result.getSuccessCount(), result.getErrorCount()));
+        } else {
+            result.setMessage(String.format(
+                    "Import successful. Total: %d records",
+                    result.getSuccessCount()));
+        }
+    }
+
+    // Chuyển giá trị các cột của một dòng (đọc bằng SAX) thành DTO
+    protected abstract T readRow(String[] cells);
+
+    /**
+     * Kiểm tra cần đọc DB (trùng với dữ liệu đã có), chạy tuần tự trong transaction của chunk ngay trước saveData
+     * nên thấy cả các chunk đã ghi trước đó. Trả về các dòng được phép lưu.
+     */
+    protected List<ImportRow<T>> checkBeforeSave(List<ImportRow<T>> rows, ImportResult result) {
+        return rows;
+    }
+
+    protected String cellValue(String[] cells, int index) {
+        return index < cells.length && cells[index] != null ? cells[index] : "";
+    }
+
+    private boolean isBlankRow(String[] cells) {
+        for (String cell : cells) {
+            if (cell != null && !cell.isBlank()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Cannot delete import temp file {}: {}", file, e.getMessage());
+        }
+    }
+
     @Override
     public Workbook generateTemplate() throws Exception {
         Workbook workbook = new XSSFWorkbook();
@@ -167,6 +335,49 @@ public abstract class BaseExcelHandler<T> implements ExcelImporter<T>, ExcelExpo
         return workbook;
     }
 
+    @Override
+    public long writeExcel(OutputStream out) throws IOException {
+        SXSSFWorkbook workbook = ExcelStreamSupport.newWorkbook(exportRowWindow);
+        try {
+            Sheet sheet = workbook.createSheet("Data");
+
+            Row headerRow = sheet.createRow(HEADER_ROW_INDEX);
+            CellStyle headerStyle = createHeaderStyle(workbook);
+
+            String[] headers = getHeaders();
+            for (int i = 0; i < headers.length; i++) {
+                Cell cell = headerRow.createCell(i);
+                cell.setCellValue(headers[i]);
+                cell.setCellStyle(headerStyle);
+            }
+            ExcelStreamSupport.setColumnWidths(sheet, headers);
+
+            // Một style cho mọi ô dữ liệu, không tạo style theo từng dòng
+            CellStyle dataStyle = createDataStyle(workbook);
+            int[] rowIndex = {DATA_START_ROW_INDEX};
+            streamExportData(data -> {
+                Row row = sheet.createRow(rowIndex[0]++);
+                Object[] rowData = mapToRow(data);
+                for (int j = 0; j < rowData.length; j++) {
+                    Cell cell = row.createCell(j);
+                    setCellValue(cell, rowData[j]);
+                    cell.setCellStyle(dataStyle);
+                }
+            });
+
+            workbook.write(out);
+            out.flush();
+            return rowIndex[0] - DATA_START_ROW_INDEX;
+        } finally {
+            ExcelStreamSupport.dispose(workbook);
+        }
+    }
+
+    // Đọc dữ liệu export theo từng trang (xem ExcelStreamSupport.forEachPage) và đẩy từng dòng vào sink
+    protected void streamExportData(Consumer<T> sink) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support export");
+    }
+
     public byte[] workbookToBytes(Workbook workbook) throws IOException {
         try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
             workbook.write(outputStream);
@@ -186,35 +397,6 @@ public abstract class BaseExcelHandler<T> implements ExcelImporter<T>, ExcelExpo
         }
     }
 
-    protected boolean hasRowErrors(ImportResult result, int rowIndex) {
-        return result.getErrors().stream()
-                .anyMatch(error -> error.getRowIndex() == rowIndex);
-    }
-
-    protected String getCellValueAsString(Cell cell) {
-        if (cell == null) {
-            return "";
-        }
-
-        CellType cellType = cell.getCellType();
-        
-        if (cellType == CellType.STRING) {
-            return cell.getStringCellValue().trim();
-        } else if (cellType == CellType.NUMERIC) {
-            if (DateUtil.isCellDateFormatted(cell)) {
-                return cell.getLocalDateTimeCellValue().toString();
-            } else {
-                return String.valueOf((long) cell.getNumericCellValue());
-            }
-        } else if (cellType == CellType.BOOLEAN) {
-            return String.valueOf(cell.getBooleanCellValue());
-        } else if (cellType == CellType.FORMULA) {
-            return cell.getCellFormula();
-        } else {
-            return "";
-        }
-    }
-
     protected void setCellValue(Cell cell, Object value) {
         if (value == null) {
             cell.setCellValue("");
@@ -1,12 +1,18 @@
 package iuh.fit.ecommerce.utils.excel;
 
 import org.apache.poi.ss.usermodel.Workbook;
+
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 public interface ExcelExporter<T> {
 
     Workbook generateExcel(List<T> data) throws Exception;
 
+    // Export toàn bộ dữ liệu dạng stream ra out, trả về số dòng đã ghi
+    long writeExcel(OutputStream out) throws IOException;
+
     Workbook generateTemplate() throws Exception;
 
     String[] getHeaders();
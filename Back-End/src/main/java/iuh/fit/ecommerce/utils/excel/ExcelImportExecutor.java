@@ -0,0 +1,56 @@
+package iuh.fit.ecommerce.utils.excel;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool dùng chung để validate các chunk dòng import song song với việc đọc file.
+ * Mỗi lượt import chỉ giữ tối đa max-in-flight-chunks chunk chưa ghi, nên hàng đợi của pool
+ * và bộ nhớ dùng cho dòng đang chờ đều có giới hạn.
+ */
+@Component
+public class ExcelImportExecutor {
+
+    @Value("${excel.import.validator-threads:4}")
+    private int validatorThreads;
+
+    @Value("${excel.import.max-in-flight-chunks:8}")
+    private int maxInFlightChunks;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    void init() {
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(
+                validatorThreads, validatorThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "excel-import-validator-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public <R> Future<R> submit(Callable<R> task) {
+        return executor.submit(task);
+    }
+
+    public int getMaxInFlightChunks() {
+        return maxInFlightChunks;
+    }
+}
@@ -6,8 +6,6 @@ import java.util.List;
 
 public interface ExcelImporter<T> {
 
-    List<T> parseExcel(MultipartFile file) throws Exception;
-
     void validateRow(T data, int rowIndex, ImportResult result);
 
     void saveData(List<T> data) throws Exception;
@@ -0,0 +1,136 @@
+package iuh.fit.ecommerce.utils.excel;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Đọc file .xlsx theo mô hình sự kiện (SAX) của POI: sheet được parse tuần tự từ file zip trên đĩa,
+ * mỗi dòng chỉ tồn tại trong lúc gọi handler nên bộ nhớ không phụ thuộc số dòng của file.
+ * Chỉ bảng shared strings (các chuỗi khác nhau trong file) được nạp vào heap.
+ */
+public class ExcelSaxReader {
+
+    public static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    @FunctionalInterface
+    public interface RowHandler {
+        /**
+         * @param rowIndex số thứ tự dòng trong Excel (bắt đầu từ 1)
+         * @param cells    giá trị đã định dạng của từng cột, ô trống là ""
+         */
+        void onRow(int rowIndex, String[] cells);
+    }
+
+    /**
+     * Đọc sheet đầu tiên, bỏ qua các dòng trước firstRowIndex (0-based: dòng hướng dẫn, tiêu đề).
+     */
+    public static void readFirstSheet(Path file, int firstRowIndex, int columnCount, RowHandler handler) throws Exception {
+        try (OPCPackage pkg = OPCPackage.open(file.toFile(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg, false);
+            StylesTable styles = reader.getStylesTable();
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                return;
+            }
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(
+                        styles, null, strings,
+                        new RowCollector(firstRowIndex, columnCount, handler),
+                        new ImportDataFormatter(), false));
+                parser.parse(new InputSource(sheet));
+            }
+        }
+    }
+
+    private static class RowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private final int firstRowIndex;
+        private final int columnCount;
+        private final RowHandler handler;
+        private final List<String> cells = new ArrayList<>();
+        private int currentRow;
+        private int nextColumn;
+
+        RowCollector(int firstRowIndex, int columnCount, RowHandler handler) {
+            this.firstRowIndex = firstRowIndex;
+            this.columnCount = columnCount;
+            this.handler = handler;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            currentRow = rowNum;
+            nextColumn = 0;
+            cells.clear();
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (rowNum < firstRowIndex) {
+                return;
+            }
+            String[] values = new String[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                values[i] = i < cells.size() && cells.get(i) != null ? cells.get(i).trim() : "";
+            }
+            handler.onRow(rowNum + 1, values);
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            if (currentRow < firstRowIndex) {
+                return;
+            }
+            // File do thư viện khác sinh ra có thể thiếu thuộc tính r, khi đó lấy cột kế tiếp
+            int column = cellReference != null ? new CellReference(cellReference).getCol() : nextColumn;
+            nextColumn = column + 1;
+            if (column >= columnCount) {
+                return;
+            }
+            while (cells.size() <= column) {
+                cells.add(null);
+            }
+            cells.set(column, formattedValue);
+        }
+
+        @Override
+        public void headerFooter(String text, boolean isHeader, String tagName) {
+            // Không dùng header/footer của sheet
+        }
+    }
+
+    // Ngày luôn ra dạng dd/MM/yyyy bất kể định dạng ô, số nguyên không bị đổi sang dạng khoa học (giống cách đọc cũ)
+    private static class ImportDataFormatter extends DataFormatter {
+
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString) {
+            if (DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(value)) {
+                return DateUtil.getLocalDateTime(value).toLocalDate().format(DATE_FORMAT);
+            }
+            if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+                return String.valueOf((long) value);
+            }
+            return super.formatRawCellContents(value, formatIndex, formatString);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package iuh.fit.ecommerce.utils.excel;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Hàm dùng chung cho export Excel dạng stream: SXSSFWorkbook chỉ giữ rowWindow dòng gần nhất trong heap,
+ * các dòng cũ hơn được flush ra file tạm (nén), dữ liệu đọc theo từng trang keyset thay vì findAll().
+ */
+public class ExcelStreamSupport {
+
+    public static final String CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+
+    public static SXSSFWorkbook newWorkbook(int rowWindow) {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(rowWindow);
+        workbook.setCompressTempFiles(true);
+        return workbook;
+    }
+
+    // Xoá file tạm của SXSSF; gọi trong finally để không để lại file khi export lỗi giữa chừng
+    public static void dispose(SXSSFWorkbook workbook) {
+        workbook.dispose();
+        try {
+            workbook.close();
+        } catch (IOException ignored) {
+            // Workbook stream không giữ tài nguyên nào khác ngoài file tạm đã xoá
+        }
+    }
+
+    /**
+     * Duyệt toàn bộ dữ liệu theo keyset (id > lastId ORDER BY id) từng trang pageSize dòng.
+     *
+     * @return số dòng đã duyệt
+     */
+    public static <P> long forEachPage(int pageSize,
+                                       BiFunction<Long, Pageable, List<P>> pageLoader,
+                                       Function<P, Long> idOf,
+                                       Consumer<P> action) {
+        Pageable pageable = PageRequest.of(0, pageSize);
+        long lastId = 0L;
+        long count = 0;
+        while (true) {
+            List<P> page = pageLoader.apply(lastId, pageable);
+            for (P item : page) {
+                action.accept(item);
+            }
+            count += page.size();
+            if (page.size() < pageSize) {
+                return count;
+            }
+            lastId = idOf.apply(page.get(page.size() - 1));
+        }
+    }
+
+    // autoSizeColumn của SXSSF chỉ thấy các dòng còn trong window, nên đặt độ rộng theo tiêu đề cột
+    public static void setColumnWidths(Sheet sheet, String[] headers) {
+        for (int i = 0; i < headers.length; i++) {
+            sheet.setColumnWidth(i, Math.max(headers[i].length() + 6, 16) * 256);
+        }
+    }
+}
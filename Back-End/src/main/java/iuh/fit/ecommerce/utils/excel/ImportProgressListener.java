@@ -0,0 +1,15 @@
+package iuh.fit.ecommerce.utils.excel;
+
+import iuh.fit.ecommerce.dtos.excel.ImportResult;
+
+import java.util.List;
+
+/**
+ * Nhận tiến độ sau mỗi chunk đã ghi xong: progress là kết quả cộng dồn (danh sách lỗi trong đó bị giới hạn max-errors),
+ * chunkErrors là lỗi của riêng chunk vừa xử lý, sắp theo dòng.
+ */
+@FunctionalInterface
+public interface ImportProgressListener {
+
+    void onChunk(ImportResult progress, List<ImportResult.ImportError> chunkErrors);
+}
@@ -0,0 +1,12 @@
+-- Lấy hàng từ một shard flash sale: KEYS = [shard, cờ đã dừng], ARGV = [quantity]
+-- Lấy tối đa quantity nhưng không vượt số còn lại của shard, trả về số lượng đã lấy; flash sale đã dừng thì trả về 0
+if redis.call('EXISTS', KEYS[2]) == 1 then
+    return 0
+end
+local available = tonumber(redis.call('GET', KEYS[1]) or '0')
+local take = math.min(available, tonumber(ARGV[1]))
+if take <= 0 then
+    return 0
+end
+redis.call('DECRBY', KEYS[1], take)
+return take
@@ -0,0 +1,7 @@
+-- Trả hàng về một shard flash sale: KEYS = [shard, cờ đã dừng], ARGV = [quantity]
+-- Flash sale đã dừng thì shard đã bị rút, không tạo lại key mà trả về 0 để phía gọi trả hàng về kho DB
+if redis.call('EXISTS', KEYS[2]) == 1 then
+    return 0
+end
+redis.call('INCRBY', KEYS[1], ARGV[1])
+return 1
@@ -0,0 +1,7 @@
+-- Đưa một đơn từ danh sách đang xử lý trở lại đầu lấy ra của hàng đợi: KEYS = [danh sách đang xử lý, hàng đợi], ARGV = [đơn]
+-- Chỉ đẩy lại khi gỡ được khỏi danh sách nên hai node cùng thu hồi không nhân đôi đơn
+if redis.call('LREM', KEYS[1], 1, ARGV[1]) == 0 then
+    return 0
+end
+redis.call('RPUSH', KEYS[2], ARGV[1])
+return 1
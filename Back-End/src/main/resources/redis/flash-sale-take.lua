@@ -0,0 +1,11 @@
+-- Chuyển tối đa ARGV[1] đơn từ hàng đợi sang danh sách đang xử lý của node: KEYS = [hàng đợi, danh sách đang xử lý]
+-- Đơn chỉ rời danh sách đang xử lý sau khi đã ghi xong, node chết giữa chừng thì đơn vẫn còn để node khác thu hồi
+local orders = {}
+for i = 1, tonumber(ARGV[1]) do
+    local order = redis.call('RPOPLPUSH', KEYS[1], KEYS[2])
+    if not order then
+        break
+    end
+    orders[i] = order
+end
+return orders
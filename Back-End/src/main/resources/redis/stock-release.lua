@@ -0,0 +1,10 @@
+-- Bỏ giữ hàng của một đơn: KEYS = [order-hold, (holds, hold-qty) cho từng variant], ARGV = [orderId]
+-- Trả về số variant thực sự được bỏ giữ (0 nếu hold đã hết hạn hoặc đã được commit/release trước đó)
+local orderId = ARGV[1]
+local released = 0
+for i = 2, #KEYS, 2 do
+    released = released + redis.call('ZREM', KEYS[i], orderId)
+    redis.call('HDEL', KEYS[i + 1], orderId)
+end
+redis.call('DEL', KEYS[1])
+return released
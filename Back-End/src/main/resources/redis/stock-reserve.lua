@@ -0,0 +1,55 @@
+-- Giữ hàng cho một đơn: KEYS = [order-hold, (holds, hold-qty) cho từng variant]
+-- ARGV = [orderId, now, expiresAt, keyTtlMs, (variantId, quantity, dbStock) cho từng variant]
+-- Trả về {} nếu giữ được tất cả, ngược lại trả về cặp (variantId, available) của các dòng thiếu hàng
+local orderId = ARGV[1]
+local now = tonumber(ARGV[2])
+local expiresAt = tonumber(ARGV[3])
+local keyTtl = tonumber(ARGV[4])
+local lines = (#KEYS - 1) / 2
+
+local failed = {}
+for i = 1, lines do
+    local holds = KEYS[2 * i]
+    local quantities = KEYS[2 * i + 1]
+
+    local expired = redis.call('ZRANGEBYSCORE', holds, '-inf', now)
+    if #expired > 0 then
+        redis.call('ZREMRANGEBYSCORE', holds, '-inf', now)
+        redis.call('HDEL', quantities, unpack(expired))
+    end
+
+    local held = 0
+    for _, value in ipairs(redis.call('HVALS', quantities)) do
+        held = held + tonumber(value)
+    end
+    -- Gọi lại cho cùng đơn thì không tính phần đơn này đang giữ
+    local own = redis.call('HGET', quantities, orderId)
+    if own then
+        held = held - tonumber(own)
+    end
+
+    local base = 4 + (i - 1) * 3
+    local quantity = tonumber(ARGV[base + 2])
+    local available = tonumber(ARGV[base + 3]) - held
+    if available < quantity then
+        table.insert(failed, ARGV[base + 1])
+        table.insert(failed, tostring(available))
+    end
+end
+
+if #failed > 0 then
+    return failed
+end
+
+for i = 1, lines do
+    local holds = KEYS[2 * i]
+    local quantities = KEYS[2 * i + 1]
+    local base = 4 + (i - 1) * 3
+    redis.call('ZADD', holds, expiresAt, orderId)
+    redis.call('HSET', quantities, orderId, ARGV[base + 2])
+    redis.call('PEXPIRE', holds, keyTtl)
+    redis.call('PEXPIRE', quantities, keyTtl)
+    redis.call('HSET', KEYS[1], ARGV[base + 1], ARGV[base + 2])
+end
+redis.call('PEXPIRE', KEYS[1], keyTtl)
+return failed
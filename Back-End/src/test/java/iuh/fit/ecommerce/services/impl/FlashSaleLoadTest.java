@@ -0,0 +1,363 @@
+package iuh.fit.ecommerce.services.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import iuh.fit.ecommerce.dtos.request.flashSale.FlashSaleRequest;
+import iuh.fit.ecommerce.dtos.request.order.FlashSaleQueuedOrder;
+import iuh.fit.ecommerce.dtos.request.order.OrderCreationRequest;
+import iuh.fit.ecommerce.dtos.response.order.OrderResponse;
+import iuh.fit.ecommerce.entities.FlashSale;
+import iuh.fit.ecommerce.entities.ProductVariant;
+import iuh.fit.ecommerce.exceptions.custom.ConflictException;
+import iuh.fit.ecommerce.repositories.FlashSaleRepository;
+import iuh.fit.ecommerce.repositories.OrderRepository;
+import iuh.fit.ecommerce.repositories.ProductVariantRepository;
+import iuh.fit.ecommerce.repositories.PromotionRepository;
+import iuh.fit.ecommerce.services.InventoryService;
+import iuh.fit.ecommerce.services.OrderService;
+import iuh.fit.ecommerce.services.ScheduledJobService;
+import iuh.fit.ecommerce.services.StockReservationService;
+import iuh.fit.ecommerce.utils.SecurityUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Bắn nhiều checkout đồng thời vào một flash sale trên Redis thật rồi cho FlashSaleOrderWriter của nhiều node ghi đơn,
+ * trong đó một node chết giữa lúc lấy batch và ghi. Bảng đơn và kho được giả lập trong bộ nhớ (ticket unique, commit/rollback),
+ * kiểm tra mỗi đơn vị hoặc thành đúng một đơn hoặc về lại kho.
+ * Cần Redis riêng cho test (database bị xoá sạch), bật bằng FLASH_SALE_LOAD_TEST=true:
+ * FLASH_SALE_LOAD_TEST=true REDIS_HOST=localhost REDIS_TEST_DATABASE=15 mvn test -Dtest=FlashSaleLoadTest
+ */
+@EnabledIfEnvironmentVariable(named = "FLASH_SALE_LOAD_TEST", matches = "true")
+class FlashSaleLoadTest {
+
+    private static final long VARIANT_ID = 1L;
+    private static final long FLASH_SALE_ID = 1L;
+    private static final int ALLOCATED = 5_000;
+    private static final long INITIAL_STOCK = 6_000;
+    private static final int SHARDS = 8;
+    private static final int CHECKOUTS = 20_000;
+    private static final int THREADS = 64;
+
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate redis;
+    private FlashSaleRepository flashSaleRepository;
+    private ProductVariantRepository productVariantRepository;
+    private InventoryService inventoryService;
+    private StockReservationService stockReservationService;
+    private OrderRepository orderRepository;
+    private OrderService orderService;
+    private InMemoryOrders orders;
+    private final AtomicLong stock = new AtomicLong(INITIAL_STOCK);
+    private FlashSaleServiceImpl flashSaleService;
+
+    @BeforeEach
+    void setUp() {
+        RedisStandaloneConfiguration config = new RedisStandaloneConfiguration(
+                env("REDIS_HOST", "localhost"), Integer.parseInt(env("REDIS_PORT", "6379")));
+        config.setDatabase(Integer.parseInt(env("REDIS_TEST_DATABASE", "15")));
+        connectionFactory = new LettuceConnectionFactory(config);
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redis = new StringRedisTemplate(connectionFactory);
+        redis.afterPropertiesSet();
+        redis.execute(connection -> {
+            connection.serverCommands().flushDb();
+            return null;
+        }, true);
+
+        ProductVariant variant = new ProductVariant();
+        variant.setId(VARIANT_ID);
+        variant.setSku("FLASH-LOAD-TEST");
+
+        flashSaleRepository = mock(FlashSaleRepository.class);
+        productVariantRepository = mock(ProductVariantRepository.class);
+        inventoryService = mock(InventoryService.class);
+        stockReservationService = mock(StockReservationService.class);
+        orderRepository = mock(OrderRepository.class);
+        orderService = mock(OrderService.class);
+        orders = new InMemoryOrders();
+        when(productVariantRepository.findById(VARIANT_ID)).thenReturn(Optional.of(variant));
+        when(flashSaleRepository.save(any(FlashSale.class))).thenAnswer(invocation -> {
+            FlashSale sale = invocation.getArgument(0);
+            sale.setId(FLASH_SALE_ID);
+            when(flashSaleRepository.findByIdForUpdate(FLASH_SALE_ID)).thenReturn(Optional.of(sale));
+            when(flashSaleRepository.findAllActive()).thenReturn(List.of(sale));
+            return sale;
+        });
+        doAnswer(invocation -> {
+            Map<Long, Long> quantities = invocation.getArgument(0);
+            stock.addAndGet(-quantities.getOrDefault(VARIANT_ID, 0L));
+            return null;
+        }).when(inventoryService).decreaseStock(anyMap());
+        doAnswer(invocation -> {
+            Map<Long, Long> quantities = invocation.getArgument(0);
+            stock.addAndGet(quantities.getOrDefault(VARIANT_ID, 0L));
+            return null;
+        }).when(inventoryService).increaseStock(anyMap());
+        // Không có đơn nào đang giữ hàng: số bán được bằng tồn kho
+        when(stockReservationService.getAvailableStock(any()))
+                .thenAnswer(invocation -> Map.of(VARIANT_ID, (int) stock.get()));
+        when(orderRepository.findIdByFlashSaleTicketId(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(orders.persisted.get(invocation.<String>getArgument(0))));
+        // Một phần khách có giỏ hàng đã đổi, đơn của họ không ghi được và hàng phải trả lại
+        when(orderService.createFlashSaleOrder(any())).thenAnswer(invocation -> {
+            FlashSaleQueuedOrder order = invocation.getArgument(0);
+            if (order.getCustomerId() % 97 == 0) {
+                throw new IllegalStateException("Cart changed");
+            }
+            return OrderResponse.builder().id(orders.insert(order.getTicketId())).build();
+        });
+
+        flashSaleService = newNode();
+    }
+
+    // Mỗi lần gọi là một node riêng với cache flash sale riêng, dùng chung Redis và repository
+    private FlashSaleServiceImpl newNode() {
+        FlashSaleServiceImpl node = new FlashSaleServiceImpl(
+                flashSaleRepository,
+                productVariantRepository,
+                mock(PromotionRepository.class),
+                orderRepository,
+                inventoryService,
+                stockReservationService,
+                mock(ScheduledJobService.class),
+                redis,
+                new ObjectMapper().findAndRegisterModules(),
+                mock(SecurityUtils.class),
+                new SimpleMeterRegistry(),
+                orders
+        );
+        ReflectionTestUtils.setField(node, "defaultShardCount", SHARDS);
+        ReflectionTestUtils.setField(node, "maxConcurrent", THREADS);
+        ReflectionTestUtils.setField(node, "admissionWaitMs", 5_000L);
+        ReflectionTestUtils.setField(node, "maxPending", (long) CHECKOUTS);
+        ReflectionTestUtils.setField(node, "ticketTtlMinutes", 5L);
+        ReflectionTestUtils.setField(node, "stoppedMarkerTtlHours", 1L);
+        node.init();
+        node.refreshActiveSales();
+        return node;
+    }
+
+    private FlashSaleOrderWriter newWriter(FlashSaleServiceImpl node) {
+        FlashSaleOrderWriter writer = new FlashSaleOrderWriter(node, orderService, orders, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(writer, "batchSize", 100);
+        return writer;
+    }
+
+    @AfterEach
+    void tearDown() {
+        redis.execute(connection -> {
+            connection.serverCommands().flushDb();
+            return null;
+        }, true);
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void concurrentCheckoutsPersistEveryUnitExactlyOnce() throws Exception {
+        FlashSaleRequest request = new FlashSaleRequest();
+        request.setProductVariantId(VARIANT_ID);
+        request.setQuantity(ALLOCATED);
+        flashSaleService.startFlashSale(request);
+        assertEquals(INITIAL_STOCK - ALLOCATED, stock.get());
+
+        AtomicInteger admitted = new AtomicInteger();
+        AtomicInteger soldOut = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>(CHECKOUTS);
+            for (int i = 0; i < CHECKOUTS; i++) {
+                long customerId = i;
+                futures.add(executor.submit(() -> {
+                    try {
+                        flashSaleService.admit(customerId, new OrderCreationRequest(), Map.of(VARIANT_ID, 1L));
+                        admitted.incrementAndGet();
+                    } catch (ConflictException e) {
+                        soldOut.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(ALLOCATED, admitted.get(), "every allocated unit is sold exactly once");
+        assertEquals(CHECKOUTS - ALLOCATED, soldOut.get());
+
+        // Node này lấy một batch rồi chết trước khi ghi, heartbeat của nó hết hạn
+        FlashSaleServiceImpl crashed = newNode();
+        List<FlashSaleQueuedOrder> lost = crashed.takeQueuedOrders(100);
+        assertEquals(100, lost.size());
+        redis.delete("flash:writer:" + ReflectionTestUtils.getField(crashed, "nodeId"));
+
+        FlashSaleServiceImpl first = newNode();
+        FlashSaleServiceImpl second = newNode();
+        drain(newWriter(first), newWriter(second));
+        first.recoverOrphanedOrders();
+        drain(newWriter(first), newWriter(second));
+
+        first.stopFlashSale(FLASH_SALE_ID);
+
+        Map<String, Integer> statuses = new HashMap<>();
+        for (String key : redis.keys("flash:ticket:*")) {
+            statuses.merge(String.valueOf(redis.opsForHash().get(key, "status")), 1, Integer::sum);
+        }
+        int created = statuses.getOrDefault("CREATED", 0);
+        int failed = statuses.getOrDefault("FAILED", 0);
+        assertEquals(ALLOCATED, created + failed, "every ticket ends CREATED or FAILED, none stays QUEUED");
+        assertEquals(created, orders.persisted.size(), "one persisted order per created ticket");
+        assertTrue(failed > 0);
+        for (FlashSaleQueuedOrder order : lost) {
+            String status = String.valueOf(redis.opsForHash().get("flash:ticket:" + order.getTicketId(), "status"));
+            assertTrue(Set.of("CREATED", "FAILED").contains(status), "batch of the crashed node was recovered");
+        }
+        assertTrue(redis.keys("flash:orders*").isEmpty(), "queue and processing lists are empty");
+        // Đơn vị không thành đơn (ghi lỗi hoặc còn lại lúc đóng) đã về kho, không đơn vị nào bị mất
+        assertEquals(INITIAL_STOCK - orders.persisted.size(), stock.get());
+        assertEquals(ALLOCATED - created,
+                flashSaleRepository.findByIdForUpdate(FLASH_SALE_ID).orElseThrow().getReturnedQuantity());
+    }
+
+    @Test
+    void unitsReturnedAfterStopGoBackToStock() {
+        FlashSaleRequest request = new FlashSaleRequest();
+        request.setProductVariantId(VARIANT_ID);
+        request.setQuantity(100);
+        request.setShardCount(4);
+        flashSaleService.startFlashSale(request);
+        // Node khác vẫn giữ flash sale trong cache lúc node này đóng
+        FlashSaleServiceImpl otherNode = newNode();
+
+        for (long customerId = 1; customerId <= 10; customerId++) {
+            flashSaleService.admit(customerId, new OrderCreationRequest(), Map.of(VARIANT_ID, 1L));
+        }
+        List<FlashSaleQueuedOrder> queued = otherNode.takeQueuedOrders(10);
+
+        flashSaleService.stopFlashSale(FLASH_SALE_ID);
+        queued.forEach(order -> otherNode.markFailed(order, "load test"));
+
+        // 90 đơn vị rút lúc đóng, 10 đơn vị trả lại sau đó đi thẳng về kho, không shard nào bị tạo lại
+        verify(inventoryService).increaseStock(Map.of(VARIANT_ID, 90L));
+        verify(inventoryService, times(10)).increaseStock(Map.of(VARIANT_ID, 1L));
+        assertTrue(redis.keys("flash:stock:" + FLASH_SALE_ID + ":*").isEmpty());
+        assertEquals(INITIAL_STOCK, stock.get());
+    }
+
+    @Test
+    void heldStockIsNotAllocated() {
+        // 6000 trong kho nhưng 1500 đang được giữ cho đơn chờ thanh toán
+        when(stockReservationService.getAvailableStock(any()))
+                .thenReturn(Map.of(VARIANT_ID, (int) INITIAL_STOCK - 1_500));
+        FlashSaleRequest request = new FlashSaleRequest();
+        request.setProductVariantId(VARIANT_ID);
+        request.setQuantity((int) INITIAL_STOCK - 1_000);
+
+        assertThrows(ConflictException.class, () -> flashSaleService.startFlashSale(request));
+        assertEquals(INITIAL_STOCK, stock.get());
+    }
+
+    // Mỗi writer tự chạy tới khi hàng đợi rỗng, như hai node cùng ghi
+    private void drain(FlashSaleOrderWriter... writers) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(writers.length);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (FlashSaleOrderWriter writer : writers) {
+                futures.add(executor.submit(() -> {
+                    Long pending = redis.opsForList().size("flash:orders");
+                    while (pending != null && pending > 0) {
+                        writer.flush();
+                        pending = redis.opsForList().size("flash:orders");
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null && !value.isBlank() ? value : defaultValue;
+    }
+
+    /**
+     * Bảng orders giả lập: flash_sale_ticket_id unique, đơn chỉ thấy được sau commit, rollback thì bỏ.
+     */
+    private static final class InMemoryOrders implements PlatformTransactionManager {
+
+        private final Map<String, Long> persisted = new ConcurrentHashMap<>();
+        private final Set<String> reserved = ConcurrentHashMap.newKeySet();
+        private final ThreadLocal<Map<String, Long>> pending = ThreadLocal.withInitial(HashMap::new);
+        private final AtomicLong ids = new AtomicLong();
+
+        long insert(String ticketId) {
+            if (persisted.containsKey(ticketId) || !reserved.add(ticketId)) {
+                throw new DataIntegrityViolationException("Duplicate flash_sale_ticket_id " + ticketId);
+            }
+            long id = ids.incrementAndGet();
+            pending.get().put(ticketId, id);
+            return id;
+        }
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            pending.get().clear();
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            persisted.putAll(pending.get());
+            pending.get().keySet().forEach(reserved::remove);
+            pending.get().clear();
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+            pending.get().keySet().forEach(reserved::remove);
+            pending.get().clear();
+        }
+    }
+}
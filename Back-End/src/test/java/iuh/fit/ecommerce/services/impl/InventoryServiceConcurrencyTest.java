@@ -0,0 +1,129 @@
+package iuh.fit.ecommerce.services.impl;
+
+import iuh.fit.ecommerce.entities.ProductVariant;
+import iuh.fit.ecommerce.exceptions.custom.InsufficientStockException;
+import iuh.fit.ecommerce.repositories.ProductVariantRepository;
+import iuh.fit.ecommerce.services.InventoryService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Nhiều đơn đồng thời trừ kho cùng vài variant trên MySQL thật: không bán vượt tồn, không deadlock,
+ * và ProductVariant đã load trong transaction thấy stock mới sau UPDATE hàng loạt.
+ * Ghi dữ liệu vào DB cấu hình nên phải bật rõ bằng INVENTORY_STRESS_TEST=true:
+ * INVENTORY_STRESS_TEST=true mvn test -Dtest=InventoryServiceConcurrencyTest
+ */
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "INVENTORY_STRESS_TEST", matches = "true")
+class InventoryServiceConcurrencyTest {
+
+    private static final int STOCK = 1_000;
+    private static final int ORDERS = 5_000;
+    private static final int THREADS = 32;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private ProductVariantRepository productVariantRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final List<Long> createdIds = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        productVariantRepository.deleteAllById(createdIds);
+    }
+
+    @Test
+    void concurrentOrdersNeverOversell() throws Exception {
+        Long first = createVariant(STOCK);
+        Long second = createVariant(STOCK);
+
+        AtomicInteger placed = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>(ORDERS);
+            for (int i = 0; i < ORDERS; i++) {
+                futures.add(executor.submit(() -> {
+                    // Thứ tự dòng trong đơn ngẫu nhiên: InventoryService phải tự sắp để không deadlock
+                    Map<Long, Long> lines = new LinkedHashMap<>();
+                    if (ThreadLocalRandom.current().nextBoolean()) {
+                        lines.put(first, 1L);
+                        lines.put(second, 1L);
+                    } else {
+                        lines.put(second, 1L);
+                        lines.put(first, 1L);
+                    }
+                    try {
+                        new TransactionTemplate(transactionManager)
+                                .executeWithoutResult(status -> inventoryService.decreaseStock(lines));
+                        placed.incrementAndGet();
+                    } catch (InsufficientStockException e) {
+                        rejected.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // Mỗi đơn lấy 1 đơn vị của cả hai variant: đúng STOCK đơn thành công, phần còn lại bị từ chối
+        assertEquals(STOCK, placed.get(), "không bán vượt tồn");
+        assertEquals(ORDERS - STOCK, rejected.get());
+        assertEquals(0, stockOf(first), "tồn cuối của variant thứ nhất");
+        assertEquals(0, stockOf(second), "tồn cuối của variant thứ hai");
+    }
+
+    @Test
+    void loadedVariantSeesStockAfterBulkUpdate() {
+        Long variantId = createVariant(10);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            ProductVariant variant = productVariantRepository.findById(variantId).orElseThrow();
+            inventoryService.decreaseStock(Map.of(variantId, 3L));
+            assertEquals(7, variant.getStock());
+
+            inventoryService.increaseStock(Map.of(variantId, 1L));
+            assertEquals(8, variant.getStock());
+        });
+        assertEquals(8, stockOf(variantId));
+    }
+
+    private Long createVariant(int stock) {
+        ProductVariant variant = new ProductVariant();
+        variant.setSku("STRESS-" + System.nanoTime());
+        variant.setPrice(1.0);
+        variant.setStock(stock);
+        Long id = productVariantRepository.save(variant).getId();
+        createdIds.add(id);
+        return id;
+    }
+
+    private int stockOf(Long variantId) {
+        return productVariantRepository.findById(variantId).orElseThrow().getStock();
+    }
+}